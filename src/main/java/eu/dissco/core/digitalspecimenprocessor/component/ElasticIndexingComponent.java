@@ -0,0 +1,106 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import eu.dissco.core.digitalspecimenprocessor.property.ElasticSearchProperties;
+import jakarta.annotation.PreDestroy;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/*
+ * Indexes batches in elastic in the background, so the consumer can process the next batch
+ * while the previous one is indexed. Requests are sent one after the other, each after the
+ * outcome of the previous one has been handled, so a document is never overwritten by an
+ * older version or a rollback of an earlier batch. When the maximum number of requests is
+ * pending, submitting waits until the oldest has completed.
+ *
+ * Callers continue with the records written to the database before elastic has answered.
+ * Their state is cached, added to the known object filters and used to process the media
+ * and schedule MAS of the batch. When indexing then fails, the records are rolled back in
+ * the database only if no later batch has changed them since, and their events are dead
+ * lettered. The work already done for the batch is not undone: MAS jobs are scheduled at
+ * most once and may run for a rolled back version. Cached states are checked against the
+ * database version before use, and the known object filters only tell which objects to look
+ * up, so neither serves a rolled back record.
+ */
+@Slf4j
+@Component
+public class ElasticIndexingComponent {
+
+	private static final long SHUTDOWN_TIMEOUT_SECONDS = 60;
+
+	private final ElasticSearchProperties properties;
+
+	private final ExecutorService executor = Executors.newSingleThreadExecutor(runnable -> {
+		var thread = new Thread(runnable, "elastic-indexing");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Semaphore pending;
+
+	private CompletableFuture<Void> last = CompletableFuture.completedFuture(null);
+
+	public ElasticIndexingComponent(ElasticSearchProperties properties) {
+		this.properties = properties;
+		this.pending = new Semaphore(properties.getAsyncIndexingMaxPending());
+	}
+
+	public boolean isEnabled() {
+		return properties.isAsyncIndexing();
+	}
+
+	/*
+	 * The request is started on the indexing thread. Exactly one of the handlers is called on
+	 * that thread once it completes, with the response or the cause of the failure.
+	 */
+	public void submit(Supplier<CompletableFuture<BulkResponse>> request, Consumer<BulkResponse> onResponse,
+			Consumer<Throwable> onFailure) {
+		pending.acquireUninterruptibly();
+		synchronized (this) {
+			last = last.thenComposeAsync(_ -> request.get(), executor).handleAsync((bulkResponse, exception) -> {
+				try {
+					if (exception == null) {
+						onResponse.accept(bulkResponse);
+					}
+					else {
+						onFailure.accept(exception instanceof CompletionException ? exception.getCause() : exception);
+					}
+				}
+				catch (RuntimeException e) {
+					log.error("Failed to handle the outcome of an elastic bulk request", e);
+				}
+				finally {
+					pending.release();
+				}
+				return null;
+			}, executor);
+		}
+	}
+
+	// Pending requests are published or rolled back before the application stops
+	@PreDestroy
+	void shutdown() throws InterruptedException {
+		CompletableFuture<Void> remaining;
+		synchronized (this) {
+			remaining = last;
+		}
+		try {
+			remaining.get(SHUTDOWN_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+		}
+		catch (ExecutionException | TimeoutException e) {
+			log.error("Pending elastic bulk requests did not complete before shutdown", e);
+		}
+		executor.shutdown();
+	}
+
+}
@@ -0,0 +1,279 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/*
+ * Gzip compression with pooled Deflaters/Inflaters and a reusable output buffer per
+ * thread. GZIPOutputStream and GZIPInputStream create a new Deflater/Inflater for every
+ * message, of which the native memory is only released when they are garbage collected.
+ * Produces single member gzip and reads gzip with any number of concatenated members,
+ * which is compatible with GZIPInputStream and GZIPOutputStream.
+ */
+class GzipCodec {
+
+	private static final int BUFFER_SIZE = 8192; // 8KB
+
+	private static final int MAX_RETAINED_BUFFER_SIZE = 1024 * 1024; // 1MB
+
+	private static final int POOL_SIZE = 32;
+
+	private static final int HEADER_SIZE = 10;
+
+	private static final int TRAILER_SIZE = 8;
+
+	private static final byte[] HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, 0 };
+
+	private static final int FHCRC = 2;
+
+	private static final int FEXTRA = 4;
+
+	private static final int FNAME = 8;
+
+	private static final int FCOMMENT = 16;
+
+	private final Pool<Deflater> deflaters = new Pool<>(() -> new Deflater(Deflater.DEFAULT_COMPRESSION, true),
+			Deflater::reset, Deflater::end);
+
+	private final Pool<Inflater> inflaters = new Pool<>(() -> new Inflater(true), Inflater::reset, Inflater::end);
+
+	private final ThreadLocal<ByteArrayOutputStream> outputBuffers = ThreadLocal
+		.withInitial(() -> new ByteArrayOutputStream(BUFFER_SIZE));
+
+	private final ThreadLocal<byte[]> deflateBuffers = ThreadLocal.withInitial(() -> new byte[BUFFER_SIZE]);
+
+	byte[] compress(byte[] message) {
+		var deflater = deflaters.acquire();
+		var outputBuffer = outputBuffers.get();
+		var deflateBuffer = deflateBuffers.get();
+		try {
+			outputBuffer.reset();
+			outputBuffer.write(HEADER, 0, HEADER.length);
+			deflater.setInput(message);
+			deflater.finish();
+			while (!deflater.finished()) {
+				var length = deflater.deflate(deflateBuffer);
+				outputBuffer.write(deflateBuffer, 0, length);
+			}
+			var crc = new CRC32();
+			crc.update(message);
+			writeInt(outputBuffer, (int) crc.getValue());
+			writeInt(outputBuffer, message.length);
+			return outputBuffer.toByteArray();
+		}
+		finally {
+			deflaters.release(deflater);
+			if (outputBuffer.size() > MAX_RETAINED_BUFFER_SIZE) {
+				// Don't keep large buffers around
+				outputBuffers.remove();
+			}
+		}
+	}
+
+	InputStream decompress(byte[] message) throws IOException {
+		var offset = readHeader(message, 0);
+		return new PooledGzipInputStream(message, offset, inflaters.acquire());
+	}
+
+	// Returns the offset of the compressed data of the member starting at the given offset
+	private static int readHeader(byte[] message, int start) throws ZipException {
+		if (message.length - start < HEADER_SIZE + TRAILER_SIZE || message[start] != HEADER[0]
+				|| message[start + 1] != HEADER[1]) {
+			throw new ZipException("Not in GZIP format");
+		}
+		if (message[start + 2] != Deflater.DEFLATED) {
+			throw new ZipException("Unsupported compression method");
+		}
+		var flags = message[start + 3];
+		var offset = start + HEADER_SIZE;
+		if ((flags & FEXTRA) == FEXTRA) {
+			offset += 2 + ((message[offset] & 0xff) | (message[offset + 1] & 0xff) << 8);
+		}
+		if ((flags & FNAME) == FNAME) {
+			offset = skipZeroTerminatedString(message, offset);
+		}
+		if ((flags & FCOMMENT) == FCOMMENT) {
+			offset = skipZeroTerminatedString(message, offset);
+		}
+		if ((flags & FHCRC) == FHCRC) {
+			offset += 2;
+		}
+		if (offset > message.length - TRAILER_SIZE) {
+			throw new ZipException("Corrupt GZIP header");
+		}
+		return offset;
+	}
+
+	private static int skipZeroTerminatedString(byte[] message, int offset) {
+		while (offset < message.length && message[offset] != 0) {
+			offset++;
+		}
+		return offset + 1;
+	}
+
+	private static void writeInt(ByteArrayOutputStream outputStream, int value) {
+		outputStream.write(value & 0xff);
+		outputStream.write((value >> 8) & 0xff);
+		outputStream.write((value >> 16) & 0xff);
+		outputStream.write((value >> 24) & 0xff);
+	}
+
+	private static int readInt(byte[] message, int offset) {
+		return (message[offset] & 0xff) | (message[offset + 1] & 0xff) << 8 | (message[offset + 2] & 0xff) << 16
+				| (message[offset + 3] & 0xff) << 24;
+	}
+
+	/*
+	 * Inflates the message in place, as it is already in memory. When a member ends, its
+	 * trailer directly follows the compressed data the inflater consumed. If another member
+	 * follows the trailer, the inflater is reset and continues with its compressed data.
+	 * Like GZIPInputStream, bytes after the last member which are not a gzip header are
+	 * ignored.
+	 */
+	private final class PooledGzipInputStream extends InputStream {
+
+		private final CRC32 crc = new CRC32();
+
+		private final byte[] message;
+
+		private final Inflater inflater;
+
+		private final byte[] singleByte = new byte[1];
+
+		private boolean eof = false;
+
+		private boolean closed = false;
+
+		private PooledGzipInputStream(byte[] message, int offset, Inflater inflater) {
+			this.message = message;
+			this.inflater = inflater;
+			inflater.setInput(message, offset, message.length - offset);
+		}
+
+		@Override
+		public int read() throws IOException {
+			return read(singleByte, 0, 1) == -1 ? -1 : singleByte[0] & 0xff;
+		}
+
+		@Override
+		public int read(byte[] buffer, int offset, int length) throws IOException {
+			if (closed) {
+				throw new IOException("Stream closed");
+			}
+			if (eof) {
+				return -1;
+			}
+			if (length == 0) {
+				return 0;
+			}
+			while (true) {
+				var read = inflate(buffer, offset, length);
+				if (read > 0) {
+					crc.update(buffer, offset, read);
+					return read;
+				}
+				if (inflater.finished()) {
+					if (!nextMember()) {
+						eof = true;
+						return -1;
+					}
+				}
+				else if (inflater.needsInput()) {
+					throw new EOFException("Unexpected end of GZIP input stream");
+				}
+				else if (inflater.needsDictionary()) {
+					throw new ZipException("Unexpected preset dictionary in GZIP input stream");
+				}
+			}
+		}
+
+		private int inflate(byte[] buffer, int offset, int length) throws ZipException {
+			try {
+				return inflater.inflate(buffer, offset, length);
+			}
+			catch (DataFormatException e) {
+				throw new ZipException(e.getMessage() != null ? e.getMessage() : "Invalid GZIP data format");
+			}
+		}
+
+		// Verifies the trailer of the finished member and starts on the next, if there is one
+		private boolean nextMember() throws ZipException {
+			var trailerOffset = message.length - inflater.getRemaining();
+			if (trailerOffset > message.length - TRAILER_SIZE
+					|| readInt(message, trailerOffset) != (int) crc.getValue()
+					|| readInt(message, trailerOffset + 4) != (int) inflater.getBytesWritten()) {
+				throw new ZipException("Corrupt GZIP trailer");
+			}
+			var nextOffset = trailerOffset + TRAILER_SIZE;
+			if (nextOffset == message.length) {
+				return false;
+			}
+			int dataOffset;
+			try {
+				dataOffset = readHeader(message, nextOffset);
+			}
+			catch (ZipException _) {
+				return false;
+			}
+			crc.reset();
+			inflater.reset();
+			inflater.setInput(message, dataOffset, message.length - dataOffset);
+			return true;
+		}
+
+		@Override
+		public void close() {
+			if (!closed) {
+				closed = true;
+				inflaters.release(inflater);
+			}
+		}
+
+	}
+
+	/*
+	 * Bounded pool, objects that don't fit in the pool are ended directly instead of
+	 * waiting for the garbage collector
+	 */
+	private static final class Pool<T> {
+
+		private final BlockingQueue<T> queue = new ArrayBlockingQueue<>(POOL_SIZE);
+
+		private final Supplier<T> factory;
+
+		private final Consumer<T> reset;
+
+		private final Consumer<T> end;
+
+		private Pool(Supplier<T> factory, Consumer<T> reset, Consumer<T> end) {
+			this.factory = factory;
+			this.reset = reset;
+			this.end = end;
+		}
+
+		private T acquire() {
+			var pooled = queue.poll();
+			return pooled != null ? pooled : factory.get();
+		}
+
+		private void release(T pooled) {
+			reset.accept(pooled);
+			if (!queue.offer(pooled)) {
+				end.accept(pooled);
+			}
+		}
+
+	}
+
+}
@@ -0,0 +1,98 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/*
+ * Registry of the physical specimen ids and media uris which are being processed. With
+ * concurrent consumers, batches with disjoint keys are processed in parallel, while a
+ * batch which overlaps with a batch in flight waits until that batch is done. All keys of
+ * a batch are acquired at once, so batches can't deadlock on each other. Waiting batches
+ * are queued in arrival order and a batch does not overtake an earlier waiting batch it
+ * overlaps with, so a batch can't be starved by a stream of later overlapping batches.
+ */
+@Slf4j
+@Component
+public class KeyLockComponent {
+
+	private static final String SPECIMEN_PREFIX = "specimen:";
+
+	private static final String MEDIA_PREFIX = "media:";
+
+	private final ReentrantLock lock = new ReentrantLock(true);
+
+	private final Condition released = lock.newCondition();
+
+	private final Set<String> inFlight = new HashSet<>();
+
+	private final Deque<Set<String>> waiting = new ArrayDeque<>();
+
+	public KeyLock lock(Collection<String> physicalSpecimenIds, Collection<String> mediaUris) {
+		var keys = new HashSet<String>();
+		physicalSpecimenIds.forEach(id -> keys.add(SPECIMEN_PREFIX + id));
+		mediaUris.forEach(uri -> keys.add(MEDIA_PREFIX + uri));
+		lock.lock();
+		try {
+			if (!canAcquire(keys)) {
+				log.info("Batch overlaps with a batch in progress, waiting for it to finish");
+				waiting.addLast(keys);
+				try {
+					while (!canAcquire(keys)) {
+						released.awaitUninterruptibly();
+					}
+				}
+				finally {
+					waiting.removeIf(waitingKeys -> waitingKeys == keys);
+				}
+			}
+			inFlight.addAll(keys);
+		}
+		finally {
+			lock.unlock();
+		}
+		return () -> release(keys);
+	}
+
+	// None of the keys are in flight or wanted by a batch which has been waiting longer
+	private boolean canAcquire(Set<String> keys) {
+		if (keys.stream().anyMatch(inFlight::contains)) {
+			return false;
+		}
+		for (var waitingKeys : waiting) {
+			if (waitingKeys == keys) {
+				return true;
+			}
+			if (!Collections.disjoint(waitingKeys, keys)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private void release(Set<String> keys) {
+		lock.lock();
+		try {
+			inFlight.removeAll(keys);
+			released.signalAll();
+		}
+		finally {
+			lock.unlock();
+		}
+	}
+
+	public interface KeyLock extends AutoCloseable {
+
+		@Override
+		void close();
+
+	}
+
+}
@@ -0,0 +1,312 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaEvent;
+import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaRecord;
+import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenEvent;
+import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenRecord;
+import eu.dissco.core.digitalspecimenprocessor.exception.DisscoRepositoryException;
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
+import eu.dissco.core.digitalspecimenprocessor.repository.DigitalMediaRepository;
+import eu.dissco.core.digitalspecimenprocessor.repository.DigitalSpecimenRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.exception.DataAccessException;
+import org.springframework.stereotype.Component;
+
+/*
+ * Bloom filters of all known physical specimen ids and media urls. Lookups match on the
+ * id or url alone, whatever the source system, so the filters are not split by source
+ * system either. The filters are loaded from the database at startup, or from a
+ * snapshot, after which objects created by any instance are added with every refresh and
+ * objects created by this instance as soon as they are inserted. Objects other instances
+ * created since the last refresh are therefore missing, so the keys the filter has never
+ * seen are confirmed with an existence query on their indexed hash, which is far cheaper
+ * than retrieving the objects. Only the objects the database does not know either skip
+ * their lookup. Until the first load has finished, and for events without an id or url,
+ * every object is looked up.
+ */
+@Slf4j
+@Component
+public class KnownObjectFilterComponent {
+
+	private static final String SPECIMEN = "specimen";
+
+	private static final String MEDIA = "media";
+
+	private static final int SNAPSHOT_FORMAT = 2;
+
+	// Objects are created before their transaction commits, so a refresh also reads the
+	// objects created shortly before the previous one
+	private static final Duration REFRESH_OVERLAP = Duration.ofMinutes(10);
+
+	private final DigitalSpecimenRepository specimenRepository;
+
+	private final DigitalMediaRepository mediaRepository;
+
+	private final ApplicationProperties applicationProperties;
+
+	// One filter per object type, replaced as a whole when a snapshot is restored
+	private final Map<String, ScalableBloomFilter> filters = new ConcurrentHashMap<>();
+
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		var thread = new Thread(runnable, "known-object-filter");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final Map<String, Counter> absentCounters;
+
+	private final Map<String, Counter> presentCounters;
+
+	private final Map<String, Counter> missedCounters;
+
+	private final Map<String, Counter> falsePositiveCounters;
+
+	private volatile boolean ready;
+
+	// Start of the last completed refresh, later refreshes read the objects created since
+	private volatile Instant refreshedAt;
+
+	public KnownObjectFilterComponent(DigitalSpecimenRepository specimenRepository,
+			DigitalMediaRepository mediaRepository, ApplicationProperties applicationProperties,
+			MeterRegistry meterRegistry) {
+		this.specimenRepository = specimenRepository;
+		this.mediaRepository = mediaRepository;
+		this.applicationProperties = applicationProperties;
+		absentCounters = Map.of(SPECIMEN, lookupCounter(meterRegistry, SPECIMEN, "absent"), MEDIA,
+				lookupCounter(meterRegistry, MEDIA, "absent"));
+		presentCounters = Map.of(SPECIMEN, lookupCounter(meterRegistry, SPECIMEN, "present"), MEDIA,
+				lookupCounter(meterRegistry, MEDIA, "present"));
+		missedCounters = Map.of(SPECIMEN, lookupCounter(meterRegistry, SPECIMEN, "missed"), MEDIA,
+				lookupCounter(meterRegistry, MEDIA, "missed"));
+		falsePositiveCounters = Map.of(SPECIMEN,
+				meterRegistry.counter("known.object.filter.false.positives", "type", SPECIMEN), MEDIA,
+				meterRegistry.counter("known.object.filter.false.positives", "type", MEDIA));
+		filters.put(SPECIMEN, newFilter());
+		filters.put(MEDIA, newFilter());
+		registerGauges(meterRegistry, SPECIMEN);
+		registerGauges(meterRegistry, MEDIA);
+	}
+
+	private static Counter lookupCounter(MeterRegistry meterRegistry, String type, String result) {
+		return meterRegistry.counter("known.object.filter.lookups", "type", type, "result", result);
+	}
+
+	private ScalableBloomFilter newFilter() {
+		return new ScalableBloomFilter(applicationProperties.getKnownObjectFilterInitialCapacity(),
+				applicationProperties.getKnownObjectFilterFalsePositiveRate());
+	}
+
+	private void registerGauges(MeterRegistry meterRegistry, String type) {
+		Gauge.builder("known.object.filter.size", filters, map -> map.get(type).approximateElementCount())
+			.tag("type", type)
+			.register(meterRegistry);
+		Gauge.builder("known.object.filter.expected.false.positive.rate", filters,
+				map -> map.get(type).expectedFalsePositiveRate())
+			.tag("type", type)
+			.register(meterRegistry);
+	}
+
+	@PostConstruct
+	void start() {
+		if (!applicationProperties.isKnownObjectFilter()) {
+			return;
+		}
+		executor.execute(this::loadSnapshot);
+		var interval = applicationProperties.getKnownObjectFilterRefreshSeconds();
+		executor.scheduleWithFixedDelay(this::refresh, 0, interval, TimeUnit.SECONDS);
+	}
+
+	public Set<DigitalSpecimenEvent> mightExistSpecimens(Set<DigitalSpecimenEvent> events)
+			throws DisscoRepositoryException {
+		return mightExist(events, SPECIMEN, event -> event.digitalSpecimenWrapper().physicalSpecimenID(),
+				specimenRepository::getExistingPhysicalSpecimenIds);
+	}
+
+	public Set<DigitalMediaEvent> mightExistMedia(Set<DigitalMediaEvent> events) {
+		return mightExist(events, MEDIA, event -> event.digitalMediaWrapper().attributes().getAcAccessURI(),
+				mediaRepository::getExistingMediaUrls);
+	}
+
+	private <T, E extends Exception> Set<T> mightExist(Set<T> events, String type, Function<T, String> key,
+			ExistingKeys<E> existingKeys) throws E {
+		if (!ready) {
+			return events;
+		}
+		var filter = filters.get(type);
+		var unseenKeys = events.stream()
+			.map(key)
+			.filter(eventKey -> eventKey != null && !filter.mightContain(eventKey))
+			.collect(Collectors.toSet());
+		var missedKeys = unseenKeys.isEmpty() ? Set.<String>of() : existingKeys.find(unseenKeys);
+		missedKeys.forEach(filter::put);
+		var result = new LinkedHashSet<T>();
+		var missed = 0;
+		for (var event : events) {
+			var eventKey = key.apply(event);
+			if (eventKey == null || !unseenKeys.contains(eventKey)) {
+				result.add(event);
+			}
+			else if (missedKeys.contains(eventKey)) {
+				result.add(event);
+				missed++;
+			}
+		}
+		absentCounters.get(type).increment(events.size() - result.size());
+		presentCounters.get(type).increment(result.size() - missed);
+		missedCounters.get(type).increment(missed);
+		return result;
+	}
+
+	// Counts the events which passed the filter but were not found in the database
+	public void recordSpecimenLookups(Set<DigitalSpecimenEvent> events, Set<String> foundPhysicalSpecimenIds) {
+		recordLookups(events, SPECIMEN, event -> event.digitalSpecimenWrapper().physicalSpecimenID(),
+				foundPhysicalSpecimenIds);
+	}
+
+	public void recordMediaLookups(Set<DigitalMediaEvent> events, Set<String> foundMediaUris) {
+		recordLookups(events, MEDIA, event -> event.digitalMediaWrapper().attributes().getAcAccessURI(),
+				foundMediaUris);
+	}
+
+	private <T> void recordLookups(Set<T> events, String type, Function<T, String> key, Set<String> found) {
+		if (ready) {
+			var falsePositives = events.stream()
+				.map(key)
+				.filter(eventKey -> eventKey != null && !found.contains(eventKey))
+				.count();
+			falsePositiveCounters.get(type).increment(falsePositives);
+		}
+	}
+
+	public void addSpecimens(Collection<DigitalSpecimenRecord> digitalSpecimenRecords) {
+		if (applicationProperties.isKnownObjectFilter()) {
+			digitalSpecimenRecords.forEach(digitalSpecimenRecord -> add(SPECIMEN,
+					digitalSpecimenRecord.digitalSpecimenWrapper().physicalSpecimenID()));
+		}
+	}
+
+	public void addMedia(Collection<DigitalMediaRecord> digitalMediaRecords) {
+		if (applicationProperties.isKnownObjectFilter()) {
+			digitalMediaRecords.forEach(digitalMediaRecord -> add(MEDIA, digitalMediaRecord.accessURI()));
+		}
+	}
+
+	private void add(String type, String key) {
+		if (key != null) {
+			filters.get(type).put(key);
+		}
+	}
+
+	void refresh() {
+		var startedAt = Instant.now();
+		var since = refreshedAt == null ? null : refreshedAt.minus(REFRESH_OVERLAP);
+		try {
+			specimenRepository.streamPhysicalSpecimenIds(since, id -> add(SPECIMEN, id));
+			mediaRepository.streamMediaUrls(since, mediaUrl -> add(MEDIA, mediaUrl));
+		}
+		catch (DataAccessException e) {
+			log.error("Unable to refresh known object filters, retrying with next refresh", e);
+			return;
+		}
+		refreshedAt = startedAt;
+		if (!ready) {
+			log.info("Loaded known object filters of {} specimens and {} media",
+					filters.get(SPECIMEN).approximateElementCount(), filters.get(MEDIA).approximateElementCount());
+			ready = true;
+		}
+		writeSnapshot();
+	}
+
+	void loadSnapshot() {
+		var path = snapshotPath();
+		if (path == null || !Files.exists(path)) {
+			return;
+		}
+		try (var in = new DataInputStream(new BufferedInputStream(Files.newInputStream(path)))) {
+			if (in.readInt() != SNAPSHOT_FORMAT) {
+				log.warn("Ignoring known object filter snapshot with unsupported format");
+				return;
+			}
+			var snapshotRefreshedAt = Instant.ofEpochMilli(in.readLong());
+			var specimenFilter = ScalableBloomFilter.readFrom(in);
+			var mediaFilter = ScalableBloomFilter.readFrom(in);
+			filters.put(SPECIMEN, specimenFilter);
+			filters.put(MEDIA, mediaFilter);
+			refreshedAt = snapshotRefreshedAt;
+			log.info("Restored known object filters from snapshot of {}", snapshotRefreshedAt);
+		}
+		catch (IOException e) {
+			log.warn("Unable to read known object filter snapshot, loading filters from database", e);
+		}
+	}
+
+	// Written to a temporary file first, so a snapshot is never partially written
+	private void writeSnapshot() {
+		var path = snapshotPath();
+		if (path == null || refreshedAt == null) {
+			return;
+		}
+		var tempPath = path.resolveSibling(path.getFileName() + ".tmp");
+		try {
+			try (var out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tempPath)))) {
+				out.writeInt(SNAPSHOT_FORMAT);
+				out.writeLong(refreshedAt.toEpochMilli());
+				filters.get(SPECIMEN).writeTo(out);
+				filters.get(MEDIA).writeTo(out);
+			}
+			Files.move(tempPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		}
+		catch (IOException e) {
+			log.warn("Unable to write known object filter snapshot", e);
+		}
+	}
+
+	// Returns the given keys which are stored in the database
+	@FunctionalInterface
+	private interface ExistingKeys<E extends Exception> {
+
+		Set<String> find(Set<String> keys) throws E;
+
+	}
+
+	private Path snapshotPath() {
+		var path = applicationProperties.getKnownObjectFilterSnapshotPath();
+		return path == null ? null : Path.of(path);
+	}
+
+	@PreDestroy
+	void shutdown() throws InterruptedException {
+		executor.shutdown();
+		if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+			log.warn("Known object filter refresh did not finish in time");
+			return;
+		}
+		writeSnapshot();
+	}
+
+}
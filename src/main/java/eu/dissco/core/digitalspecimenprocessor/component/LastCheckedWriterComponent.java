@@ -0,0 +1,194 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
+import eu.dissco.core.digitalspecimenprocessor.repository.DigitalMediaRepository;
+import eu.dissco.core.digitalspecimenprocessor.repository.DigitalSpecimenRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.exception.DataAccessException;
+import org.springframework.stereotype.Component;
+
+/*
+ * Collects the ids of specimens and media which were found to be equal and updates their
+ * last checked timestamp in the background, so equal records don't add database latency
+ * to a batch. Ids are deduplicated until the next flush, which happens every flush
+ * interval, when the number of pending ids reaches the flush size, and on shutdown.
+ * Specimens are queued with their serialised original data only, which is null when it is
+ * not to be written. Failed updates are retried with the next flush, as long as the
+ * number of pending ids stays below the configured maximum.
+ */
+@Slf4j
+@Component
+public class LastCheckedWriterComponent {
+
+	private final DigitalSpecimenRepository specimenRepository;
+
+	private final DigitalMediaRepository mediaRepository;
+
+	private final ApplicationProperties applicationProperties;
+
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		var thread = new Thread(runnable, "last-checked-writer");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	private final AtomicBoolean flushRequested = new AtomicBoolean();
+
+	private Map<String, String> pendingSpecimens = new HashMap<>();
+
+	private Set<String> pendingMedia = new HashSet<>();
+
+	// Time the oldest pending specimen was queued, its original data is not written over
+	// specimens which have been modified since
+	private Instant pendingSince;
+
+	public LastCheckedWriterComponent(DigitalSpecimenRepository specimenRepository,
+			DigitalMediaRepository mediaRepository, ApplicationProperties applicationProperties) {
+		this.specimenRepository = specimenRepository;
+		this.mediaRepository = mediaRepository;
+		this.applicationProperties = applicationProperties;
+	}
+
+	@PostConstruct
+	void start() {
+		var interval = applicationProperties.getLastCheckedFlushSeconds();
+		executor.scheduleWithFixedDelay(this::flush, interval, interval, TimeUnit.SECONDS);
+	}
+
+	public void addSpecimens(Map<String, String> specimens) {
+		boolean full;
+		synchronized (this) {
+			if (pendingSince == null) {
+				pendingSince = Instant.now();
+			}
+			pendingSpecimens.putAll(specimens);
+			full = pendingSize() >= applicationProperties.getLastCheckedFlushSize();
+		}
+		if (full) {
+			requestFlush();
+		}
+	}
+
+	public void addMedia(Collection<String> mediaIds) {
+		boolean full;
+		synchronized (this) {
+			pendingMedia.addAll(mediaIds);
+			full = pendingSize() >= applicationProperties.getLastCheckedFlushSize();
+		}
+		if (full) {
+			requestFlush();
+		}
+	}
+
+	private int pendingSize() {
+		return pendingSpecimens.size() + pendingMedia.size();
+	}
+
+	private void requestFlush() {
+		if (!executor.isShutdown() && flushRequested.compareAndSet(false, true)) {
+			executor.execute(this::flush);
+		}
+	}
+
+	public void flush() {
+		flushRequested.set(false);
+		Map<String, String> specimens;
+		Set<String> media;
+		Instant since;
+		synchronized (this) {
+			specimens = pendingSpecimens;
+			media = pendingMedia;
+			since = pendingSince;
+			pendingSpecimens = new HashMap<>();
+			pendingMedia = new HashSet<>();
+			pendingSince = null;
+		}
+		if (!specimens.isEmpty()) {
+			try {
+				specimenRepository.updateLastCheckedAndOriginalData(specimens, since);
+				log.debug("Updated lastChecked for {} specimens", specimens.size());
+			}
+			catch (DataAccessException e) {
+				log.error("Unable to update lastChecked for {} specimens, retrying with next flush", specimens.size(),
+						e);
+				requeueSpecimens(specimens, since);
+			}
+		}
+		if (!media.isEmpty()) {
+			try {
+				mediaRepository.updateLastChecked(media);
+				log.debug("Updated lastChecked for {} media", media.size());
+			}
+			catch (DataAccessException e) {
+				log.error("Unable to update lastChecked for {} media, retrying with next flush", media.size(), e);
+				requeueMedia(media);
+			}
+		}
+	}
+
+	// Specimens which were queued again in the meantime keep their latest original data.
+	// Ids beyond the maximum are dropped, only their last checked timestamp is lost.
+	private synchronized void requeueSpecimens(Map<String, String> specimens, Instant since) {
+		var dropped = 0;
+		for (var specimen : specimens.entrySet()) {
+			if (pendingSpecimens.containsKey(specimen.getKey())) {
+				continue;
+			}
+			if (pendingSize() >= applicationProperties.getLastCheckedMaxPending()) {
+				dropped++;
+			}
+			else {
+				pendingSpecimens.put(specimen.getKey(), specimen.getValue());
+			}
+		}
+		logDropped(dropped, "specimens");
+		if (pendingSince == null || since.isBefore(pendingSince)) {
+			pendingSince = since;
+		}
+	}
+
+	private synchronized void requeueMedia(Set<String> media) {
+		var dropped = 0;
+		for (var mediaId : media) {
+			if (pendingMedia.contains(mediaId)) {
+				continue;
+			}
+			if (pendingSize() >= applicationProperties.getLastCheckedMaxPending()) {
+				dropped++;
+			}
+			else {
+				pendingMedia.add(mediaId);
+			}
+		}
+		logDropped(dropped, "media");
+	}
+
+	private static void logDropped(int dropped, String objectType) {
+		if (dropped > 0) {
+			log.warn("Too many pending lastChecked updates, dropped the update of {} {}", dropped, objectType);
+		}
+	}
+
+	@PreDestroy
+	void shutdown() throws InterruptedException {
+		executor.shutdown();
+		if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+			log.warn("Scheduled lastChecked flush did not finish in time");
+		}
+		log.info("Flushing pending lastChecked updates");
+		flush();
+	}
+
+}
@@ -0,0 +1,64 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.dissco.core.digitalspecimenprocessor.domain.media.MediaState;
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.Collection;
+import java.util.Map;
+import org.springframework.stereotype.Component;
+
+/*
+ * Cache of media by access uri, shared across batches. Specimens of a collection often
+ * link the same media, which can be resolved to their DOI and recognised as equal from
+ * this state, so only media which changed are retrieved in full. Entries are only used
+ * after their version is confirmed by the database, stale entries are evicted.
+ */
+@Component
+public class MediaStateCacheComponent {
+
+	private static final String CACHE_NAME = "media-state";
+
+	// Estimated heap size of an entry and of each entity relationship it holds
+	private static final int ENTRY_BYTES = 384;
+
+	private static final int ENTITY_RELATIONSHIP_BYTES = 1024;
+
+	private final Cache<String, MediaState> cache;
+
+	private final Counter staleCounter;
+
+	public MediaStateCacheComponent(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+		cache = Caffeine.newBuilder()
+			.maximumWeight(applicationProperties.getMediaStateCacheMaxBytes())
+			.weigher(MediaStateCacheComponent::weigh)
+			.recordStats()
+			.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+		staleCounter = meterRegistry.counter("cache.stale", "cache", CACHE_NAME);
+	}
+
+	private static int weigh(String accessURI, MediaState mediaState) {
+		return ENTRY_BYTES + 2 * accessURI.length()
+				+ ENTITY_RELATIONSHIP_BYTES * mediaState.entityRelationships().size();
+	}
+
+	public Map<String, MediaState> getAll(Collection<String> accessURIs) {
+		return cache.getAllPresent(accessURIs);
+	}
+
+	public void put(String accessURI, MediaState mediaState) {
+		if (mediaState.contentHash() != null) {
+			cache.put(accessURI, mediaState);
+		}
+	}
+
+	public void evictStale(String accessURI) {
+		cache.invalidate(accessURI);
+		staleCounter.increment();
+	}
+
+}
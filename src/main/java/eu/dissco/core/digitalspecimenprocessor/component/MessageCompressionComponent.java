@@ -1,80 +1,147 @@
 package eu.dissco.core.digitalspecimenprocessor.component;
 
-import java.io.BufferedReader;
+import eu.dissco.core.digitalspecimenprocessor.domain.CompressionType;
+import eu.dissco.core.digitalspecimenprocessor.property.RabbitMqProperties;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStreamReader;
+import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
-import java.util.stream.Collectors;
-import java.util.zip.GZIPInputStream;
-import java.util.zip.GZIPOutputStream;
 import lombok.extern.slf4j.Slf4j;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+import org.springframework.amqp.core.Correlation;
 import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessagePostProcessor;
 import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.support.converter.MessageConversionException;
 import org.springframework.amqp.support.converter.MessageConverter;
 import org.springframework.amqp.support.converter.SimpleMessageConverter;
 import org.springframework.stereotype.Component;
 
+/*
+ * Converts outgoing messages to json and compresses them before they are published. The
+ * compression type is configured per exchange, so it is applied as a (before publish)
+ * post processor, which knows the exchange. Incoming messages are decompressed based on
+ * their content encoding.
+ */
 @Component
 @Slf4j
-public class MessageCompressionComponent implements MessageConverter {
+public class MessageCompressionComponent implements MessageConverter, MessagePostProcessor {
+
+	private static final int BUFFER_SIZE = 8192; // 8KB
 
 	final MessageConverter simpleConverter = new SimpleMessageConverter();
 
-	private static byte[] deflateMessage(byte[] message) throws IOException {
-		var bufferSize = 8192; // 8KB
-		try (var rstBao = new ByteArrayOutputStream(bufferSize)) {
-			try (var zos = new GZIPOutputStream(rstBao, bufferSize)) {
-				zos.write(message);
-				zos.flush();
+	private final GzipCodec gzipCodec = new GzipCodec();
+
+	private final ZstdCodec zstdCodec;
+
+	private final RabbitMqProperties rabbitMqProperties;
+
+	public MessageCompressionComponent(RabbitMqProperties rabbitMqProperties) {
+		this.rabbitMqProperties = rabbitMqProperties;
+		this.zstdCodec = new ZstdCodec(rabbitMqProperties.getCompression());
+	}
+
+	private static byte[] lz4Message(byte[] message) throws IOException {
+		try (var rstBao = new ByteArrayOutputStream(BUFFER_SIZE)) {
+			try (var los = new LZ4FrameOutputStream(rstBao)) {
+				los.write(message);
 			}
 			return rstBao.toByteArray();
 		}
 	}
 
+	private byte[] compressMessage(byte[] message, MessageProperties messageProperties,
+			CompressionType compressionType) throws IOException {
+		return switch (compressionType) {
+			case GZIP -> gzipCodec.compress(message);
+			case ZSTD -> zstdCodec.compress(message, messageProperties);
+			case LZ4 -> lz4Message(message);
+			case NONE -> message;
+		};
+	}
+
 	@Override
 	public Message toMessage(final Object messageString, final MessageProperties messageProperties)
 			throws MessageConversionException {
-
 		if (!(messageString instanceof String)) {
 			throw new MessageConversionException("Invalid message type: " + messageString.getClass());
 		}
-		final byte[] message = ((String) messageString).getBytes(StandardCharsets.UTF_8);
+		messageProperties.setContentType(MessageProperties.CONTENT_TYPE_JSON);
+		return new Message(((String) messageString).getBytes(StandardCharsets.UTF_8), messageProperties);
+	}
+
+	@Override
+	public Message postProcessMessage(final Message message) throws MessageConversionException {
+		return compress(message, rabbitMqProperties.getCompression().getType());
+	}
+
+	@Override
+	public Message postProcessMessage(final Message message, final Correlation correlation, final String exchange,
+			final String routingKey) throws MessageConversionException {
+		var compression = rabbitMqProperties.getCompression();
+		return compress(message, compression.getExchanges().getOrDefault(exchange, compression.getType()));
+	}
 
-		final byte[] compressedMessage;
+	public Message compress(final Message message, final CompressionType compressionType)
+			throws MessageConversionException {
+		var messageProperties = message.getMessageProperties();
+		if (compressionType == CompressionType.NONE
+				|| message.getBody().length < rabbitMqProperties.getCompression().getMinSize()
+				|| CompressionType.fromContentEncoding(messageProperties.getContentEncoding()) != CompressionType.NONE) {
+			return message;
+		}
 		try {
-			compressedMessage = deflateMessage(message);
-			log.debug("Compressed Length: " + compressedMessage.length + " vs Message Length: " + message.length
-					+ " / Ratio: " + String.format("%.2f%%", compressedMessage.length * 100f / message.length));
-			messageProperties.setContentType("application/json");
-			messageProperties.setContentEncoding("gzip");
+			var compressedMessage = compressMessage(message.getBody(), messageProperties, compressionType);
+			log.debug("Compressed Length: " + compressedMessage.length + " vs Message Length: "
+					+ message.getBody().length + " / Ratio: "
+					+ String.format("%.2f%%", compressedMessage.length * 100f / message.getBody().length));
+			messageProperties.setContentEncoding(compressionType.getContentEncoding());
 			return new Message(compressedMessage, messageProperties);
 		}
 		catch (IOException e) {
-			throw new MessageConversionException("Failed to compress message " + messageString, e);
+			throw new MessageConversionException("Failed to compress message " + new String(message.getBody()), e);
 		}
 	}
 
+	// Json messages are returned as a String, whether they were compressed or not
 	@Override
 	public Object fromMessage(final Message message) throws MessageConversionException {
-		var useGzip = "gzip".equals(message.getMessageProperties().getContentEncoding());
-		if (useGzip) {
-			try {
-				try (var reader = new BufferedReader(
-						new InputStreamReader(new GZIPInputStream(new ByteArrayInputStream(message.getBody()))))) {
-					return reader.lines().collect(Collectors.joining(System.lineSeparator()));
-				}
-			}
-			catch (IOException e) {
-				throw new MessageConversionException("Failed to decompress message " + new String(message.getBody()),
-						e);
-			}
-		}
-		else {
+		if (getCompressionType(message) == CompressionType.NONE
+				&& !MessageProperties.CONTENT_TYPE_JSON.equals(message.getMessageProperties().getContentType())) {
 			return simpleConverter.fromMessage(message);
 		}
+		try (var inputStream = getBodyInputStream(message)) {
+			return new String(inputStream.readAllBytes(), StandardCharsets.UTF_8);
+		}
+		catch (IOException e) {
+			throw new MessageConversionException("Failed to decompress message " + new String(message.getBody()), e);
+		}
+	}
+
+	/*
+	 * Returns the (decompressed) body as a stream, so it can be parsed directly without
+	 * creating an intermediate String
+	 */
+	public InputStream getBodyInputStream(final Message message) throws MessageConversionException {
+		var body = new ByteArrayInputStream(message.getBody());
+		try {
+			return switch (getCompressionType(message)) {
+				case GZIP -> gzipCodec.decompress(message.getBody());
+				case ZSTD -> zstdCodec.decompress(message.getBody(), message.getMessageProperties());
+				case LZ4 -> new LZ4FrameInputStream(body);
+				case NONE -> body;
+			};
+		}
+		catch (IOException e) {
+			throw new MessageConversionException("Failed to decompress message " + new String(message.getBody()), e);
+		}
+	}
+
+	private static CompressionType getCompressionType(Message message) {
+		return CompressionType.fromContentEncoding(message.getMessageProperties().getContentEncoding());
 	}
 
 }
@@ -0,0 +1,163 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import eu.dissco.core.digitalspecimenprocessor.domain.outbox.OutboxDestination;
+import eu.dissco.core.digitalspecimenprocessor.domain.outbox.OutboxMessage;
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
+import eu.dissco.core.digitalspecimenprocessor.repository.ElasticSearchRepository;
+import eu.dissco.core.digitalspecimenprocessor.repository.OutboxRepository;
+import eu.dissco.core.digitalspecimenprocessor.service.RabbitMqPublisherService;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import java.io.IOException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.AmqpException;
+import org.springframework.stereotype.Component;
+
+/*
+ * Relays the outbox to elastic and RabbitMQ in the background. Batches are relayed one
+ * after the other until the outbox is drained, then again every relay interval. Messages
+ * which could not be relayed stay in the outbox and are retried with the next batch, so a
+ * message can be relayed more than once but is never lost.
+ */
+@Slf4j
+@Component
+public class OutboxRelayComponent {
+
+	private static final int VERSION_CONFLICT = 409;
+
+	private final ApplicationProperties applicationProperties;
+
+	private final OutboxRepository outboxRepository;
+
+	private final ElasticSearchRepository elasticRepository;
+
+	private final RabbitMqPublisherService publisherService;
+
+	private final ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+		var thread = new Thread(runnable, "outbox-relay");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	public OutboxRelayComponent(ApplicationProperties applicationProperties, OutboxRepository outboxRepository,
+			ElasticSearchRepository elasticRepository, RabbitMqPublisherService publisherService) {
+		this.applicationProperties = applicationProperties;
+		this.outboxRepository = outboxRepository;
+		this.elasticRepository = elasticRepository;
+		this.publisherService = publisherService;
+	}
+
+	@PostConstruct
+	void start() {
+		if (applicationProperties.isOutbox()) {
+			var interval = applicationProperties.getOutboxRelayIntervalMillis();
+			executor.scheduleWithFixedDelay(this::relayAll, interval, interval, TimeUnit.MILLISECONDS);
+		}
+	}
+
+	public void relayAll() {
+		var batchSize = applicationProperties.getOutboxRelayBatchSize();
+		var claim = Duration.ofSeconds(applicationProperties.getOutboxRelayClaimSeconds());
+		try {
+			int relayed;
+			do {
+				relayed = outboxRepository.relayMessages(batchSize, claim, this::relay);
+			}
+			while (relayed == batchSize);
+		}
+		catch (RuntimeException e) {
+			log.error("Unable to relay the outbox, retrying with the next interval", e);
+		}
+	}
+
+	Set<Long> relay(List<OutboxMessage> messages) {
+		var relayed = new HashSet<Long>();
+		var documents = new ArrayList<OutboxMessage>();
+		var events = new ArrayList<OutboxMessage>();
+		for (var message : messages) {
+			if (message.destination() == OutboxDestination.ELASTIC) {
+				documents.add(message);
+			}
+			else {
+				events.add(message);
+			}
+		}
+		relayed.addAll(indexDocuments(documents));
+		relayed.addAll(publishEvents(events));
+		log.debug("Relayed {} of {} outbox messages", relayed.size(), messages.size());
+		return relayed;
+	}
+
+	/*
+	 * A batch can hold several versions of a document, only the latest is indexed. The older
+	 * versions are relayed along with it. Documents are indexed with the record version as
+	 * external version, so elastic rejects a version older than the one it holds. That version
+	 * conflict means a newer or the same version is indexed already, so it counts as relayed.
+	 */
+	private Set<Long> indexDocuments(List<OutboxMessage> documents) {
+		if (documents.isEmpty()) {
+			return Set.of();
+		}
+		var latest = new LinkedHashMap<List<String>, OutboxMessage>();
+		var ids = new LinkedHashMap<List<String>, List<Long>>();
+		for (var document : documents) {
+			var documentKey = List.of(document.target(), document.key());
+			latest.merge(documentKey, document, OutboxRelayComponent::newer);
+			ids.computeIfAbsent(documentKey, _ -> new ArrayList<>()).add(document.id());
+		}
+		var documentKeys = new ArrayList<>(latest.keySet());
+		var relayed = new HashSet<Long>();
+		try {
+			var bulkResponse = elasticRepository.indexDocuments(new ArrayList<>(latest.values()));
+			for (var i = 0; i < documentKeys.size(); i++) {
+				var item = bulkResponse.items().get(i);
+				if (item.error() == null || item.status() == VERSION_CONFLICT) {
+					relayed.addAll(ids.get(documentKeys.get(i)));
+				}
+			}
+		}
+		catch (IOException | ElasticsearchException e) {
+			log.error("Unable to index {} outbox documents in elastic", documentKeys.size(), e);
+		}
+		return relayed;
+	}
+
+	private static OutboxMessage newer(OutboxMessage document, OutboxMessage otherDocument) {
+		return otherDocument.version() >= document.version() ? otherDocument : document;
+	}
+
+	// Events are published in order, after the first failure the rest waits for the next batch
+	private Set<Long> publishEvents(List<OutboxMessage> events) {
+		var relayed = new HashSet<Long>();
+		for (var event : events) {
+			try {
+				publisherService.publish(event);
+				relayed.add(event.id());
+			}
+			catch (AmqpException e) {
+				log.error("Unable to publish outbox events to RabbitMQ", e);
+				break;
+			}
+		}
+		return relayed;
+	}
+
+	@PreDestroy
+	void shutdown() throws InterruptedException {
+		executor.shutdown();
+		if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+			log.warn("Outbox relay did not finish in time");
+		}
+	}
+
+}
@@ -0,0 +1,100 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import com.google.common.hash.BloomFilter;
+import com.google.common.hash.Funnel;
+import com.google.common.hash.Funnels;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/*
+ * Bloom filter which grows with the number of keys. When the last filter reaches its
+ * capacity, a filter with twice the capacity and half the false positive rate is added,
+ * which keeps the combined false positive rate below twice the initial rate.
+ */
+class ScalableBloomFilter {
+
+	private static final Funnel<CharSequence> FUNNEL = Funnels.stringFunnel(StandardCharsets.UTF_8);
+
+	private final List<Segment> segments = new CopyOnWriteArrayList<>();
+
+	ScalableBloomFilter(long initialCapacity, double falsePositiveRate) {
+		segments.add(new Segment(BloomFilter.create(FUNNEL, initialCapacity, falsePositiveRate), initialCapacity,
+				falsePositiveRate));
+	}
+
+	private ScalableBloomFilter(List<Segment> segments) {
+		this.segments.addAll(segments);
+	}
+
+	boolean mightContain(String key) {
+		for (var segment : segments) {
+			if (segment.filter().mightContain(key)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	void put(String key) {
+		var segment = segments.getLast();
+		if (segment.filter().approximateElementCount() >= segment.capacity()) {
+			segment = grow(segment);
+		}
+		segment.filter().put(key);
+	}
+
+	private synchronized Segment grow(Segment full) {
+		var last = segments.getLast();
+		if (last != full) {
+			return last;
+		}
+		var capacity = full.capacity() * 2;
+		var falsePositiveRate = full.falsePositiveRate() / 2;
+		var segment = new Segment(BloomFilter.create(FUNNEL, capacity, falsePositiveRate), capacity,
+				falsePositiveRate);
+		segments.add(segment);
+		return segment;
+	}
+
+	long approximateElementCount() {
+		return segments.stream().mapToLong(segment -> segment.filter().approximateElementCount()).sum();
+	}
+
+	double expectedFalsePositiveRate() {
+		var trueNegativeRate = 1.0;
+		for (var segment : segments) {
+			trueNegativeRate *= 1 - segment.filter().expectedFpp();
+		}
+		return 1 - trueNegativeRate;
+	}
+
+	void writeTo(DataOutputStream out) throws IOException {
+		var snapshot = List.copyOf(segments);
+		out.writeInt(snapshot.size());
+		for (var segment : snapshot) {
+			out.writeLong(segment.capacity());
+			out.writeDouble(segment.falsePositiveRate());
+			segment.filter().writeTo(out);
+		}
+	}
+
+	static ScalableBloomFilter readFrom(DataInputStream in) throws IOException {
+		var size = in.readInt();
+		var segments = new CopyOnWriteArrayList<Segment>();
+		for (var i = 0; i < size; i++) {
+			var capacity = in.readLong();
+			var falsePositiveRate = in.readDouble();
+			segments.add(new Segment(BloomFilter.readFrom(in, FUNNEL), capacity, falsePositiveRate));
+		}
+		return new ScalableBloomFilter(segments);
+	}
+
+	private record Segment(BloomFilter<CharSequence> filter, long capacity, double falsePositiveRate) {
+
+	}
+
+}
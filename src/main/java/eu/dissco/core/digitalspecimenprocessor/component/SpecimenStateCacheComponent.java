@@ -0,0 +1,68 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenRecord;
+import eu.dissco.core.digitalspecimenprocessor.domain.specimen.SpecimenState;
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.util.Collection;
+import java.util.Map;
+import org.springframework.stereotype.Component;
+
+/*
+ * Near-cache of the state of the specimens this instance has written or found equal,
+ * keyed by physical specimen id. Source systems send the same specimens every harvest,
+ * so most of them can be recognised as equal without retrieving their fingerprint. The
+ * cache is bounded by the estimated size of its entries. Entries are only used after
+ * their version is confirmed by the database, stale entries are evicted.
+ */
+@Component
+public class SpecimenStateCacheComponent {
+
+	private static final String CACHE_NAME = "specimen-state";
+
+	// Estimated heap size of an entry and of each entity relationship it holds
+	private static final int ENTRY_BYTES = 512;
+
+	private static final int ENTITY_RELATIONSHIP_BYTES = 1024;
+
+	private final Cache<String, SpecimenState> cache;
+
+	private final Counter staleCounter;
+
+	public SpecimenStateCacheComponent(ApplicationProperties applicationProperties, MeterRegistry meterRegistry) {
+		cache = Caffeine.newBuilder()
+			.maximumWeight(applicationProperties.getSpecimenStateCacheMaxBytes())
+			.weigher(SpecimenStateCacheComponent::weigh)
+			.recordStats()
+			.build();
+		CaffeineCacheMetrics.monitor(meterRegistry, cache, CACHE_NAME);
+		staleCounter = meterRegistry.counter("cache.stale", "cache", CACHE_NAME);
+	}
+
+	private static int weigh(String physicalSpecimenId, SpecimenState specimenState) {
+		return ENTRY_BYTES + 2 * physicalSpecimenId.length()
+				+ ENTITY_RELATIONSHIP_BYTES * specimenState.entityRelationships().size();
+	}
+
+	public Map<String, SpecimenState> getAll(Collection<String> physicalSpecimenIds) {
+		return cache.getAllPresent(physicalSpecimenIds);
+	}
+
+	// Specimens without a content hash can't be recognised from their state
+	public void put(DigitalSpecimenRecord digitalSpecimenRecord) {
+		if (digitalSpecimenRecord.contentHash() != null) {
+			cache.put(digitalSpecimenRecord.digitalSpecimenWrapper().physicalSpecimenID(),
+					SpecimenState.of(digitalSpecimenRecord));
+		}
+	}
+
+	public void evictStale(String physicalSpecimenId) {
+		cache.invalidate(physicalSpecimenId);
+		staleCounter.increment();
+	}
+
+}
@@ -0,0 +1,94 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictDecompress;
+import com.github.luben.zstd.ZstdInputStream;
+import eu.dissco.core.digitalspecimenprocessor.property.RabbitMqProperties.Compression;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+import org.springframework.core.io.DefaultResourceLoader;
+
+/*
+ * Zstd compression with optional trained dictionaries. Our messages are small and very
+ * similar, a dictionary trained on sample messages gives a much better ratio than
+ * compressing each message on its own. The id of the dictionary used is added as header,
+ * so consumers can pick the right one and messages without the header are read without
+ * a dictionary.
+ */
+@Slf4j
+class ZstdCodec {
+
+	static final String DICTIONARY_ID_HEADER = "x-zstd-dictionary-id";
+
+	private final int level;
+
+	private final Map<Long, ZstdDictDecompress> decompressDictionaries = new HashMap<>();
+
+	private final ZstdDictCompress compressDictionary;
+
+	private final long compressDictionaryId;
+
+	ZstdCodec(Compression compression) {
+		this.level = compression.getZstdLevel();
+		var resourceLoader = new DefaultResourceLoader();
+		ZstdDictCompress firstDictionary = null;
+		var firstDictionaryId = 0L;
+		for (var location : compression.getZstdDictionaries()) {
+			var dictionary = loadDictionary(resourceLoader, location);
+			var dictionaryId = Zstd.getDictIdFromDict(dictionary);
+			if (dictionaryId == 0) {
+				throw new IllegalStateException("Zstd dictionary " + location + " is not a trained dictionary");
+			}
+			if (decompressDictionaries.putIfAbsent(dictionaryId, new ZstdDictDecompress(dictionary)) != null) {
+				throw new IllegalStateException("Duplicate zstd dictionary id " + dictionaryId + " for " + location);
+			}
+			if (firstDictionary == null) {
+				firstDictionary = new ZstdDictCompress(dictionary, level);
+				firstDictionaryId = dictionaryId;
+			}
+			log.info("Loaded zstd dictionary {} from {}", dictionaryId, location);
+		}
+		this.compressDictionary = firstDictionary;
+		this.compressDictionaryId = firstDictionaryId;
+	}
+
+	private static byte[] loadDictionary(DefaultResourceLoader resourceLoader, String location) {
+		try (var inputStream = resourceLoader.getResource(location).getInputStream()) {
+			return inputStream.readAllBytes();
+		}
+		catch (IOException e) {
+			throw new IllegalStateException("Unable to load zstd dictionary " + location, e);
+		}
+	}
+
+	byte[] compress(byte[] message, MessageProperties messageProperties) {
+		if (compressDictionary == null) {
+			return Zstd.compress(message, level);
+		}
+		messageProperties.setHeader(DICTIONARY_ID_HEADER, compressDictionaryId);
+		return Zstd.compress(message, compressDictionary);
+	}
+
+	InputStream decompress(byte[] message, MessageProperties messageProperties) throws IOException {
+		var inputStream = new ZstdInputStream(new ByteArrayInputStream(message));
+		Object dictionaryId = messageProperties.getHeader(DICTIONARY_ID_HEADER);
+		if (dictionaryId != null) {
+			var dictionary = dictionaryId instanceof Number number
+					? decompressDictionaries.get(number.longValue()) : null;
+			if (dictionary == null) {
+				inputStream.close();
+				throw new MessageConversionException("Unknown zstd dictionary id: " + dictionaryId);
+			}
+			inputStream.setDict(dictionary);
+		}
+		return inputStream;
+	}
+
+}
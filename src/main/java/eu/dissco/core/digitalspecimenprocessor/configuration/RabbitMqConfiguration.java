@@ -24,6 +24,7 @@ public class RabbitMqConfiguration {
 		factory.setBatchListener(true);
 		factory.setBatchSize(rabbitMQProperties.getBatchSize());
 		factory.setConsumerBatchEnabled(true);
+		factory.setConcurrentConsumers(rabbitMQProperties.getConcurrentConsumers());
 		factory.setMessageConverter(compressedMessageConverter);
 		return factory;
 	}
@@ -33,6 +34,8 @@ public class RabbitMqConfiguration {
 			MessageCompressionComponent compressedMessageConverter) {
 		var rabbitTemplate = new RabbitTemplate(connectionFactory);
 		rabbitTemplate.setMessageConverter(compressedMessageConverter);
+		// Compression depends on the exchange, so it is done after conversion
+		rabbitTemplate.setBeforePublishPostProcessors(compressedMessageConverter);
 		return rabbitTemplate;
 	}
 
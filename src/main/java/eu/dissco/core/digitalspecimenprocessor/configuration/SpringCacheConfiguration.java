@@ -1,7 +1,8 @@
 package eu.dissco.core.digitalspecimenprocessor.configuration;
 
+import com.github.benmanes.caffeine.cache.Caffeine;
 import org.springframework.cache.CacheManager;
-import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 
@@ -10,7 +11,9 @@ public class SpringCacheConfiguration {
 
 	@Bean
 	public CacheManager cacheManager() {
-		return new ConcurrentMapCacheManager("token-cache");
+		var cacheManager = new CaffeineCacheManager("token-cache");
+		cacheManager.setCaffeine(Caffeine.newBuilder().maximumSize(100).recordStats());
+		return cacheManager;
 	}
 
 }
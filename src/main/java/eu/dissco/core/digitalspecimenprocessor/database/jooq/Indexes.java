@@ -48,6 +48,10 @@ public class Indexes {
 					DigitalMediaObject.DIGITAL_MEDIA_OBJECT.MEDIA_URL },
 			true);
 
+	public static final Index DIGITAL_MEDIA_OBJECT_MEDIA_URL_HASH_IDX = Internal.createIndex(
+			DSL.name("digital_media_object_media_url_hash_idx"), DigitalMediaObject.DIGITAL_MEDIA_OBJECT,
+			new OrderField[] { DigitalMediaObject.DIGITAL_MEDIA_OBJECT.MEDIA_URL_HASH }, false);
+
 	public static final Index DIGITAL_MEDIA_SOURCE_SYSTEM_ID_INDEX = Internal.createIndex(
 			DSL.name("digital_media_source_system_id_index"), DigitalMediaObject.DIGITAL_MEDIA_OBJECT,
 			new OrderField[] { DigitalMediaObject.DIGITAL_MEDIA_OBJECT.SOURCE_SYSTEM_ID }, false);
@@ -56,6 +60,10 @@ public class Indexes {
 			DSL.name("digital_specimen_created_idx"), DigitalSpecimen.DIGITAL_SPECIMEN,
 			new OrderField[] { DigitalSpecimen.DIGITAL_SPECIMEN.CREATED }, false);
 
+	public static final Index DIGITAL_SPECIMEN_PHYSICAL_SPECIMEN_ID_HASH_IDX = Internal.createIndex(
+			DSL.name("digital_specimen_physical_specimen_id_hash_idx"), DigitalSpecimen.DIGITAL_SPECIMEN,
+			new OrderField[] { DigitalSpecimen.DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID_HASH }, false);
+
 	public static final Index DIGITAL_SPECIMEN_PHYSICAL_SPECIMEN_ID_IDX = Internal.createIndex(
 			DSL.name("digital_specimen_physical_specimen_id_idx"), DigitalSpecimen.DIGITAL_SPECIMEN,
 			new OrderField[] { DigitalSpecimen.DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID }, false);
@@ -11,6 +11,7 @@ import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 import org.jooq.Condition;
 import org.jooq.Field;
 import org.jooq.Index;
@@ -117,6 +118,12 @@ public class DigitalMediaObject extends TableImpl<DigitalMediaObjectRecord> {
 	public final TableField<DigitalMediaObjectRecord, String> SOURCE_SYSTEM_ID = createField(
 			DSL.name("source_system_id"), SQLDataType.CLOB, this, "");
 
+	/**
+	 * The column <code>public.digital_media_object.media_url_hash</code>.
+	 */
+	public final TableField<DigitalMediaObjectRecord, UUID> MEDIA_URL_HASH = createField(DSL.name("media_url_hash"),
+			SQLDataType.UUID, this, "");
+
 	private DigitalMediaObject(Name alias, Table<DigitalMediaObjectRecord> aliased) {
 		this(alias, aliased, (Field<?>[]) null, null);
 	}
@@ -155,7 +162,7 @@ public class DigitalMediaObject extends TableImpl<DigitalMediaObjectRecord> {
 	@Override
 	public List<Index> getIndexes() {
 		return Arrays.asList(Indexes.DIGITAL_MEDIA_OBJECT_ID_IDX, Indexes.DIGITAL_MEDIA_OBJECT_ID_VERSION_URL,
-				Indexes.DIGITAL_MEDIA_SOURCE_SYSTEM_ID_INDEX);
+				Indexes.DIGITAL_MEDIA_OBJECT_MEDIA_URL_HASH_IDX, Indexes.DIGITAL_MEDIA_SOURCE_SYSTEM_ID_INDEX);
 	}
 
 	@Override
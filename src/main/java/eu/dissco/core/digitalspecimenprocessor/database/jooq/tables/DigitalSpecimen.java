@@ -11,6 +11,7 @@ import java.time.Instant;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.List;
+import java.util.UUID;
 import org.jooq.Condition;
 import org.jooq.Field;
 import org.jooq.Index;
@@ -147,6 +148,18 @@ public class DigitalSpecimen extends TableImpl<DigitalSpecimenRecord> {
 	public final TableField<DigitalSpecimenRecord, String> COL_ID = createField(DSL.name("col_id"), SQLDataType.CLOB,
 			this, "");
 
+	/**
+	 * The column <code>public.digital_specimen.content_hash</code>.
+	 */
+	public final TableField<DigitalSpecimenRecord, UUID> CONTENT_HASH = createField(DSL.name("content_hash"),
+			SQLDataType.UUID, this, "");
+
+	/**
+	 * The column <code>public.digital_specimen.physical_specimen_id_hash</code>.
+	 */
+	public final TableField<DigitalSpecimenRecord, UUID> PHYSICAL_SPECIMEN_ID_HASH = createField(
+			DSL.name("physical_specimen_id_hash"), SQLDataType.UUID, this, "");
+
 	private DigitalSpecimen(Name alias, Table<DigitalSpecimenRecord> aliased) {
 		this(alias, aliased, (Field<?>[]) null, null);
 	}
@@ -183,8 +196,9 @@ public class DigitalSpecimen extends TableImpl<DigitalSpecimenRecord> {
 
 	@Override
 	public List<Index> getIndexes() {
-		return Arrays.asList(Indexes.DIGITAL_SPECIMEN_CREATED_IDX, Indexes.DIGITAL_SPECIMEN_PHYSICAL_SPECIMEN_ID_IDX,
-				Indexes.DIGITAL_SPECIMEN_SOURCE_SYSTEM_ID_INDEX);
+		return Arrays.asList(Indexes.DIGITAL_SPECIMEN_CREATED_IDX,
+				Indexes.DIGITAL_SPECIMEN_PHYSICAL_SPECIMEN_ID_HASH_IDX,
+				Indexes.DIGITAL_SPECIMEN_PHYSICAL_SPECIMEN_ID_IDX, Indexes.DIGITAL_SPECIMEN_SOURCE_SYSTEM_ID_INDEX);
 	}
 
 	@Override
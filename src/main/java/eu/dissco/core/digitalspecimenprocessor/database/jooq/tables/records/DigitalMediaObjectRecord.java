@@ -5,6 +5,7 @@ package eu.dissco.core.digitalspecimenprocessor.database.jooq.tables.records;
 
 import eu.dissco.core.digitalspecimenprocessor.database.jooq.tables.DigitalMediaObject;
 import java.time.Instant;
+import java.util.UUID;
 import org.jooq.JSONB;
 import org.jooq.Record1;
 import org.jooq.impl.UpdatableRecordImpl;
@@ -171,6 +172,20 @@ public class DigitalMediaObjectRecord extends UpdatableRecordImpl<DigitalMediaOb
 		return (String) get(10);
 	}
 
+	/**
+	 * Setter for <code>public.digital_media_object.media_url_hash</code>.
+	 */
+	public void setMediaUrlHash(UUID value) {
+		set(11, value);
+	}
+
+	/**
+	 * Getter for <code>public.digital_media_object.media_url_hash</code>.
+	 */
+	public UUID getMediaUrlHash() {
+		return (UUID) get(11);
+	}
+
 	// -------------------------------------------------------------------------
 	// Primary key information
 	// -------------------------------------------------------------------------
@@ -196,7 +211,7 @@ public class DigitalMediaObjectRecord extends UpdatableRecordImpl<DigitalMediaOb
 	 */
 	public DigitalMediaObjectRecord(String id, Integer version, String type, String mediaUrl, Instant created,
 			Instant lastChecked, Instant deleted, JSONB data, JSONB originalData, Instant modified,
-			String sourceSystemId) {
+			String sourceSystemId, UUID mediaUrlHash) {
 		super(DigitalMediaObject.DIGITAL_MEDIA_OBJECT);
 
 		setId(id);
@@ -210,6 +225,7 @@ public class DigitalMediaObjectRecord extends UpdatableRecordImpl<DigitalMediaOb
 		setOriginalData(originalData);
 		setModified(modified);
 		setSourceSystemId(sourceSystemId);
+		setMediaUrlHash(mediaUrlHash);
 		resetChangedOnNotNull();
 	}
 
@@ -5,6 +5,7 @@ package eu.dissco.core.digitalspecimenprocessor.database.jooq.tables.records;
 
 import eu.dissco.core.digitalspecimenprocessor.database.jooq.tables.DigitalSpecimen;
 import java.time.Instant;
+import java.util.UUID;
 import org.jooq.JSONB;
 import org.jooq.Record1;
 import org.jooq.impl.UpdatableRecordImpl;
@@ -241,6 +242,34 @@ public class DigitalSpecimenRecord extends UpdatableRecordImpl<DigitalSpecimenRe
 		return (String) get(15);
 	}
 
+	/**
+	 * Setter for <code>public.digital_specimen.content_hash</code>.
+	 */
+	public void setContentHash(UUID value) {
+		set(16, value);
+	}
+
+	/**
+	 * Getter for <code>public.digital_specimen.content_hash</code>.
+	 */
+	public UUID getContentHash() {
+		return (UUID) get(16);
+	}
+
+	/**
+	 * Setter for <code>public.digital_specimen.physical_specimen_id_hash</code>.
+	 */
+	public void setPhysicalSpecimenIdHash(UUID value) {
+		set(17, value);
+	}
+
+	/**
+	 * Getter for <code>public.digital_specimen.physical_specimen_id_hash</code>.
+	 */
+	public UUID getPhysicalSpecimenIdHash() {
+		return (UUID) get(17);
+	}
+
 	// -------------------------------------------------------------------------
 	// Primary key information
 	// -------------------------------------------------------------------------
@@ -267,7 +296,7 @@ public class DigitalSpecimenRecord extends UpdatableRecordImpl<DigitalSpecimenRe
 	public DigitalSpecimenRecord(String id, Integer version, String type, Short midslevel, String physicalSpecimenId,
 			String physicalSpecimenType, String specimenName, String organizationId, String sourceSystemId,
 			Instant created, Instant lastChecked, Instant deleted, JSONB data, JSONB originalData, Instant modified,
-			String colId) {
+			String colId, UUID contentHash, UUID physicalSpecimenIdHash) {
 		super(DigitalSpecimen.DIGITAL_SPECIMEN);
 
 		setId(id);
@@ -286,6 +315,8 @@ public class DigitalSpecimenRecord extends UpdatableRecordImpl<DigitalSpecimenRe
 		setOriginalData(originalData);
 		setModified(modified);
 		setColId(colId);
+		setContentHash(contentHash);
+		setPhysicalSpecimenIdHash(physicalSpecimenIdHash);
 		resetChangedOnNotNull();
 	}
 
@@ -0,0 +1,25 @@
+package eu.dissco.core.digitalspecimenprocessor.domain;
+
+import java.util.Arrays;
+import lombok.Getter;
+
+public enum CompressionType {
+
+	NONE(null), GZIP("gzip"), ZSTD("zstd"), LZ4("lz4");
+
+	@Getter
+	final String contentEncoding;
+
+	CompressionType(String contentEncoding) {
+		this.contentEncoding = contentEncoding;
+	}
+
+	// Unknown encodings (for example a charset) are treated as uncompressed
+	public static CompressionType fromContentEncoding(String contentEncoding) {
+		return Arrays.stream(values())
+			.filter(type -> type.contentEncoding != null && type.contentEncoding.equalsIgnoreCase(contentEncoding))
+			.findFirst()
+			.orElse(NONE);
+	}
+
+}
@@ -0,0 +1,44 @@
+package eu.dissco.core.digitalspecimenprocessor.domain;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/*
+ * Outcome of writing a batch of records. Created and updated map the ids of the written
+ * records to their stored version. Failed contains the ids of the records the database
+ * rejected. Records which are in none of these were not written because they have been
+ * changed concurrently.
+ */
+public record UpsertResult(Map<String, Integer> created, Map<String, Integer> updated, Set<String> failed) {
+
+	public UpsertResult() {
+		this(Map.of(), Map.of(), Set.of());
+	}
+
+	public static UpsertResult failed(String id) {
+		return new UpsertResult(Map.of(), Map.of(), Set.of(id));
+	}
+
+	public UpsertResult merge(UpsertResult other) {
+		var mergedCreated = new HashMap<>(created);
+		mergedCreated.putAll(other.created());
+		var mergedUpdated = new HashMap<>(updated);
+		mergedUpdated.putAll(other.updated());
+		var mergedFailed = new HashSet<>(failed);
+		mergedFailed.addAll(other.failed());
+		return new UpsertResult(mergedCreated, mergedUpdated, mergedFailed);
+	}
+
+	public boolean isWritten(String id) {
+		return created.containsKey(id) || updated.containsKey(id);
+	}
+
+	public Set<String> conflicting(Collection<String> ids) {
+		return ids.stream().filter(id -> !isWritten(id) && !failed.contains(id)).collect(Collectors.toSet());
+	}
+
+}
@@ -0,0 +1,33 @@
+package eu.dissco.core.digitalspecimenprocessor.domain.media;
+
+import eu.dissco.core.digitalspecimenprocessor.schema.DigitalMedia;
+import eu.dissco.core.digitalspecimenprocessor.schema.EntityRelationship;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * The stored state of a media object which is needed to link it and to recognise it as
+ * equal: its DOI and version, the hash of its content and the entity relationships from
+ * which new specimen relationships are determined.
+ */
+public record MediaState(String id, int version, Instant created, UUID contentHash,
+		List<EntityRelationship> entityRelationships) {
+
+	public static MediaState of(DigitalMediaRecord digitalMediaRecord, UUID contentHash) {
+		var entityRelationships = digitalMediaRecord.attributes().getOdsHasEntityRelationships();
+		return new MediaState(digitalMediaRecord.id(), digitalMediaRecord.version(), digitalMediaRecord.created(),
+				contentHash, entityRelationships == null ? List.of() : List.copyOf(entityRelationships));
+	}
+
+	// A record without original attributes, the event is known to be equal to its content
+	public DigitalMediaRecord toFingerprint(DigitalMediaEvent event) {
+		var accessURI = event.digitalMediaWrapper().attributes().getAcAccessURI();
+		var digitalMedia = new DigitalMedia().withAcAccessURI(accessURI)
+			.withOdsHasEntityRelationships(new ArrayList<>(entityRelationships));
+		return new DigitalMediaRecord(id, accessURI, version, created, event.masList(), digitalMedia, null,
+				event.forceMasSchedule(), event.isDataFromSourceSystem());
+	}
+
+}
@@ -0,0 +1,7 @@
+package eu.dissco.core.digitalspecimenprocessor.domain.outbox;
+
+public enum OutboxDestination {
+
+	ELASTIC, RABBITMQ
+
+}
@@ -0,0 +1,20 @@
+package eu.dissco.core.digitalspecimenprocessor.domain.outbox;
+
+/*
+ * A side effect of a database write, stored with it and relayed afterwards. For elastic the
+ * target is the index, the key the document id and the version that of the record. For
+ * RabbitMQ they are the exchange and the routing key, without a version. The id is assigned
+ * when the message is stored.
+ */
+public record OutboxMessage(Long id, OutboxDestination destination, String target, String key, Integer version,
+		String payload) {
+
+	public static OutboxMessage elastic(String index, String documentId, int version, String document) {
+		return new OutboxMessage(null, OutboxDestination.ELASTIC, index, documentId, version, document);
+	}
+
+	public static OutboxMessage rabbitMq(String exchange, String routingKey, String body) {
+		return new OutboxMessage(null, OutboxDestination.RABBITMQ, exchange, routingKey, null, body);
+	}
+
+}
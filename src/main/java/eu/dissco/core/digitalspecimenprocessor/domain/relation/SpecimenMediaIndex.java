@@ -0,0 +1,61 @@
+package eu.dissco.core.digitalspecimenprocessor.domain.relation;
+
+import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenEvent;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/*
+ * The relations between the specimens and media of a batch, keyed by physical specimen id
+ * and media uri. Built once per batch in linear time, as a media object can be related to
+ * multiple specimens and a specimen to multiple media.
+ */
+public record SpecimenMediaIndex(Map<String, PidProcessResult> specimenPids,
+		Map<String, PidProcessResult> mediaPids) {
+
+	public static SpecimenMediaIndex build(Collection<DigitalSpecimenEvent> specimenEvents,
+			Map<String, String> specimenDois, Map<String, String> mediaDois) {
+		var mediaUrisByDoi = new HashMap<String, List<String>>();
+		mediaDois.forEach((uri, doi) -> mediaUrisByDoi.computeIfAbsent(doi, k -> new ArrayList<>()).add(uri));
+		var specimenPids = new HashMap<String, PidProcessResult>();
+		var relatedSpecimensByMediaUri = new HashMap<String, Set<String>>();
+		for (var specimen : specimenEvents) {
+			var physicalSpecimenId = specimen.digitalSpecimenWrapper().physicalSpecimenID();
+			var specimenDoi = specimenDois.get(physicalSpecimenId);
+			var mediaDoisForThisSpecimen = specimen.digitalMediaEvents()
+				.stream()
+				.map(event -> mediaDois.get(event.digitalMediaWrapper().attributes().getAcAccessURI()))
+				.collect(Collectors.toSet());
+			specimenPids.put(physicalSpecimenId, new PidProcessResult(specimenDoi, mediaDoisForThisSpecimen));
+			for (var mediaDoi : mediaDoisForThisSpecimen) {
+				for (var mediaUri : mediaUrisByDoi.getOrDefault(mediaDoi, List.of())) {
+					relatedSpecimensByMediaUri.computeIfAbsent(mediaUri, k -> new HashSet<>()).add(specimenDoi);
+				}
+			}
+		}
+		var mediaPids = new HashMap<String, PidProcessResult>();
+		relatedSpecimensByMediaUri.forEach(
+				(uri, relatedSpecimens) -> mediaPids.put(uri, new PidProcessResult(mediaDois.get(uri), relatedSpecimens)));
+		return new SpecimenMediaIndex(specimenPids, mediaPids);
+	}
+
+	/*
+	 * Media pids with only the related specimens that are in the given set of specimen dois
+	 */
+	public Map<String, PidProcessResult> mediaPidsRelatedTo(Collection<String> specimenDois) {
+		var specimenDoiSet = new HashSet<>(specimenDois);
+		var filteredMediaPids = new HashMap<String, PidProcessResult>();
+		mediaPids.forEach((uri, mediaPid) -> filteredMediaPids.put(uri,
+				new PidProcessResult(mediaPid.doiOfTarget(), mediaPid.doisOfRelatedObjects()
+					.stream()
+					.filter(specimenDoiSet::contains)
+					.collect(Collectors.toSet()))));
+		return filteredMediaPids;
+	}
+
+}
@@ -4,9 +4,17 @@ import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaEvent;
 import java.time.Instant;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 
 public record DigitalSpecimenRecord(String id, int midsLevel, int version, Instant created,
 		DigitalSpecimenWrapper digitalSpecimenWrapper, Set<String> masIds, Boolean forceMasSchedule,
-		Boolean isDataFromSourceSystem, List<DigitalMediaEvent> digitalMediaEvents) {
+		Boolean isDataFromSourceSystem, List<DigitalMediaEvent> digitalMediaEvents, UUID contentHash) {
+
+	public DigitalSpecimenRecord(String id, int midsLevel, int version, Instant created,
+			DigitalSpecimenWrapper digitalSpecimenWrapper, Set<String> masIds, Boolean forceMasSchedule,
+			Boolean isDataFromSourceSystem, List<DigitalMediaEvent> digitalMediaEvents) {
+		this(id, midsLevel, version, created, digitalSpecimenWrapper, masIds, forceMasSchedule, isDataFromSourceSystem,
+				digitalMediaEvents, null);
+	}
 
 }
@@ -1,11 +1,144 @@
 package eu.dissco.core.digitalspecimenprocessor.domain.specimen;
 
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonProperty;
 import eu.dissco.core.digitalspecimenprocessor.schema.DigitalSpecimen;
+import eu.dissco.core.digitalspecimenprocessor.schema.EntityRelationship;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.Supplier;
 import tools.jackson.databind.JsonNode;
 
-public record DigitalSpecimenWrapper(@JsonProperty("ods:normalisedPhysicalSpecimenID") String physicalSpecimenID,
-		@JsonProperty("ods:type") String type, @JsonProperty("ods:attributes") DigitalSpecimen attributes,
-		@JsonProperty("ods:originalAttributes") JsonNode originalAttributes) {
+/*
+ * Wrapper of a specimen's attributes and original attributes. Wrappers of stored specimens
+ * are created with the raw json, which is only parsed when the attributes are first
+ * accessed. Most stored specimens turn out to be equal, their json is never parsed.
+ * Fingerprints of stored specimens only hold the entity relationships of the attributes.
+ */
+public final class DigitalSpecimenWrapper {
+
+	private final String physicalSpecimenID;
+
+	private final String type;
+
+	private final Lazy<DigitalSpecimen> attributes;
+
+	private final Lazy<JsonNode> originalAttributes;
+
+	private final boolean fingerprint;
+
+	@JsonCreator
+	public DigitalSpecimenWrapper(@JsonProperty("ods:normalisedPhysicalSpecimenID") String physicalSpecimenID,
+			@JsonProperty("ods:type") String type, @JsonProperty("ods:attributes") DigitalSpecimen attributes,
+			@JsonProperty("ods:originalAttributes") JsonNode originalAttributes) {
+		this(physicalSpecimenID, type, Lazy.loaded(attributes), Lazy.loaded(originalAttributes), false);
+	}
+
+	private DigitalSpecimenWrapper(String physicalSpecimenID, String type, Lazy<DigitalSpecimen> attributes,
+			Lazy<JsonNode> originalAttributes, boolean fingerprint) {
+		this.physicalSpecimenID = physicalSpecimenID;
+		this.type = type;
+		this.attributes = attributes;
+		this.originalAttributes = originalAttributes;
+		this.fingerprint = fingerprint;
+	}
+
+	public static DigitalSpecimenWrapper lazy(String physicalSpecimenID, String type,
+			Supplier<DigitalSpecimen> attributes, Supplier<JsonNode> originalAttributes) {
+		return new DigitalSpecimenWrapper(physicalSpecimenID, type, new Lazy<>(attributes),
+				new Lazy<>(originalAttributes), false);
+	}
+
+	public static DigitalSpecimenWrapper fingerprint(String physicalSpecimenID, String type,
+			List<EntityRelationship> entityRelationships) {
+		var attributes = new DigitalSpecimen().withOdsHasEntityRelationships(entityRelationships);
+		return new DigitalSpecimenWrapper(physicalSpecimenID, type, Lazy.loaded(attributes), Lazy.loaded(null), true);
+	}
+
+	@JsonProperty("ods:normalisedPhysicalSpecimenID")
+	public String physicalSpecimenID() {
+		return physicalSpecimenID;
+	}
+
+	@JsonProperty("ods:type")
+	public String type() {
+		return type;
+	}
+
+	@JsonProperty("ods:attributes")
+	public DigitalSpecimen attributes() {
+		return attributes.get();
+	}
+
+	@JsonProperty("ods:originalAttributes")
+	public JsonNode originalAttributes() {
+		return originalAttributes.get();
+	}
+
+	// A fingerprint is enough to recognise an equal specimen, but not to update it
+	@JsonIgnore
+	public boolean isFingerprint() {
+		return fingerprint;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (this == o) {
+			return true;
+		}
+		if (!(o instanceof DigitalSpecimenWrapper other)) {
+			return false;
+		}
+		return fingerprint == other.fingerprint && Objects.equals(physicalSpecimenID, other.physicalSpecimenID)
+				&& Objects.equals(type, other.type) && Objects.equals(attributes(), other.attributes())
+				&& Objects.equals(originalAttributes(), other.originalAttributes());
+	}
+
+	// Records are hashed throughout a batch, so hashing must not parse the json. Equal
+	// wrappers have the same physical specimen id, which is what tells specimens apart.
+	@Override
+	public int hashCode() {
+		return Objects.hash(physicalSpecimenID, type, fingerprint);
+	}
+
+	@Override
+	public String toString() {
+		return "DigitalSpecimenWrapper[physicalSpecimenID=" + physicalSpecimenID + ", type=" + type + ", attributes="
+				+ attributes + ", originalAttributes=" + originalAttributes + "]";
+	}
+
+	// Loads the value once, the loader and the raw json it holds are released afterwards
+	private static final class Lazy<T> {
+
+		private Supplier<T> loader;
+
+		private T value;
+
+		private Lazy(Supplier<T> loader) {
+			this.loader = loader;
+		}
+
+		private static <T> Lazy<T> loaded(T value) {
+			var lazy = new Lazy<T>(null);
+			lazy.value = value;
+			return lazy;
+		}
+
+		private synchronized T get() {
+			if (loader != null) {
+				value = loader.get();
+				loader = null;
+			}
+			return value;
+		}
+
+		// Logging a wrapper does not parse its json
+		@Override
+		public synchronized String toString() {
+			return loader == null ? String.valueOf(value) : "<not parsed>";
+		}
+
+	}
 
 }
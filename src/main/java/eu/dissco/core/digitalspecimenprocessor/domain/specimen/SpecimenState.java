@@ -0,0 +1,33 @@
+package eu.dissco.core.digitalspecimenprocessor.domain.specimen;
+
+import eu.dissco.core.digitalspecimenprocessor.schema.EntityRelationship;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/*
+ * The stored state of a specimen which is needed to recognise an equal specimen: its id
+ * and version, the content hash and the entity relationships. From it, the same record is
+ * created as from a fingerprint retrieved from the database.
+ */
+public record SpecimenState(String id, int version, int midsLevel, String type, Instant created, UUID contentHash,
+		List<EntityRelationship> entityRelationships) {
+
+	public static SpecimenState of(DigitalSpecimenRecord digitalSpecimenRecord) {
+		var wrapper = digitalSpecimenRecord.digitalSpecimenWrapper();
+		var entityRelationships = wrapper.attributes().getOdsHasEntityRelationships();
+		return new SpecimenState(digitalSpecimenRecord.id(), digitalSpecimenRecord.version(),
+				digitalSpecimenRecord.midsLevel(), wrapper.type(), digitalSpecimenRecord.created(),
+				digitalSpecimenRecord.contentHash(),
+				entityRelationships == null ? List.of() : List.copyOf(entityRelationships));
+	}
+
+	public DigitalSpecimenRecord toFingerprint(String physicalSpecimenID) {
+		var digitalSpecimenWrapper = DigitalSpecimenWrapper.fingerprint(physicalSpecimenID, type,
+				new ArrayList<>(entityRelationships));
+		return new DigitalSpecimenRecord(id, midsLevel, version, created, digitalSpecimenWrapper, null, null, null,
+				List.of(), contentHash);
+	}
+
+}
@@ -1,5 +1,6 @@
 package eu.dissco.core.digitalspecimenprocessor.property;
 
+import jakarta.validation.constraints.DecimalMax;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Positive;
 import lombok.Data;
@@ -29,4 +30,65 @@ public class ApplicationProperties {
 	@Positive
 	private Integer maxMedia = 10000;
 
+	// Conflict-free waves processed per batch, events beyond the last wave are republished
+	@Positive
+	private Integer maxBatchWaves = 10;
+
+	// Batches with at least this many new records are inserted with COPY instead of INSERTs
+	@Positive
+	private Integer copyInsertThreshold = 1000;
+
+	// Last checked updates of equal specimens and media are written in the background
+	@Positive
+	private Integer lastCheckedFlushSeconds = 30;
+
+	@Positive
+	private Integer lastCheckedFlushSize = 10000;
+
+	// Failed last checked updates are retried until this many updates are pending
+	@Positive
+	private Integer lastCheckedMaxPending = 100000;
+
+	// Retrieve existing specimens by content hash first, full records only when needed
+	private boolean specimenFingerprintLookup = true;
+
+	// Upper bound of the estimated heap size of the specimen state near-cache
+	@Positive
+	private Long specimenStateCacheMaxBytes = 256L * 1024 * 1024;
+
+	// Upper bound of the estimated heap size of the media state cache
+	@Positive
+	private Long mediaStateCacheMaxBytes = 64L * 1024 * 1024;
+
+	// Skip the lookup of specimens and media a bloom filter of known objects has never seen
+	private boolean knownObjectFilter = false;
+
+	// Filters grow when their capacity is reached
+	@Positive
+	private Long knownObjectFilterInitialCapacity = 100_000L;
+
+	@Positive
+	@DecimalMax(value = "1", inclusive = false)
+	private Double knownObjectFilterFalsePositiveRate = 0.01;
+
+	// Objects created by other instances are added with every refresh
+	@Positive
+	private Integer knownObjectFilterRefreshSeconds = 60;
+
+	// Filters are restored from this file at startup when set, and written to it on refresh
+	private String knownObjectFilterSnapshotPath;
+
+	// Elastic documents and provenance events are stored with the records and relayed afterwards
+	private boolean outbox = false;
+
+	@Positive
+	private Integer outboxRelayBatchSize = 1000;
+
+	@Positive
+	private Integer outboxRelayIntervalMillis = 500;
+
+	// Messages claimed by a relay which stopped before finishing are relayed again after this
+	@Positive
+	private Integer outboxRelayClaimSeconds = 300;
+
 }
@@ -29,4 +29,32 @@ public class ElasticSearchProperties {
 	@NotBlank
 	private String password;
 
+	// Bulk requests are split once either limit is reached
+	@Positive
+	private long bulkMaxBytes = 5L * 1024 * 1024;
+
+	@Positive
+	private int bulkMaxDocuments = 1000;
+
+	// Maximum number of bulk requests in flight for a single batch
+	@Positive
+	private int bulkMaxConcurrentRequests = 4;
+
+	// Items rejected by a saturated cluster are retried with backoff within this budget
+	@Positive
+	private long bulkRetryTimeBudgetMillis = 30_000L;
+
+	@Positive
+	private long bulkRetryInitialBackoffMillis = 100L;
+
+	@Positive
+	private long bulkRetryMaxBackoffMillis = 5_000L;
+
+	// Index in the background, overlapping with the processing of the next batches
+	private boolean asyncIndexing = false;
+
+	// Bulk requests which can be pending before a batch waits for the indexing of earlier ones
+	@Positive
+	private int asyncIndexingMaxPending = 4;
+
 }
@@ -1,8 +1,14 @@
 package eu.dissco.core.digitalspecimenprocessor.property;
 
+import eu.dissco.core.digitalspecimenprocessor.domain.CompressionType;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Positive;
+import jakarta.validation.constraints.PositiveOrZero;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import lombok.Data;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.validation.annotation.Validated;
@@ -15,6 +21,10 @@ public class RabbitMqProperties {
 	@Positive
 	private int batchSize = 500;
 
+	// Batches touching the same specimens or media are processed one after another
+	@Positive
+	private int concurrentConsumers = 1;
+
 	@NotNull
 	private Specimen specimen = new Specimen();
 
@@ -36,6 +46,9 @@ public class RabbitMqProperties {
 	@NotBlank
 	private String masExchangeName = "mas-exchange";
 
+	@NotNull
+	private Compression compression = new Compression();
+
 	@Data
 	@Validated
 	public static class Specimen {
@@ -135,4 +148,31 @@ public class RabbitMqProperties {
 
 	}
 
+	@Data
+	@Validated
+	public static class Compression {
+
+		@NotNull
+		private CompressionType type = CompressionType.GZIP;
+
+		// Messages smaller than this (in bytes) are sent uncompressed, by default all are compressed
+		@PositiveOrZero
+		private int minSize = 0;
+
+		// Exchange name to compression type, overrides the default type for that exchange
+		@NotNull
+		private Map<String, CompressionType> exchanges = new HashMap<>();
+
+		@Positive
+		private int zstdLevel = 3;
+
+		/*
+		 * Locations of trained zstd dictionaries (e.g. classpath:zstd/specimen.dict). All
+		 * are used for decompression, the first one is used for compression.
+		 */
+		@NotNull
+		private List<String> zstdDictionaries = new ArrayList<>();
+
+	}
+
 }
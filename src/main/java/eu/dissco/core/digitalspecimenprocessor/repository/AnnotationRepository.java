@@ -12,6 +12,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jooq.DSLContext;
 import org.jooq.Record;
+import org.jooq.impl.DSL;
 import org.springframework.stereotype.Repository;
 import tools.jackson.databind.json.JsonMapper;
 
@@ -27,7 +28,7 @@ public class AnnotationRepository {
 	public Map<String, List<Annotation>> getAcceptedAnnotationsForObject(Set<String> targetIdsWithProxy) {
 		return context.select(ANNOTATION.asterisk())
 			.from(ANNOTATION)
-			.where(ANNOTATION.TARGET_ID.in(targetIdsWithProxy))
+			.where(ANNOTATION.TARGET_ID.eq(DSL.any(targetIdsWithProxy.toArray(String[]::new))))
 			.and(ANNOTATION.ANNOTATION_STATUS.eq(AnnotationStatusEnum.ACCEPTED))
 			.fetchGroups(AnnotationRepository::stripProxyFromTargetId, this::mapToAnnotation);
 	}
@@ -0,0 +1,142 @@
+package eu.dissco.core.digitalspecimenprocessor.repository;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Table;
+import org.jooq.exception.DataAccessException;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.PGCopyOutputStream;
+
+/*
+ * Streams rows into a table with COPY ... FROM STDIN (FORMAT binary). Values have to be
+ * written in the order of the columns of the COPY statement. The COPY is a single
+ * statement, so either all rows are inserted or none are.
+ */
+class BinaryCopyWriter {
+
+	private static final byte[] SIGNATURE = { 'P', 'G', 'C', 'O', 'P', 'Y', '\n', (byte) 0xFF, '\r', '\n', 0 };
+
+	private static final Instant POSTGRES_EPOCH = Instant.parse("2000-01-01T00:00:00Z");
+
+	private static final byte JSONB_VERSION = 1;
+
+	private static final int BUFFER_SIZE = 64 * 1024;
+
+	private final DataOutputStream out;
+
+	BinaryCopyWriter(OutputStream outputStream) throws IOException {
+		out = new DataOutputStream(new BufferedOutputStream(outputStream, BUFFER_SIZE));
+		out.write(SIGNATURE);
+		// Flags and header extension length
+		out.writeInt(0);
+		out.writeInt(0);
+	}
+
+	static long copyIn(DSLContext context, Table<?> table, List<Field<?>> columns, RowsWriter rowsWriter) {
+		var copyStatement = "COPY " + table.getName() + " ("
+				+ columns.stream().map(Field::getName).collect(Collectors.joining(", "))
+				+ ") FROM STDIN (FORMAT binary)";
+		return context.connectionResult(connection -> {
+			try {
+				var copyIn = connection.unwrap(PGConnection.class).getCopyAPI().copyIn(copyStatement);
+				try {
+					var copyOutputStream = new PGCopyOutputStream(copyIn);
+					var writer = new BinaryCopyWriter(copyOutputStream);
+					rowsWriter.write(writer);
+					writer.finish();
+					return copyOutputStream.endCopy();
+				}
+				finally {
+					if (copyIn.isActive()) {
+						copyIn.cancelCopy();
+					}
+				}
+			}
+			catch (SQLException | IOException e) {
+				throw new DataAccessException("Failed to copy rows into " + table.getName(), e);
+			}
+		});
+	}
+
+	void startRow(int columnCount) throws IOException {
+		out.writeShort(columnCount);
+	}
+
+	void writeText(String value) throws IOException {
+		if (value == null) {
+			writeNull();
+			return;
+		}
+		var bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length);
+		out.write(bytes);
+	}
+
+	void writeInt(int value) throws IOException {
+		out.writeInt(Integer.BYTES);
+		out.writeInt(value);
+	}
+
+	void writeShort(short value) throws IOException {
+		out.writeInt(Short.BYTES);
+		out.writeShort(value);
+	}
+
+	void writeTimestamp(Instant value) throws IOException {
+		if (value == null) {
+			writeNull();
+			return;
+		}
+		out.writeInt(Long.BYTES);
+		out.writeLong(ChronoUnit.MICROS.between(POSTGRES_EPOCH, value));
+	}
+
+	void writeJsonb(String value) throws IOException {
+		if (value == null) {
+			writeNull();
+			return;
+		}
+		var bytes = value.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(bytes.length + 1);
+		out.writeByte(JSONB_VERSION);
+		out.write(bytes);
+	}
+
+	void writeUuid(UUID value) throws IOException {
+		if (value == null) {
+			writeNull();
+			return;
+		}
+		out.writeInt(2 * Long.BYTES);
+		out.writeLong(value.getMostSignificantBits());
+		out.writeLong(value.getLeastSignificantBits());
+	}
+
+	void writeNull() throws IOException {
+		out.writeInt(-1);
+	}
+
+	private void finish() throws IOException {
+		out.writeShort(-1);
+		out.flush();
+	}
+
+	@FunctionalInterface
+	interface RowsWriter {
+
+		void write(BinaryCopyWriter writer) throws IOException;
+
+	}
+
+}
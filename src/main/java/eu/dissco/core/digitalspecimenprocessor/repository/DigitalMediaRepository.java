@@ -2,17 +2,29 @@ package eu.dissco.core.digitalspecimenprocessor.repository;
 
 import static eu.dissco.core.digitalspecimenprocessor.database.jooq.Tables.DIGITAL_MEDIA_OBJECT;
 
+import eu.dissco.core.digitalspecimenprocessor.domain.UpsertResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaRecord;
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
 import eu.dissco.core.digitalspecimenprocessor.schema.DigitalMedia;
 import java.time.Instant;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.InsertSetMoreStep;
+import org.jooq.InsertSetStep;
 import org.jooq.JSONB;
-import org.jooq.Query;
 import org.jooq.Record;
+import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
 import org.springframework.stereotype.Repository;
 import tools.jackson.core.JacksonException;
 import tools.jackson.databind.json.JsonMapper;
@@ -26,16 +38,73 @@ public class DigitalMediaRepository {
 
 	private final JsonMapper mapper;
 
-	// Maps Media URI to its DOI
+	private final ApplicationProperties applicationProperties;
+
+	private static final int STREAM_FETCH_SIZE = 10000;
+
+	// Only true for rows which were inserted, not for rows which were updated
+	private static final Field<Boolean> INSERTED = DSL.field("(xmax = 0)", Boolean.class).as("inserted");
+
+	private static final List<Field<?>> COLUMNS = List.of(DIGITAL_MEDIA_OBJECT.ID, DIGITAL_MEDIA_OBJECT.TYPE,
+			DIGITAL_MEDIA_OBJECT.VERSION, DIGITAL_MEDIA_OBJECT.MEDIA_URL, DIGITAL_MEDIA_OBJECT.CREATED,
+			DIGITAL_MEDIA_OBJECT.LAST_CHECKED, DIGITAL_MEDIA_OBJECT.DATA, DIGITAL_MEDIA_OBJECT.MODIFIED,
+			DIGITAL_MEDIA_OBJECT.SOURCE_SYSTEM_ID, DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA);
+
+	// Maps Media URI to its DOI, urls are looked up by their indexed hash
 	public List<DigitalMediaRecord> getExistingDigitalMedia(Set<String> mediaURIs) {
 		return context.select(DIGITAL_MEDIA_OBJECT.asterisk())
 			.from(DIGITAL_MEDIA_OBJECT)
-			.where(DIGITAL_MEDIA_OBJECT.MEDIA_URL.in(mediaURIs))
-			.fetch(this::mapToDigitalMediaRecord);
+			.where(DIGITAL_MEDIA_OBJECT.MEDIA_URL_HASH.eq(DSL.any(LookupHash.of(mediaURIs))))
+			.fetch()
+			.stream()
+			.filter(dbRecord -> mediaURIs.contains(dbRecord.get(DIGITAL_MEDIA_OBJECT.MEDIA_URL)))
+			.map(this::mapToDigitalMediaRecord)
+			.toList();
+	}
+
+	// Confirms which of the urls are stored, without reading the media themselves
+	public Set<String> getExistingMediaUrls(Set<String> mediaURIs) {
+		return context.select(DIGITAL_MEDIA_OBJECT.MEDIA_URL)
+			.from(DIGITAL_MEDIA_OBJECT)
+			.where(DIGITAL_MEDIA_OBJECT.MEDIA_URL_HASH.eq(DSL.any(LookupHash.of(mediaURIs))))
+			.fetchSet(DIGITAL_MEDIA_OBJECT.MEDIA_URL)
+			.stream()
+			.filter(mediaURIs::contains)
+			.collect(Collectors.toSet());
+	}
+
+	// Streams the url of all media created since the given time
+	public void streamMediaUrls(Instant createdSince, Consumer<String> consumer) {
+		context.transaction(configuration -> {
+			try (var cursor = configuration.dsl()
+				.select(DIGITAL_MEDIA_OBJECT.MEDIA_URL)
+				.from(DIGITAL_MEDIA_OBJECT)
+				.where(createdSince == null ? DSL.noCondition() : DIGITAL_MEDIA_OBJECT.CREATED.ge(createdSince))
+				.fetchSize(STREAM_FETCH_SIZE)
+				.fetchLazy()) {
+				cursor.forEach(dbRecord -> consumer.accept(dbRecord.value1()));
+			}
+		});
 	}
 
-	public void rollBackDigitalMedia(String id) {
-		context.delete(DIGITAL_MEDIA_OBJECT).where(DIGITAL_MEDIA_OBJECT.ID.eq(id)).execute();
+	public Map<String, Integer> getDigitalMediaVersions(Collection<String> ids) {
+		return context.select(DIGITAL_MEDIA_OBJECT.ID, DIGITAL_MEDIA_OBJECT.VERSION)
+			.from(DIGITAL_MEDIA_OBJECT)
+			.where(DIGITAL_MEDIA_OBJECT.ID.eq(DSL.any(ids.toArray(String[]::new))))
+			.fetchMap(DIGITAL_MEDIA_OBJECT.ID, DIGITAL_MEDIA_OBJECT.VERSION);
+	}
+
+	// Deletes the created media still at their created version, joined on the unnested ids and versions
+	public void rollBackDigitalMedia(Collection<DigitalMediaRecord> digitalMediaRecords) {
+		var ids = digitalMediaRecords.stream().map(DigitalMediaRecord::id).toArray(String[]::new);
+		var versions = digitalMediaRecords.stream().map(DigitalMediaRecord::version).toArray(Integer[]::new);
+		var created = DSL.table("unnest({0}::text[], {1}::int[])", DSL.val(ids), DSL.val(versions))
+			.as("created", "id", "version");
+		context.delete(DIGITAL_MEDIA_OBJECT)
+			.using(created)
+			.where(DIGITAL_MEDIA_OBJECT.ID.eq(DSL.field(DSL.name("created", "id"), String.class)))
+			.and(DIGITAL_MEDIA_OBJECT.VERSION.eq(DSL.field(DSL.name("created", "version"), Integer.class)))
+			.execute();
 	}
 
 	private DigitalMediaRecord mapToDigitalMediaRecord(Record dbRecord) {
@@ -52,26 +121,179 @@ public class DigitalMediaRepository {
 		}
 	}
 
-	public void updateLastChecked(List<String> currentDigitalMedia) {
+	public void updateLastChecked(Collection<String> currentDigitalMedia) {
 		context.update(DIGITAL_MEDIA_OBJECT)
 			.set(DIGITAL_MEDIA_OBJECT.LAST_CHECKED, Instant.now())
-			.where(DIGITAL_MEDIA_OBJECT.ID.in(currentDigitalMedia))
+			.where(DIGITAL_MEDIA_OBJECT.ID.eq(DSL.any(currentDigitalMedia.toArray(String[]::new))))
 			.execute();
 	}
 
-	public void createDigitalMediaRecord(Set<DigitalMediaRecord> digitalMediaRecords) {
-		var queries = digitalMediaRecords.stream().map(this::createDigitalMediaQuery).toList();
-		context.batch(queries).execute();
+	public UpsertResult createDigitalMediaRecord(Set<DigitalMediaRecord> digitalMediaRecords) {
+		if (digitalMediaRecords.size() >= applicationProperties.getCopyInsertThreshold()) {
+			try {
+				Savepoints.isolate(context, () -> copyDigitalMediaRecords(digitalMediaRecords));
+				return new UpsertResult(digitalMediaRecords.stream()
+					.collect(Collectors.toMap(DigitalMediaRecord::id, DigitalMediaRecord::version)), Map.of(),
+						Set.of());
+			}
+			catch (DataAccessException e) {
+				log.warn("Unable to copy {} new media, upserting them instead", digitalMediaRecords.size(), e);
+			}
+		}
+		return upsertDigitalMediaRecords(digitalMediaRecords);
+	}
+
+	/*
+	 * Writes new media with a single INSERT ... ON CONFLICT DO UPDATE. Media created
+	 * concurrently are only updated when the stored version precedes the version of the
+	 * record, others are conflicting. Media not from the source system keep their original
+	 * data and are written in a separate statement.
+	 */
+	private UpsertResult upsertDigitalMediaRecords(Collection<DigitalMediaRecord> digitalMediaRecords) {
+		var recordsBySourceSystem = digitalMediaRecords.stream()
+			.collect(Collectors.partitioningBy(
+					digitalMediaRecord -> Boolean.TRUE.equals(digitalMediaRecord.isDataFromSourceSystem())));
+		return UpsertSplitter
+			.upsert(recordsBySourceSystem.get(true), DigitalMediaRecord::id,
+					records -> Savepoints.isolate(context, () -> upsertMedia(records, true)))
+			.merge(UpsertSplitter.upsert(recordsBySourceSystem.get(false), DigitalMediaRecord::id,
+					records -> Savepoints.isolate(context, () -> upsertMedia(records, false))));
+	}
+
+	private UpsertResult upsertMedia(List<DigitalMediaRecord> digitalMediaRecords, boolean replaceOriginalData) {
+		InsertSetMoreStep<?> insert = null;
+		for (var digitalMediaRecord : digitalMediaRecords) {
+			if (insert == null) {
+				insert = setDigitalMediaValues(context.insertInto(DIGITAL_MEDIA_OBJECT), digitalMediaRecord);
+			}
+			else {
+				insert = setDigitalMediaValues(insert.newRecord(), digitalMediaRecord);
+			}
+		}
+		var updates = new HashMap<Field<?>, Field<?>>();
+		for (var column : COLUMNS) {
+			if (column != DIGITAL_MEDIA_OBJECT.ID
+					&& (replaceOriginalData || column != DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA)) {
+				updates.put(column, DSL.excluded(column));
+			}
+		}
+		var rows = insert.onConflict(DIGITAL_MEDIA_OBJECT.ID)
+			.doUpdate()
+			.set(updates)
+			.where(DIGITAL_MEDIA_OBJECT.VERSION.eq(DSL.excluded(DIGITAL_MEDIA_OBJECT.VERSION).minus(1)))
+			.returningResult(DIGITAL_MEDIA_OBJECT.ID, DIGITAL_MEDIA_OBJECT.VERSION, INSERTED)
+			.fetch();
+		var created = new HashMap<String, Integer>();
+		var updated = new HashMap<String, Integer>();
+		for (var row : rows) {
+			if (Boolean.TRUE.equals(row.value3())) {
+				created.put(row.value1(), row.value2());
+			}
+			else {
+				updated.put(row.value1(), row.value2());
+			}
+		}
+		return new UpsertResult(created, updated, Set.of());
+	}
+
+	/*
+	 * Updates existing media with a single UPDATE ... FROM, joining on the unnested arrays of
+	 * the new values. Media are only updated when the stored version precedes the version of
+	 * the record, others are conflicting. Media deleted in the meantime are not inserted
+	 * again. Media not from the source system keep their original data.
+	 */
+	public UpsertResult updateDigitalMediaRecords(Collection<DigitalMediaRecord> digitalMediaRecords) {
+		return UpsertSplitter.upsert(List.copyOf(digitalMediaRecords), DigitalMediaRecord::id,
+				records -> Savepoints.isolate(context, () -> new UpsertResult(Map.of(),
+						updateMedia(records, digitalMediaRecord -> digitalMediaRecord.version() - 1), Set.of())));
+	}
+
+	// Returns the ids and versions of the media which were at their expected version
+	private Map<String, Integer> updateMedia(Collection<DigitalMediaRecord> digitalMediaRecords,
+			ToIntFunction<DigitalMediaRecord> expectedVersion) {
+		var size = digitalMediaRecords.size();
+		var ids = new String[size];
+		var types = new String[size];
+		var versions = new Integer[size];
+		var expectedVersions = new Integer[size];
+		var mediaUrls = new String[size];
+		var created = new String[size];
+		var data = new String[size];
+		var sourceSystemIds = new String[size];
+		var originalData = new String[size];
+		var i = 0;
+		for (var digitalMediaRecord : digitalMediaRecords) {
+			ids[i] = digitalMediaRecord.id();
+			types[i] = digitalMediaRecord.attributes().getOdsFdoType();
+			versions[i] = digitalMediaRecord.version();
+			expectedVersions[i] = expectedVersion.applyAsInt(digitalMediaRecord);
+			mediaUrls[i] = digitalMediaRecord.attributes().getAcAccessURI();
+			created[i] = digitalMediaRecord.created().toString();
+			data[i] = mapper.valueToTree(digitalMediaRecord.attributes()).toString();
+			sourceSystemIds[i] = digitalMediaRecord.attributes().getOdsSourceSystemID();
+			if (Boolean.TRUE.equals(digitalMediaRecord.isDataFromSourceSystem())) {
+				originalData[i] = digitalMediaRecord.originalAttributes().toString();
+			}
+			i++;
+		}
+		var updates = DSL
+			.table("unnest({0}::text[], {1}::text[], {2}::int[], {3}::int[], {4}::text[], {5}::timestamptz[], "
+					+ "{6}::jsonb[], {7}::text[], {8}::jsonb[])", DSL.val(ids), DSL.val(types), DSL.val(versions),
+					DSL.val(expectedVersions), DSL.val(mediaUrls), DSL.val(created), DSL.val(data),
+					DSL.val(sourceSystemIds), DSL.val(originalData))
+			.as("updates", "id", "type", "version", "expected_version", "media_url", "created", "data",
+					"source_system_id", "original_data");
+		var now = Instant.now();
+		return context.update(DIGITAL_MEDIA_OBJECT)
+			.set(DIGITAL_MEDIA_OBJECT.TYPE, updatesField("type", String.class))
+			.set(DIGITAL_MEDIA_OBJECT.VERSION, updatesField("version", Integer.class))
+			.set(DIGITAL_MEDIA_OBJECT.MEDIA_URL, updatesField("media_url", String.class))
+			.set(DIGITAL_MEDIA_OBJECT.CREATED, updatesField("created", Instant.class))
+			.set(DIGITAL_MEDIA_OBJECT.LAST_CHECKED, now)
+			.set(DIGITAL_MEDIA_OBJECT.DATA, updatesField("data", JSONB.class))
+			.set(DIGITAL_MEDIA_OBJECT.MODIFIED, now)
+			.set(DIGITAL_MEDIA_OBJECT.SOURCE_SYSTEM_ID, updatesField("source_system_id", String.class))
+			.set(DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA,
+					DSL.coalesce(updatesField("original_data", JSONB.class), DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA))
+			.from(updates)
+			.where(DIGITAL_MEDIA_OBJECT.ID.eq(updatesField("id", String.class)))
+			.and(DIGITAL_MEDIA_OBJECT.VERSION.eq(updatesField("expected_version", Integer.class)))
+			.returningResult(DIGITAL_MEDIA_OBJECT.ID, DIGITAL_MEDIA_OBJECT.VERSION)
+			.fetchMap(DIGITAL_MEDIA_OBJECT.ID, DIGITAL_MEDIA_OBJECT.VERSION);
+	}
+
+	private static <T> Field<T> updatesField(String column, Class<T> type) {
+		return DSL.field(DSL.name("updates", column), type);
+	}
+
+	// Media changed since our update keep their version, the others are restored in one update
+	public void rollbackDigitalMediaVersions(Collection<DigitalMediaRecord> previousDigitalMediaRecords) {
+		updateMedia(previousDigitalMediaRecords, previousRecord -> previousRecord.version() + 1);
 	}
 
-	public void updateDigitalMediaRecord(Set<DigitalMediaRecord> digitalMediaRecords) {
-		var queries = digitalMediaRecords.stream().map(this::updateDigitalMediaQuery).toList();
-		context.batch(queries).execute();
+	private long copyDigitalMediaRecords(Set<DigitalMediaRecord> digitalMediaRecords) {
+		log.debug("Copying {} new media into the database", digitalMediaRecords.size());
+		var now = Instant.now();
+		return BinaryCopyWriter.copyIn(context, DIGITAL_MEDIA_OBJECT, COLUMNS, writer -> {
+			for (var digitalMediaRecord : digitalMediaRecords) {
+				writer.startRow(COLUMNS.size());
+				writer.writeText(digitalMediaRecord.id());
+				writer.writeText(digitalMediaRecord.attributes().getOdsFdoType());
+				writer.writeInt(digitalMediaRecord.version());
+				writer.writeText(digitalMediaRecord.attributes().getAcAccessURI());
+				writer.writeTimestamp(digitalMediaRecord.created());
+				writer.writeTimestamp(now);
+				writer.writeJsonb(mapper.valueToTree(digitalMediaRecord.attributes()).toString());
+				writer.writeTimestamp(now);
+				writer.writeText(digitalMediaRecord.attributes().getOdsSourceSystemID());
+				writer.writeJsonb(digitalMediaRecord.originalAttributes().toString());
+			}
+		});
 	}
 
-	private Query createDigitalMediaQuery(DigitalMediaRecord digitalMediaRecord) {
-		return context.insertInto(DIGITAL_MEDIA_OBJECT)
-			.set(DIGITAL_MEDIA_OBJECT.ID, digitalMediaRecord.id())
+	private <R extends Record> InsertSetMoreStep<R> setDigitalMediaValues(InsertSetStep<R> insert,
+			DigitalMediaRecord digitalMediaRecord) {
+		return insert.set(DIGITAL_MEDIA_OBJECT.ID, digitalMediaRecord.id())
 			.set(DIGITAL_MEDIA_OBJECT.TYPE, digitalMediaRecord.attributes().getOdsFdoType())
 			.set(DIGITAL_MEDIA_OBJECT.VERSION, digitalMediaRecord.version())
 			.set(DIGITAL_MEDIA_OBJECT.MEDIA_URL, digitalMediaRecord.attributes().getAcAccessURI())
@@ -83,28 +305,19 @@ public class DigitalMediaRepository {
 			.set(DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA, JSONB.jsonb(digitalMediaRecord.originalAttributes().toString()));
 	}
 
-	private Query updateDigitalMediaQuery(DigitalMediaRecord digitalMediaRecord) {
-		var updateQuery = context.update(DIGITAL_MEDIA_OBJECT)
-			.set(DIGITAL_MEDIA_OBJECT.TYPE, digitalMediaRecord.attributes().getOdsFdoType())
-			.set(DIGITAL_MEDIA_OBJECT.VERSION, digitalMediaRecord.version())
-			.set(DIGITAL_MEDIA_OBJECT.MEDIA_URL, digitalMediaRecord.attributes().getAcAccessURI())
-			.set(DIGITAL_MEDIA_OBJECT.CREATED, digitalMediaRecord.created())
-			.set(DIGITAL_MEDIA_OBJECT.LAST_CHECKED, Instant.now())
-			.set(DIGITAL_MEDIA_OBJECT.DATA, JSONB.jsonb(mapper.valueToTree(digitalMediaRecord.attributes()).toString()))
-			.set(DIGITAL_MEDIA_OBJECT.MODIFIED, Instant.now())
-			.set(DIGITAL_MEDIA_OBJECT.SOURCE_SYSTEM_ID, digitalMediaRecord.attributes().getOdsSourceSystemID());
-		if (Boolean.TRUE.equals(digitalMediaRecord.isDataFromSourceSystem())) {
-			updateQuery = updateQuery.set(DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA,
-					JSONB.jsonb(digitalMediaRecord.originalAttributes().toString()));
-		}
-		return updateQuery.where(DIGITAL_MEDIA_OBJECT.ID.eq(digitalMediaRecord.id()));
+	public List<String> getDigitalMediaUrlsByDoi(Set<String> mediaDois) {
+		return context.select(DIGITAL_MEDIA_OBJECT.MEDIA_URL)
+			.from(DIGITAL_MEDIA_OBJECT)
+			.where(DIGITAL_MEDIA_OBJECT.ID.eq(DSL.any(mediaDois.toArray(String[]::new))))
+			.fetch(DIGITAL_MEDIA_OBJECT.MEDIA_URL);
 	}
 
 	public List<DigitalMediaRecord> getExistingDigitalMediaByDoi(
 			Set<String> tombstonedDigitalSpecimenToDigitalMediaRelationship) {
 		return context.select(DIGITAL_MEDIA_OBJECT.asterisk())
 			.from(DIGITAL_MEDIA_OBJECT)
-			.where(DIGITAL_MEDIA_OBJECT.ID.in(tombstonedDigitalSpecimenToDigitalMediaRelationship))
+			.where(DIGITAL_MEDIA_OBJECT.ID
+				.eq(DSL.any(tombstonedDigitalSpecimenToDigitalMediaRelationship.toArray(String[]::new))))
 			.fetch(this::mapToDigitalMediaRecord);
 	}
 
@@ -2,24 +2,38 @@ package eu.dissco.core.digitalspecimenprocessor.repository;
 
 import static eu.dissco.core.digitalspecimenprocessor.database.jooq.Tables.DIGITAL_SPECIMEN;
 
-import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenEvent;
+import eu.dissco.core.digitalspecimenprocessor.domain.UpsertResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenRecord;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenWrapper;
 import eu.dissco.core.digitalspecimenprocessor.exception.DisscoRepositoryException;
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
 import eu.dissco.core.digitalspecimenprocessor.schema.DigitalSpecimen;
+import eu.dissco.core.digitalspecimenprocessor.schema.EntityRelationship;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.function.Consumer;
+import java.util.function.ToIntFunction;
+import java.util.stream.Collectors;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.jooq.Condition;
 import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.InsertSetMoreStep;
+import org.jooq.InsertSetStep;
 import org.jooq.JSONB;
-import org.jooq.Query;
 import org.jooq.Record;
 import org.jooq.exception.DataAccessException;
+import org.jooq.impl.DSL;
 import org.springframework.stereotype.Repository;
 import tools.jackson.core.JacksonException;
+import tools.jackson.core.type.TypeReference;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.json.JsonMapper;
 
@@ -32,13 +46,61 @@ public class DigitalSpecimenRepository {
 
 	private final JsonMapper mapper;
 
+	private final ApplicationProperties applicationProperties;
+
+	private static final Field<JSONB> ENTITY_RELATIONSHIPS = DSL
+		.jsonbGetAttribute(DIGITAL_SPECIMEN.DATA, "ods:hasEntityRelationships")
+		.as("entity_relationships");
+
+	private static final int STREAM_FETCH_SIZE = 10000;
+
+	// Only true for rows which were inserted, updated rows have the updating transaction as xmax
+	private static final Field<Boolean> INSERTED = DSL.field("(xmax = 0)", Boolean.class).as("inserted");
+
+	private static final List<Field<?>> COLUMNS = List.of(DIGITAL_SPECIMEN.ID, DIGITAL_SPECIMEN.TYPE,
+			DIGITAL_SPECIMEN.VERSION, DIGITAL_SPECIMEN.MIDSLEVEL, DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID,
+			DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_TYPE, DIGITAL_SPECIMEN.SPECIMEN_NAME, DIGITAL_SPECIMEN.ORGANIZATION_ID,
+			DIGITAL_SPECIMEN.SOURCE_SYSTEM_ID, DIGITAL_SPECIMEN.CREATED, DIGITAL_SPECIMEN.LAST_CHECKED,
+			DIGITAL_SPECIMEN.MODIFIED, DIGITAL_SPECIMEN.DATA, DIGITAL_SPECIMEN.CONTENT_HASH,
+			DIGITAL_SPECIMEN.ORIGINAL_DATA);
+
+	// The json columns are only parsed when the attributes of the record are accessed
 	private DigitalSpecimenRecord mapToDigitalSpecimenRecord(Record dbRecord) {
-		var digitalSpecimenWrapper = new DigitalSpecimenWrapper(dbRecord.get(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID),
-				dbRecord.get(DIGITAL_SPECIMEN.TYPE), mapToDigitalSpecimen(dbRecord.get(DIGITAL_SPECIMEN.DATA)),
-				mapToJson(dbRecord.get(DIGITAL_SPECIMEN.ORIGINAL_DATA)));
+		var data = dbRecord.get(DIGITAL_SPECIMEN.DATA);
+		var originalData = dbRecord.get(DIGITAL_SPECIMEN.ORIGINAL_DATA);
+		var digitalSpecimenWrapper = DigitalSpecimenWrapper.lazy(dbRecord.get(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID),
+				dbRecord.get(DIGITAL_SPECIMEN.TYPE), () -> mapToDigitalSpecimen(data), () -> mapToJson(originalData));
 		return new DigitalSpecimenRecord(dbRecord.get(DIGITAL_SPECIMEN.ID), dbRecord.get(DIGITAL_SPECIMEN.MIDSLEVEL),
 				dbRecord.get(DIGITAL_SPECIMEN.VERSION), dbRecord.get(DIGITAL_SPECIMEN.CREATED), digitalSpecimenWrapper,
-				null, null, null, List.of());
+				null, null, null, List.of(), dbRecord.get(DIGITAL_SPECIMEN.CONTENT_HASH));
+	}
+
+	/*
+	 * Maps the lightweight fingerprint select. The attributes only contain the entity
+	 * relationships, which we need to determine the media relationships, and there is no
+	 * original data.
+	 */
+	private DigitalSpecimenRecord mapToDigitalSpecimenFingerprint(Record dbRecord) {
+		var digitalSpecimenWrapper = DigitalSpecimenWrapper.fingerprint(
+				dbRecord.get(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID), dbRecord.get(DIGITAL_SPECIMEN.TYPE),
+				mapToEntityRelationships(dbRecord.get(ENTITY_RELATIONSHIPS)));
+		return new DigitalSpecimenRecord(dbRecord.get(DIGITAL_SPECIMEN.ID), dbRecord.get(DIGITAL_SPECIMEN.MIDSLEVEL),
+				dbRecord.get(DIGITAL_SPECIMEN.VERSION), dbRecord.get(DIGITAL_SPECIMEN.CREATED), digitalSpecimenWrapper,
+				null, null, null, List.of(), dbRecord.get(DIGITAL_SPECIMEN.CONTENT_HASH));
+	}
+
+	private List<EntityRelationship> mapToEntityRelationships(JSONB jsonb) {
+		if (jsonb == null) {
+			return new ArrayList<>();
+		}
+		try {
+			return mapper.readValue(jsonb.data(), new TypeReference<>() {
+			});
+		}
+		catch (JacksonException e) {
+			log.warn("Unable to map jsonb to entity relationships: {}", jsonb.data(), e);
+			return new ArrayList<>();
+		}
 	}
 
 	private DigitalSpecimen mapToDigitalSpecimen(JSONB jsonb) {
@@ -55,42 +117,205 @@ public class DigitalSpecimenRepository {
 		return mapper.readValue(jsonb.data(), JsonNode.class);
 	}
 
-	public int[] createDigitalSpecimenRecord(Set<DigitalSpecimenRecord> digitalSpecimenRecords) {
-		var queries = digitalSpecimenRecords.stream().map(this::createSpecimenQuery).toList();
-		return context.batch(queries).execute();
+	/*
+	 * Large batches of new specimens are copied into the table. If the copy fails, the
+	 * batch is upserted instead, so only the specimens the database rejects fail.
+	 */
+	public UpsertResult createDigitalSpecimenRecord(Set<DigitalSpecimenRecord> digitalSpecimenRecords) {
+		if (digitalSpecimenRecords.size() >= applicationProperties.getCopyInsertThreshold()) {
+			try {
+				Savepoints.isolate(context, () -> copyDigitalSpecimenRecords(digitalSpecimenRecords));
+				return new UpsertResult(digitalSpecimenRecords.stream()
+					.collect(Collectors.toMap(DigitalSpecimenRecord::id, DigitalSpecimenRecord::version)), Map.of(),
+						Set.of());
+			}
+			catch (DataAccessException e) {
+				log.warn("Unable to copy {} new specimens, upserting them instead", digitalSpecimenRecords.size(), e);
+			}
+		}
+		return upsertDigitalSpecimenRecords(digitalSpecimenRecords);
 	}
 
-	public int[] updateDigitalSpecimenRecord(Set<DigitalSpecimenRecord> digitalSpecimenRecords) {
-		var queries = digitalSpecimenRecords.stream().map(this::updateSpecimenQuery).toList();
-		return context.batch(queries).execute();
+	private long copyDigitalSpecimenRecords(Set<DigitalSpecimenRecord> digitalSpecimenRecords) {
+		log.debug("Copying {} new specimens into the database", digitalSpecimenRecords.size());
+		var now = Instant.now();
+		return BinaryCopyWriter.copyIn(context, DIGITAL_SPECIMEN, COLUMNS, writer -> {
+			for (var digitalSpecimenRecord : digitalSpecimenRecords) {
+				var wrapper = digitalSpecimenRecord.digitalSpecimenWrapper();
+				writer.startRow(COLUMNS.size());
+				writer.writeText(digitalSpecimenRecord.id());
+				writer.writeText(wrapper.type());
+				writer.writeInt(digitalSpecimenRecord.version());
+				writer.writeShort((short) digitalSpecimenRecord.midsLevel());
+				writer.writeText(wrapper.physicalSpecimenID());
+				writer.writeText(wrapper.attributes().getOdsPhysicalSpecimenIDType().value());
+				writer.writeText(wrapper.attributes().getOdsSpecimenName());
+				writer.writeText(wrapper.attributes().getOdsOrganisationID());
+				writer.writeText(wrapper.attributes().getOdsSourceSystemID());
+				writer.writeTimestamp(digitalSpecimenRecord.created());
+				writer.writeTimestamp(now);
+				writer.writeTimestamp(now);
+				writer.writeJsonb(mapToJsonB(digitalSpecimenRecord).data());
+				writer.writeUuid(digitalSpecimenRecord.contentHash());
+				writer.writeJsonb(wrapper.originalAttributes().toString());
+			}
+		});
 	}
 
-	private Query createSpecimenQuery(DigitalSpecimenRecord digitalSpecimenRecord) {
-		return context.insertInto(DIGITAL_SPECIMEN)
-			.set(DIGITAL_SPECIMEN.ID, digitalSpecimenRecord.id())
-			.set(DIGITAL_SPECIMEN.TYPE, digitalSpecimenRecord.digitalSpecimenWrapper().type())
-			.set(DIGITAL_SPECIMEN.VERSION, digitalSpecimenRecord.version())
-			.set(DIGITAL_SPECIMEN.MIDSLEVEL, (short) digitalSpecimenRecord.midsLevel())
-			.set(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID,
-					digitalSpecimenRecord.digitalSpecimenWrapper().physicalSpecimenID())
-			.set(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_TYPE,
-					digitalSpecimenRecord.digitalSpecimenWrapper().attributes().getOdsPhysicalSpecimenIDType().value())
-			.set(DIGITAL_SPECIMEN.SPECIMEN_NAME,
-					digitalSpecimenRecord.digitalSpecimenWrapper().attributes().getOdsSpecimenName())
-			.set(DIGITAL_SPECIMEN.ORGANIZATION_ID,
-					digitalSpecimenRecord.digitalSpecimenWrapper().attributes().getOdsOrganisationID())
-			.set(DIGITAL_SPECIMEN.SOURCE_SYSTEM_ID,
-					digitalSpecimenRecord.digitalSpecimenWrapper().attributes().getOdsSourceSystemID())
-			.set(DIGITAL_SPECIMEN.CREATED, digitalSpecimenRecord.created())
-			.set(DIGITAL_SPECIMEN.LAST_CHECKED, Instant.now())
-			.set(DIGITAL_SPECIMEN.MODIFIED, Instant.now())
-			.set(DIGITAL_SPECIMEN.DATA, mapToJsonB(digitalSpecimenRecord))
+	/*
+	 * Writes new specimens with a single INSERT ... ON CONFLICT DO UPDATE. A specimen which
+	 * has been created concurrently is only updated when the stored version precedes the
+	 * version of the record, others are not returned and end up as conflicting in the
+	 * result. Existing original data is only replaced by records from the source system, so
+	 * those are written in a separate statement.
+	 */
+	private UpsertResult upsertDigitalSpecimenRecords(Collection<DigitalSpecimenRecord> digitalSpecimenRecords) {
+		var recordsBySourceSystem = digitalSpecimenRecords.stream()
+			.collect(Collectors.partitioningBy(
+					digitalSpecimenRecord -> Boolean.TRUE.equals(digitalSpecimenRecord.isDataFromSourceSystem())));
+		return UpsertSplitter
+			.upsert(recordsBySourceSystem.get(true), DigitalSpecimenRecord::id,
+					records -> Savepoints.isolate(context, () -> upsertSpecimens(records, true)))
+			.merge(UpsertSplitter.upsert(recordsBySourceSystem.get(false), DigitalSpecimenRecord::id,
+					records -> Savepoints.isolate(context, () -> upsertSpecimens(records, false))));
+	}
+
+	private UpsertResult upsertSpecimens(List<DigitalSpecimenRecord> digitalSpecimenRecords,
+			boolean replaceOriginalData) {
+		InsertSetMoreStep<?> insert = null;
+		for (var digitalSpecimenRecord : digitalSpecimenRecords) {
+			if (insert == null) {
+				insert = setSpecimenValues(context.insertInto(DIGITAL_SPECIMEN), digitalSpecimenRecord);
+			}
+			else {
+				insert = setSpecimenValues(insert.newRecord(), digitalSpecimenRecord);
+			}
+		}
+		var updates = new HashMap<Field<?>, Field<?>>();
+		for (var column : COLUMNS) {
+			if (column != DIGITAL_SPECIMEN.ID && (replaceOriginalData || column != DIGITAL_SPECIMEN.ORIGINAL_DATA)) {
+				updates.put(column, DSL.excluded(column));
+			}
+		}
+		var rows = insert.onConflict(DIGITAL_SPECIMEN.ID)
+			.doUpdate()
+			.set(updates)
+			.where(DIGITAL_SPECIMEN.VERSION.eq(DSL.excluded(DIGITAL_SPECIMEN.VERSION).minus(1)))
+			.returningResult(DIGITAL_SPECIMEN.ID, DIGITAL_SPECIMEN.VERSION, INSERTED)
+			.fetch();
+		var created = new HashMap<String, Integer>();
+		var updated = new HashMap<String, Integer>();
+		for (var row : rows) {
+			if (Boolean.TRUE.equals(row.value3())) {
+				created.put(row.value1(), row.value2());
+			}
+			else {
+				updated.put(row.value1(), row.value2());
+			}
+		}
+		return new UpsertResult(created, updated, Set.of());
+	}
+
+	/*
+	 * Updates existing specimens with a single UPDATE ... FROM, joining on the unnested
+	 * arrays of the new values. A specimen is only updated when the stored version precedes
+	 * the version of the record, so concurrent updates can't overwrite each other and a
+	 * specimen deleted in the meantime is not inserted again. These end up as conflicting in
+	 * the result. Records not from the source system keep the stored original data.
+	 */
+	public UpsertResult updateDigitalSpecimenRecords(Collection<DigitalSpecimenRecord> digitalSpecimenRecords) {
+		return UpsertSplitter.upsert(List.copyOf(digitalSpecimenRecords), DigitalSpecimenRecord::id,
+				records -> Savepoints.isolate(context, () -> new UpsertResult(Map.of(),
+						updateSpecimens(records, digitalSpecimenRecord -> digitalSpecimenRecord.version() - 1),
+						Set.of())));
+	}
+
+	// Returns the ids and versions of the specimens which were at their expected version
+	private Map<String, Integer> updateSpecimens(Collection<DigitalSpecimenRecord> digitalSpecimenRecords,
+			ToIntFunction<DigitalSpecimenRecord> expectedVersion) {
+		var size = digitalSpecimenRecords.size();
+		var ids = new String[size];
+		var types = new String[size];
+		var versions = new Integer[size];
+		var expectedVersions = new Integer[size];
+		var midsLevels = new Short[size];
+		var physicalSpecimenIds = new String[size];
+		var physicalSpecimenTypes = new String[size];
+		var specimenNames = new String[size];
+		var organisationIds = new String[size];
+		var sourceSystemIds = new String[size];
+		var created = new String[size];
+		var data = new String[size];
+		var contentHashes = new UUID[size];
+		var originalData = new String[size];
+		var i = 0;
+		for (var digitalSpecimenRecord : digitalSpecimenRecords) {
+			var wrapper = digitalSpecimenRecord.digitalSpecimenWrapper();
+			ids[i] = digitalSpecimenRecord.id();
+			types[i] = wrapper.type();
+			versions[i] = digitalSpecimenRecord.version();
+			expectedVersions[i] = expectedVersion.applyAsInt(digitalSpecimenRecord);
+			midsLevels[i] = (short) digitalSpecimenRecord.midsLevel();
+			physicalSpecimenIds[i] = wrapper.physicalSpecimenID();
+			physicalSpecimenTypes[i] = wrapper.attributes().getOdsPhysicalSpecimenIDType().value();
+			specimenNames[i] = wrapper.attributes().getOdsSpecimenName();
+			organisationIds[i] = wrapper.attributes().getOdsOrganisationID();
+			sourceSystemIds[i] = wrapper.attributes().getOdsSourceSystemID();
+			created[i] = digitalSpecimenRecord.created().toString();
+			data[i] = mapToJsonB(digitalSpecimenRecord).data();
+			contentHashes[i] = digitalSpecimenRecord.contentHash();
+			if (Boolean.TRUE.equals(digitalSpecimenRecord.isDataFromSourceSystem())) {
+				originalData[i] = wrapper.originalAttributes().toString();
+			}
+			i++;
+		}
+		var updates = DSL
+			.table("unnest({0}::text[], {1}::text[], {2}::int[], {3}::int[], {4}::smallint[], {5}::text[], "
+					+ "{6}::text[], {7}::text[], {8}::text[], {9}::text[], {10}::timestamptz[], {11}::jsonb[], "
+					+ "{12}::uuid[], {13}::jsonb[])", DSL.val(ids), DSL.val(types), DSL.val(versions),
+					DSL.val(expectedVersions), DSL.val(midsLevels), DSL.val(physicalSpecimenIds),
+					DSL.val(physicalSpecimenTypes), DSL.val(specimenNames), DSL.val(organisationIds),
+					DSL.val(sourceSystemIds), DSL.val(created), DSL.val(data), DSL.val(contentHashes),
+					DSL.val(originalData))
+			.as("updates", "id", "type", "version", "expected_version", "midslevel", "physical_specimen_id",
+					"physical_specimen_type", "specimen_name", "organization_id", "source_system_id", "created",
+					"data", "content_hash", "original_data");
+		var now = Instant.now();
+		return context.update(DIGITAL_SPECIMEN)
+			.set(DIGITAL_SPECIMEN.TYPE, updatesField("type", String.class))
+			.set(DIGITAL_SPECIMEN.VERSION, updatesField("version", Integer.class))
+			.set(DIGITAL_SPECIMEN.MIDSLEVEL, updatesField("midslevel", Short.class))
+			.set(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID, updatesField("physical_specimen_id", String.class))
+			.set(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_TYPE, updatesField("physical_specimen_type", String.class))
+			.set(DIGITAL_SPECIMEN.SPECIMEN_NAME, updatesField("specimen_name", String.class))
+			.set(DIGITAL_SPECIMEN.ORGANIZATION_ID, updatesField("organization_id", String.class))
+			.set(DIGITAL_SPECIMEN.SOURCE_SYSTEM_ID, updatesField("source_system_id", String.class))
+			.set(DIGITAL_SPECIMEN.CREATED, updatesField("created", Instant.class))
+			.set(DIGITAL_SPECIMEN.MODIFIED, now)
+			.set(DIGITAL_SPECIMEN.LAST_CHECKED, now)
+			.set(DIGITAL_SPECIMEN.DATA, updatesField("data", JSONB.class))
+			.set(DIGITAL_SPECIMEN.CONTENT_HASH, updatesField("content_hash", UUID.class))
 			.set(DIGITAL_SPECIMEN.ORIGINAL_DATA,
-					JSONB.valueOf(digitalSpecimenRecord.digitalSpecimenWrapper().originalAttributes().toString()));
+					DSL.coalesce(updatesField("original_data", JSONB.class), DIGITAL_SPECIMEN.ORIGINAL_DATA))
+			.from(updates)
+			.where(DIGITAL_SPECIMEN.ID.eq(updatesField("id", String.class)))
+			.and(DIGITAL_SPECIMEN.VERSION.eq(updatesField("expected_version", Integer.class)))
+			.returningResult(DIGITAL_SPECIMEN.ID, DIGITAL_SPECIMEN.VERSION)
+			.fetchMap(DIGITAL_SPECIMEN.ID, DIGITAL_SPECIMEN.VERSION);
 	}
 
-	private Query updateSpecimenQuery(DigitalSpecimenRecord digitalSpecimenRecord) {
-		var query = context.update(DIGITAL_SPECIMEN)
+	private static <T> Field<T> updatesField(String column, Class<T> type) {
+		return DSL.field(DSL.name("updates", column), type);
+	}
+
+	// Restores the previous versions with one update, if the specimens are still at our version
+	public void rollbackDigitalSpecimenVersions(Collection<DigitalSpecimenRecord> previousDigitalSpecimenRecords) {
+		updateSpecimens(previousDigitalSpecimenRecords, previousRecord -> previousRecord.version() + 1);
+	}
+
+	private <R extends Record> InsertSetMoreStep<R> setSpecimenValues(InsertSetStep<R> insert,
+			DigitalSpecimenRecord digitalSpecimenRecord) {
+		return insert.set(DIGITAL_SPECIMEN.ID, digitalSpecimenRecord.id())
 			.set(DIGITAL_SPECIMEN.TYPE, digitalSpecimenRecord.digitalSpecimenWrapper().type())
 			.set(DIGITAL_SPECIMEN.VERSION, digitalSpecimenRecord.version())
 			.set(DIGITAL_SPECIMEN.MIDSLEVEL, (short) digitalSpecimenRecord.midsLevel())
@@ -105,14 +330,12 @@ public class DigitalSpecimenRepository {
 			.set(DIGITAL_SPECIMEN.SOURCE_SYSTEM_ID,
 					digitalSpecimenRecord.digitalSpecimenWrapper().attributes().getOdsSourceSystemID())
 			.set(DIGITAL_SPECIMEN.CREATED, digitalSpecimenRecord.created())
-			.set(DIGITAL_SPECIMEN.MODIFIED, Instant.now())
 			.set(DIGITAL_SPECIMEN.LAST_CHECKED, Instant.now())
-			.set(DIGITAL_SPECIMEN.DATA, mapToJsonB(digitalSpecimenRecord));
-		if (Boolean.TRUE.equals(digitalSpecimenRecord.isDataFromSourceSystem())) {
-			query = query.set(DIGITAL_SPECIMEN.ORIGINAL_DATA,
+			.set(DIGITAL_SPECIMEN.MODIFIED, Instant.now())
+			.set(DIGITAL_SPECIMEN.DATA, mapToJsonB(digitalSpecimenRecord))
+			.set(DIGITAL_SPECIMEN.CONTENT_HASH, digitalSpecimenRecord.contentHash())
+			.set(DIGITAL_SPECIMEN.ORIGINAL_DATA,
 					JSONB.valueOf(digitalSpecimenRecord.digitalSpecimenWrapper().originalAttributes().toString()));
-		}
-		return query.where(DIGITAL_SPECIMEN.ID.eq(digitalSpecimenRecord.id()));
 	}
 
 	private JSONB mapToJsonB(DigitalSpecimenRecord digitalSpecimenRecord) {
@@ -121,30 +344,158 @@ public class DigitalSpecimenRepository {
 			.replace("\\u0000", ""));
 	}
 
-	public void updateLastCheckedAndOriginalData(Map<String, DigitalSpecimenEvent> specimenMap) {
-		var queries = specimenMap.entrySet().stream().map(entry -> {
-			var query = context.update(DIGITAL_SPECIMEN).set(DIGITAL_SPECIMEN.LAST_CHECKED, Instant.now());
-			if (Boolean.TRUE.equals(entry.getValue().isDataFromSourceSystem())) {
-				query = query.set(DIGITAL_SPECIMEN.ORIGINAL_DATA,
-						JSONB.valueOf(entry.getValue().digitalSpecimenWrapper().originalAttributes().toString()));
-			}
-			return query.where(DIGITAL_SPECIMEN.ID.in(entry.getKey()));
-		}).toList();
-		context.batch(queries).execute();
+	/*
+	 * Updates all specimens in a single statement, joining on the unnested arrays of ids and
+	 * original data. Specimens without original data, as their event did not come from the
+	 * source system, keep their stored original data. Specimens modified after
+	 * queuedSince keep their original data, as it is newer than ours.
+	 */
+	public void updateLastCheckedAndOriginalData(Map<String, String> originalDataMap, Instant queuedSince) {
+		if (originalDataMap.isEmpty()) {
+			return;
+		}
+		var ids = new String[originalDataMap.size()];
+		var originalData = new String[originalDataMap.size()];
+		var i = 0;
+		for (var entry : originalDataMap.entrySet()) {
+			ids[i] = entry.getKey();
+			originalData[i] = entry.getValue();
+			i++;
+		}
+		var updates = DSL.table("unnest({0}::text[], {1}::text[])", DSL.val(ids), DSL.val(originalData))
+			.as("updates", "id", "original_data");
+		var updatedOriginalData = DSL.field("{0}::jsonb", JSONB.class, updatesField("original_data", String.class));
+		context.update(DIGITAL_SPECIMEN)
+			.set(DIGITAL_SPECIMEN.LAST_CHECKED, Instant.now())
+			.set(DIGITAL_SPECIMEN.ORIGINAL_DATA,
+					DSL.when(DIGITAL_SPECIMEN.MODIFIED.gt(queuedSince), DIGITAL_SPECIMEN.ORIGINAL_DATA)
+						.otherwise(DSL.coalesce(updatedOriginalData, DIGITAL_SPECIMEN.ORIGINAL_DATA)))
+			.from(updates)
+			.where(DIGITAL_SPECIMEN.ID.eq(updatesField("id", String.class)))
+			.execute();
+	}
+
+	// Stores the content hashes in a single statement, joining on the unnested ids and hashes
+	public void updateContentHash(Map<String, UUID> contentHashes) {
+		if (contentHashes.isEmpty()) {
+			return;
+		}
+		var ids = new String[contentHashes.size()];
+		var hashes = new UUID[contentHashes.size()];
+		var i = 0;
+		for (var entry : contentHashes.entrySet()) {
+			ids[i] = entry.getKey();
+			hashes[i] = entry.getValue();
+			i++;
+		}
+		var updates = DSL.table("unnest({0}::text[], {1}::uuid[])", DSL.val(ids), DSL.val(hashes))
+			.as("updates", "id", "content_hash");
+		context.update(DIGITAL_SPECIMEN)
+			.set(DIGITAL_SPECIMEN.CONTENT_HASH, updatesField("content_hash", UUID.class))
+			.from(updates)
+			.where(DIGITAL_SPECIMEN.ID.eq(updatesField("id", String.class)))
+			.execute();
 	}
 
 	public List<DigitalSpecimenRecord> getDigitalSpecimens(List<String> specimenList) throws DisscoRepositoryException {
 		try {
+			var physicalSpecimenIds = Set.copyOf(specimenList);
 			return context.select(DIGITAL_SPECIMEN.asterisk())
 				.from(DIGITAL_SPECIMEN)
-				.where(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID.in(specimenList))
-				.fetch(this::mapToDigitalSpecimenRecord);
+				.where(physicalSpecimenIdHashIn(physicalSpecimenIds))
+				.fetch()
+				.stream()
+				.filter(dbRecord -> physicalSpecimenIds.contains(dbRecord.get(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID)))
+				.map(this::mapToDigitalSpecimenRecord)
+				.toList();
 		}
 		catch (DataAccessException _) {
 			throw new DisscoRepositoryException("Failed to get specimen from repository: " + specimenList);
 		}
 	}
 
+	/*
+	 * Retrieves only the identifying columns, the content hash and the entity
+	 * relationships of the existing specimens. Full records can be retrieved with
+	 * getDigitalSpecimens for the specimens that need them.
+	 */
+	public List<DigitalSpecimenRecord> getDigitalSpecimenFingerprints(List<String> specimenList)
+			throws DisscoRepositoryException {
+		try {
+			var physicalSpecimenIds = Set.copyOf(specimenList);
+			return context
+				.select(DIGITAL_SPECIMEN.ID, DIGITAL_SPECIMEN.VERSION, DIGITAL_SPECIMEN.TYPE, DIGITAL_SPECIMEN.MIDSLEVEL,
+						DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID, DIGITAL_SPECIMEN.CREATED, DIGITAL_SPECIMEN.CONTENT_HASH,
+						ENTITY_RELATIONSHIPS)
+				.from(DIGITAL_SPECIMEN)
+				.where(physicalSpecimenIdHashIn(physicalSpecimenIds))
+				.fetch()
+				.stream()
+				.filter(dbRecord -> physicalSpecimenIds.contains(dbRecord.get(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID)))
+				.map(this::mapToDigitalSpecimenFingerprint)
+				.toList();
+		}
+		catch (DataAccessException _) {
+			throw new DisscoRepositoryException("Failed to get specimen fingerprints from repository: " + specimenList);
+		}
+	}
+
+	// Only reads the ids, to confirm which of them exist without retrieving the specimens
+	public Set<String> getExistingPhysicalSpecimenIds(Set<String> physicalSpecimenIds)
+			throws DisscoRepositoryException {
+		try {
+			return context.select(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID)
+				.from(DIGITAL_SPECIMEN)
+				.where(physicalSpecimenIdHashIn(physicalSpecimenIds))
+				.fetchSet(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID)
+				.stream()
+				.filter(physicalSpecimenIds::contains)
+				.collect(Collectors.toSet());
+		}
+		catch (DataAccessException _) {
+			throw new DisscoRepositoryException(
+					"Failed to check existing specimens in repository: " + physicalSpecimenIds);
+		}
+	}
+
+	/*
+	 * Physical specimen ids are matched on their indexed hash with a single array parameter.
+	 * As ids can share a hash, the results still have to be filtered on the id itself.
+	 */
+	private static Condition physicalSpecimenIdHashIn(Set<String> physicalSpecimenIds) {
+		return DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID_HASH.eq(DSL.any(LookupHash.of(physicalSpecimenIds)));
+	}
+
+	public Map<String, Integer> getDigitalSpecimenVersions(Collection<String> ids) throws DisscoRepositoryException {
+		try {
+			return context.select(DIGITAL_SPECIMEN.ID, DIGITAL_SPECIMEN.VERSION)
+				.from(DIGITAL_SPECIMEN)
+				.where(DIGITAL_SPECIMEN.ID.eq(DSL.any(ids.toArray(String[]::new))))
+				.fetchMap(DIGITAL_SPECIMEN.ID, DIGITAL_SPECIMEN.VERSION);
+		}
+		catch (DataAccessException _) {
+			throw new DisscoRepositoryException("Failed to get specimen versions from repository: " + ids);
+		}
+	}
+
+	/*
+	 * Streams the physical specimen id of all specimens created since the given time, or of
+	 * all specimens without one. Rows are read with a cursor, which Postgres only supports
+	 * within a transaction.
+	 */
+	public void streamPhysicalSpecimenIds(Instant createdSince, Consumer<String> consumer) {
+		context.transaction(configuration -> {
+			try (var cursor = configuration.dsl()
+				.select(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID)
+				.from(DIGITAL_SPECIMEN)
+				.where(createdSince == null ? DSL.noCondition() : DIGITAL_SPECIMEN.CREATED.ge(createdSince))
+				.fetchSize(STREAM_FETCH_SIZE)
+				.fetchLazy()) {
+				cursor.forEach(dbRecord -> consumer.accept(dbRecord.value1()));
+			}
+		});
+	}
+
 	public DigitalSpecimenRecord getDigitalSpecimenById(String id) {
 		return context.select(DIGITAL_SPECIMEN.asterisk())
 			.from(DIGITAL_SPECIMEN)
@@ -152,8 +503,21 @@ public class DigitalSpecimenRepository {
 			.fetchSingle(this::mapToDigitalSpecimenRecord);
 	}
 
-	public void rollbackSpecimen(String pid) {
-		context.delete(DIGITAL_SPECIMEN).where(DIGITAL_SPECIMEN.ID.eq(pid)).execute();
+	/*
+	 * Deletes the created specimens, if they have not been updated since. The ids and
+	 * created versions are bound as two arrays and joined with DELETE ... USING, so the
+	 * statement is the same for every number of specimens.
+	 */
+	public void rollbackSpecimens(Collection<DigitalSpecimenRecord> digitalSpecimenRecords) {
+		var ids = digitalSpecimenRecords.stream().map(DigitalSpecimenRecord::id).toArray(String[]::new);
+		var versions = digitalSpecimenRecords.stream().map(DigitalSpecimenRecord::version).toArray(Integer[]::new);
+		var created = DSL.table("unnest({0}::text[], {1}::int[])", DSL.val(ids), DSL.val(versions))
+			.as("created", "id", "version");
+		context.delete(DIGITAL_SPECIMEN)
+			.using(created)
+			.where(DIGITAL_SPECIMEN.ID.eq(DSL.field(DSL.name("created", "id"), String.class)))
+			.and(DIGITAL_SPECIMEN.VERSION.eq(DSL.field(DSL.name("created", "version"), Integer.class)))
+			.execute();
 	}
 
 }
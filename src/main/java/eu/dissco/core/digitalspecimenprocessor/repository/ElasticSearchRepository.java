@@ -3,61 +3,310 @@ package eu.dissco.core.digitalspecimenprocessor.repository;
 import static eu.dissco.core.digitalspecimenprocessor.util.DigitalObjectUtils.DOI_PROXY;
 import static eu.dissco.core.digitalspecimenprocessor.util.DigitalObjectUtils.flattenToDigitalMedia;
 import static eu.dissco.core.digitalspecimenprocessor.util.DigitalObjectUtils.flattenToDigitalSpecimen;
+import static java.util.concurrent.TimeUnit.MILLISECONDS;
 
+import co.elastic.clients.elasticsearch.ElasticsearchAsyncClient;
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch._types.VersionType;
 import co.elastic.clients.elasticsearch.core.BulkRequest;
 import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkOperation;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.util.BinaryData;
+import co.elastic.clients.util.ContentType;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaRecord;
+import eu.dissco.core.digitalspecimenprocessor.domain.outbox.OutboxMessage;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenRecord;
 import eu.dissco.core.digitalspecimenprocessor.property.ElasticSearchProperties;
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.IntStream;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Repository;
 
+@Slf4j
 @Repository
 @RequiredArgsConstructor
 public class ElasticSearchRepository {
 
+	// Approximate size of the action line which precedes each document, excluding index and id
+	private static final int ACTION_OVERHEAD_BYTES = 32;
+
+	// Item failures of a saturated cluster, which are likely to succeed when retried
+	private static final int TOO_MANY_REQUESTS = 429;
+
+	private static final String REJECTED_EXECUTION = "es_rejected_execution_exception";
+
 	private final ElasticsearchClient client;
 
 	private final ElasticSearchProperties properties;
 
 	public BulkResponse indexDigitalSpecimen(Set<DigitalSpecimenRecord> digitalSpecimenRecords) throws IOException {
-		var bulkRequest = new BulkRequest.Builder();
-		for (var digitalSpecimenrecord : digitalSpecimenRecords) {
-			var digitalSpecimen = flattenToDigitalSpecimen(digitalSpecimenrecord);
-			bulkRequest.operations(op -> op.index(idx -> idx.index(properties.getSpecimenIndexName())
-				.id(digitalSpecimen.getId())
-				.document(digitalSpecimen)));
-		}
-		return client.bulk(bulkRequest.build());
+		return bulk(specimenOperations(digitalSpecimenRecords));
+	}
+
+	public CompletableFuture<BulkResponse> indexDigitalSpecimenAsync(
+			Set<DigitalSpecimenRecord> digitalSpecimenRecords) {
+		return bulkAsync(specimenOperations(digitalSpecimenRecords));
 	}
 
-	public void rollbackObject(String id, boolean isSpecimen) throws IOException {
+	public BulkResponse rollbackObjects(Collection<String> ids, boolean isSpecimen) throws IOException {
 		var index = isSpecimen ? properties.getSpecimenIndexName() : properties.getMediaIndexName();
-		client.delete(d -> d.index(index).id(DOI_PROXY + id));
+		var operations = new ArrayList<SizedOperation>();
+		for (var id : ids) {
+			var documentId = DOI_PROXY + id;
+			operations.add(new SizedOperation(BulkOperation.of(op -> op.delete(d -> d.index(index).id(documentId))),
+					index.length() + documentId.length() + ACTION_OVERHEAD_BYTES));
+		}
+		return bulk(operations);
 	}
 
-	public void rollbackVersion(DigitalSpecimenRecord currentDigitalSpecimen) throws IOException {
-		var digitalSpecimen = flattenToDigitalSpecimen(currentDigitalSpecimen);
-		client.index(
-				i -> i.index(properties.getSpecimenIndexName()).id(digitalSpecimen.getId()).document(digitalSpecimen));
+	// Restores the documents of the current versions, which the failed update replaced
+	public BulkResponse rollbackSpecimenVersions(Collection<DigitalSpecimenRecord> currentDigitalSpecimens)
+			throws IOException {
+		return bulk(specimenOperations(currentDigitalSpecimens));
 	}
 
-	public void rollbackVersion(DigitalMediaRecord currentDigitalMediaRecord) throws IOException {
-		var digitalMedia = flattenToDigitalMedia(currentDigitalMediaRecord);
-		client.index(i -> i.index(properties.getMediaIndexName()).id(digitalMedia.getId()).document(digitalMedia));
+	public BulkResponse rollbackMediaVersions(Collection<DigitalMediaRecord> currentDigitalMediaRecords)
+			throws IOException {
+		return bulk(mediaOperations(currentDigitalMediaRecords));
 	}
 
 	public BulkResponse indexDigitalMedia(Set<DigitalMediaRecord> digitalMediaRecords) throws IOException {
-		var bulkRequest = new BulkRequest.Builder();
+		return bulk(mediaOperations(digitalMediaRecords));
+	}
+
+	public CompletableFuture<BulkResponse> indexDigitalMediaAsync(Set<DigitalMediaRecord> digitalMediaRecords) {
+		return bulkAsync(mediaOperations(digitalMediaRecords));
+	}
+
+	/*
+	 * Documents stored in the outbox are already serialised and are indexed as they are. The
+	 * record version is their external version, so an older version never replaces a newer one.
+	 */
+	public BulkResponse indexDocuments(List<OutboxMessage> messages) throws IOException {
+		var operations = new ArrayList<SizedOperation>();
+		for (var message : messages) {
+			var data = BinaryData.of(message.payload().getBytes(StandardCharsets.UTF_8), ContentType.APPLICATION_JSON);
+			operations.add(sizedOperation(message.target(), message.key(), message.version(), data));
+		}
+		return bulk(operations);
+	}
+
+	private List<SizedOperation> specimenOperations(Collection<DigitalSpecimenRecord> digitalSpecimenRecords) {
+		var operations = new ArrayList<SizedOperation>();
+		for (var digitalSpecimenrecord : digitalSpecimenRecords) {
+			var digitalSpecimen = flattenToDigitalSpecimen(digitalSpecimenrecord);
+			operations.add(indexOperation(properties.getSpecimenIndexName(), digitalSpecimen.getId(), digitalSpecimen));
+		}
+		return operations;
+	}
+
+	private List<SizedOperation> mediaOperations(Collection<DigitalMediaRecord> digitalMediaRecords) {
+		var operations = new ArrayList<SizedOperation>();
 		for (var digitalMediaRecord : digitalMediaRecords) {
 			var digitalMedia = flattenToDigitalMedia(digitalMediaRecord);
-			bulkRequest.operations(op -> op.index(
-					idx -> idx.index(properties.getMediaIndexName()).id(digitalMedia.getId()).document(digitalMedia)));
+			operations.add(indexOperation(properties.getMediaIndexName(), digitalMedia.getId(), digitalMedia));
+		}
+		return operations;
+	}
+
+	/*
+	 * Documents are serialised once, so their size is known when splitting and the same bytes
+	 * are sent to elastic.
+	 */
+	private SizedOperation indexOperation(String index, String id, Object document) {
+		return sizedOperation(index, id, null, BinaryData.of(document, client._jsonpMapper()));
+	}
+
+	private static SizedOperation sizedOperation(String index, String id, Integer externalVersion,
+			BinaryData data) {
+		var operation = BulkOperation.of(op -> op.index(idx -> {
+			idx.index(index).id(id).document(data);
+			if (externalVersion != null) {
+				idx.version(externalVersion.longValue()).versionType(VersionType.External);
+			}
+			return idx;
+		}));
+		return new SizedOperation(operation, data.size() + index.length() + id.length() + ACTION_OVERHEAD_BYTES);
+	}
+
+	/*
+	 * Retries items rejected by an overloaded cluster with exponential backoff and full jitter
+	 * until they succeed or the time budget is spent. Retried items replace their earlier
+	 * result, so only permanent failures, and rejections outlasting the budget, are rolled back.
+	 */
+	private BulkResponse bulk(List<SizedOperation> operations) throws IOException {
+		var response = send(operations);
+		var deadline = System.nanoTime() + MILLISECONDS.toNanos(properties.getBulkRetryTimeBudgetMillis());
+		var retryable = retryableItems(response.items());
+		var attempt = 0;
+		while (!retryable.isEmpty()) {
+			var backoff = backoffMillis(attempt);
+			if (budgetSpent(deadline, backoff, retryable.size(), attempt)) {
+				break;
+			}
+			pause(backoff);
+			attempt++;
+			log.info("Retrying {} items rejected by elastic, attempt {}", retryable.size(), attempt);
+			var retryResponse = send(retryable.stream().map(operations::get).toList());
+			response = replaceItems(response, retryable, retryResponse);
+			retryable = retryableItems(response.items());
+		}
+		return response;
+	}
+
+	// Same as bulk, without blocking a thread while waiting for elastic or backing off
+	private CompletableFuture<BulkResponse> bulkAsync(List<SizedOperation> operations) {
+		var deadline = System.nanoTime() + MILLISECONDS.toNanos(properties.getBulkRetryTimeBudgetMillis());
+		return sendChunks(partition(operations))
+			.thenCompose(response -> retryAsync(operations, response, deadline, 0));
+	}
+
+	private CompletableFuture<BulkResponse> retryAsync(List<SizedOperation> operations, BulkResponse response,
+			long deadline, int attempt) {
+		var retryable = retryableItems(response.items());
+		if (retryable.isEmpty()) {
+			return CompletableFuture.completedFuture(response);
 		}
-		return client.bulk(bulkRequest.build());
+		var backoff = backoffMillis(attempt);
+		if (budgetSpent(deadline, backoff, retryable.size(), attempt)) {
+			return CompletableFuture.completedFuture(response);
+		}
+		var retryOperations = retryable.stream().map(operations::get).toList();
+		var nextAttempt = attempt + 1;
+		return CompletableFuture
+			.runAsync(() -> log.info("Retrying {} rejected items, attempt {}", retryable.size(), nextAttempt),
+					CompletableFuture.delayedExecutor(backoff, MILLISECONDS))
+			.thenCompose(_ -> sendChunks(partition(retryOperations)))
+			.thenCompose(retryResponse -> retryAsync(operations, replaceItems(response, retryable, retryResponse),
+					deadline, nextAttempt));
+	}
+
+	private static boolean budgetSpent(long deadline, long backoff, int retryableItems, int attempt) {
+		if (System.nanoTime() + MILLISECONDS.toNanos(backoff) > deadline) {
+			log.warn("Retry budget spent, {} items remain rejected by elastic after {} retries", retryableItems,
+					attempt);
+			return true;
+		}
+		return false;
+	}
+
+	private static List<Integer> retryableItems(List<BulkResponseItem> items) {
+		return IntStream.range(0, items.size()).filter(i -> isRetryable(items.get(i))).boxed().toList();
+	}
+
+	private static boolean isRetryable(BulkResponseItem item) {
+		return item.error() != null
+				&& (item.status() == TOO_MANY_REQUESTS || REJECTED_EXECUTION.equals(item.error().type()));
+	}
+
+	private long backoffMillis(int attempt) {
+		var ceiling = Math.min(properties.getBulkRetryMaxBackoffMillis(),
+				properties.getBulkRetryInitialBackoffMillis() << Math.min(attempt, 20));
+		return ThreadLocalRandom.current().nextLong(ceiling + 1);
+	}
+
+	private static void pause(long millis) throws InterruptedIOException {
+		try {
+			Thread.sleep(millis);
+		}
+		catch (InterruptedException _) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("Interrupted while backing off from elastic");
+		}
+	}
+
+	private static BulkResponse replaceItems(BulkResponse response, List<Integer> positions,
+			BulkResponse retryResponse) {
+		var items = new ArrayList<>(response.items());
+		for (var i = 0; i < positions.size(); i++) {
+			items.set(positions.get(i), retryResponse.items().get(i));
+		}
+		return BulkResponse.of(b -> b.items(items)
+			.errors(items.stream().anyMatch(item -> item.error() != null))
+			.took(response.took() + retryResponse.took()));
+	}
+
+	/*
+	 * Sends the operations in chunks bounded by bytes and documents. The responses are merged
+	 * in order of the operations, so callers can treat the result as a single bulk response.
+	 */
+	private BulkResponse send(List<SizedOperation> operations) throws IOException {
+		var chunks = partition(operations);
+		if (chunks.size() == 1) {
+			return client.bulk(BulkRequest.of(b -> b.operations(chunks.getFirst())));
+		}
+		try {
+			return sendChunks(chunks).join();
+		}
+		catch (CompletionException e) {
+			if (e.getCause() instanceof IOException ioException) {
+				throw ioException;
+			}
+			if (e.getCause() instanceof RuntimeException runtimeException) {
+				throw runtimeException;
+			}
+			throw new IOException(e.getCause());
+		}
+	}
+
+	private List<List<BulkOperation>> partition(List<SizedOperation> operations) {
+		var chunks = new ArrayList<List<BulkOperation>>();
+		var chunk = new ArrayList<BulkOperation>();
+		var chunkBytes = 0L;
+		for (var operation : operations) {
+			if (!chunk.isEmpty() && (chunk.size() >= properties.getBulkMaxDocuments()
+					|| chunkBytes + operation.bytes() > properties.getBulkMaxBytes())) {
+				chunks.add(chunk);
+				chunk = new ArrayList<>();
+				chunkBytes = 0L;
+			}
+			chunk.add(operation.operation());
+			chunkBytes += operation.bytes();
+		}
+		chunks.add(chunk);
+		return chunks;
+	}
+
+	/*
+	 * Each chunk is sent once the chunk the maximum number of requests before it has
+	 * completed, which bounds the requests in flight. The result only completes after every
+	 * request has, so no chunk is still being indexed when the caller rolls back.
+	 */
+	private CompletableFuture<BulkResponse> sendChunks(List<List<BulkOperation>> chunks) {
+		var asyncClient = new ElasticsearchAsyncClient(client._transport(), client._transportOptions());
+		var maxConcurrentRequests = properties.getBulkMaxConcurrentRequests();
+		var responses = new ArrayList<CompletableFuture<BulkResponse>>();
+		for (var i = 0; i < chunks.size(); i++) {
+			var chunk = chunks.get(i);
+			CompletableFuture<?> previous = i < maxConcurrentRequests ? CompletableFuture.completedFuture(null)
+					: responses.get(i - maxConcurrentRequests);
+			responses.add(previous.handle((_, _) -> chunk)
+				.thenCompose(operations -> asyncClient.bulk(BulkRequest.of(b -> b.operations(operations)))));
+		}
+		return CompletableFuture.allOf(responses.toArray(CompletableFuture[]::new))
+			.thenApply(_ -> merge(responses));
+	}
+
+	private static BulkResponse merge(List<CompletableFuture<BulkResponse>> responses) {
+		var bulkResponses = responses.stream().map(CompletableFuture::join).toList();
+		return BulkResponse.of(b -> b.items(bulkResponses.stream().flatMap(r -> r.items().stream()).toList())
+			.errors(bulkResponses.stream().anyMatch(BulkResponse::errors))
+			.took(bulkResponses.stream().mapToLong(BulkResponse::took).sum()));
+	}
+
+	private record SizedOperation(BulkOperation operation, long bytes) {
+
 	}
 
 }
@@ -0,0 +1,41 @@
+package eu.dissco.core.digitalspecimenprocessor.repository;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collection;
+import java.util.UUID;
+
+/*
+ * Computes the hash columns used to look up specimens by physical specimen id and media by
+ * url. The columns are generated by the database as md5(value)::uuid, so the hash is the
+ * plain MD5 digest of the UTF-8 bytes, without the version bits of a name based UUID.
+ * Different values can share a hash, so the looked up rows have to be compared on the
+ * original value as well.
+ */
+class LookupHash {
+
+	private LookupHash() {
+	}
+
+	static UUID of(String value) {
+		var digest = md5().digest(value.getBytes(StandardCharsets.UTF_8));
+		var buffer = ByteBuffer.wrap(digest);
+		return new UUID(buffer.getLong(), buffer.getLong());
+	}
+
+	static UUID[] of(Collection<String> values) {
+		return values.stream().distinct().map(LookupHash::of).toArray(UUID[]::new);
+	}
+
+	private static MessageDigest md5() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException("MD5 is not available", e);
+		}
+	}
+
+}
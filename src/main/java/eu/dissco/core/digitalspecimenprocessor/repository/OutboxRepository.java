@@ -0,0 +1,127 @@
+package eu.dissco.core.digitalspecimenprocessor.repository;
+
+import eu.dissco.core.digitalspecimenprocessor.domain.outbox.OutboxDestination;
+import eu.dissco.core.digitalspecimenprocessor.domain.outbox.OutboxMessage;
+import java.time.Duration;
+import java.time.OffsetDateTime;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.DSLContext;
+import org.jooq.Field;
+import org.jooq.Record;
+import org.jooq.Table;
+import org.jooq.impl.DSL;
+import org.jooq.impl.SQLDataType;
+import org.springframework.stereotype.Repository;
+
+@Repository
+@RequiredArgsConstructor
+@Slf4j
+public class OutboxRepository {
+
+	// The outbox is not part of the generated schema
+	private static final Table<Record> OUTBOX = DSL.table(DSL.name("outbox"));
+
+	private static final Field<Long> ID = DSL.field(DSL.name("id"), SQLDataType.BIGINT);
+
+	private static final Field<String> DESTINATION = DSL.field(DSL.name("destination"), SQLDataType.CLOB);
+
+	private static final Field<String> TARGET = DSL.field(DSL.name("target"), SQLDataType.CLOB);
+
+	private static final Field<String> MESSAGE_KEY = DSL.field(DSL.name("message_key"), SQLDataType.CLOB);
+
+	private static final Field<Integer> VERSION = DSL.field(DSL.name("version"), SQLDataType.INTEGER);
+
+	private static final Field<String> PAYLOAD = DSL.field(DSL.name("payload"), SQLDataType.CLOB);
+
+	private static final Field<Integer> ATTEMPTS = DSL.field(DSL.name("attempts"), SQLDataType.INTEGER);
+
+	private static final Field<OffsetDateTime> CLAIMED_UNTIL = DSL.field(DSL.name("claimed_until"),
+			SQLDataType.TIMESTAMPWITHTIMEZONE);
+
+	private static final List<Field<?>> COLUMNS = List.of(DESTINATION, TARGET, MESSAGE_KEY, VERSION, PAYLOAD);
+
+	private final DSLContext context;
+
+	/*
+	 * Joins the transaction of the caller, so the messages are only stored with the records.
+	 * Batches hold two messages per object, so they are copied in rather than bound.
+	 */
+	public void insertMessages(Collection<OutboxMessage> messages) {
+		if (messages.isEmpty()) {
+			return;
+		}
+		BinaryCopyWriter.copyIn(context, OUTBOX, COLUMNS, writer -> {
+			for (var message : messages) {
+				writer.startRow(COLUMNS.size());
+				writer.writeText(message.destination().name());
+				writer.writeText(message.target());
+				writer.writeText(message.key());
+				if (message.version() == null) {
+					writer.writeNull();
+				}
+				else {
+					writer.writeInt(message.version());
+				}
+				writer.writeText(message.payload());
+			}
+		});
+	}
+
+	/*
+	 * Claims the oldest unclaimed messages and passes them to the relay, outside of a
+	 * transaction so no rows stay locked while elastic and RabbitMQ are called. Messages whose
+	 * ids are returned are removed, the others are released for the next attempt. Messages of
+	 * a relay which stopped halfway are claimed again once their claim has expired. A message
+	 * is removed only after it has been relayed, so it is relayed at least once.
+	 */
+	public int relayMessages(int limit, Duration claim, Function<List<OutboxMessage>, Set<Long>> relay) {
+		var messages = claimMessages(limit, claim);
+		if (messages.isEmpty()) {
+			return 0;
+		}
+		var relayed = relay.apply(messages);
+		context.deleteFrom(OUTBOX).where(ID.eq(DSL.any(relayed.toArray(Long[]::new)))).execute();
+		var failed = messages.stream()
+			.map(OutboxMessage::id)
+			.filter(id -> !relayed.contains(id))
+			.toArray(Long[]::new);
+		if (failed.length > 0) {
+			log.warn("Failed to relay {} outbox messages, they will be retried", failed.length);
+			context.update(OUTBOX)
+				.set(ATTEMPTS, ATTEMPTS.plus(1))
+				.setNull(CLAIMED_UNTIL)
+				.where(ID.eq(DSL.any(failed)))
+				.execute();
+		}
+		return relayed.size();
+	}
+
+	// A single statement, skipping the rows another relay is claiming at the same moment
+	private List<OutboxMessage> claimMessages(int limit, Duration claim) {
+		var claimable = DSL.select(ID)
+			.from(OUTBOX)
+			.where(CLAIMED_UNTIL.isNull().or(CLAIMED_UNTIL.lt(DSL.currentOffsetDateTime())))
+			.orderBy(ID)
+			.limit(limit)
+			.forUpdate()
+			.skipLocked();
+		var claimedUntil = DSL.field("now() + {0}::interval", OffsetDateTime.class,
+				DSL.val(claim.toMillis() + " milliseconds"));
+		return context.update(OUTBOX)
+			.set(CLAIMED_UNTIL, claimedUntil)
+			.where(ID.in(claimable))
+			.returningResult(ID, DESTINATION, TARGET, MESSAGE_KEY, VERSION, PAYLOAD)
+			.fetch(dbRecord -> new OutboxMessage(dbRecord.get(ID), OutboxDestination.valueOf(dbRecord.get(DESTINATION)),
+					dbRecord.get(TARGET), dbRecord.get(MESSAGE_KEY), dbRecord.get(VERSION), dbRecord.get(PAYLOAD)))
+			.stream()
+			.sorted(Comparator.comparing(OutboxMessage::id))
+			.toList();
+	}
+
+}
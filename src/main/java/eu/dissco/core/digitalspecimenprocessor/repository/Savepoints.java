@@ -0,0 +1,25 @@
+package eu.dissco.core.digitalspecimenprocessor.repository;
+
+import java.util.function.Supplier;
+import org.jooq.DSLContext;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/*
+ * A statement the database rejects aborts the transaction it runs in. Statements which are
+ * allowed to fail, such as the halves of a split upsert, run in a savepoint when a
+ * transaction is active, so the rest of the transaction can continue. Outside a
+ * transaction they run as they are.
+ */
+class Savepoints {
+
+	private Savepoints() {
+	}
+
+	static <T> T isolate(DSLContext context, Supplier<T> statement) {
+		if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+			return statement.get();
+		}
+		return context.transactionResult(_ -> statement.get());
+	}
+
+}
@@ -0,0 +1,49 @@
+package eu.dissco.core.digitalspecimenprocessor.repository;
+
+import eu.dissco.core.digitalspecimenprocessor.domain.UpsertResult;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Function;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.exception.DataAccessException;
+import org.jooq.exception.SQLStateClass;
+
+/*
+ * Runs a multi-row upsert and isolates the rows the database rejects. A multi-row statement
+ * fails as a whole, so when a row violates a constraint or contains invalid data, the batch
+ * is split in halves which are retried separately, until the failing rows are on their own.
+ * Other errors, such as connection failures, are not caused by a row and are rethrown.
+ */
+@Slf4j
+class UpsertSplitter {
+
+	private static final Set<SQLStateClass> ROW_ERRORS = Set.of(SQLStateClass.C21_CARDINALITY_VIOLATION,
+			SQLStateClass.C22_DATA_EXCEPTION, SQLStateClass.C23_INTEGRITY_CONSTRAINT_VIOLATION);
+
+	private UpsertSplitter() {
+	}
+
+	static <T> UpsertResult upsert(List<T> records, Function<T, String> idFunction,
+			Function<List<T>, UpsertResult> upsertFunction) {
+		if (records.isEmpty()) {
+			return new UpsertResult();
+		}
+		try {
+			return upsertFunction.apply(records);
+		}
+		catch (DataAccessException e) {
+			if (!ROW_ERRORS.contains(e.sqlStateClass())) {
+				throw e;
+			}
+			if (records.size() == 1) {
+				var id = idFunction.apply(records.getFirst());
+				log.error("Database rejected record {}: {}", id, e.getMessage());
+				return UpsertResult.failed(id);
+			}
+			var half = records.size() / 2;
+			return upsert(records.subList(0, half), idFunction, upsertFunction)
+				.merge(upsert(records.subList(half, records.size()), idFunction, upsertFunction));
+		}
+	}
+
+}
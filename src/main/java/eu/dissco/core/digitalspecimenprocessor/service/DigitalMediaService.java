@@ -5,7 +5,11 @@ import static eu.dissco.core.digitalspecimenprocessor.util.DigitalObjectUtils.ge
 import static java.util.stream.Collectors.toSet;
 
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
 import com.flipkart.zjsonpatch.Jackson3JsonDiff;
+import eu.dissco.core.digitalspecimenprocessor.component.ElasticIndexingComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.LastCheckedWriterComponent;
+import eu.dissco.core.digitalspecimenprocessor.domain.UpsertResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaEvent;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaRecord;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.UpdatedDigitalMediaRecord;
@@ -34,6 +38,7 @@ import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jooq.exception.DataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
 import tools.jackson.core.JacksonException;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.json.JsonMapper;
@@ -60,10 +65,16 @@ public class DigitalMediaService {
 
 	private final RabbitMqPublisherService publisherService;
 
+	private final LastCheckedWriterComponent lastCheckedWriter;
+
+	private final ElasticIndexingComponent elasticIndexing;
+
+	private final OutboxService outboxService;
+
 	public void updateEqualDigitalMedia(List<DigitalMediaRecord> currentDigitalMedia) {
 		var currentIds = currentDigitalMedia.stream().map(DigitalMediaRecord::id).toList();
-		repository.updateLastChecked(currentIds);
-		log.info("Successfully updated lastChecked for {} existing digital media", currentIds.size());
+		lastCheckedWriter.addMedia(currentIds);
+		log.info("Queued lastChecked update for {} existing digital media", currentIds.size());
 	}
 
 	public Set<DigitalMediaRecord> createNewDigitalMedia(List<DigitalMediaEvent> events,
@@ -76,35 +87,77 @@ public class DigitalMediaService {
 			log.info("Mapped 0 events to their generated PIDs");
 			return Collections.emptySet();
 		}
+		UpsertResult upsertResult;
 		try {
-			repository.createDigitalMediaRecord(digitalMediaRecords);
+			upsertResult = createDigitalMediaRecords(digitalMediaRecords);
 		}
-		catch (DataAccessException e) {
+		catch (DataAccessException | TransactionException | JacksonException e) {
 			log.error("Database exception, unable to post new digital media to database", e);
 			rollbackService.rollbackNewMedias(digitalMediaRecords, false, false);
 			return Collections.emptySet();
 		}
+		digitalMediaRecords = rollbackUncreatedMedia(digitalMediaRecords, upsertResult);
+		if (digitalMediaRecords.isEmpty()) {
+			return Collections.emptySet();
+		}
 		log.info("{} digital media has been successfully committed to database", events.size());
+		if (outboxService.isEnabled()) {
+			return completeNewMedia(digitalMediaRecords);
+		}
+		if (elasticIndexing.isEnabled()) {
+			var indexedRecords = new HashSet<>(digitalMediaRecords);
+			elasticIndexing.submit(() -> elasticRepository.indexDigitalMediaAsync(indexedRecords),
+					bulkResponse -> handleIndexedNewMedia(indexedRecords, bulkResponse),
+					exception -> rollbackUnindexedNewMedia(indexedRecords, exception));
+			return digitalMediaRecords;
+		}
 		try {
 			var bulkResponse = elasticRepository.indexDigitalMedia(digitalMediaRecords);
-			if (!bulkResponse.errors()) {
-				handleSuccessfulElasticInsert(digitalMediaRecords);
-			}
-			else {
-				digitalMediaRecords = rollbackService.handlePartiallyFailedElasticInsertMedia(digitalMediaRecords,
-						bulkResponse);
-			}
-			log.info("Successfully created {} new digital media", digitalMediaRecords.size());
-			annotationPublisherService.publishAnnotationNewMedia(digitalMediaRecords);
-			return digitalMediaRecords;
+			return handleIndexedNewMedia(digitalMediaRecords, bulkResponse);
 		}
 		catch (IOException | ElasticsearchException e) {
-			log.error("Rolling back, failed to insert records in elastic", e);
-			rollbackService.rollbackNewMedias(digitalMediaRecords, false, true);
+			rollbackUnindexedNewMedia(digitalMediaRecords, e);
 			return Collections.emptySet();
 		}
 	}
 
+	private Set<DigitalMediaRecord> handleIndexedNewMedia(Set<DigitalMediaRecord> digitalMediaRecords,
+			BulkResponse bulkResponse) {
+		if (!bulkResponse.errors()) {
+			handleSuccessfulElasticInsert(digitalMediaRecords);
+		}
+		else {
+			digitalMediaRecords = rollbackService.handlePartiallyFailedElasticInsertMedia(digitalMediaRecords,
+					bulkResponse);
+		}
+		return completeNewMedia(digitalMediaRecords);
+	}
+
+	private Set<DigitalMediaRecord> completeNewMedia(Set<DigitalMediaRecord> digitalMediaRecords) {
+		log.info("Successfully created {} new digital media", digitalMediaRecords.size());
+		annotationPublisherService.publishAnnotationNewMedia(digitalMediaRecords);
+		return digitalMediaRecords;
+	}
+
+	// With the outbox, the elastic documents and create events are stored with the media
+	private UpsertResult createDigitalMediaRecords(Set<DigitalMediaRecord> digitalMediaRecords) {
+		if (!outboxService.isEnabled()) {
+			return repository.createDigitalMediaRecord(digitalMediaRecords);
+		}
+		return outboxService.inTransaction(() -> {
+			var upsertResult = repository.createDigitalMediaRecord(digitalMediaRecords);
+			outboxService.addNewMedia(digitalMediaRecords.stream()
+				.filter(digitalMediaRecord -> upsertResult.isWritten(digitalMediaRecord.id()))
+				.toList());
+			return upsertResult;
+		});
+	}
+
+	private void rollbackUnindexedNewMedia(Set<DigitalMediaRecord> digitalMediaRecords, Throwable exception) {
+		log.error("Rolling back, failed to insert records in elastic", exception);
+		rollbackService.rollbackNewMedias(digitalMediaRecords, false, true);
+	}
+
 	private DigitalMediaRecord mapToNewDigitalMediaRecord(DigitalMediaEvent event,
 			Map<String, PidProcessResult> pidMap) {
 		var accessUri = event.digitalMediaWrapper().attributes().getAcAccessURI();
@@ -209,42 +262,141 @@ public class DigitalMediaService {
 		}
 		log.info("Persisting to db");
 		try {
-			repository.updateDigitalMediaRecord(
-					digitalMediaRecords.stream().map(UpdatedDigitalMediaRecord::digitalMediaRecord).collect(toSet()));
+			var upsertResult = updateDigitalMediaRecords(digitalMediaRecords);
+			digitalMediaRecords = rollbackFailedUpdates(digitalMediaRecords, upsertResult.failed());
+			digitalMediaRecords = republishConflictingUpdates(digitalMediaRecords, updatedDigitalMediaTuples,
+					upsertResult);
 		}
-		catch (DataAccessException e) {
+		catch (DataAccessException | TransactionException | JacksonException e) {
 			rollbackService.rollbackUpdatedMedias(digitalMediaRecords, false, false);
 			log.error("Database exception: unable to post updates to db", e);
 			return Collections.emptySet();
 		}
+		if (digitalMediaRecords.isEmpty()) {
+			return Collections.emptySet();
+		}
+		if (outboxService.isEnabled()) {
+			return completeUpdatedMedia(digitalMediaRecords);
+		}
 		log.info("Persisting to elastic");
+		if (elasticIndexing.isEnabled()) {
+			var indexedRecords = new HashSet<>(digitalMediaRecords);
+			elasticIndexing.submit(() -> elasticRepository.indexDigitalMediaAsync(toMediaRecords(indexedRecords)),
+					bulkResponse -> handleIndexedUpdatedMedia(indexedRecords, bulkResponse),
+					exception -> rollbackUnindexedUpdatedMedia(indexedRecords, exception));
+			return toMediaRecords(digitalMediaRecords);
+		}
 		try {
-			var recordSet = digitalMediaRecords.stream()
-				.map(UpdatedDigitalMediaRecord::digitalMediaRecord)
-				.collect(toSet());
-			var bulkResponse = elasticRepository.indexDigitalMedia(recordSet);
-			if (!bulkResponse.errors()) {
-				handleSuccessfulElasticUpdate(digitalMediaRecords);
-			}
-			else {
-				digitalMediaRecords = rollbackService.handlePartiallyFailedElasticUpdateMedia(digitalMediaRecords,
-						bulkResponse);
-				handleSuccessfulElasticUpdate(digitalMediaRecords);
-			}
-			var successfullyProcessedRecords = digitalMediaRecords.stream()
-				.map(UpdatedDigitalMediaRecord::digitalMediaRecord)
-				.collect(toSet());
-			log.info("Successfully updated {} digital media objects", successfullyProcessedRecords.size());
-			annotationPublisherService.publishAnnotationUpdatedMedia(digitalMediaRecords);
-			return successfullyProcessedRecords;
+			var bulkResponse = elasticRepository.indexDigitalMedia(toMediaRecords(digitalMediaRecords));
+			return handleIndexedUpdatedMedia(digitalMediaRecords, bulkResponse);
 		}
 		catch (IOException | ElasticsearchException e) {
-			log.error("Rolling back, failed to insert records in elastic", e);
-			rollbackService.rollbackUpdatedMedias(digitalMediaRecords, false, true);
+			rollbackUnindexedUpdatedMedia(digitalMediaRecords, e);
 			return Set.of();
 		}
 	}
 
+	private Set<DigitalMediaRecord> handleIndexedUpdatedMedia(Set<UpdatedDigitalMediaRecord> digitalMediaRecords,
+			BulkResponse bulkResponse) {
+		if (!bulkResponse.errors()) {
+			handleSuccessfulElasticUpdate(digitalMediaRecords);
+		}
+		else {
+			digitalMediaRecords = rollbackService.handlePartiallyFailedElasticUpdateMedia(digitalMediaRecords,
+					bulkResponse);
+			handleSuccessfulElasticUpdate(digitalMediaRecords);
+		}
+		return completeUpdatedMedia(digitalMediaRecords);
+	}
+
+	private Set<DigitalMediaRecord> completeUpdatedMedia(Set<UpdatedDigitalMediaRecord> digitalMediaRecords) {
+		var successfullyProcessedRecords = toMediaRecords(digitalMediaRecords);
+		log.info("Successfully updated {} digital media objects", successfullyProcessedRecords.size());
+		annotationPublisherService.publishAnnotationUpdatedMedia(digitalMediaRecords);
+		return successfullyProcessedRecords;
+	}
+
+	private void rollbackUnindexedUpdatedMedia(Set<UpdatedDigitalMediaRecord> digitalMediaRecords,
+			Throwable exception) {
+		log.error("Rolling back, failed to insert records in elastic", exception);
+		rollbackService.rollbackUpdatedMedias(digitalMediaRecords, false, true);
+	}
+
+	private UpsertResult updateDigitalMediaRecords(Set<UpdatedDigitalMediaRecord> digitalMediaRecords) {
+		var mediaRecords = digitalMediaRecords.stream().map(UpdatedDigitalMediaRecord::digitalMediaRecord).toList();
+		if (!outboxService.isEnabled()) {
+			return repository.updateDigitalMediaRecords(mediaRecords);
+		}
+		return outboxService.inTransaction(() -> {
+			var upsertResult = repository.updateDigitalMediaRecords(mediaRecords);
+			outboxService.addUpdatedMedia(digitalMediaRecords.stream()
+				.filter(updatedRecord -> upsertResult.isWritten(updatedRecord.digitalMediaRecord().id()))
+				.toList());
+			return upsertResult;
+		});
+	}
+
+	private static Set<DigitalMediaRecord> toMediaRecords(Set<UpdatedDigitalMediaRecord> digitalMediaRecords) {
+		return digitalMediaRecords.stream().map(UpdatedDigitalMediaRecord::digitalMediaRecord).collect(toSet());
+	}
+
+	/*
+	 * Only the media the database rejected, or which already exist, are rolled back. The
+	 * other media of the batch are created.
+	 */
+	private Set<DigitalMediaRecord> rollbackUncreatedMedia(Set<DigitalMediaRecord> digitalMediaRecords,
+			UpsertResult upsertResult) {
+		var uncreatedRecords = digitalMediaRecords.stream()
+			.filter(digitalMediaRecord -> !upsertResult.created().containsKey(digitalMediaRecord.id()))
+			.collect(toSet());
+		if (uncreatedRecords.isEmpty()) {
+			return digitalMediaRecords;
+		}
+		log.error("Unable to insert {} new digital media into the database", uncreatedRecords.size());
+		rollbackService.rollbackNewMedias(uncreatedRecords, false, false);
+		return digitalMediaRecords.stream()
+			.filter(digitalMediaRecord -> upsertResult.created().containsKey(digitalMediaRecord.id()))
+			.collect(toSet());
+	}
+
+	private Set<UpdatedDigitalMediaRecord> rollbackFailedUpdates(Set<UpdatedDigitalMediaRecord> digitalMediaRecords,
+			Set<String> failedIds) {
+		if (failedIds.isEmpty()) {
+			return digitalMediaRecords;
+		}
+		var failedRecords = digitalMediaRecords.stream()
+			.filter(updatedRecord -> failedIds.contains(updatedRecord.digitalMediaRecord().id()))
+			.collect(toSet());
+		log.error("Unable to update {} digital media in the database", failedRecords.size());
+		rollbackService.rollbackUpdatedMedias(failedRecords, false, false);
+		return digitalMediaRecords.stream()
+			.filter(updatedRecord -> !failedIds.contains(updatedRecord.digitalMediaRecord().id()))
+			.collect(toSet());
+	}
+
+	/*
+	 * Media which have been updated by someone else since we read them are not updated.
+	 * Their events are republished, so they are processed again based on the latest
+	 * version.
+	 */
+	private Set<UpdatedDigitalMediaRecord> republishConflictingUpdates(
+			Set<UpdatedDigitalMediaRecord> digitalMediaRecords,
+			List<UpdatedDigitalMediaTuple> updatedDigitalMediaTuples, UpsertResult upsertResult) {
+		var conflictingIds = upsertResult.conflicting(digitalMediaRecords.stream()
+			.map(updatedRecord -> updatedRecord.digitalMediaRecord().id())
+			.toList());
+		if (conflictingIds.isEmpty()) {
+			return digitalMediaRecords;
+		}
+		log.warn("Media {} have been changed concurrently, republishing their events", conflictingIds);
+		updatedDigitalMediaTuples.stream()
+			.filter(tuple -> conflictingIds.contains(tuple.currentDigitalMediaRecord().id()))
+			.forEach(tuple -> publisherService.republishMediaEvent(tuple.digitalMediaEvent()));
+		return digitalMediaRecords.stream()
+			.filter(updatedRecord -> !conflictingIds.contains(updatedRecord.digitalMediaRecord().id()))
+			.collect(toSet());
+	}
+
 	private Set<UpdatedDigitalMediaRecord> getUpdatedDigitalMediaRecords(
 			List<UpdatedDigitalMediaTuple> updatedDigitalMediaTuples, boolean takeOverSpecimenRelationship) {
 		return updatedDigitalMediaTuples.stream().map(tuple -> {
@@ -2,10 +2,13 @@ package eu.dissco.core.digitalspecimenprocessor.service;
 
 import static eu.dissco.core.digitalspecimenprocessor.domain.EntityRelationshipType.HAS_MEDIA;
 import static eu.dissco.core.digitalspecimenprocessor.util.DigitalObjectUtils.DOI_PROXY;
-import static java.util.stream.Collectors.toMap;
 
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
 import com.flipkart.zjsonpatch.Jackson3JsonDiff;
+import eu.dissco.core.digitalspecimenprocessor.component.ElasticIndexingComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.LastCheckedWriterComponent;
+import eu.dissco.core.digitalspecimenprocessor.domain.UpsertResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.relation.MediaRelationshipProcessResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.relation.PidProcessResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenEvent;
@@ -25,18 +28,20 @@ import io.github.dissco.core.annotationlogic.schema.Annotation;
 import java.io.IOException;
 import java.time.Instant;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.jooq.exception.DataAccessException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
 import tools.jackson.core.JacksonException;
 import tools.jackson.databind.JsonNode;
 import tools.jackson.databind.json.JsonMapper;
@@ -69,13 +74,41 @@ public class DigitalSpecimenService {
 
 	private final AnnotationService annotationService;
 
+	private final EqualityService equalityService;
+
+	private final LastCheckedWriterComponent lastCheckedWriter;
+
+	private final ElasticIndexingComponent elasticIndexing;
+
+	private final OutboxService outboxService;
+
 	public void updateEqualSpecimen(Map<DigitalSpecimenRecord, DigitalSpecimenEvent> equalDigitalSpecimenMap) {
-		var idMap = equalDigitalSpecimenMap.entrySet()
-			.stream()
-			.collect(toMap(entry -> entry.getKey().id(), Entry::getValue));
-		repository.updateLastCheckedAndOriginalData(idMap);
-		log.info("Successfully updated lastChecked for {} existing digitalSpecimenWrapper",
-				equalDigitalSpecimenMap.size());
+		// Only the original data of events from the source system is written
+		var originalDataMap = new HashMap<String, String>();
+		equalDigitalSpecimenMap.forEach((currentSpecimen, event) -> originalDataMap.put(currentSpecimen.id(),
+				Boolean.TRUE.equals(event.isDataFromSourceSystem())
+						? event.digitalSpecimenWrapper().originalAttributes().toString() : null));
+		lastCheckedWriter.addSpecimens(originalDataMap);
+		backfillContentHashes(equalDigitalSpecimenMap.keySet());
+		log.info("Queued lastChecked update for {} existing digitalSpecimenWrapper", equalDigitalSpecimenMap.size());
+	}
+
+	// Specimens stored before we kept a content hash receive one when found to be equal
+	private void backfillContentHashes(Set<DigitalSpecimenRecord> equalDigitalSpecimens) {
+		var contentHashes = new HashMap<String, UUID>();
+		for (var equalDigitalSpecimen : equalDigitalSpecimens) {
+			if (equalDigitalSpecimen.contentHash() == null) {
+				var contentHash = equalityService
+					.calculateSpecimenHash(equalDigitalSpecimen.digitalSpecimenWrapper().attributes());
+				if (contentHash != null) {
+					contentHashes.put(equalDigitalSpecimen.id(), contentHash);
+				}
+			}
+		}
+		if (!contentHashes.isEmpty()) {
+			log.debug("Storing content hash for {} existing specimens", contentHashes.size());
+			repository.updateContentHash(contentHashes);
+		}
 	}
 
 	public Set<DigitalSpecimenRecord> createNewDigitalSpecimen(List<DigitalSpecimenEvent> events,
@@ -88,35 +121,78 @@ public class DigitalSpecimenService {
 			return Collections.emptySet();
 		}
 		log.info("Inserting {} new specimen into the database", digitalSpecimenRecords.size());
+		UpsertResult upsertResult;
 		try {
-			repository.createDigitalSpecimenRecord(digitalSpecimenRecords);
+			upsertResult = createDigitalSpecimenRecords(digitalSpecimenRecords);
 		}
-		catch (DataAccessException e) {
+		catch (DataAccessException | TransactionException | JacksonException e) {
 			log.error("Unable to insert new specimens into the database. Rolling back PIDs", e);
 			rollbackService.rollbackNewSpecimens(digitalSpecimenRecords, false, false);
 			return Collections.emptySet();
 		}
+		digitalSpecimenRecords = rollbackUncreatedSpecimens(digitalSpecimenRecords, upsertResult);
+		if (digitalSpecimenRecords.isEmpty()) {
+			return Collections.emptySet();
+		}
+		if (outboxService.isEnabled()) {
+			return completeNewSpecimens(digitalSpecimenRecords);
+		}
+		log.info("Inserting {} new specimen into the elastic search", digitalSpecimenRecords.size());
+		if (elasticIndexing.isEnabled()) {
+			var indexedRecords = new HashSet<>(digitalSpecimenRecords);
+			elasticIndexing.submit(() -> elasticRepository.indexDigitalSpecimenAsync(indexedRecords),
+					bulkResponse -> handleIndexedNewSpecimens(indexedRecords, bulkResponse),
+					exception -> rollbackUnindexedNewSpecimens(indexedRecords, exception));
+			return digitalSpecimenRecords;
+		}
 		try {
-			log.info("Inserting {} new specimen into the elastic search", digitalSpecimenRecords.size());
 			var bulkResponse = elasticRepository.indexDigitalSpecimen(digitalSpecimenRecords);
-			if (!bulkResponse.errors()) {
-				handleSuccessfulElasticInsert(digitalSpecimenRecords);
-			}
-			else {
-				digitalSpecimenRecords = rollbackService
-					.handlePartiallyFailedElasticInsertSpecimen(digitalSpecimenRecords, bulkResponse);
-			}
-			log.info("Successfully created {} new digitalSpecimenRecord", digitalSpecimenRecords.size());
-			annotationPublisherService.publishAnnotationNewSpecimen(digitalSpecimenRecords);
-			return digitalSpecimenRecords;
+			return handleIndexedNewSpecimens(digitalSpecimenRecords, bulkResponse);
 		}
 		catch (IOException | ElasticsearchException e) {
-			log.error("Rolling back, failed to insert records in elastic", e);
-			rollbackService.rollbackNewSpecimens(digitalSpecimenRecords, false, true);
+			rollbackUnindexedNewSpecimens(digitalSpecimenRecords, e);
 			return Collections.emptySet();
 		}
 	}
 
+	private Set<DigitalSpecimenRecord> handleIndexedNewSpecimens(Set<DigitalSpecimenRecord> digitalSpecimenRecords,
+			BulkResponse bulkResponse) {
+		if (!bulkResponse.errors()) {
+			handleSuccessfulElasticInsert(digitalSpecimenRecords);
+		}
+		else {
+			digitalSpecimenRecords = rollbackService.handlePartiallyFailedElasticInsertSpecimen(digitalSpecimenRecords,
+					bulkResponse);
+		}
+		return completeNewSpecimens(digitalSpecimenRecords);
+	}
+
+	private Set<DigitalSpecimenRecord> completeNewSpecimens(Set<DigitalSpecimenRecord> digitalSpecimenRecords) {
+		log.info("Successfully created {} new digitalSpecimenRecord", digitalSpecimenRecords.size());
+		annotationPublisherService.publishAnnotationNewSpecimen(digitalSpecimenRecords);
+		return digitalSpecimenRecords;
+	}
+
+	// With the outbox, the elastic documents and create events are stored with the specimens
+	private UpsertResult createDigitalSpecimenRecords(Set<DigitalSpecimenRecord> digitalSpecimenRecords) {
+		if (!outboxService.isEnabled()) {
+			return repository.createDigitalSpecimenRecord(digitalSpecimenRecords);
+		}
+		return outboxService.inTransaction(() -> {
+			var upsertResult = repository.createDigitalSpecimenRecord(digitalSpecimenRecords);
+			outboxService.addNewSpecimens(digitalSpecimenRecords.stream()
+				.filter(digitalSpecimenRecord -> upsertResult.isWritten(digitalSpecimenRecord.id()))
+				.toList());
+			return upsertResult;
+		});
+	}
+
+	private void rollbackUnindexedNewSpecimens(Set<DigitalSpecimenRecord> digitalSpecimenRecords,
+			Throwable exception) {
+		log.error("Rolling back, failed to insert records in elastic", exception);
+		rollbackService.rollbackNewSpecimens(digitalSpecimenRecords, false, true);
+	}
+
 	public void applyAnnotation(Annotation annotation) throws AnnotationProcessingException, PidException {
 		var id = annotation.getOaHasTarget().getId().replace(DOI_PROXY, "");
 		var currentSpecimen = repository.getDigitalSpecimenById(id);
@@ -130,7 +206,7 @@ public class DigitalSpecimenService {
 		var digitalSpecimenRecord = new DigitalSpecimenRecord(id,
 				midsService.calculateMids(digitalSpecimenWrapper.attributes()),
 				currentSpecimen.version() + 1, currentSpecimen.created(), digitalSpecimenWrapper, Set.of(), false,
-				false, List.of());
+				false, List.of(), equalityService.calculateSpecimenHash(digitalSpecimen));
 		var jsonPatch = createJsonPatch(currentSpecimen.digitalSpecimenWrapper().attributes(), digitalSpecimen);
 		// Note: we don't care about media process result/media events here, since we're
 		// not updating from a specimen event
@@ -156,42 +232,145 @@ public class DigitalSpecimenService {
 
 		log.info("Persisting {} updated record to the database", digitalSpecimenRecords.size());
 		try {
-			repository.updateDigitalSpecimenRecord(digitalSpecimenRecords.stream()
-				.map(UpdatedDigitalSpecimenRecord::digitalSpecimenRecord)
-				.collect(Collectors.toSet()));
+			var upsertResult = updateDigitalSpecimenRecords(digitalSpecimenRecords);
+			digitalSpecimenRecords = rollbackFailedUpdates(digitalSpecimenRecords, upsertResult.failed(),
+					republishOnRollback);
+			digitalSpecimenRecords = removeConflictingUpdates(digitalSpecimenRecords, upsertResult);
 		}
-		catch (DataAccessException e) {
+		catch (DataAccessException | TransactionException | JacksonException e) {
 			log.error("Unable to update records into database. Rolling back updates", e);
 			rollbackService.rollbackUpdatedSpecimens(digitalSpecimenRecords, false, false, republishOnRollback);
 			return Collections.emptySet();
 		}
+		if (digitalSpecimenRecords.isEmpty()) {
+			return Collections.emptySet();
+		}
+		if (outboxService.isEnabled()) {
+			return completeUpdatedSpecimens(digitalSpecimenRecords);
+		}
 		log.info("Persisting {} updated records to elastic", digitalSpecimenRecords.size());
+		if (elasticIndexing.isEnabled()) {
+			var indexedRecords = new HashSet<>(digitalSpecimenRecords);
+			elasticIndexing.submit(() -> elasticRepository.indexDigitalSpecimenAsync(toSpecimenRecords(indexedRecords)),
+					bulkResponse -> handleIndexedUpdatedSpecimens(indexedRecords, bulkResponse, republishOnRollback),
+					exception -> rollbackUnindexedUpdatedSpecimens(indexedRecords, exception, republishOnRollback));
+			return toSpecimenRecords(digitalSpecimenRecords);
+		}
 		try {
-			var bulkResponse = elasticRepository.indexDigitalSpecimen(digitalSpecimenRecords.stream()
-				.map(UpdatedDigitalSpecimenRecord::digitalSpecimenRecord)
-				.collect(Collectors.toSet()));
-			if (!bulkResponse.errors()) {
-				handleSuccessfulElasticUpdate(digitalSpecimenRecords);
-			}
-			else {
-				digitalSpecimenRecords = rollbackService.handlePartiallyFailedElasticUpdateSpecimen(
-						digitalSpecimenRecords, bulkResponse, republishOnRollback);
-			}
-			var successfullyProcessedRecords = digitalSpecimenRecords.stream()
-				.map(UpdatedDigitalSpecimenRecord::digitalSpecimenRecord)
-				.collect(Collectors.toSet());
-			log.info("Successfully updated {} digitalSpecimen records", successfullyProcessedRecords.size());
-			annotationPublisherService.publishAnnotationUpdatedSpecimen(digitalSpecimenRecords);
-			digitalMediaService.tombstoneSpecimenRelations(digitalSpecimenRecords);
-			return successfullyProcessedRecords;
+			var bulkResponse = elasticRepository.indexDigitalSpecimen(toSpecimenRecords(digitalSpecimenRecords));
+			return handleIndexedUpdatedSpecimens(digitalSpecimenRecords, bulkResponse, republishOnRollback);
 		}
 		catch (IOException | ElasticsearchException e) {
-			log.error("Rolling back, failed to insert records in elastic", e);
-			rollbackService.rollbackUpdatedSpecimens(digitalSpecimenRecords, false, true, republishOnRollback);
+			rollbackUnindexedUpdatedSpecimens(digitalSpecimenRecords, e, republishOnRollback);
 			return Set.of();
 		}
 	}
 
+	private Set<DigitalSpecimenRecord> handleIndexedUpdatedSpecimens(
+			Set<UpdatedDigitalSpecimenRecord> digitalSpecimenRecords, BulkResponse bulkResponse,
+			boolean republishOnRollback) {
+		if (!bulkResponse.errors()) {
+			handleSuccessfulElasticUpdate(digitalSpecimenRecords);
+		}
+		else {
+			digitalSpecimenRecords = rollbackService.handlePartiallyFailedElasticUpdateSpecimen(digitalSpecimenRecords,
+					bulkResponse, republishOnRollback);
+		}
+		return completeUpdatedSpecimens(digitalSpecimenRecords);
+	}
+
+	private Set<DigitalSpecimenRecord> completeUpdatedSpecimens(
+			Set<UpdatedDigitalSpecimenRecord> digitalSpecimenRecords) {
+		var successfullyProcessedRecords = toSpecimenRecords(digitalSpecimenRecords);
+		log.info("Successfully updated {} digitalSpecimen records", successfullyProcessedRecords.size());
+		annotationPublisherService.publishAnnotationUpdatedSpecimen(digitalSpecimenRecords);
+		digitalMediaService.tombstoneSpecimenRelations(digitalSpecimenRecords);
+		return successfullyProcessedRecords;
+	}
+
+	private void rollbackUnindexedUpdatedSpecimens(Set<UpdatedDigitalSpecimenRecord> digitalSpecimenRecords,
+			Throwable exception, boolean republishOnRollback) {
+		log.error("Rolling back, failed to insert records in elastic", exception);
+		rollbackService.rollbackUpdatedSpecimens(digitalSpecimenRecords, false, true, republishOnRollback);
+	}
+
+	private UpsertResult updateDigitalSpecimenRecords(Set<UpdatedDigitalSpecimenRecord> digitalSpecimenRecords) {
+		var specimenRecords = digitalSpecimenRecords.stream()
+			.map(UpdatedDigitalSpecimenRecord::digitalSpecimenRecord)
+			.toList();
+		if (!outboxService.isEnabled()) {
+			return repository.updateDigitalSpecimenRecords(specimenRecords);
+		}
+		return outboxService.inTransaction(() -> {
+			var upsertResult = repository.updateDigitalSpecimenRecords(specimenRecords);
+			outboxService.addUpdatedSpecimens(digitalSpecimenRecords.stream()
+				.filter(updatedRecord -> upsertResult.isWritten(updatedRecord.digitalSpecimenRecord().id()))
+				.toList());
+			return upsertResult;
+		});
+	}
+
+	private static Set<DigitalSpecimenRecord> toSpecimenRecords(
+			Set<UpdatedDigitalSpecimenRecord> digitalSpecimenRecords) {
+		return digitalSpecimenRecords.stream()
+			.map(UpdatedDigitalSpecimenRecord::digitalSpecimenRecord)
+			.collect(Collectors.toSet());
+	}
+
+	/*
+	 * The database can reject single specimens of a batch, or the specimen may already
+	 * exist. Only those specimens are rolled back, the rest of the batch is created.
+	 */
+	private Set<DigitalSpecimenRecord> rollbackUncreatedSpecimens(Set<DigitalSpecimenRecord> digitalSpecimenRecords,
+			UpsertResult upsertResult) {
+		var uncreatedRecords = digitalSpecimenRecords.stream()
+			.filter(digitalSpecimenRecord -> !upsertResult.created().containsKey(digitalSpecimenRecord.id()))
+			.collect(Collectors.toSet());
+		if (uncreatedRecords.isEmpty()) {
+			return digitalSpecimenRecords;
+		}
+		log.error("Unable to insert {} new specimens into the database. Rolling back their PIDs",
+				uncreatedRecords.size());
+		rollbackService.rollbackNewSpecimens(uncreatedRecords, false, false);
+		return digitalSpecimenRecords.stream()
+			.filter(digitalSpecimenRecord -> upsertResult.created().containsKey(digitalSpecimenRecord.id()))
+			.collect(Collectors.toSet());
+	}
+
+	private Set<UpdatedDigitalSpecimenRecord> rollbackFailedUpdates(
+			Set<UpdatedDigitalSpecimenRecord> digitalSpecimenRecords, Set<String> failedIds,
+			boolean republishOnRollback) {
+		if (failedIds.isEmpty()) {
+			return digitalSpecimenRecords;
+		}
+		var failedRecords = digitalSpecimenRecords.stream()
+			.filter(updatedRecord -> failedIds.contains(updatedRecord.digitalSpecimenRecord().id()))
+			.collect(Collectors.toSet());
+		log.error("Unable to update {} specimens in the database. Rolling back their updates", failedRecords.size());
+		rollbackService.rollbackUpdatedSpecimens(failedRecords, false, false, republishOnRollback);
+		return digitalSpecimenRecords.stream()
+			.filter(updatedRecord -> !failedIds.contains(updatedRecord.digitalSpecimenRecord().id()))
+			.collect(Collectors.toSet());
+	}
+
+	/*
+	 * Specimens which have been updated by someone else since we read them are not
+	 * updated. The caller can process these again based on the latest version.
+	 */
+	private static Set<UpdatedDigitalSpecimenRecord> removeConflictingUpdates(
+			Set<UpdatedDigitalSpecimenRecord> digitalSpecimenRecords, UpsertResult upsertResult) {
+		var conflictingIds = upsertResult.conflicting(digitalSpecimenRecords.stream()
+			.map(updatedRecord -> updatedRecord.digitalSpecimenRecord().id())
+			.toList());
+		if (conflictingIds.isEmpty()) {
+			return digitalSpecimenRecords;
+		}
+		log.warn("Specimens {} have been changed concurrently and are not updated", conflictingIds);
+		return digitalSpecimenRecords.stream()
+			.filter(updatedRecord -> !conflictingIds.contains(updatedRecord.digitalSpecimenRecord().id()))
+			.collect(Collectors.toSet());
+	}
+
 	/* Elastic */
 
 	private void handleSuccessfulElasticInsert(Set<DigitalSpecimenRecord> digitalSpecimenRecords) {
@@ -301,11 +480,12 @@ public class DigitalSpecimenService {
 			}
 			return null;
 		}
-		return new DigitalSpecimenRecord(pidMap.get(event.digitalSpecimenWrapper().physicalSpecimenID()).doiOfTarget(),
-				midsService.calculateMids(event.digitalSpecimenWrapper().attributes()), 1, Instant.now(),
-				determineEntityRelationships(event.digitalSpecimenWrapper(), pidMap,
-						new MediaRelationshipProcessResult(List.of(), List.of(), List.of())),
-				event.masList(), event.forceMasSchedule(), event.isDataFromSourceSystem(), event.digitalMediaEvents());
+		var midsLevel = midsService.calculateMids(event.digitalSpecimenWrapper().attributes());
+		var digitalSpecimenWrapper = determineEntityRelationships(event.digitalSpecimenWrapper(), pidMap,
+				new MediaRelationshipProcessResult(List.of(), List.of(), List.of()));
+		return new DigitalSpecimenRecord(pid.doiOfTarget(), midsLevel, 1, Instant.now(), digitalSpecimenWrapper,
+				event.masList(), event.forceMasSchedule(), event.isDataFromSourceSystem(), event.digitalMediaEvents(),
+				equalityService.calculateSpecimenHash(digitalSpecimenWrapper.attributes()));
 	}
 
 	// We remove the dcterms:modified from the comparison as it is generated and will
@@ -321,14 +501,18 @@ public class DigitalSpecimenService {
 	private Set<UpdatedDigitalSpecimenRecord> getUpdatedDigitalSpecimenRecords(
 			List<UpdatedDigitalSpecimenTuple> updatedDigitalSpecimenTuples, Map<String, PidProcessResult> pidMap) {
 		return updatedDigitalSpecimenTuples.stream().map(updateTuple -> {
-			var digitalSpecimenRecord = new DigitalSpecimenRecord(updateTuple.currentSpecimen().id(),
-					midsService.calculateMids(updateTuple.digitalSpecimenEvent().digitalSpecimenWrapper().attributes()),
+			var midsLevel = midsService
+				.calculateMids(updateTuple.digitalSpecimenEvent().digitalSpecimenWrapper().attributes());
+			var digitalSpecimenWrapper = determineEntityRelationships(
+					updateTuple.digitalSpecimenEvent().digitalSpecimenWrapper(), pidMap,
+					updateTuple.mediaRelationshipProcessResult());
+			var digitalSpecimenRecord = new DigitalSpecimenRecord(updateTuple.currentSpecimen().id(), midsLevel,
 					updateTuple.currentSpecimen().version() + 1, updateTuple.currentSpecimen().created(),
-					determineEntityRelationships(updateTuple.digitalSpecimenEvent().digitalSpecimenWrapper(), pidMap,
-							updateTuple.mediaRelationshipProcessResult()),
-					updateTuple.digitalSpecimenEvent().masList(), updateTuple.digitalSpecimenEvent().forceMasSchedule(),
+					digitalSpecimenWrapper, updateTuple.digitalSpecimenEvent().masList(),
+					updateTuple.digitalSpecimenEvent().forceMasSchedule(),
 					updateTuple.digitalSpecimenEvent().isDataFromSourceSystem(),
-					updateTuple.digitalSpecimenEvent().digitalMediaEvents());
+					updateTuple.digitalSpecimenEvent().digitalMediaEvents(),
+					equalityService.calculateSpecimenHash(digitalSpecimenWrapper.attributes()));
 			return new UpdatedDigitalSpecimenRecord(digitalSpecimenRecord, updateTuple.digitalSpecimenEvent().masList(),
 					updateTuple.currentSpecimen(),
 					createJsonPatch(updateTuple.currentSpecimen().digitalSpecimenWrapper().attributes(),
@@ -16,7 +16,9 @@ import eu.dissco.core.digitalspecimenprocessor.schema.DigitalMedia;
 import eu.dissco.core.digitalspecimenprocessor.schema.DigitalSpecimen;
 import eu.dissco.core.digitalspecimenprocessor.schema.EntityRelationship;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -38,6 +40,10 @@ public class EqualityService {
 	private static final Set<String> IGNORED_FIELDS = Set.of("dcterms:created", "dcterms:modified",
 			"dwc:relationshipEstablishedDate");
 
+	// Derived from the media relationships when the record is created, so never part of an
+	// incoming event
+	private static final String KNOWN_TO_CONTAIN_MEDIA = "ods:isKnownToContainMedia";
+
 	public boolean specimensAreEqual(DigitalSpecimenRecord currentDigitalSpecimen,
 			DigitalSpecimenWrapper digitalSpecimenWrapper,
 			MediaRelationshipProcessResult mediaRelationshipProcessResult) {
@@ -119,15 +125,56 @@ public class EqualityService {
 
 	private boolean specimensAreEqual(DigitalSpecimenRecord currentDigitalSpecimen,
 			DigitalSpecimenWrapper digitalSpecimenWrapper) {
-		if (currentDigitalSpecimen == null || currentDigitalSpecimen.digitalSpecimenWrapper().attributes() == null) {
+		if (currentDigitalSpecimen == null) {
+			return false;
+		}
+		var jsonSpecimen = normaliseJsonNodeSpecimen(digitalSpecimenWrapper.attributes());
+		// If the stored fingerprint matches we can skip the full comparison
+		// Legacy records without a fingerprint, or mismatches, fall back to the full
+		// comparison
+		if (currentDigitalSpecimen.contentHash() != null
+				&& currentDigitalSpecimen.contentHash().equals(hashSpecimen(jsonSpecimen))) {
+			return true;
+		}
+		if (currentDigitalSpecimen.digitalSpecimenWrapper().attributes() == null) {
 			return false;
 		}
 		var jsonCurrentSpecimen = normaliseJsonNodeSpecimen(
 				currentDigitalSpecimen.digitalSpecimenWrapper().attributes());
-		var jsonSpecimen = normaliseJsonNodeSpecimen(digitalSpecimenWrapper.attributes());
 		return isEqual(jsonCurrentSpecimen, jsonSpecimen, currentDigitalSpecimen.id());
 	}
 
+	/*
+	 * Fingerprint of the specimen content, based on the same normalised json used for the
+	 * full comparison (no generated timestamps and no media relationships). The stored hash
+	 * is calculated after the media relationships have been determined, so the flag derived
+	 * from them is left out as well.
+	 */
+	public UUID calculateSpecimenHash(DigitalSpecimen digitalSpecimen) {
+		if (digitalSpecimen == null) {
+			return null;
+		}
+		return hashSpecimen(normaliseJsonNodeSpecimen(digitalSpecimen));
+	}
+
+	private UUID hashSpecimen(JsonNode normalisedSpecimen) {
+		var hashedSpecimen = (ObjectNode) normalisedSpecimen.deepCopy();
+		hashedSpecimen.remove(KNOWN_TO_CONTAIN_MEDIA);
+		return calculateHash(hashedSpecimen);
+	}
+
+	// Fingerprint of the media content, without generated timestamps and specimen relationships
+	public UUID calculateMediaHash(DigitalMedia digitalMedia) {
+		if (digitalMedia == null) {
+			return null;
+		}
+		return calculateHash(normaliseJsonNodeMedia(digitalMedia));
+	}
+
+	private UUID calculateHash(JsonNode normalisedNode) {
+		return UUID.nameUUIDFromBytes(mapper.writeValueAsBytes(normalisedNode));
+	}
+
 	private boolean mediaAreEqual(DigitalMediaRecord currentDigitalMedia, DigitalMediaWrapper digitalMedia) {
 		if (currentDigitalMedia == null || currentDigitalMedia.attributes() == null) {
 			return false;
@@ -173,7 +220,9 @@ public class EqualityService {
 	public JsonNode removeGeneratedTimestamps(JsonNode node) {
 		if (node.isObject()) {
 			ObjectNode result = mapper.createObjectNode();
-			node.properties().forEach(entry -> {
+			// Sort the fields so the serialised node (and its hash) does not depend on field
+			// order
+			node.properties().stream().sorted(Map.Entry.comparingByKey()).forEach(entry -> {
 				if (!IGNORED_FIELDS.contains(entry.getKey())) {
 					result.set(entry.getKey(), removeGeneratedTimestamps(entry.getValue()));
 				}
@@ -0,0 +1,108 @@
+package eu.dissco.core.digitalspecimenprocessor.service;
+
+import static eu.dissco.core.digitalspecimenprocessor.util.DigitalObjectUtils.flattenToDigitalMedia;
+import static eu.dissco.core.digitalspecimenprocessor.util.DigitalObjectUtils.flattenToDigitalSpecimen;
+
+import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaRecord;
+import eu.dissco.core.digitalspecimenprocessor.domain.media.UpdatedDigitalMediaRecord;
+import eu.dissco.core.digitalspecimenprocessor.domain.outbox.OutboxMessage;
+import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenRecord;
+import eu.dissco.core.digitalspecimenprocessor.domain.specimen.UpdatedDigitalSpecimenRecord;
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
+import eu.dissco.core.digitalspecimenprocessor.property.ElasticSearchProperties;
+import eu.dissco.core.digitalspecimenprocessor.repository.OutboxRepository;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.function.Supplier;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+import tools.jackson.databind.json.JsonMapper;
+
+/*
+ * Stores the elastic documents and provenance events of written records in the outbox, in
+ * the transaction which writes the records. They are relayed by the OutboxRelayComponent
+ * once committed, so a failing side effect no longer rolls back the records.
+ */
+@Slf4j
+@Service
+@RequiredArgsConstructor
+public class OutboxService {
+
+	private final ApplicationProperties applicationProperties;
+
+	private final ElasticSearchProperties elasticSearchProperties;
+
+	private final OutboxRepository outboxRepository;
+
+	private final RabbitMqPublisherService publisherService;
+
+	private final TransactionTemplate transactionTemplate;
+
+	private final JsonMapper mapper;
+
+	public boolean isEnabled() {
+		return applicationProperties.isOutbox();
+	}
+
+	public <T> T inTransaction(Supplier<T> write) {
+		return transactionTemplate.execute(_ -> write.get());
+	}
+
+	public void addNewSpecimens(Collection<DigitalSpecimenRecord> digitalSpecimenRecords) {
+		var messages = new ArrayList<OutboxMessage>();
+		for (var digitalSpecimenRecord : digitalSpecimenRecords) {
+			messages.add(specimenDocument(digitalSpecimenRecord));
+			messages.add(publisherService.createEventSpecimenMessage(digitalSpecimenRecord));
+		}
+		insert(messages);
+	}
+
+	public void addUpdatedSpecimens(Collection<UpdatedDigitalSpecimenRecord> digitalSpecimenRecords) {
+		var messages = new ArrayList<OutboxMessage>();
+		for (var updatedRecord : digitalSpecimenRecords) {
+			messages.add(specimenDocument(updatedRecord.digitalSpecimenRecord()));
+			messages.add(publisherService.updateEventSpecimenMessage(updatedRecord.digitalSpecimenRecord(),
+					updatedRecord.jsonPatch()));
+		}
+		insert(messages);
+	}
+
+	public void addNewMedia(Collection<DigitalMediaRecord> digitalMediaRecords) {
+		var messages = new ArrayList<OutboxMessage>();
+		for (var digitalMediaRecord : digitalMediaRecords) {
+			messages.add(mediaDocument(digitalMediaRecord));
+			messages.add(publisherService.createEventMediaMessage(digitalMediaRecord));
+		}
+		insert(messages);
+	}
+
+	public void addUpdatedMedia(Collection<UpdatedDigitalMediaRecord> digitalMediaRecords) {
+		var messages = new ArrayList<OutboxMessage>();
+		for (var updatedRecord : digitalMediaRecords) {
+			messages.add(mediaDocument(updatedRecord.digitalMediaRecord()));
+			messages.add(publisherService.updateEventMediaMessage(updatedRecord.digitalMediaRecord(),
+					updatedRecord.jsonPatch()));
+		}
+		insert(messages);
+	}
+
+	private OutboxMessage specimenDocument(DigitalSpecimenRecord digitalSpecimenRecord) {
+		var digitalSpecimen = flattenToDigitalSpecimen(digitalSpecimenRecord);
+		return OutboxMessage.elastic(elasticSearchProperties.getSpecimenIndexName(), digitalSpecimen.getId(),
+				digitalSpecimenRecord.version(), mapper.writeValueAsString(digitalSpecimen));
+	}
+
+	private OutboxMessage mediaDocument(DigitalMediaRecord digitalMediaRecord) {
+		var digitalMedia = flattenToDigitalMedia(digitalMediaRecord);
+		return OutboxMessage.elastic(elasticSearchProperties.getMediaIndexName(), digitalMedia.getId(),
+				digitalMediaRecord.version(), mapper.writeValueAsString(digitalMedia));
+	}
+
+	private void insert(Collection<OutboxMessage> messages) {
+		log.debug("Storing {} outbox messages", messages.size());
+		outboxRepository.insertMessages(messages);
+	}
+
+}
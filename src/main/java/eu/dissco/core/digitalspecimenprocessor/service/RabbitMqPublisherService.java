@@ -4,10 +4,12 @@ import eu.dissco.core.digitalspecimenprocessor.domain.AutoAcceptedAnnotation;
 import eu.dissco.core.digitalspecimenprocessor.domain.mas.MasJobRequest;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaEvent;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaRecord;
+import eu.dissco.core.digitalspecimenprocessor.domain.outbox.OutboxMessage;
 import eu.dissco.core.digitalspecimenprocessor.domain.relation.DigitalMediaRelationshipTombstoneEvent;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenEvent;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenRecord;
 import eu.dissco.core.digitalspecimenprocessor.property.RabbitMqProperties;
+import java.util.Collection;
 import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.amqp.rabbit.core.RabbitTemplate;
@@ -33,14 +35,22 @@ public class RabbitMqPublisherService {
 	private final RabbitMqProperties rabbitMqProperties;
 
 	public void publishCreateEventSpecimen(DigitalSpecimenRecord digitalSpecimenRecord) {
+		publish(createEventSpecimenMessage(digitalSpecimenRecord));
+	}
+
+	public OutboxMessage createEventSpecimenMessage(DigitalSpecimenRecord digitalSpecimenRecord) {
 		var event = provenanceService.generateCreateEventSpecimen(digitalSpecimenRecord);
-		rabbitTemplate.convertAndSend(rabbitMqProperties.getProvenance().getExchangeName(),
+		return OutboxMessage.rabbitMq(rabbitMqProperties.getProvenance().getExchangeName(),
 				generateRoutingKeySpecimen(digitalSpecimenRecord), mapper.writeValueAsString(event));
 	}
 
 	public void publishCreateEventMedia(DigitalMediaRecord digitalMediaRecord) {
+		publish(createEventMediaMessage(digitalMediaRecord));
+	}
+
+	public OutboxMessage createEventMediaMessage(DigitalMediaRecord digitalMediaRecord) {
 		var event = provenanceService.generateCreateEventMedia(digitalMediaRecord);
-		rabbitTemplate.convertAndSend(rabbitMqProperties.getProvenance().getExchangeName(),
+		return OutboxMessage.rabbitMq(rabbitMqProperties.getProvenance().getExchangeName(),
 				generateRoutingKeyMedia(digitalMediaRecord), mapper.writeValueAsString(event));
 	}
 
@@ -50,8 +60,12 @@ public class RabbitMqPublisherService {
 	}
 
 	public void publishUpdateEventSpecimen(DigitalSpecimenRecord digitalSpecimenRecord, JsonNode jsonPatch) {
+		publish(updateEventSpecimenMessage(digitalSpecimenRecord, jsonPatch));
+	}
+
+	public OutboxMessage updateEventSpecimenMessage(DigitalSpecimenRecord digitalSpecimenRecord, JsonNode jsonPatch) {
 		var event = provenanceService.generateUpdateEventSpecimen(digitalSpecimenRecord, jsonPatch);
-		rabbitTemplate.convertAndSend(rabbitMqProperties.getProvenance().getExchangeName(),
+		return OutboxMessage.rabbitMq(rabbitMqProperties.getProvenance().getExchangeName(),
 				generateRoutingKeySpecimen(digitalSpecimenRecord), mapper.writeValueAsString(event));
 	}
 
@@ -62,11 +76,19 @@ public class RabbitMqPublisherService {
 	}
 
 	public void publishUpdateEventMedia(DigitalMediaRecord digitalMediaRecord, JsonNode jsonPatch) {
+		publish(updateEventMediaMessage(digitalMediaRecord, jsonPatch));
+	}
+
+	public OutboxMessage updateEventMediaMessage(DigitalMediaRecord digitalMediaRecord, JsonNode jsonPatch) {
 		var event = provenanceService.generateUpdateEventMedia(digitalMediaRecord, jsonPatch);
-		rabbitTemplate.convertAndSend(rabbitMqProperties.getProvenance().getExchangeName(),
+		return OutboxMessage.rabbitMq(rabbitMqProperties.getProvenance().getExchangeName(),
 				generateRoutingKeyMedia(digitalMediaRecord), mapper.writeValueAsString(event));
 	}
 
+	public void publish(OutboxMessage message) {
+		rabbitTemplate.convertAndSend(message.target(), message.key(), message.payload());
+	}
+
 	private String generateRoutingKeyMedia(DigitalMediaRecord digitalMediaRecord) {
 		return rabbitMqProperties.getProvenance().getRoutingKeyPrefix() + MEDIA_ROUTING_KEY_PREFIX
 				+ stripSourceSystemId(digitalMediaRecord.attributes().getOdsSourceSystemID());
@@ -92,6 +114,33 @@ public class RabbitMqPublisherService {
 				rabbitMqProperties.getDigitalMedia().getDlqRoutingKeyName(), mapper.writeValueAsString(event));
 	}
 
+	// Events of a rolled back batch are published on a single channel
+	public void deadLetterEventsSpecimen(Collection<DigitalSpecimenEvent> events) {
+		if (events.isEmpty()) {
+			return;
+		}
+		rabbitTemplate.invoke(operations -> {
+			for (var event : events) {
+				operations.convertAndSend(rabbitMqProperties.getSpecimen().getDlqExchangeName(),
+						rabbitMqProperties.getSpecimen().getDlqRoutingKeyName(), mapper.writeValueAsString(event));
+			}
+			return null;
+		});
+	}
+
+	public void deadLetterEventsMedia(Collection<DigitalMediaEvent> events) {
+		if (events.isEmpty()) {
+			return;
+		}
+		rabbitTemplate.invoke(operations -> {
+			for (var event : events) {
+				operations.convertAndSend(rabbitMqProperties.getDigitalMedia().getDlqExchangeName(),
+						rabbitMqProperties.getDigitalMedia().getDlqRoutingKeyName(), mapper.writeValueAsString(event));
+			}
+			return null;
+		});
+	}
+
 	public void publishAcceptedAnnotation(AutoAcceptedAnnotation annotation) {
 		rabbitTemplate.convertAndSend(rabbitMqProperties.getAutoAcceptedAnnotation().getExchangeName(),
 				rabbitMqProperties.getAutoAcceptedAnnotation().getRoutingKeyName(),
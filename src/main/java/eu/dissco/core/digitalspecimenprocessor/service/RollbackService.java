@@ -15,7 +15,6 @@ import eu.dissco.core.digitalspecimenprocessor.repository.DigitalSpecimenReposit
 import eu.dissco.core.digitalspecimenprocessor.repository.ElasticSearchRepository;
 import eu.dissco.core.digitalspecimenprocessor.web.PidComponent;
 import java.io.IOException;
-import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
@@ -49,49 +48,49 @@ public class RollbackService {
 
 	public void rollbackUpdatedSpecimens(Set<UpdatedDigitalSpecimenRecord> updatedDigitalSpecimenRecords,
 			boolean elasticRollback, boolean databseRollback, boolean republish) {
+		if (updatedDigitalSpecimenRecords.isEmpty()) {
+			return;
+		}
+		var currentDigitalSpecimens = updatedDigitalSpecimenRecords.stream()
+			.map(UpdatedDigitalSpecimenRecord::currentDigitalSpecimen)
+			.toList();
 		// Rollback in database and/or in elastic
-		updatedDigitalSpecimenRecords
-			.forEach(updatedRecord -> rollbackUpdatedSpecimen(updatedRecord, elasticRollback, databseRollback, republish));
-		// Rollback PID records for those that need it
-		filterUpdatesAndRollbackPidsSpecimen(updatedDigitalSpecimenRecords);
-	}
-
-	private void rollbackUpdatedSpecimen(UpdatedDigitalSpecimenRecord updatedDigitalSpecimenRecord,
-			boolean elasticRollback, boolean databaseRollback, boolean republish) {
 		if (elasticRollback) {
 			try {
-				elasticRepository.rollbackVersion(updatedDigitalSpecimenRecord.currentDigitalSpecimen());
+				logFailedElasticRollback(elasticRepository.rollbackSpecimenVersions(currentDigitalSpecimens));
 			}
 			catch (IOException | ElasticsearchException e) {
-				log.error("Fatal exception, unable to roll back update for: {}",
-						updatedDigitalSpecimenRecord.currentDigitalSpecimen().id(), e);
+				log.error("Fatal exception, unable to roll back update for: {}", ids(currentDigitalSpecimens), e);
 			}
 		}
-		if (databaseRollback) {
-			rollBackToEarlierDatabaseVersionSpecimen(updatedDigitalSpecimenRecord.currentDigitalSpecimen());
+		if (databseRollback) {
+			rollBackToEarlierDatabaseVersionSpecimens(currentDigitalSpecimens);
 		}
-		if (republish){
-			publisherService
-					.deadLetterEventSpecimen(specimenEventFromRecord(updatedDigitalSpecimenRecord.digitalSpecimenRecord()));
+		if (republish) {
+			publisherService.deadLetterEventsSpecimen(updatedDigitalSpecimenRecords.stream()
+				.map(updatedRecord -> specimenEventFromRecord(updatedRecord.digitalSpecimenRecord()))
+				.toList());
 		}
-
+		// Rollback PID records for those that need it
+		filterUpdatesAndRollbackPidsSpecimen(updatedDigitalSpecimenRecords);
 	}
 
-	private void rollBackToEarlierDatabaseVersionSpecimen(DigitalSpecimenRecord currentDigitalSpecimen) {
+	private void rollBackToEarlierDatabaseVersionSpecimens(List<DigitalSpecimenRecord> currentDigitalSpecimens) {
 		try {
-			specimenRepository.updateDigitalSpecimenRecord(Set.of(currentDigitalSpecimen));
+			specimenRepository.rollbackDigitalSpecimenVersions(currentDigitalSpecimens);
 		}
 		catch (DataAccessException _) {
-			log.error("Unable to rollback specimen {} to previous version", currentDigitalSpecimen.id());
+			log.error("Unable to rollback specimens {} to previous version", ids(currentDigitalSpecimens));
 		}
 	}
 
-	private void rollBackToEarlierDatabaseVersionMedia(DigitalMediaRecord currentDigitalMedia) {
+	private void rollBackToEarlierDatabaseVersionMedia(List<DigitalMediaRecord> currentDigitalMedia) {
 		try {
-			mediaRepository.updateDigitalMediaRecord(Set.of(currentDigitalMedia));
+			mediaRepository.rollbackDigitalMediaVersions(currentDigitalMedia);
 		}
 		catch (DataAccessException _) {
-			log.error("Unable to rollback media {} to previous version", currentDigitalMedia.id());
+			log.error("Unable to rollback media {} to previous version",
+					currentDigitalMedia.stream().map(DigitalMediaRecord::id).toList());
 		}
 	}
 
@@ -99,76 +98,88 @@ public class RollbackService {
 
 	public void rollbackUpdatedMedias(Set<UpdatedDigitalMediaRecord> updatedDigitalMediaRecords,
 			boolean elasticRollback, boolean databaseRollback) {
-		updatedDigitalMediaRecords
-			.forEach(updatedRecord -> rollbackUpdatedMedia(updatedRecord, elasticRollback, databaseRollback));
-		// Rollback PID records for those that need it
-		filterUpdatesAndRollbackPidsMedia(updatedDigitalMediaRecords);
-	}
-
-	private void rollbackUpdatedMedia(UpdatedDigitalMediaRecord updatedDigitalMediaRecord, boolean elasticRollback,
-			boolean databaseRollback) {
+		if (updatedDigitalMediaRecords.isEmpty()) {
+			return;
+		}
+		var currentDigitalMedia = updatedDigitalMediaRecords.stream()
+			.map(UpdatedDigitalMediaRecord::currentDigitalMediaRecord)
+			.toList();
 		if (elasticRollback) {
 			try {
-				elasticRepository.rollbackVersion(updatedDigitalMediaRecord.currentDigitalMediaRecord());
+				logFailedElasticRollback(elasticRepository.rollbackMediaVersions(currentDigitalMedia));
 			}
 			catch (IOException | ElasticsearchException e) {
-				log.error("Fatal exception, unable to roll back update for: "
-						+ updatedDigitalMediaRecord.currentDigitalMediaRecord(), e);
+				log.error("Fatal exception, unable to roll back update for: {}",
+						currentDigitalMedia.stream().map(DigitalMediaRecord::id).toList(), e);
 			}
 		}
 		if (databaseRollback) {
-			rollBackToEarlierDatabaseVersionMedia(updatedDigitalMediaRecord.currentDigitalMediaRecord());
+			rollBackToEarlierDatabaseVersionMedia(currentDigitalMedia);
 		}
-		publisherService.deadLetterEventMedia(mediaEventFromRecord(updatedDigitalMediaRecord.digitalMediaRecord()));
+		publisherService.deadLetterEventsMedia(updatedDigitalMediaRecords.stream()
+			.map(updatedRecord -> mediaEventFromRecord(updatedRecord.digitalMediaRecord()))
+			.toList());
+		// Rollback PID records for those that need it
+		filterUpdatesAndRollbackPidsMedia(updatedDigitalMediaRecords);
 	}
 
 	// Rollback New Specimen
 	public void rollbackNewSpecimens(Set<DigitalSpecimenRecord> digitalSpecimenRecords, boolean elasticRollback,
 			boolean databaseRollback) {
+		if (digitalSpecimenRecords.isEmpty()) {
+			return;
+		}
+		var ids = ids(digitalSpecimenRecords);
 		// Rollback in database and/or elastic
-		digitalSpecimenRecords.forEach(
-				digitalSpecimenRecord -> rollbackNewSpecimen(digitalSpecimenRecord, elasticRollback, databaseRollback));
-		// Rollback PID creation for specimen
-	}
-
-	private void rollbackNewSpecimen(DigitalSpecimenRecord digitalSpecimenRecord, boolean elasticRollback,
-			boolean databaseRollback) {
 		if (elasticRollback) {
-			try {
-				elasticRepository.rollbackObject(digitalSpecimenRecord.id(), true);
-			}
-			catch (IOException | ElasticsearchException e) {
-				log.error("Fatal exception, unable to roll back: {}", digitalSpecimenRecord.id(), e);
-			}
+			rollbackElasticObjects(ids, true);
 		}
 		if (databaseRollback) {
-			specimenRepository.rollbackSpecimen(digitalSpecimenRecord.id());
+			specimenRepository.rollbackSpecimens(digitalSpecimenRecords);
 		}
-		publisherService.deadLetterEventSpecimen(specimenEventFromRecord(digitalSpecimenRecord));
+		publisherService.deadLetterEventsSpecimen(
+				digitalSpecimenRecords.stream().map(RollbackService::specimenEventFromRecord).toList());
 	}
 
 	// Rollback New Media
 	public void rollbackNewMedias(Set<DigitalMediaRecord> digitalMediaRecords, boolean elasticRollback,
 			boolean databaseRollback) {
+		if (digitalMediaRecords.isEmpty()) {
+			return;
+		}
+		var ids = digitalMediaRecords.stream().map(DigitalMediaRecord::id).toList();
 		// Rollback in database and/or elastic
-		digitalMediaRecords
-			.forEach(digitalMediaRecord -> rollbackNewMedia(digitalMediaRecord, elasticRollback, databaseRollback));
-	}
-
-	private void rollbackNewMedia(DigitalMediaRecord digitalMediaRecord, boolean elasticRollback,
-			boolean databaseRollback) {
 		if (elasticRollback) {
-			try {
-				elasticRepository.rollbackObject(digitalMediaRecord.id(), false);
-			}
-			catch (IOException | ElasticsearchException e) {
-				log.error("Fatal exception, unable to roll back: {}", digitalMediaRecord.id(), e);
-			}
+			rollbackElasticObjects(ids, false);
 		}
 		if (databaseRollback) {
-			mediaRepository.rollBackDigitalMedia(digitalMediaRecord.id());
+			mediaRepository.rollBackDigitalMedia(digitalMediaRecords);
+		}
+		publisherService
+			.deadLetterEventsMedia(digitalMediaRecords.stream().map(RollbackService::mediaEventFromRecord).toList());
+	}
+
+	private void rollbackElasticObjects(List<String> ids, boolean isSpecimen) {
+		try {
+			logFailedElasticRollback(elasticRepository.rollbackObjects(ids, isSpecimen));
 		}
-		publisherService.deadLetterEventMedia(mediaEventFromRecord(digitalMediaRecord));
+		catch (IOException | ElasticsearchException e) {
+			log.error("Fatal exception, unable to roll back: {}", ids, e);
+		}
+	}
+
+	private static void logFailedElasticRollback(BulkResponse bulkResponse) {
+		if (bulkResponse.errors()) {
+			bulkResponse.items()
+				.stream()
+				.filter(item -> item.error() != null)
+				.forEach(item -> log.error("Fatal exception, unable to roll back: {} with errors {}", item.id(),
+						item.error().reason()));
+		}
+	}
+
+	private static List<String> ids(Collection<DigitalSpecimenRecord> digitalSpecimenRecords) {
+		return digitalSpecimenRecords.stream().map(DigitalSpecimenRecord::id).toList();
 	}
 
 	private static DigitalMediaEvent mediaEventFromRecord(DigitalMediaRecord digitalMediaRecord) {
@@ -189,21 +200,21 @@ public class RollbackService {
 			Set<DigitalSpecimenRecord> digitalSpecimenRecords, BulkResponse bulkResponse) {
 		var digitalSpecimenMap = digitalSpecimenRecords.stream()
 			.collect(Collectors.toMap(DigitalSpecimenRecord::id, Function.identity()));
-		var rollbackDigitalRecordIds = new HashSet<String>();
+		var failedRecords = new HashSet<DigitalSpecimenRecord>();
 		bulkResponse.items().forEach(item -> {
 			var digitalSpecimenRecord = digitalSpecimenMap.get(item.id());
 			if (item.error() != null) {
 				log.error("Failed to insert item into elastic search: {} with errors {}", item.id(),
 						item.error().reason());
-				rollbackDigitalRecordIds.add(item.id());
-				rollbackNewSpecimen(digitalSpecimenRecord, false, true);
+				failedRecords.add(digitalSpecimenRecord);
 			}
 			else {
 				publishCreateEventSpecimen(digitalSpecimenRecord);
 			}
 		});
+		rollbackNewSpecimens(failedRecords, false, true);
 		return new HashSet<>(digitalSpecimenRecords).stream()
-			.filter(r -> !rollbackDigitalRecordIds.contains(r.id()))
+			.filter(r -> !failedRecords.contains(r))
 			.collect(Collectors.toSet());
 	}
 
@@ -211,21 +222,21 @@ public class RollbackService {
 			BulkResponse bulkResponse) {
 		var digitalMediaRecordMap = digitalMediaRecords.stream()
 			.collect(Collectors.toMap(DigitalMediaRecord::id, Function.identity()));
-		var rollbackDigitalRecordIds = new HashSet<String>();
+		var failedRecords = new HashSet<DigitalMediaRecord>();
 		bulkResponse.items().forEach(item -> {
 			var digitalMediaRecord = digitalMediaRecordMap.get(item.id());
 			if (item.error() != null) {
 				log.error("Failed to insert item into elastic search: {} with errors {}", item.id(),
 						item.error().reason());
-				rollbackDigitalRecordIds.add(item.id());
-				rollbackNewMedia(digitalMediaRecord, false, true);
+				failedRecords.add(digitalMediaRecord);
 			}
 			else {
 				publishCreateEventMedia(digitalMediaRecord);
 			}
 		});
+		rollbackNewMedias(failedRecords, false, true);
 		return digitalMediaRecords.stream()
-			.filter(digitalMediaRecord -> !rollbackDigitalRecordIds.contains(digitalMediaRecord.id()))
+			.filter(digitalMediaRecord -> !failedRecords.contains(digitalMediaRecord))
 			.collect(Collectors.toSet());
 	}
 
@@ -237,21 +248,20 @@ public class RollbackService {
 					updatedDigitalSpecimenRecord -> updatedDigitalSpecimenRecord.digitalSpecimenRecord().id(),
 					Function.identity()));
 		var mutableDigitalSpecimenRecords = new HashSet<>(digitalSpecimenRecords);
-		var pidUpdatesToRollback = new ArrayList<UpdatedDigitalSpecimenRecord>();
+		var failedRecords = new HashSet<UpdatedDigitalSpecimenRecord>();
 		bulkResponse.items().forEach(item -> {
 			var digitalSpecimenRecord = digitalSpecimenMap.get(item.id());
 			if (item.error() != null) {
 				log.error("Failed to update item into elastic search: {} with errors {}",
 						digitalSpecimenRecord.digitalSpecimenRecord().id(), item.error().reason());
-				pidUpdatesToRollback.add(digitalSpecimenRecord);
-				rollbackUpdatedSpecimen(digitalSpecimenRecord, false, true, republishOnRollback);
+				failedRecords.add(digitalSpecimenRecord);
 				mutableDigitalSpecimenRecords.remove(digitalSpecimenRecord);
 			}
 			else {
 				publishUpdateEventSpecimen(digitalSpecimenRecord);
 			}
 		});
-		filterUpdatesAndRollbackPidsSpecimen(pidUpdatesToRollback);
+		rollbackUpdatedSpecimens(failedRecords, false, true, republishOnRollback);
 		return mutableDigitalSpecimenRecords;
 	}
 
@@ -261,21 +271,20 @@ public class RollbackService {
 			.collect(Collectors.toMap(updatedDigitalMediaRecord -> updatedDigitalMediaRecord.digitalMediaRecord().id(),
 					Function.identity()));
 		var digitalMediaRecordsMutable = new HashSet<>(digitalMediaRecords);
-		List<UpdatedDigitalMediaRecord> pidsToRollback = new ArrayList<>();
+		var failedRecords = new HashSet<UpdatedDigitalMediaRecord>();
 		bulkResponse.items().forEach(item -> {
 			var digitalMediaRecord = digitalMediaMap.get(item.id());
 			if (item.error() != null) {
 				log.error("Failed item to insert into elastic search: {} with errors {}",
 						digitalMediaRecord.digitalMediaRecord().id(), item.error().reason());
-				rollbackUpdatedMedia(digitalMediaRecord, false, true);
-				pidsToRollback.add(digitalMediaRecord);
+				failedRecords.add(digitalMediaRecord);
 				digitalMediaRecordsMutable.remove(digitalMediaRecord);
 			}
 			else {
 				publishUpdateEventMedia(digitalMediaRecord);
 			}
 		});
-		filterUpdatesAndRollbackPidsMedia(pidsToRollback);
+		rollbackUpdatedMedias(failedRecords, false, true);
 		return digitalMediaRecordsMutable;
 	}
 
@@ -2,10 +2,12 @@ package eu.dissco.core.digitalspecimenprocessor.service.preprocessing;
 
 import static java.util.stream.Collectors.toMap;
 
+import eu.dissco.core.digitalspecimenprocessor.component.MediaStateCacheComponent;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaEvent;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaRecord;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.MediaPreprocessResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.MediaProcessResult;
+import eu.dissco.core.digitalspecimenprocessor.domain.media.MediaState;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.UpdatedDigitalMediaTuple;
 import eu.dissco.core.digitalspecimenprocessor.domain.relation.PidProcessResult;
 import eu.dissco.core.digitalspecimenprocessor.exception.PidException;
@@ -25,6 +27,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -54,29 +57,77 @@ public abstract class AbstractPreprocessingService {
 
 	private final PidComponent pidComponent;
 
+	private final MediaStateCacheComponent mediaStateCache;
+
+	/*
+	 * Cached media of which the event has the cached content are returned as fingerprints,
+	 * without their full content. Other media are retrieved from the database.
+	 */
 	protected Map<String, DigitalMediaRecord> getCurrentMedia(Set<DigitalMediaEvent> mediaEvents) {
-		var mediaURIs = mediaEvents.stream()
-			.map(mediaEvent -> mediaEvent.digitalMediaWrapper().attributes().getAcAccessURI())
-			.collect(Collectors.toSet());
+		if (mediaEvents.isEmpty()) {
+			return Map.of();
+		}
 		var eventMap = mediaEvents.stream()
 			.collect(Collectors.toMap(event -> event.digitalMediaWrapper().attributes().getAcAccessURI(),
 					Function.identity()));
-		if (!mediaURIs.isEmpty()) {
-			return mediaRepository.getExistingDigitalMedia(mediaURIs)
-				.stream()
-				.filter(Objects::nonNull)
-				.map(dbRecord -> {
-					var event = eventMap.get(dbRecord.accessURI());
-					return new DigitalMediaRecord(dbRecord.id(), dbRecord.accessURI(), dbRecord.version(),
-							dbRecord.created(), event.masList(), dbRecord.attributes(), dbRecord.originalAttributes(),
-							event.forceMasSchedule(), event.isDataFromSourceSystem());
-				})
-				.collect(toMap(DigitalMediaRecord::accessURI, Function.identity(), (uri1, uri2) -> {
-					log.warn("Duplicate URIs found for digital media");
-					return uri1;
-				}));
+		var currentMedia = getCachedMediaFingerprints(eventMap);
+		var uncachedURIs = eventMap.keySet()
+			.stream()
+			.filter(mediaURI -> !currentMedia.containsKey(mediaURI))
+			.collect(Collectors.toSet());
+		log.debug("Resolved {} media from cache, retrieving {} media", currentMedia.size(), uncachedURIs.size());
+		currentMedia.putAll(getFullMedia(eventMap, uncachedURIs));
+		return currentMedia;
+	}
+
+	/*
+	 * Media changed by another instance, or rolled back, no longer have the cached version
+	 * in the database and are evicted
+	 */
+	private Map<String, DigitalMediaRecord> getCachedMediaFingerprints(Map<String, DigitalMediaEvent> eventMap) {
+		var fingerprints = new HashMap<String, DigitalMediaRecord>();
+		var cachedStates = mediaStateCache.getAll(eventMap.keySet());
+		if (cachedStates.isEmpty()) {
+			return fingerprints;
 		}
-		return Map.of();
+		var currentVersions = mediaRepository
+			.getDigitalMediaVersions(cachedStates.values().stream().map(MediaState::id).toList());
+		cachedStates.forEach((mediaURI, mediaState) -> {
+			var event = eventMap.get(mediaURI);
+			if (!Objects.equals(currentVersions.get(mediaState.id()), mediaState.version())) {
+				mediaStateCache.evictStale(mediaURI);
+			}
+			else if (mediaState.contentHash()
+				.equals(equalityService.calculateMediaHash(event.digitalMediaWrapper().attributes()))) {
+				fingerprints.put(mediaURI, mediaState.toFingerprint(event));
+			}
+		});
+		return fingerprints;
+	}
+
+	private Map<String, DigitalMediaRecord> getFullMedia(Map<String, DigitalMediaEvent> eventMap,
+			Set<String> mediaURIs) {
+		if (mediaURIs.isEmpty()) {
+			return Map.of();
+		}
+		return mediaRepository.getExistingDigitalMedia(mediaURIs)
+			.stream()
+			.filter(Objects::nonNull)
+			.map(dbRecord -> {
+				var event = eventMap.get(dbRecord.accessURI());
+				return new DigitalMediaRecord(dbRecord.id(), dbRecord.accessURI(), dbRecord.version(),
+						dbRecord.created(), event.masList(), dbRecord.attributes(), dbRecord.originalAttributes(),
+						event.forceMasSchedule(), event.isDataFromSourceSystem());
+			})
+			.collect(toMap(DigitalMediaRecord::accessURI, Function.identity(), (uri1, uri2) -> {
+				log.warn("Duplicate URIs found for digital media");
+				return uri1;
+			}));
+	}
+
+	// Fingerprint-only records contain the entity relationships, not the full media
+	private static boolean isFingerprintOnly(DigitalMediaRecord digitalMediaRecord) {
+		return digitalMediaRecord.originalAttributes() == null;
 	}
 
 	protected MediaPreprocessResult preprocessMedia(Set<DigitalMediaEvent> events,
@@ -84,6 +135,7 @@ public abstract class AbstractPreprocessingService {
 		var equalDigitalMedia = new ArrayList<DigitalMediaRecord>();
 		var changedDigitalMedia = new ArrayList<UpdatedDigitalMediaTuple>();
 		var newDigitalMedia = new ArrayList<DigitalMediaEvent>();
+		var incompleteMedia = new HashMap<String, DigitalMediaEvent>();
 		for (var mediaEvent : events) {
 			var digitalMedia = mediaEvent.digitalMediaWrapper();
 			var accessUri = digitalMedia.attributes().getAcAccessURI();
@@ -92,26 +144,52 @@ public abstract class AbstractPreprocessingService {
 				log.debug("DigitalMedia with uri: {} is completely new", accessUri);
 				newDigitalMedia.add(mediaEvent);
 			}
-			else {
+			else if (isFingerprintOnly(currentDigitalMedias.get(accessUri))) {
 				var currentDigitalMedia = currentDigitalMedias.get(accessUri);
-				var relatedSpecimenDois = entityRelationshipService
-					.findNewSpecimenRelationshipsForMedia(currentDigitalMedia, pidMap.get(accessUri));
-				if (equalityService.mediaAreEqual(currentDigitalMedia, digitalMedia, relatedSpecimenDois)) {
-					log.debug("Received digital media is equal to digital media: {}", currentDigitalMedia.id());
+				if (entityRelationshipService.findNewSpecimenRelationshipsForMedia(currentDigitalMedia,
+						pidMap.get(accessUri))
+					.isEmpty()) {
+					log.debug("Received digital media is equal to cached digital media: {}", currentDigitalMedia.id());
 					equalDigitalMedia.add(currentDigitalMedia);
 				}
 				else {
-					var eventWithUpdatedEr = equalityService.setExistingEventDatesMedia(currentDigitalMedia,
-							mediaEvent);
-					log.debug("Digital Media Object with id: {} has received an update", currentDigitalMedia.id());
-					changedDigitalMedia.add(
-							new UpdatedDigitalMediaTuple(currentDigitalMedia, eventWithUpdatedEr, relatedSpecimenDois));
+					incompleteMedia.put(accessUri, mediaEvent);
 				}
 			}
+			else {
+				preprocessExistingMedia(mediaEvent, currentDigitalMedias.get(accessUri), pidMap, equalDigitalMedia,
+						changedDigitalMedia);
+			}
+		}
+		if (!incompleteMedia.isEmpty()) {
+			// Content is equal to the cache, but the media is linked to new specimens
+			log.debug("Retrieving {} full media for changed media", incompleteMedia.size());
+			for (var currentDigitalMedia : getFullMedia(incompleteMedia, incompleteMedia.keySet()).values()) {
+				preprocessExistingMedia(incompleteMedia.get(currentDigitalMedia.accessURI()), currentDigitalMedia,
+						pidMap, equalDigitalMedia, changedDigitalMedia);
+			}
 		}
 		return new MediaPreprocessResult(equalDigitalMedia, changedDigitalMedia, newDigitalMedia);
 	}
 
+	private void preprocessExistingMedia(DigitalMediaEvent mediaEvent, DigitalMediaRecord currentDigitalMedia,
+			Map<String, PidProcessResult> pidMap, List<DigitalMediaRecord> equalDigitalMedia,
+			List<UpdatedDigitalMediaTuple> changedDigitalMedia) {
+		var relatedSpecimenDois = entityRelationshipService.findNewSpecimenRelationshipsForMedia(currentDigitalMedia,
+				pidMap.get(currentDigitalMedia.accessURI()));
+		if (equalityService.mediaAreEqual(currentDigitalMedia, mediaEvent.digitalMediaWrapper(),
+				relatedSpecimenDois)) {
+			log.debug("Received digital media is equal to digital media: {}", currentDigitalMedia.id());
+			equalDigitalMedia.add(currentDigitalMedia);
+		}
+		else {
+			var eventWithUpdatedEr = equalityService.setExistingEventDatesMedia(currentDigitalMedia, mediaEvent);
+			log.debug("Digital Media Object with id: {} has received an update", currentDigitalMedia.id());
+			changedDigitalMedia
+				.add(new UpdatedDigitalMediaTuple(currentDigitalMedia, eventWithUpdatedEr, relatedSpecimenDois));
+		}
+	}
+
 	protected MediaProcessResult processMedia(MediaPreprocessResult mediaPreprocessResult,
 			Map<String, PidProcessResult> pidProcessResults) {
 		var equalMedia = new ArrayList<DigitalMediaRecord>();
@@ -129,9 +207,17 @@ public abstract class AbstractPreprocessingService {
 			updatedMedia = new ArrayList<>(
 					digitalMediaService.updateExistingDigitalMedia(mediaPreprocessResult.changedDigitalMedia(), true));
 		}
+		cacheMediaStates(Stream.of(equalMedia, updatedMedia, newMedia).flatMap(List::stream));
 		return new MediaProcessResult(equalMedia, updatedMedia, newMedia);
 	}
 
+	// Media equal to their cached state are already cached
+	private void cacheMediaStates(Stream<DigitalMediaRecord> digitalMediaRecords) {
+		digitalMediaRecords.filter(digitalMediaRecord -> !isFingerprintOnly(digitalMediaRecord))
+			.forEach(digitalMediaRecord -> mediaStateCache.put(digitalMediaRecord.accessURI(), MediaState
+				.of(digitalMediaRecord, equalityService.calculateMediaHash(digitalMediaRecord.attributes()))));
+	}
+
 	protected Map<String, String> createPidsForNewMediaObjects(Map<String, DigitalMediaRecord> existingMedia,
 			Set<DigitalMediaEvent> digitalMediaEvents) {
 		var newEvents = digitalMediaEvents.stream()
@@ -5,6 +5,8 @@ import static java.util.stream.Collectors.groupingBy;
 import static java.util.stream.Collectors.toMap;
 
 import eu.dissco.core.digitalspecimenprocessor.Profiles;
+import eu.dissco.core.digitalspecimenprocessor.component.KeyLockComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.MediaStateCacheComponent;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaEvent;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaRecord;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaWrapper;
@@ -39,34 +41,42 @@ import tools.jackson.databind.json.JsonMapper;
 @Profile(Profiles.ER_RABBIT_MQ)
 public class ErPreprocessingService extends AbstractPreprocessingService {
 
+	private final KeyLockComponent keyLockComponent;
+
 	ErPreprocessingService(JsonMapper jsonMapper, DigitalMediaRepository mediaRepository,
 			DigitalMediaService digitalMediaService, RabbitMqPublisherService rabbitMqPublisherService,
 			EntityRelationshipService entityRelationshipService, EqualityService equalityService,
-			ApplicationProperties applicationProperties, FdoRecordService fdoRecordService, PidComponent pidComponent) {
+			ApplicationProperties applicationProperties, FdoRecordService fdoRecordService, PidComponent pidComponent,
+			MediaStateCacheComponent mediaStateCache, KeyLockComponent keyLockComponent) {
 		super(jsonMapper, mediaRepository, digitalMediaService, rabbitMqPublisherService, entityRelationshipService,
-				equalityService, applicationProperties, fdoRecordService, pidComponent);
+				equalityService, applicationProperties, fdoRecordService, pidComponent, mediaStateCache);
+		this.keyLockComponent = keyLockComponent;
 	}
 
 	public void handleMessagesMediaRelationshipTombstone(List<DigitalMediaRelationshipTombstoneEvent> events) {
 		log.info("Processing {} digital media relationship tombstone events", events.size());
 		var uniqueEvents = uniqueMediaRelationshipTombstoneEvents(events);
-		var currentDigitalMediaRecords = mediaRepository.getExistingDigitalMediaByDoi(uniqueEvents.keySet())
-			.stream()
-			.collect(Collectors.toMap(DigitalMediaRecord::id, Function.identity()));
-		var updatedDigitalMediaTuples = uniqueEvents.entrySet()
-			.stream()
-			.map(entry -> createDigitalMediaEventWithoutER(entry.getKey(), entry.getValue(),
-					currentDigitalMediaRecords))
-			.filter(Optional::isPresent)
-			.map(Optional::get)
-			.toList();
-		if (updatedDigitalMediaTuples.isEmpty()) {
-			log.info("No media relationships to tombstone");
-			return;
+		// Media are locked by their uri, the records are read once the lock is held
+		var mediaUris = mediaRepository.getDigitalMediaUrlsByDoi(uniqueEvents.keySet());
+		try (var _ = keyLockComponent.lock(List.of(), mediaUris)) {
+			var currentDigitalMediaRecords = mediaRepository.getExistingDigitalMediaByDoi(uniqueEvents.keySet())
+				.stream()
+				.collect(Collectors.toMap(DigitalMediaRecord::id, Function.identity()));
+			var updatedDigitalMediaTuples = uniqueEvents.entrySet()
+				.stream()
+				.map(entry -> createDigitalMediaEventWithoutER(entry.getKey(), entry.getValue(),
+						currentDigitalMediaRecords))
+				.filter(Optional::isPresent)
+				.map(Optional::get)
+				.toList();
+			if (updatedDigitalMediaTuples.isEmpty()) {
+				log.info("No media relationships to tombstone");
+				return;
+			}
+			log.info("Relationships removed for: {} digital media objects, processing updates",
+					updatedDigitalMediaTuples.size());
+			digitalMediaService.updateExistingDigitalMedia(updatedDigitalMediaTuples, false);
 		}
-		log.info("Relationships removed for: {} digital media objects, processing updates",
-				updatedDigitalMediaTuples.size());
-		digitalMediaService.updateExistingDigitalMedia(updatedDigitalMediaTuples, false);
 	}
 
 	private Map<String, Set<String>> uniqueMediaRelationshipTombstoneEvents(
@@ -1,6 +1,9 @@
 package eu.dissco.core.digitalspecimenprocessor.service.preprocessing;
 
 import eu.dissco.core.digitalspecimenprocessor.Profiles;
+import eu.dissco.core.digitalspecimenprocessor.component.KeyLockComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.KnownObjectFilterComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.MediaStateCacheComponent;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaEvent;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaRecord;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.MediaProcessResult;
@@ -33,25 +36,45 @@ public class MediaPreprocessingService extends AbstractPreprocessingService {
 
 	private final MasSchedulerService masSchedulerService;
 
+	private final KeyLockComponent keyLockComponent;
+
+	private final KnownObjectFilterComponent knownObjectFilter;
+
 	public MediaPreprocessingService(JsonMapper objectMapper, DigitalMediaRepository mediaRepository,
 			DigitalMediaService digitalMediaService, RabbitMqPublisherService publisherService,
 			EntityRelationshipService entityRelationshipService, EqualityService equalityService,
 			ApplicationProperties applicationProperties, FdoRecordService fdoRecordService, PidComponent pidComponent,
-			MasSchedulerService masSchedulerService) {
+			MediaStateCacheComponent mediaStateCache, MasSchedulerService masSchedulerService,
+			KeyLockComponent keyLockComponent, KnownObjectFilterComponent knownObjectFilter) {
 		super(objectMapper, mediaRepository, digitalMediaService, publisherService, entityRelationshipService,
-				equalityService, applicationProperties, fdoRecordService, pidComponent);
+				equalityService, applicationProperties, fdoRecordService, pidComponent, mediaStateCache);
 		this.masSchedulerService = masSchedulerService;
-
+		this.keyLockComponent = keyLockComponent;
+		this.knownObjectFilter = knownObjectFilter;
 	}
 
 	public MediaProcessResult handleMessagesMedia(List<DigitalMediaEvent> events) {
 		var uniqueBatchMedia = removeDuplicateMediaInBatch(events);
-		var existingMedia = getCurrentMedia(uniqueBatchMedia);
-		var mediaPids = processMediaPids(existingMedia, uniqueBatchMedia);
-		var mediaProcessResult = preprocessMedia(uniqueBatchMedia, existingMedia, mediaPids);
-		var mediaResult = processMedia(mediaProcessResult, mediaPids);
-		masSchedulerService.scheduleMasForMedia(mediaResult);
-		return mediaResult;
+		var mediaUris = uniqueBatchMedia.stream()
+			.map(event -> event.digitalMediaWrapper().attributes().getAcAccessURI())
+			.toList();
+		try (var _ = keyLockComponent.lock(List.of(), mediaUris)) {
+			var existingMedia = getKnownMedia(uniqueBatchMedia);
+			var mediaPids = processMediaPids(existingMedia, uniqueBatchMedia);
+			var mediaProcessResult = preprocessMedia(uniqueBatchMedia, existingMedia, mediaPids);
+			var mediaResult = processMedia(mediaProcessResult, mediaPids);
+			knownObjectFilter.addMedia(mediaResult.newMedia());
+			masSchedulerService.scheduleMasForMedia(mediaResult);
+			return mediaResult;
+		}
+	}
+
+	// Media the known object filter has never seen are new and not looked up
+	private Map<String, DigitalMediaRecord> getKnownMedia(Set<DigitalMediaEvent> mediaEvents) {
+		var lookupEvents = knownObjectFilter.mightExistMedia(mediaEvents);
+		var currentMedia = getCurrentMedia(lookupEvents);
+		knownObjectFilter.recordMediaLookups(lookupEvents, currentMedia.keySet());
+		return currentMedia;
 	}
 
 	private Set<DigitalMediaEvent> removeDuplicateMediaInBatch(List<DigitalMediaEvent> mediaEvents) {
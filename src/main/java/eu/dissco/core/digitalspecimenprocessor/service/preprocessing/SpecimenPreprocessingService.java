@@ -3,15 +3,22 @@ package eu.dissco.core.digitalspecimenprocessor.service.preprocessing;
 import static java.util.stream.Collectors.toMap;
 
 import eu.dissco.core.digitalspecimenprocessor.Profiles;
+import eu.dissco.core.digitalspecimenprocessor.component.KeyLockComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.KeyLockComponent.KeyLock;
+import eu.dissco.core.digitalspecimenprocessor.component.KnownObjectFilterComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.MediaStateCacheComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.SpecimenStateCacheComponent;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaEvent;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaRecord;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.MediaProcessResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.relation.MediaRelationshipProcessResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.relation.PidProcessResult;
+import eu.dissco.core.digitalspecimenprocessor.domain.relation.SpecimenMediaIndex;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenEvent;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenRecord;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.SpecimenPreprocessResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.SpecimenProcessResult;
+import eu.dissco.core.digitalspecimenprocessor.domain.specimen.SpecimenState;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.UpdatedDigitalSpecimenTuple;
 import eu.dissco.core.digitalspecimenprocessor.exception.AnnotationProcessingException;
 import eu.dissco.core.digitalspecimenprocessor.exception.DisscoRepositoryException;
@@ -36,6 +43,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
+import java.util.Objects;
 import java.util.Set;
 import java.util.function.Function;
 import java.util.stream.Collectors;
@@ -59,48 +67,104 @@ public class SpecimenPreprocessingService extends AbstractPreprocessingService {
 
 	private final DigitalSpecimenService digitalSpecimenService;
 
+	private final KeyLockComponent keyLockComponent;
+
+	private final SpecimenStateCacheComponent specimenStateCache;
+
+	private final KnownObjectFilterComponent knownObjectFilter;
+
 	public SpecimenPreprocessingService(JsonMapper objectMapper, DigitalMediaRepository mediaRepository,
 			DigitalMediaService digitalMediaService, RabbitMqPublisherService publisherService,
 			EntityRelationshipService entityRelationshipService, EqualityService equalityService,
 			ApplicationProperties applicationProperties, FdoRecordService fdoRecordService, PidComponent pidComponent,
-			MasSchedulerService masSchedulerService, DigitalSpecimenRepository specimenRepository,
-			AnnotationService annotationService, DigitalSpecimenService digitalSpecimenService) {
+			MediaStateCacheComponent mediaStateCache, MasSchedulerService masSchedulerService,
+			DigitalSpecimenRepository specimenRepository, AnnotationService annotationService,
+			DigitalSpecimenService digitalSpecimenService, KeyLockComponent keyLockComponent,
+			SpecimenStateCacheComponent specimenStateCache, KnownObjectFilterComponent knownObjectFilter) {
 		super(objectMapper, mediaRepository, digitalMediaService, publisherService, entityRelationshipService,
-				equalityService, applicationProperties, fdoRecordService, pidComponent);
+				equalityService, applicationProperties, fdoRecordService, pidComponent, mediaStateCache);
 		this.masSchedulerService = masSchedulerService;
 		this.specimenRepository = specimenRepository;
 		this.annotationService = annotationService;
 		this.digitalSpecimenService = digitalSpecimenService;
+		this.keyLockComponent = keyLockComponent;
+		this.specimenStateCache = specimenStateCache;
+		this.knownObjectFilter = knownObjectFilter;
 	}
 
 	public SpecimenProcessResult handleMessages(List<DigitalSpecimenEvent> events) {
 		log.info("Processing {} digital specimen", events.size());
-		try {
-			var validEvents = checkImageDuplicationSingleSpecimen(events);
-			var uniqueBatchSpecimens = removeDuplicatesInBatch(validEvents);
-			if (uniqueBatchSpecimens.isEmpty()) {
-				log.warn("After removing any non-complaint events, there is nothing to process");
-				return new SpecimenProcessResult();
-			}
+		var validEvents = checkImageDuplicationSingleSpecimen(events);
+		var waves = splitIntoConflictFreeWaves(validEvents);
+		if (waves.isEmpty()) {
+			log.warn("After removing any non-complaint events, there is nothing to process");
+			return new SpecimenProcessResult();
+		}
+		if (waves.size() == 1) {
+			return handleWave(waves.getFirst());
+		}
+		log.info("Processing batch in {} conflict-free waves", waves.size());
+		return mergeResults(waves.stream().map(this::handleWave).toList());
+	}
+
+	/*
+	 * Specimens which were changed concurrently between our read and our update are
+	 * processed once more, based on a fresh read. If they conflict again, they are
+	 * republished. This happens outside the lock of the wave, as the lock is not
+	 * reentrant.
+	 */
+	private SpecimenProcessResult handleWave(Set<DigitalSpecimenEvent> uniqueBatchSpecimens) {
+		var conflictedSpecimens = new LinkedHashSet<DigitalSpecimenEvent>();
+		var result = processWave(uniqueBatchSpecimens, conflictedSpecimens);
+		if (conflictedSpecimens.isEmpty()) {
+			return result;
+		}
+		log.info("Reprocessing {} specimens which were changed concurrently", conflictedSpecimens.size());
+		var stillConflictedSpecimens = new LinkedHashSet<DigitalSpecimenEvent>();
+		var retryResult = processWave(conflictedSpecimens, stillConflictedSpecimens);
+		stillConflictedSpecimens.forEach(this::republishSpecimenEvent);
+		return mergeResults(List.of(result, retryResult));
+	}
+
+	private static SpecimenProcessResult mergeResults(List<SpecimenProcessResult> results) {
+		var equalSpecimens = new HashMap<DigitalSpecimenRecord, DigitalSpecimenEvent>();
+		var updatedSpecimens = new ArrayList<DigitalSpecimenRecord>();
+		var newSpecimens = new ArrayList<DigitalSpecimenRecord>();
+		for (var result : results) {
+			equalSpecimens.putAll(result.equalDigitalSpecimens());
+			updatedSpecimens.addAll(result.updatedDigitalSpecimens());
+			newSpecimens.addAll(result.newDigitalSpecimens());
+		}
+		return new SpecimenProcessResult(equalSpecimens, updatedSpecimens, newSpecimens);
+	}
+
+	private SpecimenProcessResult processWave(Set<DigitalSpecimenEvent> uniqueBatchSpecimens,
+			Set<DigitalSpecimenEvent> conflictedSpecimens) {
+		try (var _ = lockBatch(uniqueBatchSpecimens)) {
 			var uniqueBatchMedia = getUniqueDigitalMediaEvents(uniqueBatchSpecimens);
 			var existingSpecimens = getCurrentSpecimen(uniqueBatchSpecimens);
-			var existingMedia = getCurrentMedia(uniqueBatchMedia);
+			var existingMedia = getKnownMedia(uniqueBatchMedia);
 			var annotationsForSpecimens = getAcceptedAnnotationsForSpecimens(existingSpecimens);
 			log.info("Retrieved {} existing specimen, {} existing media", existingSpecimens.size(),
 					existingMedia.size());
 			var specimenPreprocessResult = preprocessSpecimens(uniqueBatchSpecimens, existingSpecimens, existingMedia,
 					annotationsForSpecimens);
 			var pids = processPids(specimenPreprocessResult, existingMedia, uniqueBatchSpecimens, uniqueBatchMedia);
-			var mediaPreprocessResult = preprocessMedia(uniqueBatchMedia, existingMedia, pids.getRight());
+			var mediaPreprocessResult = preprocessMedia(uniqueBatchMedia, existingMedia, pids.mediaPids());
 			log.info("Batch consists of: {} new, {} update, and {} equal specimens",
 					specimenPreprocessResult.newSpecimens().size(), specimenPreprocessResult.changedSpecimens().size(),
 					specimenPreprocessResult.equalSpecimens().size());
 			log.info("Batch consists of {} new, {} update, and {} equal media",
 					mediaPreprocessResult.newDigitalMedia().size(), mediaPreprocessResult.changedDigitalMedia().size(),
 					mediaPreprocessResult.equalDigitalMedia().size());
-			var specimenResults = processSpecimens(specimenPreprocessResult, pids.getLeft());
-			var mediaPids = updateMediaPidsWithResults(specimenResults, specimenPreprocessResult, pids.getRight());
+			var specimenResults = processSpecimens(specimenPreprocessResult, pids.specimenPids());
+			cacheSpecimenStates(specimenResults);
+			knownObjectFilter.addSpecimens(specimenResults.newDigitalSpecimens());
+			conflictedSpecimens
+				.addAll(getConflictedSpecimens(uniqueBatchSpecimens, specimenPreprocessResult, specimenResults));
+			var mediaPids = updateMediaPidsWithResults(specimenResults, specimenPreprocessResult, pids);
 			var mediaResults = processMedia(mediaPreprocessResult, mediaPids);
+			knownObjectFilter.addMedia(mediaResults.newMedia());
 			log.info("Processed specimen and media");
 			scheduleMas(specimenResults, mediaResults);
 			return specimenResults;
@@ -111,6 +175,47 @@ public class SpecimenPreprocessingService extends AbstractPreprocessingService {
 		}
 	}
 
+	/*
+	 * Changed specimens which were not updated and of which the version in the database is
+	 * no longer the version we read
+	 */
+	private List<DigitalSpecimenEvent> getConflictedSpecimens(Set<DigitalSpecimenEvent> events,
+			SpecimenPreprocessResult specimenPreprocessResult, SpecimenProcessResult specimenResults)
+			throws DisscoRepositoryException {
+		var updatedIds = specimenResults.updatedDigitalSpecimens()
+			.stream()
+			.map(DigitalSpecimenRecord::id)
+			.collect(Collectors.toSet());
+		var notUpdated = specimenPreprocessResult.changedSpecimens()
+			.stream()
+			.filter(tuple -> !updatedIds.contains(tuple.currentSpecimen().id()))
+			.toList();
+		if (notUpdated.isEmpty()) {
+			return List.of();
+		}
+		var currentVersions = specimenRepository
+			.getDigitalSpecimenVersions(notUpdated.stream().map(tuple -> tuple.currentSpecimen().id()).toList());
+		var eventMap = events.stream()
+			.collect(toMap(event -> event.digitalSpecimenWrapper().physicalSpecimenID(), Function.identity()));
+		return notUpdated.stream()
+			.map(UpdatedDigitalSpecimenTuple::currentSpecimen)
+			.filter(currentSpecimen -> currentVersions.containsKey(currentSpecimen.id())
+					&& currentVersions.get(currentSpecimen.id()) != currentSpecimen.version())
+			.map(currentSpecimen -> eventMap.get(currentSpecimen.digitalSpecimenWrapper().physicalSpecimenID()))
+			.toList();
+	}
+
+	private KeyLock lockBatch(Set<DigitalSpecimenEvent> events) {
+		var physicalSpecimenIds = events.stream()
+			.map(event -> event.digitalSpecimenWrapper().physicalSpecimenID())
+			.toList();
+		var mediaUris = events.stream()
+			.flatMap(event -> event.digitalMediaEvents().stream())
+			.map(event -> event.digitalMediaWrapper().attributes().getAcAccessURI())
+			.toList();
+		return keyLockComponent.lock(physicalSpecimenIds, mediaUris);
+	}
+
 	private void scheduleMas(SpecimenProcessResult specimenResult, MediaProcessResult mediaProcessResult) {
 		masSchedulerService.scheduleMasForSpecimen(specimenResult);
 		masSchedulerService.scheduleMasForMedia(mediaProcessResult);
@@ -136,49 +241,46 @@ public class SpecimenPreprocessingService extends AbstractPreprocessingService {
 		return validEvent;
 	}
 
-	private Set<DigitalSpecimenEvent> removeDuplicatesInBatch(List<DigitalSpecimenEvent> events) {
-		var uniqueSet = new LinkedHashSet<DigitalSpecimenEvent>();
-		var uniqueMediaSet = new LinkedHashSet<String>();
-		var map = events.stream()
-			.collect(Collectors.groupingBy(event -> event.digitalSpecimenWrapper().physicalSpecimenID()));
-		for (var entry : map.entrySet()) {
-			if (entry.getValue().size() > 1) {
-				log.warn("Found {} duplicate specimen in batch for id {}", entry.getValue().size(), entry.getKey());
-				var specimenIsNotPublished = true;
-				for (var duplicateSpecimenEvent : entry.getValue()) {
-					if (specimenIsNotPublished && checkIfMediaIsUnique(duplicateSpecimenEvent, uniqueMediaSet)) {
-						addToUniqueSets(uniqueSet, duplicateSpecimenEvent, uniqueMediaSet);
-						specimenIsNotPublished = false;
-					}
-					else {
-						republishSpecimenEvent(duplicateSpecimenEvent);
-					}
-				}
+	/*
+	 * Splits the batch into waves in which no two events share a physical specimen id or
+	 * media uri, so each wave can be processed as a single batch. An event is placed in the
+	 * wave after the last wave that uses one of its ids, which keeps events for the same
+	 * object in the order they were received. Events that do not fit in the maximum number
+	 * of waves are republished, as are later events that depend on them.
+	 */
+	private List<Set<DigitalSpecimenEvent>> splitIntoConflictFreeWaves(List<DigitalSpecimenEvent> events) {
+		var maxWaves = applicationProperties.getMaxBatchWaves();
+		var waves = new ArrayList<Set<DigitalSpecimenEvent>>();
+		var lastWaveOfSpecimen = new HashMap<String, Integer>();
+		var lastWaveOfMedia = new HashMap<String, Integer>();
+		for (var event : events) {
+			var physicalSpecimenId = event.digitalSpecimenWrapper().physicalSpecimenID();
+			var mediaUris = event.digitalMediaEvents()
+				.stream()
+				.map(e -> e.digitalMediaWrapper().attributes().getAcAccessURI())
+				.toList();
+			var wave = lastWaveOfSpecimen.getOrDefault(physicalSpecimenId, -1) + 1;
+			for (var mediaUri : mediaUris) {
+				wave = Math.max(wave, lastWaveOfMedia.getOrDefault(mediaUri, -1) + 1);
 			}
-			else if (checkIfMediaIsUnique(entry.getValue().getFirst(), uniqueMediaSet)) {
-				addToUniqueSets(uniqueSet, entry.getValue().getFirst(), uniqueMediaSet);
+			if (wave >= maxWaves) {
+				log.warn("Specimen {} conflicts with more than {} earlier events in batch, republishing event",
+						physicalSpecimenId, maxWaves);
+				republishSpecimenEvent(event);
+				wave = maxWaves;
 			}
 			else {
-				republishSpecimenEvent(entry.getValue().getFirst());
+				if (wave == waves.size()) {
+					waves.add(new LinkedHashSet<>());
+				}
+				waves.get(wave).add(event);
+			}
+			lastWaveOfSpecimen.put(physicalSpecimenId, wave);
+			for (var mediaUri : mediaUris) {
+				lastWaveOfMedia.put(mediaUri, wave);
 			}
 		}
-		return uniqueSet;
-	}
-
-	private static boolean checkIfMediaIsUnique(DigitalSpecimenEvent entry, HashSet<String> uniqueMediaSet) {
-		return entry.digitalMediaEvents()
-			.stream()
-			.map(e -> e.digitalMediaWrapper().attributes().getAcAccessURI())
-			.noneMatch(uniqueMediaSet::contains);
-	}
-
-	private static void addToUniqueSets(LinkedHashSet<DigitalSpecimenEvent> uniqueSet, DigitalSpecimenEvent entry,
-			HashSet<String> uniqueMediaSet) {
-		uniqueSet.add(entry);
-		uniqueMediaSet.addAll(entry.digitalMediaEvents()
-			.stream()
-			.map(e -> e.digitalMediaWrapper().attributes().getAcAccessURI())
-			.toList());
+		return waves;
 	}
 
 	private void republishSpecimenEvent(DigitalSpecimenEvent event) {
@@ -196,25 +298,114 @@ public class SpecimenPreprocessingService extends AbstractPreprocessingService {
 		return uniqueBatchMedia;
 	}
 
+	// Specimens the known object filter has never seen are new and not looked up
 	private Map<String, DigitalSpecimenRecord> getCurrentSpecimen(Set<DigitalSpecimenEvent> events)
 			throws DisscoRepositoryException {
+		var lookupEvents = knownObjectFilter.mightExistSpecimens(events);
+		var currentSpecimens = lookupCurrentSpecimen(lookupEvents);
+		knownObjectFilter.recordSpecimenLookups(lookupEvents, currentSpecimens.keySet());
+		return currentSpecimens;
+	}
+
+	private Map<String, DigitalSpecimenRecord> lookupCurrentSpecimen(Set<DigitalSpecimenEvent> events)
+			throws DisscoRepositoryException {
 		var eventMap = events.stream()
 			.collect(Collectors.toMap(event -> event.digitalSpecimenWrapper().physicalSpecimenID(),
 					Function.identity()));
-		return specimenRepository
-			.getDigitalSpecimens(
-					events.stream().map(event -> event.digitalSpecimenWrapper().physicalSpecimenID()).toList())
+		var physicalSpecimenIds = events.stream()
+			.map(event -> event.digitalSpecimenWrapper().physicalSpecimenID())
+			.toList();
+		if (!applicationProperties.isSpecimenFingerprintLookup()) {
+			return getFullSpecimen(eventMap, physicalSpecimenIds);
+		}
+		var currentSpecimens = new HashMap<String, DigitalSpecimenRecord>();
+		var mismatchedSpecimens = new ArrayList<String>();
+		var cachedFingerprints = getCachedFingerprints(physicalSpecimenIds);
+		var uncachedSpecimens = physicalSpecimenIds.stream()
+			.filter(physicalSpecimenId -> !cachedFingerprints.containsKey(physicalSpecimenId))
+			.toList();
+		var fingerprints = new ArrayList<>(cachedFingerprints.values());
+		if (!uncachedSpecimens.isEmpty()) {
+			fingerprints.addAll(specimenRepository.getDigitalSpecimenFingerprints(uncachedSpecimens));
+		}
+		for (var fingerprint : fingerprints) {
+			var physicalSpecimenId = fingerprint.digitalSpecimenWrapper().physicalSpecimenID();
+			var event = eventMap.get(physicalSpecimenId);
+			if (fingerprint.contentHash() != null && fingerprint.contentHash()
+				.equals(equalityService.calculateSpecimenHash(event.digitalSpecimenWrapper().attributes()))) {
+				currentSpecimens.put(physicalSpecimenId, mapToCurrentSpecimen(fingerprint, event));
+			}
+			else {
+				mismatchedSpecimens.add(physicalSpecimenId);
+			}
+		}
+		log.debug("Fingerprint matched {} specimens ({} cached), retrieving {} full specimens",
+				currentSpecimens.size(), cachedFingerprints.size(), mismatchedSpecimens.size());
+		currentSpecimens.putAll(getFullSpecimen(eventMap, mismatchedSpecimens));
+		return currentSpecimens;
+	}
+
+	/*
+	 * Fingerprints of the cached specimens which still have the cached version in the
+	 * database. Specimens changed by another instance, or rolled back, are evicted and
+	 * retrieved from the database instead.
+	 */
+	private Map<String, DigitalSpecimenRecord> getCachedFingerprints(List<String> physicalSpecimenIds)
+			throws DisscoRepositoryException {
+		var cachedStates = specimenStateCache.getAll(physicalSpecimenIds);
+		if (cachedStates.isEmpty()) {
+			return Map.of();
+		}
+		var currentVersions = specimenRepository
+			.getDigitalSpecimenVersions(cachedStates.values().stream().map(SpecimenState::id).toList());
+		var cachedFingerprints = new HashMap<String, DigitalSpecimenRecord>();
+		cachedStates.forEach((physicalSpecimenId, specimenState) -> {
+			if (Objects.equals(currentVersions.get(specimenState.id()), specimenState.version())) {
+				cachedFingerprints.put(physicalSpecimenId, specimenState.toFingerprint(physicalSpecimenId));
+			}
+			else {
+				specimenStateCache.evictStale(physicalSpecimenId);
+			}
+		});
+		return cachedFingerprints;
+	}
+
+	// The cache is only read by the fingerprint lookup, otherwise we don't fill it
+	private void cacheSpecimenStates(SpecimenProcessResult specimenResults) {
+		if (applicationProperties.isSpecimenFingerprintLookup()) {
+			specimenResults.equalDigitalSpecimens().keySet().forEach(specimenStateCache::put);
+			specimenResults.updatedDigitalSpecimens().forEach(specimenStateCache::put);
+			specimenResults.newDigitalSpecimens().forEach(specimenStateCache::put);
+		}
+	}
+
+	private Map<String, DigitalMediaRecord> getKnownMedia(Set<DigitalMediaEvent> mediaEvents) {
+		var lookupEvents = knownObjectFilter.mightExistMedia(mediaEvents);
+		var currentMedia = getCurrentMedia(lookupEvents);
+		knownObjectFilter.recordMediaLookups(lookupEvents, currentMedia.keySet());
+		return currentMedia;
+	}
+
+	private Map<String, DigitalSpecimenRecord> getFullSpecimen(Map<String, DigitalSpecimenEvent> eventMap,
+			List<String> physicalSpecimenIds) throws DisscoRepositoryException {
+		if (physicalSpecimenIds.isEmpty()) {
+			return Map.of();
+		}
+		return specimenRepository.getDigitalSpecimens(physicalSpecimenIds)
 			.stream()
-			.map(dbRecord -> {
-				var event = eventMap.get(dbRecord.digitalSpecimenWrapper().physicalSpecimenID());
-				return new DigitalSpecimenRecord(dbRecord.id(), dbRecord.midsLevel(), dbRecord.version(),
-						dbRecord.created(), dbRecord.digitalSpecimenWrapper(), event.masList(),
-						event.forceMasSchedule(), event.isDataFromSourceSystem(), List.of());
-			})
+			.map(dbRecord -> mapToCurrentSpecimen(dbRecord,
+					eventMap.get(dbRecord.digitalSpecimenWrapper().physicalSpecimenID())))
 			.collect(toMap(specimenRecord -> specimenRecord.digitalSpecimenWrapper().physicalSpecimenID(),
 					Function.identity()));
 	}
 
+	private static DigitalSpecimenRecord mapToCurrentSpecimen(DigitalSpecimenRecord dbRecord,
+			DigitalSpecimenEvent event) {
+		return new DigitalSpecimenRecord(dbRecord.id(), dbRecord.midsLevel(), dbRecord.version(), dbRecord.created(),
+				dbRecord.digitalSpecimenWrapper(), event.masList(), event.forceMasSchedule(),
+				event.isDataFromSourceSystem(), List.of(), dbRecord.contentHash());
+	}
+
 	private Map<String, List<Annotation>> getAcceptedAnnotationsForSpecimens(
 			Map<String, DigitalSpecimenRecord> digitalSpecimenRecords) {
 		return annotationService.getAnnotationsForSpecimens(new HashSet<>(digitalSpecimenRecords.values()));
@@ -222,10 +413,11 @@ public class SpecimenPreprocessingService extends AbstractPreprocessingService {
 
 	private SpecimenPreprocessResult preprocessSpecimens(Set<DigitalSpecimenEvent> events,
 			Map<String, DigitalSpecimenRecord> currentSpecimens, Map<String, DigitalMediaRecord> currentMedia,
-			Map<String, List<Annotation>> acceptedAnnotations) {
+			Map<String, List<Annotation>> acceptedAnnotations) throws DisscoRepositoryException {
 		var equalSpecimens = new HashMap<DigitalSpecimenRecord, DigitalSpecimenEvent>();
 		var changedSpecimens = new ArrayList<UpdatedDigitalSpecimenTuple>();
 		var newSpecimens = new ArrayList<DigitalSpecimenEvent>();
+		var incompleteSpecimens = new HashMap<String, Pair<DigitalSpecimenEvent, MediaRelationshipProcessResult>>();
 		for (DigitalSpecimenEvent event : events) {
 			log.debug("ds: {}", event.digitalSpecimenWrapper());
 			if (!currentSpecimens.containsKey(event.digitalSpecimenWrapper().physicalSpecimenID())) {
@@ -244,20 +436,47 @@ public class SpecimenPreprocessingService extends AbstractPreprocessingService {
 								currentDigitalSpecimen.id());
 						equalSpecimens.put(currentDigitalSpecimen, event);
 					}
+					else if (currentDigitalSpecimen.digitalSpecimenWrapper().isFingerprint()) {
+						// Fingerprints are sufficient for equal specimens, changed specimens need the
+						// full record
+						incompleteSpecimens.put(event.digitalSpecimenWrapper().physicalSpecimenID(),
+								Pair.of(event, processedMediaRelationships));
+					}
 					else {
-						log.debug("Specimen with id: {} has received an update", currentDigitalSpecimen.id());
-						var eventWithUpdatedEr = equalityService.setExistingEventDatesSpecimen(
-								currentDigitalSpecimen.digitalSpecimenWrapper(), event, processedMediaRelationships);
-						changedSpecimens.add(new UpdatedDigitalSpecimenTuple(currentDigitalSpecimen, eventWithUpdatedEr,
-								processedMediaRelationships));
+						changedSpecimens.add(
+								getUpdatedSpecimenTuple(currentDigitalSpecimen, event, processedMediaRelationships));
 					}
 				}
 			}
 		}
+		if (!incompleteSpecimens.isEmpty()) {
+			// Content hash matched, but media relationships or annotations changed the specimen
+			log.debug("Retrieving {} full specimens for changed specimens", incompleteSpecimens.size());
+			var incompleteEvents = incompleteSpecimens.entrySet()
+				.stream()
+				.collect(toMap(Entry::getKey, e -> e.getValue().getLeft()));
+			for (var currentDigitalSpecimen : getFullSpecimen(incompleteEvents,
+					List.copyOf(incompleteEvents.keySet()))
+				.values()) {
+				var incompleteSpecimen = incompleteSpecimens
+					.get(currentDigitalSpecimen.digitalSpecimenWrapper().physicalSpecimenID());
+				changedSpecimens.add(getUpdatedSpecimenTuple(currentDigitalSpecimen, incompleteSpecimen.getLeft(),
+						incompleteSpecimen.getRight()));
+			}
+		}
 		var newSpecimenPids = createNewSpecimenPids(newSpecimens);
 		return new SpecimenPreprocessResult(equalSpecimens, changedSpecimens, newSpecimens, newSpecimenPids);
 	}
 
+	private UpdatedDigitalSpecimenTuple getUpdatedSpecimenTuple(DigitalSpecimenRecord currentDigitalSpecimen,
+			DigitalSpecimenEvent event, MediaRelationshipProcessResult processedMediaRelationships) {
+		log.debug("Specimen with id: {} has received an update", currentDigitalSpecimen.id());
+		var eventWithUpdatedEr = equalityService.setExistingEventDatesSpecimen(
+				currentDigitalSpecimen.digitalSpecimenWrapper(), event, processedMediaRelationships);
+		return new UpdatedDigitalSpecimenTuple(currentDigitalSpecimen, eventWithUpdatedEr,
+				processedMediaRelationships);
+	}
+
 	private MediaRelationshipProcessResult getMediaRelationships(DigitalSpecimenEvent event,
 			Map<String, DigitalSpecimenRecord> currentSpecimens, Map<String, DigitalMediaRecord> currentMedia) {
 		MediaRelationshipProcessResult processedMediaRelationships;
@@ -328,43 +547,20 @@ public class SpecimenPreprocessingService extends AbstractPreprocessingService {
 	 * We need a way to map the specimen PIDs to the media and vice versa Each has a
 	 * many-to-many relationship
 	 */
-	private Pair<Map<String, PidProcessResult>, Map<String, PidProcessResult>> processPids(
-			SpecimenPreprocessResult specimenPreprocessResult, Map<String, DigitalMediaRecord> existingMedias,
-			Set<DigitalSpecimenEvent> digitalSpecimenEvents, Set<DigitalMediaEvent> digitalMediaEvents) {
-		var specimenPids = new HashMap<String, PidProcessResult>();
-		var mediaHashMap = new HashMap<String, HashSet<String>>(); // key = local id
+	private SpecimenMediaIndex processPids(SpecimenPreprocessResult specimenPreprocessResult,
+			Map<String, DigitalMediaRecord> existingMedias, Set<DigitalSpecimenEvent> digitalSpecimenEvents,
+			Set<DigitalMediaEvent> digitalMediaEvents) {
 		var allSpecimenPids = concatSpecimenPids(specimenPreprocessResult);
-		var newMediaPids = createPidsForNewMediaObjects(existingMedias, digitalMediaEvents); // key
-		// =
-		// local
-		// id
-		var allMediaPids = concatMediaPids(existingMedias, newMediaPids); // key = local
-		// id
-		for (var specimen : digitalSpecimenEvents) {
-			var mediaDoisForThisSpecimen = specimen.digitalMediaEvents()
-				.stream()
-				.map(event -> event.digitalMediaWrapper().attributes().getAcAccessURI())
-				.map(allMediaPids::get)
-				.collect(Collectors.toSet());
-			var specimenPid = allSpecimenPids.get(specimen.digitalSpecimenWrapper().physicalSpecimenID());
-			specimenPids.put(specimen.digitalSpecimenWrapper().physicalSpecimenID(),
-					new PidProcessResult(specimenPid, mediaDoisForThisSpecimen));
-			// We record the specimen -> media relationship in an intermediate map
-			// Multiple specimens may refer to the same media object
-			// But the media event doesn't have a direct link to the specimens it refers
-			// to
-			updateMediaHashMap(mediaHashMap, mediaDoisForThisSpecimen, allMediaPids, specimenPid);
-		}
-		var mediaPids = mediaHashMap.entrySet()
-			.stream()
-			.collect(toMap(Entry::getKey, e -> new PidProcessResult(allMediaPids.get(e.getKey()), e.getValue())));
-		for (var mediaPid : mediaPids.entrySet()) {
-			if (mediaPid.getValue().doisOfRelatedObjects().size() > 1) {
-				log.info("Media {} has {} related specimens", mediaPid.getValue().doiOfTarget(),
-						mediaPid.getValue().doisOfRelatedObjects().size());
+		var newMediaPids = createPidsForNewMediaObjects(existingMedias, digitalMediaEvents); // key = local id
+		var allMediaPids = concatMediaPids(existingMedias, newMediaPids); // key = local id
+		var index = SpecimenMediaIndex.build(digitalSpecimenEvents, allSpecimenPids, allMediaPids);
+		for (var mediaPid : index.mediaPids().values()) {
+			if (mediaPid.doisOfRelatedObjects().size() > 1) {
+				log.info("Media {} has {} related specimens", mediaPid.doiOfTarget(),
+						mediaPid.doisOfRelatedObjects().size());
 			}
 		}
-		return Pair.of(specimenPids, mediaPids);
+		return index;
 	}
 
 	private static Map<String, String> concatSpecimenPids(SpecimenPreprocessResult specimenPreprocessResult) {
@@ -386,47 +582,21 @@ public class SpecimenPreprocessingService extends AbstractPreprocessingService {
 			.collect(toMap(Entry::getKey, Entry::getValue));
 	}
 
-	private static void updateMediaHashMap(HashMap<String, HashSet<String>> mediaHashMap,
-			Set<String> mediaPidsForThisSpecimen, Map<String, String> allMediaPids, String specimenPid) {
-		if (mediaPidsForThisSpecimen.isEmpty()) {
-			return;
-		}
-		allMediaPids.entrySet()
-			.stream()
-			.filter(e -> mediaPidsForThisSpecimen.contains(e.getValue())) // Only look at
-			// relevant
-			// pids
-			.forEach(e -> {
-				var uri = e.getKey();
-				mediaHashMap.computeIfAbsent(uri, k -> new HashSet<>()).add(specimenPid);
-			});
-	}
-
 	private static Map<String, PidProcessResult> updateMediaPidsWithResults(SpecimenProcessResult specimenResult,
-			SpecimenPreprocessResult specimenPreprocessResult, Map<String, PidProcessResult> mediaPidsFull) {
+			SpecimenPreprocessResult specimenPreprocessResult, SpecimenMediaIndex specimenMediaIndex) {
 		if ((specimenResult.updatedDigitalSpecimens().size()
 				+ specimenPreprocessResult.newSpecimens().size()) < (specimenPreprocessResult.changedSpecimens().size()
 						+ specimenPreprocessResult.newSpecimens().size())) {
-			return mediaPidsFull;
+			return specimenMediaIndex.mediaPids();
 		}
 		// If we had a partial success, and not all specimens were created, we don't want
 		// to create meaningless ERS on our media
 		// So we filter out the specimen PIDs that were not in our results
-		var changedSpecimens = Stream
+		var changedSpecimenDois = Stream
 			.concat(specimenResult.updatedDigitalSpecimens().stream(), specimenResult.newDigitalSpecimens().stream())
+			.map(DigitalSpecimenRecord::id)
 			.toList();
-		var specimenDOIs = changedSpecimens.stream().map(DigitalSpecimenRecord::id).toList();
-		var mediaPidsFiltered = new HashMap<String, PidProcessResult>();
-		for (var mediaPid : mediaPidsFull.entrySet()) {
-			var relatedDois = mediaPid.getValue()
-				.doisOfRelatedObjects()
-				.stream()
-				.filter(specimenDOIs::contains)
-				.collect(Collectors.toSet());
-			mediaPidsFiltered.put(mediaPid.getKey(),
-					new PidProcessResult(mediaPid.getValue().doiOfTarget(), relatedDois));
-		}
-		return mediaPidsFiltered;
+		return specimenMediaIndex.mediaPidsRelatedTo(changedSpecimenDois);
 	}
 
 }
@@ -1,15 +1,16 @@
 package eu.dissco.core.digitalspecimenprocessor.service.rabbitmqconsumer;
 
 import eu.dissco.core.digitalspecimenprocessor.Profiles;
+import eu.dissco.core.digitalspecimenprocessor.component.MessageCompressionComponent;
 import eu.dissco.core.digitalspecimenprocessor.domain.relation.DigitalMediaRelationshipTombstoneEvent;
 import eu.dissco.core.digitalspecimenprocessor.service.preprocessing.ErPreprocessingService;
 import java.util.List;
 import java.util.Objects;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.context.annotation.Profile;
-import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 import tools.jackson.databind.json.JsonMapper;
 
@@ -23,13 +24,16 @@ public class ErRabbitMqConsumerService {
 
 	private final ErPreprocessingService processingService;
 
+	private final MessageCompressionComponent compressionComponent;
+
 	@RabbitListener(
 			queues = {
 					"${rabbitmq.queue-name-media-relationship-tombstone:digital-media-relationship-tombstone-queue}" },
 			containerFactory = "consumerBatchContainerFactory")
-	public void getMessagesDigitalMediaRelationshipTombstone(@Payload List<String> messages) {
+	public void getMessagesDigitalMediaRelationshipTombstone(List<Message> messages) {
 		var events = messages.stream()
-			.map(message -> mapper.readValue(message, DigitalMediaRelationshipTombstoneEvent.class))
+			.map(message -> mapper.readValue(compressionComponent.getBodyInputStream(message),
+					DigitalMediaRelationshipTombstoneEvent.class))
 			.filter(Objects::nonNull)
 			.toList();
 		processingService.handleMessagesMediaRelationshipTombstone(events);
@@ -1,15 +1,16 @@
 package eu.dissco.core.digitalspecimenprocessor.service.rabbitmqconsumer;
 
 import eu.dissco.core.digitalspecimenprocessor.Profiles;
+import eu.dissco.core.digitalspecimenprocessor.component.MessageCompressionComponent;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenEvent;
 import eu.dissco.core.digitalspecimenprocessor.service.preprocessing.SpecimenPreprocessingService;
 import java.util.List;
 import java.util.Objects;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.amqp.core.Message;
 import org.springframework.amqp.rabbit.annotation.RabbitListener;
 import org.springframework.context.annotation.Profile;
-import org.springframework.messaging.handler.annotation.Payload;
 import org.springframework.stereotype.Service;
 import tools.jackson.databind.ObjectMapper;
 
@@ -23,11 +24,14 @@ public class SpecimenRabbitMqConsumerService {
 
 	private final SpecimenPreprocessingService processingService;
 
+	private final MessageCompressionComponent compressionComponent;
+
 	@RabbitListener(queues = { "${rabbitmq.queue-name-specimen:digital-specimen-queue}" },
 			containerFactory = "consumerBatchContainerFactory")
-	public void getMessages(@Payload List<String> messages) {
+	public void getMessages(List<Message> messages) {
 		var events = messages.stream()
-			.map(message -> mapper.readValue(message, DigitalSpecimenEvent.class))
+			.map(message -> mapper.readValue(compressionComponent.getBodyInputStream(message),
+					DigitalSpecimenEvent.class))
 			.filter(Objects::nonNull)
 			.toList();
 		processingService.handleMessages(events);
@@ -0,0 +1,98 @@
+package eu.dissco.core.digitalspecimenprocessor.benchmark;
+
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MAPPER;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalSpecimenEvent;
+
+import eu.dissco.core.digitalspecimenprocessor.component.MessageCompressionComponent;
+import eu.dissco.core.digitalspecimenprocessor.property.RabbitMqProperties;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
+
+/*
+ * Compares the pooled gzip compression of the MessageCompressionComponent with creating
+ * new GZIP streams for every message. Run with the main method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Threads(4)
+public class MessageCompressionBenchmark {
+
+	private static final int BUFFER_SIZE = 8192;
+
+	private MessageCompressionComponent compressionComponent;
+
+	private String payload;
+
+	private Message compressedMessage;
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(MessageCompressionBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	@Setup
+	public void setup() {
+		var rabbitMqProperties = new RabbitMqProperties();
+		rabbitMqProperties.getCompression().setMinSize(0);
+		compressionComponent = new MessageCompressionComponent(rabbitMqProperties);
+		payload = MAPPER.writeValueAsString(givenDigitalSpecimenEvent(true));
+		compressedMessage = compressionComponent
+			.postProcessMessage(compressionComponent.toMessage(payload, new MessageProperties()));
+	}
+
+	@Benchmark
+	public byte[] compressPooled() {
+		return compressionComponent.postProcessMessage(compressionComponent.toMessage(payload, new MessageProperties()))
+			.getBody();
+	}
+
+	@Benchmark
+	public byte[] compressNewStreams() throws IOException {
+		try (var outputStream = new ByteArrayOutputStream(BUFFER_SIZE)) {
+			try (var gzipOutputStream = new GZIPOutputStream(outputStream, BUFFER_SIZE)) {
+				gzipOutputStream.write(payload.getBytes(StandardCharsets.UTF_8));
+			}
+			return outputStream.toByteArray();
+		}
+	}
+
+	@Benchmark
+	public byte[] decompressPooled() throws IOException {
+		try (var inputStream = compressionComponent.getBodyInputStream(compressedMessage)) {
+			return inputStream.readAllBytes();
+		}
+	}
+
+	@Benchmark
+	public byte[] decompressNewStreams() throws IOException {
+		try (var inputStream = new GZIPInputStream(new ByteArrayInputStream(compressedMessage.getBody()),
+				BUFFER_SIZE)) {
+			return inputStream.readAllBytes();
+		}
+	}
+
+}
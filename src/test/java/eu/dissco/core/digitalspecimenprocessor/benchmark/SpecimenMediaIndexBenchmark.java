@@ -0,0 +1,116 @@
+package eu.dissco.core.digitalspecimenprocessor.benchmark;
+
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MAS;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.ORGANISATION_ID;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.ORIGINAL_DATA;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.SPECIMEN_NAME;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaEvent;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalSpecimenWrapper;
+
+import eu.dissco.core.digitalspecimenprocessor.domain.relation.PidProcessResult;
+import eu.dissco.core.digitalspecimenprocessor.domain.relation.SpecimenMediaIndex;
+import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenEvent;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/*
+ * Compares building the SpecimenMediaIndex with the previous linkage, which scanned all
+ * media pids for every specimen. The time per operation of the index should grow
+ * linearly with the batch size, the scan quadratically. Every two specimens share a
+ * media object. Run with the main method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SpecimenMediaIndexBenchmark {
+
+	@Param({ "1000", "5000", "10000" })
+	private int batchSize;
+
+	private List<DigitalSpecimenEvent> specimenEvents;
+
+	private Map<String, String> specimenDois;
+
+	private Map<String, String> mediaDois;
+
+	private List<String> processedSpecimenDois;
+
+	public static void main(String[] args) throws RunnerException {
+		new Runner(new OptionsBuilder().include(SpecimenMediaIndexBenchmark.class.getSimpleName()).build()).run();
+	}
+
+	@Setup
+	public void setup() {
+		specimenEvents = new ArrayList<>();
+		specimenDois = new HashMap<>();
+		mediaDois = new HashMap<>();
+		for (int i = 0; i < batchSize; i++) {
+			var physicalSpecimenId = "https://geocollections.info/specimen/" + i;
+			var mediaUri = "https://images.geocollections.info/" + i / 2 + ".jpg";
+			specimenEvents.add(new DigitalSpecimenEvent(Set.of(MAS),
+					givenDigitalSpecimenWrapper(physicalSpecimenId, SPECIMEN_NAME, ORGANISATION_ID, false, true,
+							ORIGINAL_DATA),
+					List.of(givenDigitalMediaEvent(mediaUri)), false, true));
+			specimenDois.put(physicalSpecimenId, "TEST/SPECIMEN-" + i);
+			mediaDois.put(mediaUri, "TEST/MEDIA-" + i / 2);
+		}
+		processedSpecimenDois = List.copyOf(specimenDois.values());
+	}
+
+	@Benchmark
+	public Map<String, PidProcessResult> index() {
+		return SpecimenMediaIndex.build(specimenEvents, specimenDois, mediaDois)
+			.mediaPidsRelatedTo(processedSpecimenDois);
+	}
+
+	@Benchmark
+	public Map<String, PidProcessResult> scan() {
+		var mediaHashMap = new HashMap<String, HashSet<String>>();
+		for (var specimen : specimenEvents) {
+			var mediaDoisForThisSpecimen = specimen.digitalMediaEvents()
+				.stream()
+				.map(event -> event.digitalMediaWrapper().attributes().getAcAccessURI())
+				.map(mediaDois::get)
+				.collect(Collectors.toSet());
+			var specimenPid = specimenDois.get(specimen.digitalSpecimenWrapper().physicalSpecimenID());
+			mediaDois.entrySet()
+				.stream()
+				.filter(e -> mediaDoisForThisSpecimen.contains(e.getValue()))
+				.forEach(e -> mediaHashMap.computeIfAbsent(e.getKey(), k -> new HashSet<>()).add(specimenPid));
+		}
+		var mediaPidsFiltered = new HashMap<String, PidProcessResult>();
+		for (Entry<String, HashSet<String>> mediaPid : mediaHashMap.entrySet()) {
+			var relatedDois = mediaPid.getValue()
+				.stream()
+				.filter(processedSpecimenDois::contains)
+				.collect(Collectors.toSet());
+			mediaPidsFiltered.put(mediaPid.getKey(), new PidProcessResult(mediaDois.get(mediaPid.getKey()), relatedDois));
+		}
+		return mediaPidsFiltered;
+	}
+
+}
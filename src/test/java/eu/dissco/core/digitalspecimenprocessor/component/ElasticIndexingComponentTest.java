@@ -0,0 +1,63 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import eu.dissco.core.digitalspecimenprocessor.property.ElasticSearchProperties;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class ElasticIndexingComponentTest {
+
+	private ElasticIndexingComponent elasticIndexing;
+
+	@BeforeEach
+	void setup() {
+		var properties = new ElasticSearchProperties();
+		properties.setAsyncIndexing(true);
+		elasticIndexing = new ElasticIndexingComponent(properties);
+	}
+
+	@Test
+	void testSubmitInOrder() throws InterruptedException {
+		// Given
+		var firstResponse = new CompletableFuture<BulkResponse>();
+		var steps = new CopyOnWriteArrayList<String>();
+
+		// When
+		elasticIndexing.submit(() -> firstResponse, _ -> steps.add("first handled"), _ -> steps.add("first failed"));
+		elasticIndexing.submit(() -> {
+			steps.add("second sent");
+			return CompletableFuture.completedFuture(givenBulkResponse());
+		}, _ -> steps.add("second handled"), _ -> steps.add("second failed"));
+		firstResponse.complete(givenBulkResponse());
+		elasticIndexing.shutdown();
+
+		// Then
+		assertThat(steps).containsExactly("first handled", "second sent", "second handled");
+	}
+
+	@Test
+	void testSubmitFailure() throws InterruptedException {
+		// Given
+		var failure = new AtomicReference<Throwable>();
+
+		// When
+		elasticIndexing.submit(() -> CompletableFuture.failedFuture(new IOException("Elastic is down")), _ -> {
+		}, failure::set);
+		elasticIndexing.shutdown();
+
+		// Then
+		assertThat(failure.get()).isInstanceOf(IOException.class);
+	}
+
+	private static BulkResponse givenBulkResponse() {
+		return BulkResponse.of(b -> b.items(List.of()).errors(false).took(1));
+	}
+
+}
@@ -0,0 +1,124 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class GzipCodecTest {
+
+	private static final byte[] MESSAGE = "{\"ods:specimenName\": \"Biota\", \"ods:organisationID\": \"https://ror.org/0443cwa12\"}"
+		.getBytes(StandardCharsets.UTF_8);
+
+	private GzipCodec gzipCodec;
+
+	@BeforeEach
+	void setup() {
+		gzipCodec = new GzipCodec();
+	}
+
+	@Test
+	void testCompressReadableByGzipInputStream() throws IOException {
+		// When
+		var result = gzipCodec.compress(MESSAGE);
+
+		// Then
+		try (var inputStream = new GZIPInputStream(new ByteArrayInputStream(result))) {
+			assertThat(inputStream.readAllBytes()).isEqualTo(MESSAGE);
+		}
+	}
+
+	@Test
+	void testDecompressGzipOutputStream() throws IOException {
+		// Given
+		var outputStream = new ByteArrayOutputStream();
+		try (var gzipOutputStream = new GZIPOutputStream(outputStream)) {
+			gzipOutputStream.write(MESSAGE);
+		}
+
+		// When
+		try (var inputStream = gzipCodec.decompress(outputStream.toByteArray())) {
+
+			// Then
+			assertThat(inputStream.readAllBytes()).isEqualTo(MESSAGE);
+		}
+	}
+
+	@Test
+	void testDecompressConcatenatedMembers() throws IOException {
+		// Given
+		var otherMessage = "other message".getBytes(StandardCharsets.UTF_8);
+		var outputStream = new ByteArrayOutputStream();
+		outputStream.write(gzipCodec.compress(MESSAGE));
+		try (var gzipOutputStream = new GZIPOutputStream(outputStream)) {
+			gzipOutputStream.write(otherMessage);
+		}
+		var expected = new ByteArrayOutputStream();
+		expected.write(MESSAGE);
+		expected.write(otherMessage);
+
+		// When
+		try (var inputStream = gzipCodec.decompress(outputStream.toByteArray())) {
+
+			// Then
+			assertThat(inputStream.readAllBytes()).isEqualTo(expected.toByteArray());
+		}
+	}
+
+	@Test
+	void testCorruptTrailerOfFirstMember() throws IOException {
+		// Given
+		var first = gzipCodec.compress(MESSAGE);
+		first[first.length - 1] ^= 1;
+		var outputStream = new ByteArrayOutputStream();
+		outputStream.write(first);
+		outputStream.write(gzipCodec.compress(MESSAGE));
+
+		// When / Then
+		try (var inputStream = gzipCodec.decompress(outputStream.toByteArray())) {
+			assertThrows(ZipException.class, inputStream::readAllBytes);
+		}
+	}
+
+	@Test
+	void testReuseCodec() throws IOException {
+		// Given
+		var otherMessage = "other message".getBytes(StandardCharsets.UTF_8);
+		gzipCodec.compress(MESSAGE);
+
+		// When
+		var result = gzipCodec.compress(otherMessage);
+
+		// Then
+		try (var inputStream = gzipCodec.decompress(result)) {
+			assertThat(inputStream.readAllBytes()).isEqualTo(otherMessage);
+		}
+	}
+
+	@Test
+	void testCorruptTrailer() throws IOException {
+		// Given
+		var compressed = gzipCodec.compress(MESSAGE);
+		compressed[compressed.length - 8] ^= 1;
+
+		// When / Then
+		try (var inputStream = gzipCodec.decompress(compressed)) {
+			assertThrows(ZipException.class, inputStream::readAllBytes);
+		}
+	}
+
+	@Test
+	void testNotGzip() {
+		// When / Then
+		assertThrows(ZipException.class, () -> gzipCodec.decompress(MESSAGE));
+	}
+
+}
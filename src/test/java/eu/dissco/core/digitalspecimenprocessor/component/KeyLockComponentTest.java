@@ -0,0 +1,102 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_URL;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_URL_ALT;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.PHYSICAL_SPECIMEN_ID;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.PHYSICAL_SPECIMEN_ID_ALT;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class KeyLockComponentTest {
+
+	private KeyLockComponent keyLockComponent;
+
+	@BeforeEach
+	void setup() {
+		keyLockComponent = new KeyLockComponent();
+	}
+
+	@Test
+	void testDisjointKeys() throws Exception {
+		// Given
+		try (var _ = keyLockComponent.lock(List.of(PHYSICAL_SPECIMEN_ID), List.of(MEDIA_URL))) {
+
+			// When
+			var result = CompletableFuture.runAsync(
+					() -> keyLockComponent.lock(List.of(PHYSICAL_SPECIMEN_ID_ALT), List.of(MEDIA_URL_ALT)).close());
+
+			// Then
+			result.get(5, TimeUnit.SECONDS);
+		}
+	}
+
+	@Test
+	void testOverlappingMedia() throws Exception {
+		// Given
+		var firstLock = keyLockComponent.lock(List.of(PHYSICAL_SPECIMEN_ID), List.of(MEDIA_URL));
+
+		// When
+		var result = CompletableFuture
+			.runAsync(() -> keyLockComponent.lock(List.of(), List.of(MEDIA_URL_ALT, MEDIA_URL)).close());
+
+		// Then
+		assertThrows(TimeoutException.class, () -> result.get(200, TimeUnit.MILLISECONDS));
+		firstLock.close();
+		result.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void testOverlappingSpecimen() throws Exception {
+		// Given
+		var firstLock = keyLockComponent.lock(List.of(PHYSICAL_SPECIMEN_ID), List.of());
+
+		// When
+		var result = CompletableFuture
+			.runAsync(() -> keyLockComponent.lock(List.of(PHYSICAL_SPECIMEN_ID), List.of()).close());
+
+		// Then
+		assertThrows(TimeoutException.class, () -> result.get(200, TimeUnit.MILLISECONDS));
+		firstLock.close();
+		result.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void testWaitingBatchIsNotOvertaken() throws Exception {
+		// Given
+		var firstLock = keyLockComponent.lock(List.of(PHYSICAL_SPECIMEN_ID), List.of());
+		var waitingLock = new CompletableFuture<KeyLockComponent.KeyLock>();
+		CompletableFuture.runAsync(() -> waitingLock
+			.complete(keyLockComponent.lock(List.of(PHYSICAL_SPECIMEN_ID, PHYSICAL_SPECIMEN_ID_ALT), List.of())));
+		assertThrows(TimeoutException.class, () -> waitingLock.get(200, TimeUnit.MILLISECONDS));
+
+		// When
+		var result = CompletableFuture
+			.runAsync(() -> keyLockComponent.lock(List.of(PHYSICAL_SPECIMEN_ID_ALT), List.of()).close());
+
+		// Then
+		assertThrows(TimeoutException.class, () -> result.get(200, TimeUnit.MILLISECONDS));
+		firstLock.close();
+		waitingLock.get(5, TimeUnit.SECONDS).close();
+		result.get(5, TimeUnit.SECONDS);
+	}
+
+	@Test
+	void testSpecimenAndMediaKeysAreSeparate() throws Exception {
+		// Given
+		try (var _ = keyLockComponent.lock(List.of(MEDIA_URL), List.of())) {
+
+			// When
+			var result = CompletableFuture.runAsync(() -> keyLockComponent.lock(List.of(), List.of(MEDIA_URL)).close());
+
+			// Then
+			result.get(5, TimeUnit.SECONDS);
+		}
+	}
+
+}
@@ -0,0 +1,204 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.ANOTHER_SOURCE_SYSTEM_ID;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.PHYSICAL_SPECIMEN_ID;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.PHYSICAL_SPECIMEN_ID_ALT;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaEvent;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaRecord;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalSpecimenEvent;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalSpecimenRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.isNotNull;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
+
+import eu.dissco.core.digitalspecimenprocessor.exception.DisscoRepositoryException;
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
+import eu.dissco.core.digitalspecimenprocessor.repository.DigitalMediaRepository;
+import eu.dissco.core.digitalspecimenprocessor.repository.DigitalSpecimenRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class KnownObjectFilterComponentTest {
+
+	@Mock
+	private DigitalSpecimenRepository specimenRepository;
+
+	@Mock
+	private DigitalMediaRepository mediaRepository;
+
+	@TempDir
+	private Path tempDir;
+
+	private ApplicationProperties applicationProperties;
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private KnownObjectFilterComponent knownObjectFilter;
+
+	@BeforeEach
+	void setup() {
+		applicationProperties = new ApplicationProperties();
+		applicationProperties.setKnownObjectFilter(true);
+		meterRegistry = new SimpleMeterRegistry();
+		knownObjectFilter = new KnownObjectFilterComponent(specimenRepository, mediaRepository, applicationProperties,
+				meterRegistry);
+	}
+
+	@Test
+	void testMightExistBeforeRefresh() throws DisscoRepositoryException {
+		// Given
+		var events = Set.of(givenDigitalSpecimenEvent(PHYSICAL_SPECIMEN_ID_ALT));
+
+		// When
+		var result = knownObjectFilter.mightExistSpecimens(events);
+
+		// Then
+		assertThat(result).isEqualTo(events);
+	}
+
+	@Test
+	void testMightExistSpecimens() throws DisscoRepositoryException {
+		// Given
+		givenStoredSpecimen();
+		knownObjectFilter.refresh();
+		var knownEvent = givenDigitalSpecimenEvent(PHYSICAL_SPECIMEN_ID);
+
+		// When
+		var result = knownObjectFilter
+			.mightExistSpecimens(Set.of(knownEvent, givenDigitalSpecimenEvent(PHYSICAL_SPECIMEN_ID_ALT)));
+
+		// Then
+		assertThat(result).containsExactly(knownEvent);
+		assertThat(lookupCount("specimen", "absent")).isEqualTo(1);
+		assertThat(lookupCount("specimen", "present")).isEqualTo(1);
+		assertThat(meterRegistry.get("known.object.filter.size").tag("type", "specimen").gauge().value())
+			.isEqualTo(1);
+	}
+
+	@Test
+	void testMightExistSpecimensCreatedSinceRefresh() throws DisscoRepositoryException {
+		// Given
+		knownObjectFilter.refresh();
+		var event = givenDigitalSpecimenEvent(PHYSICAL_SPECIMEN_ID_ALT);
+		given(specimenRepository.getExistingPhysicalSpecimenIds(Set.of(PHYSICAL_SPECIMEN_ID_ALT)))
+			.willReturn(Set.of(PHYSICAL_SPECIMEN_ID_ALT));
+
+		// When
+		var result = knownObjectFilter.mightExistSpecimens(Set.of(event));
+
+		// Then
+		assertThat(result).containsExactly(event);
+		assertThat(knownObjectFilter.mightExistSpecimens(Set.of(event))).containsExactly(event);
+		then(specimenRepository).should().getExistingPhysicalSpecimenIds(anySet());
+		assertThat(lookupCount("specimen", "missed")).isEqualTo(1);
+		assertThat(lookupCount("specimen", "present")).isEqualTo(1);
+	}
+
+	@Test
+	void testAddSpecimens() throws DisscoRepositoryException {
+		// Given
+		knownObjectFilter.refresh();
+		var event = givenDigitalSpecimenEvent(PHYSICAL_SPECIMEN_ID);
+
+		// When
+		knownObjectFilter.addSpecimens(List.of(givenDigitalSpecimenRecord()));
+
+		// Then
+		assertThat(knownObjectFilter.mightExistSpecimens(Set.of(event))).containsExactly(event);
+	}
+
+	@Test
+	void testMightExistSpecimenOfOtherSourceSystem() throws DisscoRepositoryException {
+		// Given
+		givenStoredSpecimen();
+		knownObjectFilter.refresh();
+		var event = givenDigitalSpecimenEvent(PHYSICAL_SPECIMEN_ID);
+		event.digitalSpecimenWrapper().attributes().setOdsSourceSystemID(ANOTHER_SOURCE_SYSTEM_ID);
+
+		// When
+		var result = knownObjectFilter.mightExistSpecimens(Set.of(event));
+
+		// Then
+		assertThat(result).containsExactly(event);
+	}
+
+	@Test
+	void testAddMedia() {
+		// Given
+		knownObjectFilter.refresh();
+		var event = givenDigitalMediaEvent();
+
+		// When
+		knownObjectFilter.addMedia(List.of(givenDigitalMediaRecord()));
+
+		// Then
+		assertThat(knownObjectFilter.mightExistMedia(Set.of(event))).containsExactly(event);
+	}
+
+	@Test
+	void testRecordFalsePositives() {
+		// Given
+		givenStoredSpecimen();
+		knownObjectFilter.refresh();
+
+		// When
+		knownObjectFilter.recordSpecimenLookups(Set.of(givenDigitalSpecimenEvent(PHYSICAL_SPECIMEN_ID)), Set.of());
+
+		// Then
+		assertThat(meterRegistry.get("known.object.filter.false.positives").tag("type", "specimen").counter().count())
+			.isEqualTo(1);
+	}
+
+	@Test
+	void testRestoreSnapshot() throws DisscoRepositoryException {
+		// Given
+		applicationProperties.setKnownObjectFilterSnapshotPath(tempDir.resolve("filters.bin").toString());
+		givenStoredSpecimen();
+		knownObjectFilter.refresh();
+		var restoredFilter = new KnownObjectFilterComponent(specimenRepository, mediaRepository,
+				applicationProperties, new SimpleMeterRegistry());
+		var event = givenDigitalSpecimenEvent(PHYSICAL_SPECIMEN_ID);
+
+		// When
+		restoredFilter.loadSnapshot();
+		restoredFilter.refresh();
+
+		// Then
+		assertThat(restoredFilter.mightExistSpecimens(Set.of(event))).containsExactly(event);
+		then(specimenRepository).should().streamPhysicalSpecimenIds(isNotNull(), any());
+	}
+
+	// Only a full load streams the stored specimen
+	private void givenStoredSpecimen() {
+		willAnswer(invocation -> {
+			if (invocation.getArgument(0) == null) {
+				Consumer<String> consumer = invocation.getArgument(1);
+				consumer.accept(PHYSICAL_SPECIMEN_ID);
+			}
+			return null;
+		}).given(specimenRepository).streamPhysicalSpecimenIds(any(), any());
+	}
+
+	private double lookupCount(String type, String result) {
+		return meterRegistry.get("known.object.filter.lookups")
+			.tag("type", type)
+			.tag("result", result)
+			.counter()
+			.count();
+	}
+
+}
@@ -0,0 +1,131 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.HANDLE;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_PID;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.ORIGINAL_DATA;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.SECOND_HANDLE;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.times;
+
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
+import eu.dissco.core.digitalspecimenprocessor.repository.DigitalMediaRepository;
+import eu.dissco.core.digitalspecimenprocessor.repository.DigitalSpecimenRepository;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.jooq.exception.DataAccessException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class LastCheckedWriterComponentTest {
+
+	@Mock
+	private DigitalSpecimenRepository specimenRepository;
+
+	@Mock
+	private DigitalMediaRepository mediaRepository;
+
+	private ApplicationProperties applicationProperties;
+
+	private LastCheckedWriterComponent lastCheckedWriter;
+
+	@BeforeEach
+	void setup() {
+		applicationProperties = new ApplicationProperties();
+		lastCheckedWriter = new LastCheckedWriterComponent(specimenRepository, mediaRepository, applicationProperties);
+	}
+
+	@Test
+	void testFlush() {
+		// Given
+		lastCheckedWriter.addSpecimens(Map.of(HANDLE, ORIGINAL_DATA.toString()));
+		lastCheckedWriter.addSpecimens(Map.of(SECOND_HANDLE, ORIGINAL_DATA.toString()));
+		lastCheckedWriter.addMedia(List.of(MEDIA_PID));
+		lastCheckedWriter.addMedia(List.of(MEDIA_PID));
+
+		// When
+		lastCheckedWriter.flush();
+
+		// Then
+		then(specimenRepository).should()
+			.updateLastCheckedAndOriginalData(
+					eq(Map.of(HANDLE, ORIGINAL_DATA.toString(), SECOND_HANDLE, ORIGINAL_DATA.toString())), any());
+		then(mediaRepository).should().updateLastChecked(Set.of(MEDIA_PID));
+	}
+
+	@Test
+	void testFlushNothingPending() {
+		// Given
+
+		// When
+		lastCheckedWriter.flush();
+
+		// Then
+		then(specimenRepository).shouldHaveNoInteractions();
+		then(mediaRepository).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void testFlushClearsPending() {
+		// Given
+		lastCheckedWriter.addMedia(List.of(MEDIA_PID));
+		lastCheckedWriter.flush();
+
+		// When
+		lastCheckedWriter.flush();
+
+		// Then
+		then(mediaRepository).should(times(1)).updateLastChecked(Set.of(MEDIA_PID));
+		then(specimenRepository).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void testFlushFailedIsRequeued() {
+		// Given
+		lastCheckedWriter.addSpecimens(Map.of(HANDLE, ORIGINAL_DATA.toString()));
+		lastCheckedWriter.addMedia(List.of(MEDIA_PID));
+		doThrow(DataAccessException.class).doNothing()
+			.when(specimenRepository)
+			.updateLastCheckedAndOriginalData(anyMap(), any());
+		doThrow(DataAccessException.class).doNothing().when(mediaRepository).updateLastChecked(any());
+		lastCheckedWriter.flush();
+
+		// When
+		lastCheckedWriter.flush();
+
+		// Then
+		then(specimenRepository).should(times(2))
+			.updateLastCheckedAndOriginalData(eq(Map.of(HANDLE, ORIGINAL_DATA.toString())), any());
+		then(mediaRepository).should(times(2)).updateLastChecked(Set.of(MEDIA_PID));
+	}
+
+	@Test
+	void testFlushFailedRequeueIsBounded() {
+		// Given
+		applicationProperties.setLastCheckedMaxPending(1);
+		lastCheckedWriter.addSpecimens(Map.of(HANDLE, ORIGINAL_DATA.toString()));
+		lastCheckedWriter.addMedia(List.of(MEDIA_PID));
+		doThrow(DataAccessException.class).doNothing()
+			.when(specimenRepository)
+			.updateLastCheckedAndOriginalData(anyMap(), any());
+		doThrow(DataAccessException.class).when(mediaRepository).updateLastChecked(any());
+		lastCheckedWriter.flush();
+
+		// When
+		lastCheckedWriter.flush();
+
+		// Then
+		then(specimenRepository).should(times(2))
+			.updateLastCheckedAndOriginalData(eq(Map.of(HANDLE, ORIGINAL_DATA.toString())), any());
+		then(mediaRepository).should(times(1)).updateLastChecked(Set.of(MEDIA_PID));
+	}
+
+}
@@ -0,0 +1,73 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_URL;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_URL_ALT;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaEvent;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaRecord;
+import eu.dissco.core.digitalspecimenprocessor.domain.media.MediaState;
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MediaStateCacheComponentTest {
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private MediaStateCacheComponent mediaStateCache;
+
+	@BeforeEach
+	void setup() {
+		meterRegistry = new SimpleMeterRegistry();
+		mediaStateCache = new MediaStateCacheComponent(new ApplicationProperties(), meterRegistry);
+	}
+
+	@Test
+	void testGetAll() {
+		// Given
+		var mediaState = MediaState.of(givenDigitalMediaRecord(), UUID.randomUUID());
+		mediaStateCache.put(MEDIA_URL, mediaState);
+
+		// When
+		var result = mediaStateCache.getAll(List.of(MEDIA_URL, MEDIA_URL_ALT));
+
+		// Then
+		assertThat(result).containsOnlyKeys(MEDIA_URL);
+		assertThat(result.get(MEDIA_URL).toFingerprint(givenDigitalMediaEvent()))
+			.returns(givenDigitalMediaRecord().id(), DigitalMediaRecord::id)
+			.returns(null, DigitalMediaRecord::originalAttributes);
+		assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+		assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void testPutWithoutContentHash() {
+		// Given
+		mediaStateCache.put(MEDIA_URL, MediaState.of(givenDigitalMediaRecord(), null));
+
+		// When
+		var result = mediaStateCache.getAll(List.of(MEDIA_URL));
+
+		// Then
+		assertThat(result).isEmpty();
+	}
+
+	@Test
+	void testEvictStale() {
+		// Given
+		mediaStateCache.put(MEDIA_URL, MediaState.of(givenDigitalMediaRecord(), UUID.randomUUID()));
+
+		// When
+		mediaStateCache.evictStale(MEDIA_URL);
+
+		// Then
+		assertThat(mediaStateCache.getAll(List.of(MEDIA_URL))).isEmpty();
+		assertThat(meterRegistry.get("cache.stale").counter().count()).isEqualTo(1);
+	}
+
+}
@@ -3,20 +3,32 @@ package eu.dissco.core.digitalspecimenprocessor.component;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
 
+import eu.dissco.core.digitalspecimenprocessor.domain.CompressionType;
+import eu.dissco.core.digitalspecimenprocessor.property.RabbitMqProperties;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPOutputStream;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
 import org.springframework.amqp.core.Message;
 import org.springframework.amqp.core.MessageProperties;
 import org.springframework.amqp.support.converter.MessageConversionException;
 
 class MessageCompressionComponentTest {
 
+	private static final String EXCHANGE = "mas-scheduler-exchange";
+
+	private RabbitMqProperties rabbitMqProperties;
+
 	private MessageCompressionComponent messageCompressionComponent;
 
 	@BeforeEach
 	void setUp() {
-		messageCompressionComponent = new MessageCompressionComponent();
+		rabbitMqProperties = new RabbitMqProperties();
+		messageCompressionComponent = new MessageCompressionComponent(rabbitMqProperties);
 	}
 
 	@Test
@@ -25,7 +37,8 @@ class MessageCompressionComponentTest {
 		var messageString = givenMessage();
 
 		// When
-		var compressedMessage = messageCompressionComponent.toMessage(messageString, new MessageProperties());
+		var compressedMessage = messageCompressionComponent
+			.postProcessMessage(messageCompressionComponent.toMessage(messageString, new MessageProperties()));
 
 		// Then
 		assertThat(compressedMessage.getMessageProperties().getContentEncoding()).isEqualTo("gzip");
@@ -34,6 +47,85 @@ class MessageCompressionComponentTest {
 		assertThat(decompressedMessage).isEqualTo(messageString);
 	}
 
+	@ParameterizedTest
+	@EnumSource(value = CompressionType.class, names = { "GZIP", "ZSTD", "LZ4" })
+	void testCompressMessageForExchange(CompressionType compressionType) {
+		// Given
+		rabbitMqProperties.getCompression().getExchanges().put(EXCHANGE, compressionType);
+		var message = messageCompressionComponent.toMessage(givenMessage(), new MessageProperties());
+
+		// When
+		var compressedMessage = messageCompressionComponent.postProcessMessage(message, null, EXCHANGE, "routing-key");
+
+		// Then
+		assertThat(compressedMessage.getMessageProperties().getContentEncoding())
+			.isEqualTo(compressionType.getContentEncoding());
+		assertThat(compressedMessage.getBody()).hasSizeLessThan(givenMessage().length());
+		assertThat(messageCompressionComponent.fromMessage(compressedMessage)).isEqualTo(givenMessage());
+	}
+
+	@Test
+	void testNoCompressionForExchange() {
+		// Given
+		rabbitMqProperties.getCompression().getExchanges().put(EXCHANGE, CompressionType.NONE);
+		var message = messageCompressionComponent.toMessage(givenMessage(), new MessageProperties());
+
+		// When
+		var result = messageCompressionComponent.postProcessMessage(message, null, EXCHANGE, "routing-key");
+
+		// Then
+		assertThat(result.getMessageProperties().getContentEncoding()).isNull();
+		assertThat(result.getBody()).isEqualTo(givenMessage().getBytes(StandardCharsets.UTF_8));
+		assertThat(messageCompressionComponent.fromMessage(result)).isEqualTo(givenMessage());
+	}
+
+	@Test
+	void testSmallMessageNotCompressed() {
+		// Given
+		rabbitMqProperties.getCompression().setMinSize(1024);
+		var messageString = "{\"masId\": \"OCR\"}";
+		var message = messageCompressionComponent.toMessage(messageString, new MessageProperties());
+
+		// When
+		var result = messageCompressionComponent.postProcessMessage(message, null, EXCHANGE, "routing-key");
+
+		// Then
+		assertThat(result.getMessageProperties().getContentEncoding()).isNull();
+		assertThat(messageCompressionComponent.fromMessage(result)).isEqualTo(messageString);
+	}
+
+	@Test
+	void testSmallMessageCompressedByDefault() {
+		// Given
+		var messageString = "{\"masId\": \"OCR\"}";
+		var message = messageCompressionComponent.toMessage(messageString, new MessageProperties());
+
+		// When
+		var result = messageCompressionComponent.postProcessMessage(message, null, EXCHANGE, "routing-key");
+
+		// Then
+		assertThat(result.getMessageProperties().getContentEncoding()).isEqualTo("gzip");
+		assertThat(messageCompressionComponent.fromMessage(result)).isEqualTo(messageString);
+	}
+
+	@Test
+	void testLegacyGzipMessage() throws IOException {
+		// Given
+		var outputStream = new ByteArrayOutputStream();
+		try (var gzipOutputStream = new GZIPOutputStream(outputStream)) {
+			gzipOutputStream.write(givenMessage().getBytes(StandardCharsets.UTF_8));
+		}
+		var messageProperties = new MessageProperties();
+		messageProperties.setContentEncoding("gzip");
+		var message = new Message(outputStream.toByteArray(), messageProperties);
+
+		// When
+		var result = messageCompressionComponent.fromMessage(message);
+
+		// Then
+		assertThat(result).isEqualTo(givenMessage());
+	}
+
 	@Test
 	void testInvalidMessage() {
 		// Given
@@ -59,6 +151,44 @@ class MessageCompressionComponentTest {
 		assertThat(result).isEqualTo(givenMessage());
 	}
 
+	@Test
+	void testBodyInputStreamCompressed() throws IOException {
+		// Given
+		var compressedMessage = messageCompressionComponent
+			.postProcessMessage(messageCompressionComponent.toMessage(givenMessage(), new MessageProperties()));
+
+		// When
+		try (var inputStream = messageCompressionComponent.getBodyInputStream(compressedMessage)) {
+
+			// Then
+			assertThat(inputStream.readAllBytes()).isEqualTo(givenMessage().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	void testBodyInputStreamPlain() throws IOException {
+		// Given
+		var message = new Message(givenMessage().getBytes(StandardCharsets.UTF_8), new MessageProperties());
+
+		// When
+		try (var inputStream = messageCompressionComponent.getBodyInputStream(message)) {
+
+			// Then
+			assertThat(inputStream.readAllBytes()).isEqualTo(givenMessage().getBytes(StandardCharsets.UTF_8));
+		}
+	}
+
+	@Test
+	void testBodyInputStreamInvalidGzip() {
+		// Given
+		var messageProperties = new MessageProperties();
+		messageProperties.setContentEncoding("gzip");
+		var message = new Message(givenMessage().getBytes(StandardCharsets.UTF_8), messageProperties);
+
+		// When / Then
+		assertThrows(MessageConversionException.class, () -> messageCompressionComponent.getBodyInputStream(message));
+	}
+
 	private String givenMessage() {
 		return """
 				{
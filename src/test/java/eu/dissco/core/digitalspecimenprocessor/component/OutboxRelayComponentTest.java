@@ -0,0 +1,143 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.DOI_PREFIX;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.HANDLE;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.SECOND_HANDLE;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willThrow;
+import static org.mockito.Mockito.times;
+
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import eu.dissco.core.digitalspecimenprocessor.domain.outbox.OutboxDestination;
+import eu.dissco.core.digitalspecimenprocessor.domain.outbox.OutboxMessage;
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
+import eu.dissco.core.digitalspecimenprocessor.repository.ElasticSearchRepository;
+import eu.dissco.core.digitalspecimenprocessor.repository.OutboxRepository;
+import eu.dissco.core.digitalspecimenprocessor.service.RabbitMqPublisherService;
+import java.io.IOException;
+import java.util.List;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.AmqpConnectException;
+
+@ExtendWith(MockitoExtension.class)
+class OutboxRelayComponentTest {
+
+	private static final String INDEX = "digital-specimen";
+
+	@Mock
+	private OutboxRepository outboxRepository;
+
+	@Mock
+	private ElasticSearchRepository elasticRepository;
+
+	@Mock
+	private RabbitMqPublisherService publisherService;
+
+	private OutboxRelayComponent outboxRelay;
+
+	@BeforeEach
+	void setup() {
+		outboxRelay = new OutboxRelayComponent(new ApplicationProperties(), outboxRepository, elasticRepository,
+				publisherService);
+	}
+
+	@Test
+	void testRelayLatestDocument() throws IOException {
+		// Given
+		var olderDocument = givenDocument(1L, HANDLE, 1);
+		var latestDocument = givenDocument(2L, HANDLE, 2);
+		var failedDocument = givenDocument(3L, SECOND_HANDLE, 1);
+		given(elasticRepository.indexDocuments(List.of(latestDocument, failedDocument))).willReturn(BulkResponse
+			.of(b -> b.items(givenItem(HANDLE, 201, null), givenItem(SECOND_HANDLE, 400, "document_parsing_exception"))
+				.errors(true)
+				.took(1)));
+
+		// When
+		var result = outboxRelay.relay(List.of(olderDocument, latestDocument, failedDocument));
+
+		// Then
+		assertThat(result).containsExactlyInAnyOrder(1L, 2L);
+		then(publisherService).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void testRelayIndexedVersion() throws IOException {
+		// Given
+		var latestDocument = givenDocument(1L, HANDLE, 2);
+		var olderDocument = givenDocument(2L, HANDLE, 1);
+		var supersededDocument = givenDocument(3L, SECOND_HANDLE, 1);
+		given(elasticRepository.indexDocuments(List.of(latestDocument, supersededDocument))).willReturn(BulkResponse
+			.of(b -> b
+				.items(givenItem(HANDLE, 201, null),
+						givenItem(SECOND_HANDLE, 409, "version_conflict_engine_exception"))
+				.errors(true)
+				.took(1)));
+
+		// When
+		var result = outboxRelay.relay(List.of(latestDocument, olderDocument, supersededDocument));
+
+		// Then
+		assertThat(result).containsExactlyInAnyOrder(1L, 2L, 3L);
+	}
+
+	@Test
+	void testRelayStopsPublishingOnFailure() {
+		// Given
+		var firstEvent = givenEvent(1L);
+		var secondEvent = givenEvent(2L);
+		var thirdEvent = givenEvent(3L);
+		willThrow(new AmqpConnectException(new IOException())).given(publisherService).publish(secondEvent);
+
+		// When
+		var result = outboxRelay.relay(List.of(firstEvent, secondEvent, thirdEvent));
+
+		// Then
+		assertThat(result).containsExactly(1L);
+		then(publisherService).should().publish(firstEvent);
+		then(publisherService).should().publish(secondEvent);
+		then(publisherService).shouldHaveNoMoreInteractions();
+		then(elasticRepository).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void testRelayAllUntilDrained() {
+		// Given
+		given(outboxRepository.relayMessages(anyInt(), any(), any())).willReturn(1000, 10);
+
+		// When
+		outboxRelay.relayAll();
+
+		// Then
+		then(outboxRepository).should(times(2)).relayMessages(anyInt(), any(), any());
+	}
+
+	private static OutboxMessage givenDocument(Long id, String handle, int version) {
+		return new OutboxMessage(id, OutboxDestination.ELASTIC, INDEX, DOI_PREFIX + handle, version,
+				"{\"version\": " + version + "}");
+	}
+
+	private static OutboxMessage givenEvent(Long id) {
+		return new OutboxMessage(id, OutboxDestination.RABBITMQ, "provenance-exchange", "provenance", null, "{}");
+	}
+
+	private static BulkResponseItem givenItem(String handle, int status, String errorType) {
+		return BulkResponseItem.of(b -> {
+			b.operationType(OperationType.Index).index(INDEX).id(DOI_PREFIX + handle).status(status);
+			if (errorType != null) {
+				b.error(e -> e.type(errorType).reason("Failed to index document"));
+			}
+			return b;
+		});
+	}
+
+}
@@ -0,0 +1,78 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.PHYSICAL_SPECIMEN_ID;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.PHYSICAL_SPECIMEN_ID_ALT;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalSpecimenRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenRecord;
+import eu.dissco.core.digitalspecimenprocessor.domain.specimen.SpecimenState;
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.util.List;
+import java.util.UUID;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class SpecimenStateCacheComponentTest {
+
+	private SimpleMeterRegistry meterRegistry;
+
+	private SpecimenStateCacheComponent specimenStateCache;
+
+	@BeforeEach
+	void setup() {
+		meterRegistry = new SimpleMeterRegistry();
+		specimenStateCache = new SpecimenStateCacheComponent(new ApplicationProperties(), meterRegistry);
+	}
+
+	@Test
+	void testGetAll() {
+		// Given
+		var specimenRecord = givenSpecimenRecordWithHash(UUID.randomUUID());
+		specimenStateCache.put(specimenRecord);
+
+		// When
+		var result = specimenStateCache.getAll(List.of(PHYSICAL_SPECIMEN_ID, PHYSICAL_SPECIMEN_ID_ALT));
+
+		// Then
+		assertThat(result).containsOnlyKeys(PHYSICAL_SPECIMEN_ID);
+		assertThat(result.get(PHYSICAL_SPECIMEN_ID)).isEqualTo(SpecimenState.of(specimenRecord));
+		assertThat(meterRegistry.get("cache.gets").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+		assertThat(meterRegistry.get("cache.gets").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+	}
+
+	@Test
+	void testPutWithoutContentHash() {
+		// Given
+		specimenStateCache.put(givenSpecimenRecordWithHash(null));
+
+		// When
+		var result = specimenStateCache.getAll(List.of(PHYSICAL_SPECIMEN_ID));
+
+		// Then
+		assertThat(result).isEmpty();
+	}
+
+	@Test
+	void testEvictStale() {
+		// Given
+		specimenStateCache.put(givenSpecimenRecordWithHash(UUID.randomUUID()));
+
+		// When
+		specimenStateCache.evictStale(PHYSICAL_SPECIMEN_ID);
+
+		// Then
+		assertThat(specimenStateCache.getAll(List.of(PHYSICAL_SPECIMEN_ID))).isEmpty();
+		assertThat(meterRegistry.get("cache.stale").counter().count()).isEqualTo(1);
+	}
+
+	private static DigitalSpecimenRecord givenSpecimenRecordWithHash(UUID contentHash) {
+		var specimenRecord = givenDigitalSpecimenRecord();
+		return new DigitalSpecimenRecord(specimenRecord.id(), specimenRecord.midsLevel(), specimenRecord.version(),
+				specimenRecord.created(), specimenRecord.digitalSpecimenWrapper(), specimenRecord.masIds(),
+				specimenRecord.forceMasSchedule(), specimenRecord.isDataFromSourceSystem(),
+				specimenRecord.digitalMediaEvents(), contentHash);
+	}
+
+}
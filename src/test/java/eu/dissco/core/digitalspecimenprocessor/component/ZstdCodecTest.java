@@ -0,0 +1,126 @@
+package eu.dissco.core.digitalspecimenprocessor.component;
+
+import static eu.dissco.core.digitalspecimenprocessor.component.ZstdCodec.DICTIONARY_ID_HEADER;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictTrainer;
+import eu.dissco.core.digitalspecimenprocessor.property.RabbitMqProperties.Compression;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.amqp.core.MessageProperties;
+import org.springframework.amqp.support.converter.MessageConversionException;
+
+class ZstdCodecTest {
+
+	private static final byte[] MESSAGE = givenSample(42);
+
+	@TempDir
+	static Path tempDir;
+
+	private static Path dictionary;
+
+	private static long dictionaryId;
+
+	@BeforeAll
+	static void trainDictionary() throws IOException {
+		var trainer = new ZstdDictTrainer(1024 * 1024, 4096);
+		for (int i = 0; i < 2000; i++) {
+			trainer.addSample(givenSample(i));
+		}
+		var trainedDictionary = trainer.trainSamples();
+		dictionaryId = Zstd.getDictIdFromDict(trainedDictionary);
+		dictionary = tempDir.resolve("dissco.dict");
+		Files.write(dictionary, trainedDictionary);
+	}
+
+	private static byte[] givenSample(int i) {
+		return ("{\"ods:physicalSpecimenID\": \"https://geocollections.info/specimen/" + i
+				+ "\", \"ods:specimenName\": \"Biota " + i % 13
+				+ "\", \"ods:organisationID\": \"https://ror.org/0443cwa12\", \"ods:sourceSystemID\": "
+				+ "\"https://hdl.handle.net/TEST/57Z-6PC-64W\", \"dcterms:license\": "
+				+ "\"http://creativecommons.org/licenses/by-nc/4.0/legalcode\"}")
+			.getBytes(StandardCharsets.UTF_8);
+	}
+
+	private static Compression givenCompression(List<String> dictionaries) {
+		var compression = new Compression();
+		compression.setZstdDictionaries(dictionaries);
+		return compression;
+	}
+
+	@Test
+	void testWithoutDictionary() throws IOException {
+		// Given
+		var zstdCodec = new ZstdCodec(givenCompression(List.of()));
+		var messageProperties = new MessageProperties();
+
+		// When
+		var compressed = zstdCodec.compress(MESSAGE, messageProperties);
+
+		// Then
+		assertThat(messageProperties.getHeaders()).doesNotContainKey(DICTIONARY_ID_HEADER);
+		try (var inputStream = zstdCodec.decompress(compressed, messageProperties)) {
+			assertThat(inputStream.readAllBytes()).isEqualTo(MESSAGE);
+		}
+	}
+
+	@Test
+	void testWithDictionary() throws IOException {
+		// Given
+		var zstdCodec = new ZstdCodec(givenCompression(List.of(dictionary.toUri().toString())));
+		var messageProperties = new MessageProperties();
+
+		// When
+		var compressed = zstdCodec.compress(MESSAGE, messageProperties);
+
+		// Then
+		assertThat((Long) messageProperties.getHeader(DICTIONARY_ID_HEADER)).isEqualTo(dictionaryId);
+		assertThat(compressed).hasSizeLessThan(Zstd.compress(MESSAGE).length);
+		try (var inputStream = zstdCodec.decompress(compressed, messageProperties)) {
+			assertThat(inputStream.readAllBytes()).isEqualTo(MESSAGE);
+		}
+	}
+
+	@Test
+	void testDecompressWithoutDictionaryHeader() throws IOException {
+		// Given
+		var zstdCodec = new ZstdCodec(givenCompression(List.of(dictionary.toUri().toString())));
+
+		// When
+		try (var inputStream = zstdCodec.decompress(Zstd.compress(MESSAGE), new MessageProperties())) {
+
+			// Then
+			assertThat(inputStream.readAllBytes()).isEqualTo(MESSAGE);
+		}
+	}
+
+	@Test
+	void testUnknownDictionary() {
+		// Given
+		var zstdCodec = new ZstdCodec(givenCompression(List.of()));
+		var messageProperties = new MessageProperties();
+		messageProperties.setHeader(DICTIONARY_ID_HEADER, dictionaryId);
+
+		// When / Then
+		assertThrows(MessageConversionException.class,
+				() -> zstdCodec.decompress(Zstd.compress(MESSAGE), messageProperties));
+	}
+
+	@Test
+	void testMissingDictionary() {
+		// Given
+		var compression = givenCompression(List.of(tempDir.resolve("missing.dict").toUri().toString()));
+
+		// When / Then
+		assertThrows(IllegalStateException.class, () -> new ZstdCodec(compression));
+	}
+
+}
@@ -0,0 +1,106 @@
+package eu.dissco.core.digitalspecimenprocessor.domain.relation;
+
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.HANDLE;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MAS;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_PID;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_PID_ALT;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_URL;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_URL_ALT;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.ORGANISATION_ID;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.ORIGINAL_DATA;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.PHYSICAL_SPECIMEN_ID;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.PHYSICAL_SPECIMEN_ID_ALT;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.SECOND_HANDLE;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.SPECIMEN_NAME;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalSpecimenEvent;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalSpecimenWrapper;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenEvent;
+import eu.dissco.core.digitalspecimenprocessor.utils.TestUtils;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import org.junit.jupiter.api.Test;
+
+class SpecimenMediaIndexTest {
+
+	private static DigitalSpecimenEvent givenSpecimenEventWithMedia(String physicalSpecimenId, String... mediaUrls) {
+		return new DigitalSpecimenEvent(Set.of(MAS),
+				givenDigitalSpecimenWrapper(physicalSpecimenId, SPECIMEN_NAME, ORGANISATION_ID, false, true,
+						ORIGINAL_DATA),
+				Arrays.stream(mediaUrls).map(TestUtils::givenDigitalMediaEvent).toList(), false, true);
+	}
+
+	@Test
+	void testDuplicateMediaUris() {
+		// Given
+		var specimenEvent = givenSpecimenEventWithMedia(PHYSICAL_SPECIMEN_ID, MEDIA_URL);
+		var mediaDois = Map.of(MEDIA_URL, MEDIA_PID, MEDIA_URL_ALT, MEDIA_PID);
+
+		// When
+		var result = SpecimenMediaIndex.build(List.of(specimenEvent), Map.of(PHYSICAL_SPECIMEN_ID, HANDLE),
+				mediaDois);
+
+		// Then
+		assertThat(result.specimenPids())
+			.isEqualTo(Map.of(PHYSICAL_SPECIMEN_ID, new PidProcessResult(HANDLE, Set.of(MEDIA_PID))));
+		assertThat(result.mediaPids()).isEqualTo(Map.of(MEDIA_URL, new PidProcessResult(MEDIA_PID, Set.of(HANDLE)),
+				MEDIA_URL_ALT, new PidProcessResult(MEDIA_PID, Set.of(HANDLE))));
+	}
+
+	@Test
+	void testMediaSharedAcrossSpecimens() {
+		// Given
+		var specimenEvents = List.of(givenSpecimenEventWithMedia(PHYSICAL_SPECIMEN_ID, MEDIA_URL, MEDIA_URL_ALT),
+				givenSpecimenEventWithMedia(PHYSICAL_SPECIMEN_ID_ALT, MEDIA_URL));
+		var specimenDois = Map.of(PHYSICAL_SPECIMEN_ID, HANDLE, PHYSICAL_SPECIMEN_ID_ALT, SECOND_HANDLE);
+		var mediaDois = Map.of(MEDIA_URL, MEDIA_PID, MEDIA_URL_ALT, MEDIA_PID_ALT);
+
+		// When
+		var result = SpecimenMediaIndex.build(specimenEvents, specimenDois, mediaDois);
+
+		// Then
+		assertThat(result.specimenPids())
+			.isEqualTo(Map.of(PHYSICAL_SPECIMEN_ID, new PidProcessResult(HANDLE, Set.of(MEDIA_PID, MEDIA_PID_ALT)),
+					PHYSICAL_SPECIMEN_ID_ALT, new PidProcessResult(SECOND_HANDLE, Set.of(MEDIA_PID))));
+		assertThat(result.mediaPids())
+			.isEqualTo(Map.of(MEDIA_URL, new PidProcessResult(MEDIA_PID, Set.of(HANDLE, SECOND_HANDLE)), MEDIA_URL_ALT,
+					new PidProcessResult(MEDIA_PID_ALT, Set.of(HANDLE))));
+	}
+
+	@Test
+	void testMediaPidsRelatedTo() {
+		// Given
+		var specimenEvents = List.of(givenSpecimenEventWithMedia(PHYSICAL_SPECIMEN_ID, MEDIA_URL, MEDIA_URL_ALT),
+				givenSpecimenEventWithMedia(PHYSICAL_SPECIMEN_ID_ALT, MEDIA_URL));
+		var specimenDois = Map.of(PHYSICAL_SPECIMEN_ID, HANDLE, PHYSICAL_SPECIMEN_ID_ALT, SECOND_HANDLE);
+		var mediaDois = Map.of(MEDIA_URL, MEDIA_PID, MEDIA_URL_ALT, MEDIA_PID_ALT);
+		var index = SpecimenMediaIndex.build(specimenEvents, specimenDois, mediaDois);
+
+		// When
+		var result = index.mediaPidsRelatedTo(List.of(SECOND_HANDLE));
+
+		// Then
+		assertThat(result).isEqualTo(Map.of(MEDIA_URL, new PidProcessResult(MEDIA_PID, Set.of(SECOND_HANDLE)),
+				MEDIA_URL_ALT, new PidProcessResult(MEDIA_PID_ALT, Set.of())));
+	}
+
+	@Test
+	void testSpecimenWithoutMedia() {
+		// Given
+		var specimenEvent = givenDigitalSpecimenEvent(PHYSICAL_SPECIMEN_ID, false, true);
+
+		// When
+		var result = SpecimenMediaIndex.build(List.of(specimenEvent), Map.of(PHYSICAL_SPECIMEN_ID, HANDLE),
+				Map.of(MEDIA_URL, MEDIA_PID));
+
+		// Then
+		assertThat(result.specimenPids())
+			.isEqualTo(Map.of(PHYSICAL_SPECIMEN_ID, new PidProcessResult(HANDLE, Set.of())));
+		assertThat(result.mediaPids()).isEmpty();
+		assertThat(result.mediaPidsRelatedTo(List.of(HANDLE))).isEmpty();
+	}
+
+}
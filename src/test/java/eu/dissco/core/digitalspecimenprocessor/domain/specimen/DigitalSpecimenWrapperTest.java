@@ -0,0 +1,82 @@
+package eu.dissco.core.digitalspecimenprocessor.domain.specimen;
+
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MAPPER;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalSpecimenWrapper;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class DigitalSpecimenWrapperTest {
+
+	@Test
+	void testLazyAttributesLoadedOnAccess() {
+		// Given
+		var expected = givenDigitalSpecimenWrapper();
+		var loads = new AtomicInteger();
+		var wrapper = DigitalSpecimenWrapper.lazy(expected.physicalSpecimenID(), expected.type(), () -> {
+			loads.incrementAndGet();
+			return expected.attributes();
+		}, expected::originalAttributes);
+
+		// When
+		var physicalSpecimenID = wrapper.physicalSpecimenID();
+		var loadsBeforeAccess = loads.get();
+		wrapper.attributes();
+		wrapper.attributes();
+
+		// Then
+		assertThat(physicalSpecimenID).isEqualTo(expected.physicalSpecimenID());
+		assertThat(loadsBeforeAccess).isZero();
+		assertThat(loads.get()).isEqualTo(1);
+	}
+
+	@Test
+	void testLazyEqualsEager() {
+		// Given
+		var expected = givenDigitalSpecimenWrapper();
+
+		// When
+		var result = DigitalSpecimenWrapper.lazy(expected.physicalSpecimenID(), expected.type(),
+				expected::attributes, expected::originalAttributes);
+
+		// Then
+		assertThat(result).isEqualTo(expected).hasSameHashCodeAs(expected);
+	}
+
+	@Test
+	void testHashCodeAndToStringDoNotParse() {
+		// Given
+		var expected = givenDigitalSpecimenWrapper();
+		var loads = new AtomicInteger();
+		var wrapper = DigitalSpecimenWrapper.lazy(expected.physicalSpecimenID(), expected.type(), () -> {
+			loads.incrementAndGet();
+			return expected.attributes();
+		}, () -> {
+			loads.incrementAndGet();
+			return expected.originalAttributes();
+		});
+
+		// When
+		var hashCode = wrapper.hashCode();
+		var result = wrapper.toString();
+
+		// Then
+		assertThat(hashCode).isEqualTo(expected.hashCode());
+		assertThat(result).contains(expected.physicalSpecimenID()).contains("<not parsed>");
+		assertThat(loads.get()).isZero();
+	}
+
+	@Test
+	void testJsonRoundTrip() {
+		// Given
+		var expected = givenDigitalSpecimenWrapper();
+
+		// When
+		var result = MAPPER.readValue(MAPPER.writeValueAsString(expected), DigitalSpecimenWrapper.class);
+
+		// Then
+		assertThat(result).isEqualTo(expected);
+	}
+
+}
@@ -0,0 +1,91 @@
+package eu.dissco.core.digitalspecimenprocessor.repository;
+
+import static eu.dissco.core.digitalspecimenprocessor.database.jooq.Tables.DIGITAL_SPECIMEN;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MAPPER;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalSpecimenRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
+import java.util.HashSet;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.Query;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/*
+ * Compares the planning time of batch lookups with an IN list, which has a bind variable
+ * per key, with the same lookup with a single array parameter. The array lookup renders
+ * the same statement for every batch size, so the prepared statement can be reused.
+ */
+@Slf4j
+class ArrayLookupIT extends BaseRepositoryIT {
+
+	private static final List<Integer> BATCH_SIZES = List.of(10, 100, 1000, 10000);
+
+	private static final int STORED_SPECIMENS = 1000;
+
+	@BeforeEach
+	void setup() {
+		var repository = new DigitalSpecimenRepository(context, MAPPER, new ApplicationProperties());
+		repository.createDigitalSpecimenRecord(IntStream.range(0, STORED_SPECIMENS)
+			.mapToObj(i -> givenDigitalSpecimenRecord(givenId(i), "https://geocollections.info/specimen/" + i, false))
+			.collect(Collectors.toSet()));
+	}
+
+	@AfterEach
+	void destroy() {
+		context.truncate(DIGITAL_SPECIMEN).execute();
+	}
+
+	@Test
+	void testArrayLookupPlanningTime() {
+		// Given
+		var inListStatements = new HashSet<String>();
+		var arrayStatements = new HashSet<String>();
+
+		for (var batchSize : BATCH_SIZES) {
+			var ids = IntStream.range(0, batchSize).mapToObj(ArrayLookupIT::givenId).toList();
+			var inListQuery = context.select(DIGITAL_SPECIMEN.ID, DIGITAL_SPECIMEN.VERSION)
+				.from(DIGITAL_SPECIMEN)
+				.where(DIGITAL_SPECIMEN.ID.in(ids));
+			var arrayQuery = context.select(DIGITAL_SPECIMEN.ID, DIGITAL_SPECIMEN.VERSION)
+				.from(DIGITAL_SPECIMEN)
+				.where(DIGITAL_SPECIMEN.ID.eq(DSL.any(ids.toArray(String[]::new))));
+
+			// When
+			var inListPlanning = planningTime(inListQuery);
+			var arrayPlanning = planningTime(arrayQuery);
+			log.info("Planned lookup of {} keys in {} ms with an IN list, {} ms with an array", batchSize,
+					inListPlanning, arrayPlanning);
+
+			// Then
+			assertThat(arrayQuery.getBindValues()).hasSize(1);
+			assertThat(inListQuery.getBindValues()).hasSize(batchSize);
+			assertThat(context.fetch(arrayQuery)).hasSize(Math.min(batchSize, STORED_SPECIMENS));
+			inListStatements.add(inListQuery.getSQL());
+			arrayStatements.add(arrayQuery.getSQL());
+		}
+		assertThat(inListStatements).hasSize(BATCH_SIZES.size());
+		assertThat(arrayStatements).hasSize(1);
+	}
+
+	private double planningTime(Query query) {
+		return context.fetch("explain (analyze, summary) " + query.getSQL(), query.getBindValues().toArray())
+			.getValues(0, String.class)
+			.stream()
+			.filter(line -> line.startsWith("Planning Time:"))
+			.mapToDouble(line -> Double.parseDouble(line.replaceAll("[^0-9.]", "")))
+			.findFirst()
+			.orElseThrow();
+	}
+
+	private static String givenId(int i) {
+		return "20.5000.1025/" + i;
+	}
+
+}
@@ -4,18 +4,24 @@ import static eu.dissco.core.digitalspecimenprocessor.database.jooq.Tables.DIGIT
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.ANOTHER_SOURCE_SYSTEM_ID;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MAPPER;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_PID;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_PID_ALT;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_URL;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_URL_ALT;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.ORIGINAL_DATA_MEDIA;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.UPDATED_ORIGINAL_DATA_MEDIA;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.VERSION;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaRecord;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaRecordNoMas;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUnequalDigitalMedia;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUnequalDigitalMediaRecord;
 import static org.assertj.core.api.Assertions.assertThat;
 
+import eu.dissco.core.digitalspecimenprocessor.domain.UpsertResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaRecord;
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
 import java.time.Instant;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import org.jooq.Record1;
 import org.junit.jupiter.api.AfterEach;
@@ -26,9 +32,12 @@ class DigitalMediaRepositoryIT extends BaseRepositoryIT {
 
 	private DigitalMediaRepository mediaRepository;
 
+	private ApplicationProperties applicationProperties;
+
 	@BeforeEach
 	void setup() {
-		mediaRepository = new DigitalMediaRepository(context, MAPPER);
+		applicationProperties = new ApplicationProperties();
+		mediaRepository = new DigitalMediaRepository(context, MAPPER, applicationProperties);
 	}
 
 	@AfterEach
@@ -53,14 +62,49 @@ class DigitalMediaRepositoryIT extends BaseRepositoryIT {
 		assertThat(result).isEqualTo(MEDIA_URL);
 	}
 
+	@Test
+	void testCopyDigitalMediaRecords() {
+		// Given
+		applicationProperties.setCopyInsertThreshold(1);
+
+		// When
+		mediaRepository.createDigitalMediaRecord(
+				Set.of(givenDigitalMediaRecord(), givenDigitalMediaRecord(MEDIA_PID_ALT, MEDIA_URL_ALT, VERSION)));
+		var result = mediaRepository.getExistingDigitalMedia(Set.of(MEDIA_URL));
+		var originalData = context.select(DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA)
+			.from(DIGITAL_MEDIA_OBJECT)
+			.where(DIGITAL_MEDIA_OBJECT.ID.eq(MEDIA_PID))
+			.fetchOne(DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA);
+
+		// Then
+		assertThat(context.fetchCount(DIGITAL_MEDIA_OBJECT)).isEqualTo(2);
+		assertThat(result).isEqualTo(List.of(givenDigitalMediaRecordNoMas()));
+		assertThat(MAPPER.readTree(originalData.data())).isEqualTo(ORIGINAL_DATA_MEDIA);
+	}
+
+	@Test
+	void testCopyDigitalMediaRecordsFallsBackToUpsert() {
+		// Given
+		applicationProperties.setCopyInsertThreshold(1);
+		mediaRepository.createDigitalMediaRecord(Set.of(givenDigitalMediaRecord()));
+
+		// When
+		var result = mediaRepository.createDigitalMediaRecord(
+				Set.of(givenDigitalMediaRecord(), givenDigitalMediaRecord(MEDIA_PID_ALT, MEDIA_URL_ALT, VERSION)));
+
+		// Then
+		assertThat(result).isEqualTo(new UpsertResult(Map.of(MEDIA_PID_ALT, VERSION), Map.of(), Set.of()));
+		assertThat(context.fetchCount(DIGITAL_MEDIA_OBJECT)).isEqualTo(2);
+	}
+
 	@Test
 	void testUpdatedDigitalMediaRecord() {
 		// Given
 		mediaRepository.createDigitalMediaRecord(Set.of(givenDigitalMediaRecord()));
-		var updatedMediaRecord = givenUnequalDigitalMediaRecord();
+		var updatedMediaRecord = givenUnequalDigitalMediaRecord(VERSION + 1);
 
 		// When
-		mediaRepository.updateDigitalMediaRecord(Set.of(updatedMediaRecord));
+		var result = mediaRepository.updateDigitalMediaRecords(Set.of(updatedMediaRecord));
 		var dbRecord = context.select(DIGITAL_MEDIA_OBJECT.asterisk())
 			.from(DIGITAL_MEDIA_OBJECT)
 			.where(DIGITAL_MEDIA_OBJECT.ID.eq(MEDIA_PID))
@@ -69,6 +113,7 @@ class DigitalMediaRepositoryIT extends BaseRepositoryIT {
 		var originalData = MAPPER.readTree(dbRecord.get(DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA).data());
 
 		// Then
+		assertThat(result.updated()).isEqualTo(Map.of(MEDIA_PID, VERSION + 1));
 		assertThat(sourceSystemId).isEqualTo(ANOTHER_SOURCE_SYSTEM_ID);
 		assertThat(originalData).isEqualTo(UPDATED_ORIGINAL_DATA_MEDIA);
 	}
@@ -77,11 +122,11 @@ class DigitalMediaRepositoryIT extends BaseRepositoryIT {
 	void testUpdatedDigitalMediaRecordNotFromSourceSystem() {
 		// Given
 		mediaRepository.createDigitalMediaRecord(Set.of(givenDigitalMediaRecord()));
-		var updatedMediaRecord = new DigitalMediaRecord(MEDIA_PID, MEDIA_URL, 1, Instant.now(), null,
+		var updatedMediaRecord = new DigitalMediaRecord(MEDIA_PID, MEDIA_URL, VERSION + 1, Instant.now(), null,
 				givenUnequalDigitalMedia(MEDIA_URL, true), null, false, false);
 
 		// When
-		mediaRepository.updateDigitalMediaRecord(Set.of(updatedMediaRecord));
+		mediaRepository.updateDigitalMediaRecords(Set.of(updatedMediaRecord));
 		var dbRecord = context.select(DIGITAL_MEDIA_OBJECT.asterisk())
 			.from(DIGITAL_MEDIA_OBJECT)
 			.where(DIGITAL_MEDIA_OBJECT.ID.eq(MEDIA_PID))
@@ -94,6 +139,54 @@ class DigitalMediaRepositoryIT extends BaseRepositoryIT {
 		assertThat(originalData).isEqualTo(ORIGINAL_DATA_MEDIA);
 	}
 
+	@Test
+	void testUpdatedDigitalMediaRecordConflict() {
+		// Given
+		mediaRepository.createDigitalMediaRecord(Set.of(givenDigitalMediaRecord(VERSION + 1)));
+
+		// When
+		var result = mediaRepository
+			.updateDigitalMediaRecords(Set.of(givenUnequalDigitalMediaRecord(VERSION + 1)));
+		var originalData = context.select(DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA)
+			.from(DIGITAL_MEDIA_OBJECT)
+			.where(DIGITAL_MEDIA_OBJECT.ID.eq(MEDIA_PID))
+			.fetchOne(DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA);
+
+		// Then
+		assertThat(result).isEqualTo(new UpsertResult());
+		assertThat(MAPPER.readTree(originalData.data())).isEqualTo(ORIGINAL_DATA_MEDIA);
+	}
+
+	@Test
+	void testUpdatedDigitalMediaRecordDeleted() {
+		// Given
+
+		// When
+		var result = mediaRepository.updateDigitalMediaRecords(Set.of(givenUnequalDigitalMediaRecord(VERSION + 1)));
+
+		// Then
+		assertThat(result.conflicting(List.of(MEDIA_PID))).containsOnly(MEDIA_PID);
+		assertThat(context.fetchCount(DIGITAL_MEDIA_OBJECT)).isZero();
+	}
+
+	@Test
+	void testRollbackDigitalMediaVersion() {
+		// Given
+		mediaRepository.createDigitalMediaRecord(Set.of(givenDigitalMediaRecord()));
+		mediaRepository.updateDigitalMediaRecords(Set.of(givenUnequalDigitalMediaRecord(VERSION + 1)));
+
+		// When
+		mediaRepository.rollbackDigitalMediaVersions(List.of(givenDigitalMediaRecord()));
+		var dbRecord = context.select(DIGITAL_MEDIA_OBJECT.VERSION, DIGITAL_MEDIA_OBJECT.ORIGINAL_DATA)
+			.from(DIGITAL_MEDIA_OBJECT)
+			.where(DIGITAL_MEDIA_OBJECT.ID.eq(MEDIA_PID))
+			.fetchOne();
+
+		// Then
+		assertThat(dbRecord.value1()).isEqualTo(VERSION);
+		assertThat(MAPPER.readTree(dbRecord.value2().data())).isEqualTo(ORIGINAL_DATA_MEDIA);
+	}
+
 	@Test
 	void testGetExistingDigitalMedia() {
 		// Given
@@ -106,13 +199,67 @@ class DigitalMediaRepositoryIT extends BaseRepositoryIT {
 		assertThat(result).isEqualTo(List.of(givenDigitalMediaRecordNoMas()));
 	}
 
+	@Test
+	void testGetExistingDigitalMediaExactUrl() {
+		// Given
+		mediaRepository.createDigitalMediaRecord(Set.of(givenDigitalMediaRecord(MEDIA_PID, MEDIA_URL, VERSION),
+				givenDigitalMediaRecord(MEDIA_PID_ALT, MEDIA_URL + "/", VERSION)));
+
+		// When
+		var result = mediaRepository.getExistingDigitalMedia(Set.of(MEDIA_URL, "https://example.org/unknown.jpg"));
+
+		// Then
+		assertThat(result).extracting(DigitalMediaRecord::id).containsExactly(MEDIA_PID);
+	}
+
+	@Test
+	void testGetExistingMediaUrls() {
+		// Given
+		mediaRepository.createDigitalMediaRecord(Set.of(givenDigitalMediaRecord(MEDIA_PID, MEDIA_URL, VERSION),
+				givenDigitalMediaRecord(MEDIA_PID_ALT, MEDIA_URL + "/", VERSION)));
+
+		// When
+		var result = mediaRepository.getExistingMediaUrls(Set.of(MEDIA_URL, "https://example.org/unknown.jpg"));
+
+		// Then
+		assertThat(result).containsExactly(MEDIA_URL);
+	}
+
+	@Test
+	void testGetDigitalMediaVersions() {
+		// Given
+		mediaRepository.createDigitalMediaRecord(Set.of(givenDigitalMediaRecord(MEDIA_PID, MEDIA_URL, VERSION),
+				givenDigitalMediaRecord(MEDIA_PID_ALT, MEDIA_URL_ALT, VERSION + 1)));
+
+		// When
+		var result = mediaRepository.getDigitalMediaVersions(List.of(MEDIA_PID, MEDIA_PID_ALT, "unknown"));
+
+		// Then
+		assertThat(result).isEqualTo(Map.of(MEDIA_PID, VERSION, MEDIA_PID_ALT, VERSION + 1));
+	}
+
+	@Test
+	void testMediaUrlHashMatchesDatabase() {
+		// Given
+		mediaRepository.createDigitalMediaRecord(Set.of(givenDigitalMediaRecord()));
+
+		// When
+		var result = context.select(DIGITAL_MEDIA_OBJECT.MEDIA_URL_HASH)
+			.from(DIGITAL_MEDIA_OBJECT)
+			.where(DIGITAL_MEDIA_OBJECT.ID.eq(MEDIA_PID))
+			.fetchSingle(DIGITAL_MEDIA_OBJECT.MEDIA_URL_HASH);
+
+		// Then
+		assertThat(result).isEqualTo(LookupHash.of(MEDIA_URL));
+	}
+
 	@Test
 	void testRollbackMedia() {
 		// Given
 		mediaRepository.createDigitalMediaRecord(Set.of(givenDigitalMediaRecord()));
 
 		// When
-		mediaRepository.rollBackDigitalMedia(MEDIA_PID);
+		mediaRepository.rollBackDigitalMedia(List.of(givenDigitalMediaRecord()));
 		var result = context.select(DIGITAL_MEDIA_OBJECT.asterisk())
 			.from(DIGITAL_MEDIA_OBJECT)
 			.where(DIGITAL_MEDIA_OBJECT.ID.eq(MEDIA_PID))
@@ -122,6 +269,41 @@ class DigitalMediaRepositoryIT extends BaseRepositoryIT {
 		assertThat(result).isNull();
 	}
 
+	@Test
+	void testRollbackMediaAfterNewerVersion() {
+		// Given
+		mediaRepository.createDigitalMediaRecord(Set.of(givenDigitalMediaRecord()));
+		mediaRepository.updateDigitalMediaRecords(Set.of(givenUnequalDigitalMediaRecord(VERSION + 1)));
+
+		// When
+		mediaRepository.rollBackDigitalMedia(List.of(givenDigitalMediaRecord()));
+		var result = context.select(DIGITAL_MEDIA_OBJECT.VERSION)
+			.from(DIGITAL_MEDIA_OBJECT)
+			.where(DIGITAL_MEDIA_OBJECT.ID.eq(MEDIA_PID))
+			.fetchOne(DIGITAL_MEDIA_OBJECT.VERSION);
+
+		// Then
+		assertThat(result).isEqualTo(VERSION + 1);
+	}
+
+	@Test
+	void testRollbackDigitalMediaVersionAfterNewerVersion() {
+		// Given
+		mediaRepository.createDigitalMediaRecord(Set.of(givenDigitalMediaRecord()));
+		mediaRepository.updateDigitalMediaRecords(Set.of(givenUnequalDigitalMediaRecord(VERSION + 1)));
+		mediaRepository.updateDigitalMediaRecords(Set.of(givenUnequalDigitalMediaRecord(VERSION + 2)));
+
+		// When
+		mediaRepository.rollbackDigitalMediaVersions(List.of(givenDigitalMediaRecord()));
+		var result = context.select(DIGITAL_MEDIA_OBJECT.VERSION)
+			.from(DIGITAL_MEDIA_OBJECT)
+			.where(DIGITAL_MEDIA_OBJECT.ID.eq(MEDIA_PID))
+			.fetchOne(DIGITAL_MEDIA_OBJECT.VERSION);
+
+		// Then
+		assertThat(result).isEqualTo(VERSION + 2);
+	}
+
 	@Test
 	void testUpdateLastChecked() {
 		// Given
@@ -154,4 +336,16 @@ class DigitalMediaRepositoryIT extends BaseRepositoryIT {
 		assertThat(result).isEqualTo(List.of(givenDigitalMediaRecordNoMas()));
 	}
 
+	@Test
+	void testGetDigitalMediaUrlsByDoi() {
+		// Given
+		mediaRepository.createDigitalMediaRecord(Set.of(givenDigitalMediaRecord()));
+
+		// When
+		var result = mediaRepository.getDigitalMediaUrlsByDoi(Set.of(MEDIA_PID, MEDIA_PID_ALT));
+
+		// Then
+		assertThat(result).isEqualTo(List.of(MEDIA_URL));
+	}
+
 }
@@ -7,29 +7,29 @@ import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.CREATED;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.HANDLE;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MAPPER;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MIDS_LEVEL;
-import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.ORGANISATION_ID;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.ORIGINAL_DATA;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.PHYSICAL_SPECIMEN_ID;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.SECOND_HANDLE;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.SPECIMEN_NAME;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.THIRD_HANDLE;
-import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.TYPE_PID;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.UPDATED_ORIGINAL_DATA;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.VERSION;
-import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenAttributes;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalSpecimenRecord;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalSpecimenWrapper;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUnequalDigitalSpecimenRecord;
 import static org.assertj.core.api.Assertions.assertThat;
 
-import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenEvent;
+import eu.dissco.core.digitalspecimenprocessor.domain.UpsertResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenRecord;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenWrapper;
 import eu.dissco.core.digitalspecimenprocessor.exception.DisscoRepositoryException;
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
 import java.time.Instant;
+import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import org.jooq.Record1;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -42,9 +42,12 @@ class DigitalSpecimenRepositoryIT extends BaseRepositoryIT {
 
 	private DigitalSpecimenRepository repository;
 
+	private ApplicationProperties applicationProperties;
+
 	@BeforeEach
 	void setup() {
-		repository = new DigitalSpecimenRepository(context, MAPPER);
+		applicationProperties = new ApplicationProperties();
+		repository = new DigitalSpecimenRepository(context, MAPPER, applicationProperties);
 	}
 
 	@AfterEach
@@ -79,6 +82,109 @@ class DigitalSpecimenRepositoryIT extends BaseRepositoryIT {
 		assertThat(result.getFirst()).isEqualTo(expected);
 	}
 
+	@Test
+	void testGetExistingPhysicalSpecimenIds() throws DisscoRepositoryException {
+		// Given
+		repository.createDigitalSpecimenRecord(Set.of(givenDigitalSpecimenRecord(),
+				givenDigitalSpecimenRecord("20.5000.1025/XXX-XXX-XXX", "TEST_1", false)));
+
+		// When
+		var result = repository.getExistingPhysicalSpecimenIds(Set.of(PHYSICAL_SPECIMEN_ID, "TEST_2"));
+
+		// Then
+		assertThat(result).containsExactly(PHYSICAL_SPECIMEN_ID);
+	}
+
+	@Test
+	void testPhysicalSpecimenIdHashMatchesDatabase() {
+		// Given
+		var physicalSpecimenId = "https://geocollections.info/specimen/Ünïcødé-23";
+		repository.createDigitalSpecimenRecord(Set.of(givenDigitalSpecimenRecord(HANDLE, physicalSpecimenId, false)));
+
+		// When
+		var result = context.select(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID_HASH)
+			.from(DIGITAL_SPECIMEN)
+			.where(DIGITAL_SPECIMEN.ID.eq(HANDLE))
+			.fetchSingle(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID_HASH);
+
+		// Then
+		assertThat(result).isEqualTo(LookupHash.of(physicalSpecimenId));
+	}
+
+	@Test
+	void testCopyDigitalSpecimens() throws DisscoRepositoryException {
+		// Given
+		applicationProperties.setCopyInsertThreshold(1);
+		var contentHash = UUID.randomUUID();
+		var specimenRecord = givenDigitalSpecimenRecord();
+		var expected = new DigitalSpecimenRecord(HANDLE, MIDS_LEVEL, VERSION, CREATED, givenDigitalSpecimenWrapper(),
+				null, null, null, List.of(), contentHash);
+
+		// When
+		var result = repository.createDigitalSpecimenRecord(Set.of(
+				new DigitalSpecimenRecord(specimenRecord.id(), specimenRecord.midsLevel(), specimenRecord.version(),
+						specimenRecord.created(), specimenRecord.digitalSpecimenWrapper(), specimenRecord.masIds(),
+						specimenRecord.forceMasSchedule(), specimenRecord.isDataFromSourceSystem(),
+						specimenRecord.digitalMediaEvents(), contentHash),
+				givenDigitalSpecimenRecord(SECOND_HANDLE, "TEST_1", false)));
+
+		// Then
+		assertThat(result.created()).isEqualTo(Map.of(HANDLE, VERSION, SECOND_HANDLE, VERSION));
+		assertThat(repository.getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID))).containsExactly(expected);
+		assertThat(context.fetchCount(DIGITAL_SPECIMEN)).isEqualTo(2);
+	}
+
+	@Test
+	void testCopyDigitalSpecimensFallsBackToUpsert() {
+		// Given
+		applicationProperties.setCopyInsertThreshold(1);
+		repository.createDigitalSpecimenRecord(Set.of(givenDigitalSpecimenRecord(SECOND_HANDLE, "TEST_1", false)));
+
+		// When
+		var result = repository.createDigitalSpecimenRecord(
+				Set.of(givenDigitalSpecimenRecord(), givenDigitalSpecimenRecord(SECOND_HANDLE, "TEST_2", false)));
+
+		// Then
+		var physicalSpecimenId = context.select(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID)
+			.from(DIGITAL_SPECIMEN)
+			.where(DIGITAL_SPECIMEN.ID.eq(SECOND_HANDLE))
+			.fetchOne(Record1::value1);
+		assertThat(result).isEqualTo(new UpsertResult(Map.of(HANDLE, VERSION), Map.of(), Set.of()));
+		assertThat(physicalSpecimenId).isEqualTo("TEST_1");
+		assertThat(context.fetchCount(DIGITAL_SPECIMEN)).isEqualTo(2);
+	}
+
+	@Test
+	void testUpdateSpecimensDoesNotInsertDeletedSpecimen() {
+		// Given
+		repository.createDigitalSpecimenRecord(Set.of(givenDigitalSpecimenRecord()));
+
+		// When
+		var result = repository.updateDigitalSpecimenRecords(
+				List.of(givenNextVersion(givenUnequalDigitalSpecimenRecord()),
+						givenNextVersion(givenDigitalSpecimenRecord(SECOND_HANDLE, "TEST_1", false))));
+
+		// Then
+		assertThat(result).isEqualTo(new UpsertResult(Map.of(), Map.of(HANDLE, VERSION + 1), Set.of()));
+		assertThat(result.conflicting(List.of(HANDLE, SECOND_HANDLE))).containsOnly(SECOND_HANDLE);
+		assertThat(context.fetchCount(DIGITAL_SPECIMEN)).isEqualTo(1);
+	}
+
+	@Test
+	void testCreateSpecimensRejectsInvalidRecord() {
+		// Given
+		var invalidRecord = givenUnequalDigitalSpecimenRecord(THIRD_HANDLE, SPECIMEN_NAME, null, false, true);
+
+		// When
+		var result = repository.createDigitalSpecimenRecord(Set.of(givenDigitalSpecimenRecord(),
+				givenDigitalSpecimenRecord(SECOND_HANDLE, "TEST_1", false), invalidRecord));
+
+		// Then
+		assertThat(result).isEqualTo(new UpsertResult(Map.of(HANDLE, VERSION, SECOND_HANDLE, VERSION), Map.of(),
+				Set.of(THIRD_HANDLE)));
+		assertThat(context.fetchCount(DIGITAL_SPECIMEN)).isEqualTo(2);
+	}
+
 	@Test
 	void testUpdateVersionSpecimens() {
 		// Given
@@ -87,7 +193,8 @@ class DigitalSpecimenRepositoryIT extends BaseRepositoryIT {
 				givenDigitalSpecimenRecord("20.5000.1025/YYY-YYY-YYY", "TEST_2", false)));
 
 		// When
-		var successfulRecord = repository.updateDigitalSpecimenRecord(Set.of(givenUnequalDigitalSpecimenRecord()));
+		var result = repository
+			.updateDigitalSpecimenRecords(Set.of(givenNextVersion(givenUnequalDigitalSpecimenRecord())));
 
 		// Then
 		var resultOriginalData = context.select(DIGITAL_SPECIMEN.ORIGINAL_DATA)
@@ -95,7 +202,7 @@ class DigitalSpecimenRepositoryIT extends BaseRepositoryIT {
 			.where(DIGITAL_SPECIMEN.ID.eq(HANDLE))
 			.fetchOne(DIGITAL_SPECIMEN.ORIGINAL_DATA)
 			.data();
-		assertThat(successfulRecord).isEqualTo(new int[] { 1 });
+		assertThat(result.updated()).containsOnlyKeys(HANDLE);
 		assertThat(MAPPER.readTree(resultOriginalData)).isEqualTo(UPDATED_ORIGINAL_DATA);
 	}
 
@@ -107,8 +214,8 @@ class DigitalSpecimenRepositoryIT extends BaseRepositoryIT {
 				givenDigitalSpecimenRecord("20.5000.1025/YYY-YYY-YYY", "TEST_2", false)));
 
 		// When
-		var successfulRecord = repository.updateDigitalSpecimenRecord(Set
-			.of(givenUnequalDigitalSpecimenRecord(HANDLE, ANOTHER_SPECIMEN_NAME, ANOTHER_ORGANISATION, false, false)));
+		var result = repository.updateDigitalSpecimenRecords(Set.of(givenNextVersion(
+				givenUnequalDigitalSpecimenRecord(HANDLE, ANOTHER_SPECIMEN_NAME, ANOTHER_ORGANISATION, false, false))));
 
 		// Then
 		var resultOriginalData = context.select(DIGITAL_SPECIMEN.ORIGINAL_DATA)
@@ -116,7 +223,7 @@ class DigitalSpecimenRepositoryIT extends BaseRepositoryIT {
 			.where(DIGITAL_SPECIMEN.ID.eq(HANDLE))
 			.fetchOne(DIGITAL_SPECIMEN.ORIGINAL_DATA)
 			.data();
-		assertThat(successfulRecord).isEqualTo(new int[] { 1 });
+		assertThat(result.updated()).containsOnlyKeys(HANDLE);
 		assertThat(MAPPER.readTree(resultOriginalData)).isEqualTo(ORIGINAL_DATA);
 	}
 
@@ -127,13 +234,9 @@ class DigitalSpecimenRepositoryIT extends BaseRepositoryIT {
 				Set.of(givenDigitalSpecimenRecord(), givenDigitalSpecimenRecord(SECOND_HANDLE, "TEST_1", false),
 						givenDigitalSpecimenRecord(THIRD_HANDLE, "TEST_2", false)));
 		var expectedOriginalData = (JsonNode) (MAPPER.createObjectNode().put("new field", "new data"));
-		var updatedEvent = new DigitalSpecimenEvent(Set.of(),
-				new DigitalSpecimenWrapper(PHYSICAL_SPECIMEN_ID, TYPE_PID,
-						givenAttributes(SPECIMEN_NAME, ORGANISATION_ID, true, false, false), expectedOriginalData),
-				List.of(), false, Boolean.TRUE);
 
 		// When
-		repository.updateLastCheckedAndOriginalData(Map.of(HANDLE, updatedEvent));
+		repository.updateLastCheckedAndOriginalData(Map.of(HANDLE, expectedOriginalData.toString()), Instant.now());
 		var result = context.select(DIGITAL_SPECIMEN.LAST_CHECKED, DIGITAL_SPECIMEN.ORIGINAL_DATA)
 			.from(DIGITAL_SPECIMEN)
 			.where(DIGITAL_SPECIMEN.ID.eq(HANDLE))
@@ -151,13 +254,28 @@ class DigitalSpecimenRepositoryIT extends BaseRepositoryIT {
 		repository.createDigitalSpecimenRecord(
 				Set.of(givenDigitalSpecimenRecord(), givenDigitalSpecimenRecord(SECOND_HANDLE, "TEST_1", false),
 						givenDigitalSpecimenRecord(THIRD_HANDLE, "TEST_2", false)));
-		var updatedEvent = new DigitalSpecimenEvent(Set.of(),
-				new DigitalSpecimenWrapper(PHYSICAL_SPECIMEN_ID, TYPE_PID,
-						givenAttributes(SPECIMEN_NAME, ORGANISATION_ID, true, false, false), MAPPER.createObjectNode()),
-				List.of(), false, Boolean.FALSE);
 
 		// When
-		repository.updateLastCheckedAndOriginalData(Map.of(HANDLE, updatedEvent));
+		repository.updateLastCheckedAndOriginalData(Collections.singletonMap(HANDLE, null), Instant.now());
+		var result = context.select(DIGITAL_SPECIMEN.LAST_CHECKED, DIGITAL_SPECIMEN.ORIGINAL_DATA)
+			.from(DIGITAL_SPECIMEN)
+			.where(DIGITAL_SPECIMEN.ID.eq(HANDLE))
+			.fetchOne();
+
+		// Then
+		assertThat(result.get(DIGITAL_SPECIMEN.LAST_CHECKED)).isAfter(UPDATED_TIMESTAMP);
+		assertThat(MAPPER.readValue(result.get(DIGITAL_SPECIMEN.ORIGINAL_DATA).data(), JsonNode.class))
+			.isEqualTo(ORIGINAL_DATA);
+	}
+
+	@Test
+	void testUpdateLastCheckedModifiedSinceQueued() {
+		// Given
+		repository.createDigitalSpecimenRecord(Set.of(givenDigitalSpecimenRecord()));
+		var updatedOriginalData = MAPPER.createObjectNode().put("new field", "new data").toString();
+
+		// When
+		repository.updateLastCheckedAndOriginalData(Map.of(HANDLE, updatedOriginalData), UPDATED_TIMESTAMP);
 		var result = context.select(DIGITAL_SPECIMEN.LAST_CHECKED, DIGITAL_SPECIMEN.ORIGINAL_DATA)
 			.from(DIGITAL_SPECIMEN)
 			.where(DIGITAL_SPECIMEN.ID.eq(HANDLE))
@@ -169,15 +287,54 @@ class DigitalSpecimenRepositoryIT extends BaseRepositoryIT {
 			.isEqualTo(ORIGINAL_DATA);
 	}
 
+	@Test
+	void testGetDigitalSpecimenFingerprints() throws DisscoRepositoryException {
+		// Given
+		var contentHash = UUID.randomUUID();
+		var specimenRecord = givenDigitalSpecimenRecord();
+		repository.createDigitalSpecimenRecord(Set.of(new DigitalSpecimenRecord(specimenRecord.id(),
+				specimenRecord.midsLevel(), specimenRecord.version(), specimenRecord.created(),
+				specimenRecord.digitalSpecimenWrapper(), null, null, null, List.of(), contentHash)));
+
+		// When
+		var result = repository.getDigitalSpecimenFingerprints(List.of(PHYSICAL_SPECIMEN_ID));
+
+		// Then
+		assertThat(result).hasSize(1);
+		assertThat(result.getFirst().id()).isEqualTo(HANDLE);
+		assertThat(result.getFirst().contentHash()).isEqualTo(contentHash);
+		assertThat(result.getFirst().digitalSpecimenWrapper().isFingerprint()).isTrue();
+		assertThat(result.getFirst().digitalSpecimenWrapper().originalAttributes()).isNull();
+		assertThat(result.getFirst().digitalSpecimenWrapper().attributes().getOdsHasEntityRelationships())
+			.isEqualTo(specimenRecord.digitalSpecimenWrapper().attributes().getOdsHasEntityRelationships());
+	}
+
+	@Test
+	void testUpdateContentHash() {
+		// Given
+		var contentHash = UUID.randomUUID();
+		repository.createDigitalSpecimenRecord(Set.of(givenDigitalSpecimenRecord()));
+
+		// When
+		repository.updateContentHash(Map.of(HANDLE, contentHash));
+		var result = context.select(DIGITAL_SPECIMEN.CONTENT_HASH)
+			.from(DIGITAL_SPECIMEN)
+			.where(DIGITAL_SPECIMEN.ID.eq(HANDLE))
+			.fetchOne(Record1::value1);
+
+		// Then
+		assertThat(result).isEqualTo(contentHash);
+	}
+
 	@Test
 	void testUpdateSpecimens() {
 		// Given
 		var records = Set.of(givenDigitalSpecimenRecord(), givenDigitalSpecimenRecord(SECOND_HANDLE, "TEST_1", false));
-		var updatedRecord = Set.of(givenDigitalSpecimenRecord(SECOND_HANDLE, "TEST_2", false));
+		var updatedRecord = Set.of(givenNextVersion(givenDigitalSpecimenRecord(SECOND_HANDLE, "TEST_2", false)));
 
 		// When
 		repository.createDigitalSpecimenRecord(records);
-		repository.updateDigitalSpecimenRecord(updatedRecord);
+		repository.updateDigitalSpecimenRecords(updatedRecord);
 
 		// Then
 		var result = context.select(DIGITAL_SPECIMEN.PHYSICAL_SPECIMEN_ID)
@@ -187,6 +344,56 @@ class DigitalSpecimenRepositoryIT extends BaseRepositoryIT {
 		assertThat(result).isEqualTo("TEST_2");
 	}
 
+	@Test
+	void testUpdateSpecimensConflict() {
+		// Given
+		repository.createDigitalSpecimenRecord(Set.of(givenNextVersion(givenDigitalSpecimenRecord())));
+
+		// When
+		var upsertResult = repository
+			.updateDigitalSpecimenRecords(Set.of(givenNextVersion(givenUnequalDigitalSpecimenRecord())));
+
+		// Then
+		var result = context.select(DIGITAL_SPECIMEN.VERSION, DIGITAL_SPECIMEN.ORIGINAL_DATA)
+			.from(DIGITAL_SPECIMEN)
+			.where(DIGITAL_SPECIMEN.ID.eq(HANDLE))
+			.fetchOne();
+		assertThat(upsertResult).isEqualTo(new UpsertResult());
+		assertThat(result.value1()).isEqualTo(VERSION + 1);
+		assertThat(MAPPER.readTree(result.value2().data())).isEqualTo(ORIGINAL_DATA);
+	}
+
+	@Test
+	void testRollbackDigitalSpecimenVersion() {
+		// Given
+		repository.createDigitalSpecimenRecord(Set.of(givenDigitalSpecimenRecord()));
+		repository.updateDigitalSpecimenRecords(Set.of(givenNextVersion(givenUnequalDigitalSpecimenRecord())));
+
+		// When
+		repository.rollbackDigitalSpecimenVersions(List.of(givenDigitalSpecimenRecord()));
+
+		// Then
+		var result = context.select(DIGITAL_SPECIMEN.VERSION, DIGITAL_SPECIMEN.ORIGINAL_DATA)
+			.from(DIGITAL_SPECIMEN)
+			.where(DIGITAL_SPECIMEN.ID.eq(HANDLE))
+			.fetchOne();
+		assertThat(result.value1()).isEqualTo(VERSION);
+		assertThat(MAPPER.readTree(result.value2().data())).isEqualTo(ORIGINAL_DATA);
+	}
+
+	@Test
+	void testGetDigitalSpecimenVersions() throws DisscoRepositoryException {
+		// Given
+		repository.createDigitalSpecimenRecord(Set.of(givenDigitalSpecimenRecord(),
+				givenNextVersion(givenDigitalSpecimenRecord(SECOND_HANDLE, "TEST_1", false))));
+
+		// When
+		var result = repository.getDigitalSpecimenVersions(List.of(HANDLE, SECOND_HANDLE, THIRD_HANDLE));
+
+		// Then
+		assertThat(result).isEqualTo(Map.of(HANDLE, VERSION, SECOND_HANDLE, VERSION + 1));
+	}
+
 	@Test
 	void testCreateWithInvalidUnicode() {
 		// Given
@@ -212,11 +419,55 @@ class DigitalSpecimenRepositoryIT extends BaseRepositoryIT {
 						givenDigitalSpecimenRecord(THIRD_HANDLE, "TEST_2", false)));
 
 		// When
-		repository.rollbackSpecimen(HANDLE);
+		repository.rollbackSpecimens(List.of(givenDigitalSpecimenRecord()));
 
 		// Then
 		var result = repository.getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID));
 		assertThat(result).isEmpty();
 	}
 
+	@Test
+	void testRollbackSpecimenAfterNewerVersion() {
+		// Given
+		repository.createDigitalSpecimenRecord(Set.of(givenDigitalSpecimenRecord()));
+		repository.updateDigitalSpecimenRecords(Set.of(givenNextVersion(givenUnequalDigitalSpecimenRecord())));
+
+		// When
+		repository.rollbackSpecimens(List.of(givenDigitalSpecimenRecord()));
+
+		// Then
+		var result = context.select(DIGITAL_SPECIMEN.VERSION)
+			.from(DIGITAL_SPECIMEN)
+			.where(DIGITAL_SPECIMEN.ID.eq(HANDLE))
+			.fetchOne(Record1::value1);
+		assertThat(result).isEqualTo(VERSION + 1);
+	}
+
+	@Test
+	void testRollbackDigitalSpecimenVersionAfterNewerVersion() {
+		// Given
+		repository.createDigitalSpecimenRecord(Set.of(givenDigitalSpecimenRecord()));
+		repository.updateDigitalSpecimenRecords(Set.of(givenNextVersion(givenUnequalDigitalSpecimenRecord())));
+		repository.updateDigitalSpecimenRecords(
+				Set.of(givenNextVersion(givenNextVersion(givenUnequalDigitalSpecimenRecord()))));
+
+		// When
+		repository.rollbackDigitalSpecimenVersions(List.of(givenDigitalSpecimenRecord()));
+
+		// Then
+		var result = context.select(DIGITAL_SPECIMEN.VERSION)
+			.from(DIGITAL_SPECIMEN)
+			.where(DIGITAL_SPECIMEN.ID.eq(HANDLE))
+			.fetchOne(Record1::value1);
+		assertThat(result).isEqualTo(VERSION + 2);
+	}
+
+	private static DigitalSpecimenRecord givenNextVersion(DigitalSpecimenRecord digitalSpecimenRecord) {
+		return new DigitalSpecimenRecord(digitalSpecimenRecord.id(), digitalSpecimenRecord.midsLevel(),
+				digitalSpecimenRecord.version() + 1, digitalSpecimenRecord.created(),
+				digitalSpecimenRecord.digitalSpecimenWrapper(), digitalSpecimenRecord.masIds(),
+				digitalSpecimenRecord.forceMasSchedule(), digitalSpecimenRecord.isDataFromSourceSystem(),
+				digitalSpecimenRecord.digitalMediaEvents(), digitalSpecimenRecord.contentHash());
+	}
+
 }
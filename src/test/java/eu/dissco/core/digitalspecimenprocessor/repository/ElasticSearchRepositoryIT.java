@@ -6,6 +6,8 @@ import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.DOI_PREFIX
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.HANDLE;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MAPPER;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_PID;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_PID_ALT;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_URL_ALT;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaRecord;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalSpecimenRecord;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUnequalDigitalMediaRecord;
@@ -13,6 +15,7 @@ import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUnequ
 import static org.assertj.core.api.Assertions.assertThat;
 
 import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
 import co.elastic.clients.json.jackson.Jackson3JsonpMapper;
 import co.elastic.clients.transport.ElasticsearchTransport;
 import co.elastic.clients.transport.rest5_client.Rest5ClientTransport;
@@ -23,6 +26,7 @@ import eu.dissco.core.digitalspecimenprocessor.schema.DigitalSpecimen;
 import java.io.IOException;
 import java.time.Duration;
 import java.util.Base64;
+import java.util.List;
 import java.util.Set;
 import org.apache.hc.core5.http.Header;
 import org.apache.hc.core5.http.HttpHost;
@@ -45,6 +49,8 @@ class ElasticSearchRepositoryIT {
 
 	private static final String INDEX = "digital-object";
 
+	private static final String HANDLE_ALT = "20.5000.1025/XXX-XXX-XXX";
+
 	private static final String ELASTICSEARCH_USERNAME = "elastic";
 
 	private static final String ELASTICSEARCH_PASSWORD = "s3cret";
@@ -127,13 +133,45 @@ class ElasticSearchRepositoryIT {
 		assertThat(result.items().getFirst().result()).isEqualTo("created");
 	}
 
+	@Test
+	void testIndexDigitalSpecimenInChunks() throws IOException {
+		// Given
+		esProperties.setBulkMaxDocuments(1);
+		esProperties.setBulkMaxConcurrentRequests(1);
+		var specimenRecords = Set.of(givenDigitalSpecimenRecord(), givenDigitalSpecimenRecord(HANDLE_ALT));
+
+		// When
+		var result = repository.indexDigitalSpecimen(specimenRecords);
+		var document = client.get(g -> g.index(INDEX).id(DOI_PREFIX + HANDLE_ALT), DigitalSpecimen.class);
+
+		// Then
+		assertThat(result.errors()).isFalse();
+		assertThat(result.items()).hasSize(2);
+		assertThat(document.found()).isTrue();
+	}
+
+	@Test
+	void testIndexDigitalMediaByteBudget() throws IOException {
+		// Given
+		esProperties.setBulkMaxBytes(1);
+		var mediaRecords = Set.of(givenDigitalMediaRecord(), givenDigitalMediaRecord(MEDIA_PID_ALT, MEDIA_URL_ALT, 1));
+
+		// When
+		var result = repository.indexDigitalMedia(mediaRecords);
+
+		// Then
+		assertThat(result.errors()).isFalse();
+		assertThat(result.items()).extracting(BulkResponseItem::id)
+			.containsExactlyInAnyOrder(DOI_PREFIX + MEDIA_PID, DOI_PREFIX + MEDIA_PID_ALT);
+	}
+
 	@Test
 	void testRollbackSpecimen() throws IOException {
 		// Given
 		repository.indexDigitalSpecimen(Set.of(givenDigitalSpecimenRecord()));
 
 		// When
-		repository.rollbackObject(HANDLE, true);
+		repository.rollbackObjects(List.of(HANDLE), true);
 		var document = client.get(g -> g.index(INDEX).id(DOI_PREFIX + HANDLE), DigitalSpecimen.class);
 
 		// Then
@@ -146,7 +184,7 @@ class ElasticSearchRepositoryIT {
 		repository.indexDigitalMedia(Set.of(givenDigitalMediaRecord()));
 
 		// When
-		repository.rollbackObject(MEDIA_PID, false);
+		repository.rollbackObjects(List.of(MEDIA_PID), false);
 		var document = client.get(g -> g.index(INDEX).id(DOI_PREFIX + MEDIA_PID), DigitalMedia.class);
 
 		// Then
@@ -160,7 +198,7 @@ class ElasticSearchRepositoryIT {
 		var expected = flattenToDigitalSpecimen(givenDigitalSpecimenRecord());
 
 		// When
-		repository.rollbackVersion(givenDigitalSpecimenRecord());
+		repository.rollbackSpecimenVersions(List.of(givenDigitalSpecimenRecord()));
 		var document = client.get(g -> g.index(INDEX).id(DOI_PREFIX + HANDLE), DigitalSpecimen.class);
 
 		// Then
@@ -174,7 +212,7 @@ class ElasticSearchRepositoryIT {
 		var expected = flattenToDigitalMedia(givenDigitalMediaRecord());
 
 		// When
-		repository.rollbackVersion(givenDigitalMediaRecord());
+		repository.rollbackMediaVersions(List.of(givenDigitalMediaRecord()));
 		var document = client.get(g -> g.index(INDEX).id(DOI_PREFIX + MEDIA_PID), DigitalMedia.class);
 
 		// Then
@@ -0,0 +1,96 @@
+package eu.dissco.core.digitalspecimenprocessor.repository;
+
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.DOI_PREFIX;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MAPPER;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_PID;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.BDDMockito.given;
+import static org.mockito.BDDMockito.then;
+import static org.mockito.Mockito.times;
+
+import co.elastic.clients.elasticsearch.ElasticsearchClient;
+import co.elastic.clients.elasticsearch.core.BulkRequest;
+import co.elastic.clients.elasticsearch.core.BulkResponse;
+import co.elastic.clients.elasticsearch.core.bulk.BulkResponseItem;
+import co.elastic.clients.elasticsearch.core.bulk.OperationType;
+import co.elastic.clients.json.jackson.Jackson3JsonpMapper;
+import eu.dissco.core.digitalspecimenprocessor.property.ElasticSearchProperties;
+import java.io.IOException;
+import java.util.Set;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class ElasticSearchRepositoryTest {
+
+	private static final String INDEX = "digital-media";
+
+	@Mock
+	private ElasticsearchClient client;
+
+	private ElasticSearchRepository repository;
+
+	@BeforeEach
+	void setup() {
+		var properties = new ElasticSearchProperties();
+		properties.setBulkRetryInitialBackoffMillis(1);
+		properties.setBulkRetryMaxBackoffMillis(1);
+		given(client._jsonpMapper()).willReturn(new Jackson3JsonpMapper(MAPPER));
+		repository = new ElasticSearchRepository(client, properties);
+	}
+
+	@Test
+	void testRetryRejectedItems() throws IOException {
+		// Given
+		var createdItem = givenCreatedItem();
+		given(client.bulk(any(BulkRequest.class))).willReturn(
+				givenBulkResponse(givenFailedItem(429, "es_rejected_execution_exception")),
+				givenBulkResponse(createdItem));
+
+		// When
+		var result = repository.indexDigitalMedia(Set.of(givenDigitalMediaRecord()));
+
+		// Then
+		assertThat(result.errors()).isFalse();
+		assertThat(result.items()).containsExactly(createdItem);
+		then(client).should(times(2)).bulk(any(BulkRequest.class));
+	}
+
+	@Test
+	void testPermanentFailureNotRetried() throws IOException {
+		// Given
+		var failedItem = givenFailedItem(400, "document_parsing_exception");
+		given(client.bulk(any(BulkRequest.class))).willReturn(givenBulkResponse(failedItem));
+
+		// When
+		var result = repository.indexDigitalMedia(Set.of(givenDigitalMediaRecord()));
+
+		// Then
+		assertThat(result.errors()).isTrue();
+		assertThat(result.items()).containsExactly(failedItem);
+		then(client).should().bulk(any(BulkRequest.class));
+	}
+
+	private static BulkResponse givenBulkResponse(BulkResponseItem item) {
+		return BulkResponse.of(b -> b.items(item).errors(item.error() != null).took(1));
+	}
+
+	private static BulkResponseItem givenFailedItem(int status, String type) {
+		return BulkResponseItem.of(b -> b.operationType(OperationType.Index)
+			.index(INDEX)
+			.id(DOI_PREFIX + MEDIA_PID)
+			.status(status)
+			.error(e -> e.type(type).reason("Failed to index document")));
+	}
+
+	private static BulkResponseItem givenCreatedItem() {
+		return BulkResponseItem.of(
+				b -> b.operationType(OperationType.Index).index(INDEX).id(DOI_PREFIX + MEDIA_PID).status(201));
+	}
+
+}
@@ -0,0 +1,136 @@
+package eu.dissco.core.digitalspecimenprocessor.repository;
+
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.DOI_PREFIX;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.HANDLE;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.SECOND_HANDLE;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import eu.dissco.core.digitalspecimenprocessor.domain.outbox.OutboxDestination;
+import eu.dissco.core.digitalspecimenprocessor.domain.outbox.OutboxMessage;
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import org.jooq.impl.DSL;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class OutboxRepositoryIT extends BaseRepositoryIT {
+
+	private static final Duration CLAIM = Duration.ofMinutes(5);
+
+	private OutboxRepository repository;
+
+	@BeforeEach
+	void setup() {
+		repository = new OutboxRepository(context);
+	}
+
+	@AfterEach
+	void destroy() {
+		context.truncate(DSL.table("outbox")).execute();
+	}
+
+	@Test
+	void testRelayMessages() {
+		// Given
+		var document = OutboxMessage.elastic("digital-specimen", DOI_PREFIX + HANDLE, 1, "{\"id\": 1}");
+		var event = OutboxMessage.rabbitMq("provenance-exchange", "provenance.digital-specimen", "{}");
+		repository.insertMessages(List.of(document, event));
+		var relayedMessages = new ArrayList<OutboxMessage>();
+
+		// When
+		var result = repository.relayMessages(10, CLAIM, messages -> {
+			relayedMessages.addAll(messages);
+			return Set.of(messages.getFirst().id());
+		});
+
+		// Then
+		assertThat(result).isEqualTo(1);
+		assertThat(relayedMessages).extracting(OutboxMessage::destination)
+			.containsExactly(OutboxDestination.ELASTIC, OutboxDestination.RABBITMQ);
+		assertThat(relayedMessages.getFirst().payload()).isEqualTo(document.payload());
+		assertThat(relayedMessages.getFirst().version()).isEqualTo(1);
+		assertThat(context.select(DSL.field("message_key"), DSL.field("attempts"), DSL.field("claimed_until"))
+			.from("outbox")
+			.fetchOne()
+			.intoArray()).containsExactly("provenance.digital-specimen", 1, null);
+	}
+
+	@Test
+	void testInsertMessagesOfFullMediaBatch() {
+		// Given
+		var maxMedia = new ApplicationProperties().getMaxMedia();
+		var messages = new ArrayList<OutboxMessage>();
+		for (var i = 0; i < maxMedia; i++) {
+			messages.add(OutboxMessage.elastic("digital-media", DOI_PREFIX + "MEDIA-" + i, 1, "{}"));
+			messages.add(OutboxMessage.rabbitMq("provenance-exchange", "provenance.digital-media", "{}"));
+		}
+
+		// When
+		repository.insertMessages(messages);
+
+		// Then
+		assertThat(context.fetchCount(DSL.table("outbox"))).isEqualTo(2 * maxMedia);
+		assertThat(context.fetchCount(DSL.table("outbox"), DSL.field("version").isNull())).isEqualTo(maxMedia);
+	}
+
+	@Test
+	void testRelayMessagesLimit() {
+		// Given
+		repository.insertMessages(List.of(OutboxMessage.elastic("digital-specimen", DOI_PREFIX + HANDLE, 1, "{}"),
+				OutboxMessage.elastic("digital-specimen", DOI_PREFIX + SECOND_HANDLE, 1, "{}")));
+		var relayedKeys = new ArrayList<String>();
+
+		// When
+		var result = repository.relayMessages(1, CLAIM, messages -> {
+			messages.forEach(message -> relayedKeys.add(message.key()));
+			return Set.of(messages.getFirst().id());
+		});
+
+		// Then
+		assertThat(result).isEqualTo(1);
+		assertThat(relayedKeys).containsExactly(DOI_PREFIX + HANDLE);
+		assertThat(context.fetchCount(DSL.table("outbox"))).isEqualTo(1);
+	}
+
+	@Test
+	void testRelayMessagesSkipsClaimedMessages() {
+		// Given
+		repository.insertMessages(List.of(OutboxMessage.elastic("digital-specimen", DOI_PREFIX + HANDLE, 1, "{}")));
+		var concurrentlyRelayed = new ArrayList<Integer>();
+
+		// When
+		var result = repository.relayMessages(10, CLAIM, messages -> {
+			concurrentlyRelayed.add(repository.relayMessages(10, CLAIM, _ -> Set.of()));
+			return Set.of(messages.getFirst().id());
+		});
+
+		// Then
+		assertThat(result).isEqualTo(1);
+		assertThat(concurrentlyRelayed).containsExactly(0);
+		assertThat(context.fetchCount(DSL.table("outbox"))).isZero();
+	}
+
+	@Test
+	void testRelayMessagesReclaimsExpiredClaims() {
+		// Given
+		repository.insertMessages(List.of(OutboxMessage.elastic("digital-specimen", DOI_PREFIX + HANDLE, 1, "{}")));
+		var reclaimedKeys = new ArrayList<String>();
+
+		// When
+		repository.relayMessages(10, Duration.ZERO, _ -> {
+			repository.relayMessages(10, CLAIM, messages -> {
+				messages.forEach(message -> reclaimedKeys.add(message.key()));
+				return Set.of();
+			});
+			return Set.of();
+		});
+
+		// Then
+		assertThat(reclaimedKeys).containsExactly(DOI_PREFIX + HANDLE);
+	}
+
+}
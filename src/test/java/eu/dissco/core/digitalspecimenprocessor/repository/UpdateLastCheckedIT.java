@@ -0,0 +1,143 @@
+package eu.dissco.core.digitalspecimenprocessor.repository;
+
+import static eu.dissco.core.digitalspecimenprocessor.database.jooq.Tables.DIGITAL_MEDIA_OBJECT;
+import static eu.dissco.core.digitalspecimenprocessor.database.jooq.Tables.DIGITAL_SPECIMEN;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MAPPER;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_URL;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.VERSION;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaRecord;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalSpecimenRecord;
+import static org.assertj.core.api.Assertions.assertThat;
+
+import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import lombok.extern.slf4j.Slf4j;
+import org.jooq.DSLContext;
+import org.jooq.ExecuteContext;
+import org.jooq.ExecuteListener;
+import org.jooq.JSONB;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.JsonNode;
+
+/*
+ * Compares the number of statements and the latency of the set-based last checked
+ * updates with the previous update per record
+ */
+@Slf4j
+class UpdateLastCheckedIT extends BaseRepositoryIT {
+
+	private static final int BATCH_SIZE = 500;
+
+	private static final Instant LAST_CHECKED = Instant.parse("2022-11-02T13:05:24.00Z");
+
+	private final AtomicInteger statementCount = new AtomicInteger();
+
+	private DSLContext countingContext;
+
+	@BeforeEach
+	void setup() {
+		countingContext = context.configuration().derive(new ExecuteListener() {
+			@Override
+			public void executeStart(ExecuteContext ctx) {
+				statementCount.addAndGet(Math.max(1, ctx.batchSQL().length));
+			}
+		}).dsl();
+	}
+
+	@AfterEach
+	void destroy() {
+		context.truncate(DIGITAL_SPECIMEN).execute();
+		context.truncate(DIGITAL_MEDIA_OBJECT).execute();
+	}
+
+	@Test
+	void testUpdateLastCheckedAndOriginalData() {
+		// Given
+		var repository = new DigitalSpecimenRepository(countingContext, MAPPER, new ApplicationProperties());
+		var ids = IntStream.range(0, BATCH_SIZE).mapToObj(i -> "20.5000.1025/" + i).toList();
+		repository.createDigitalSpecimenRecord(ids.stream()
+			.map(id -> givenDigitalSpecimenRecord(id, "https://geocollections.info/specimen/" + id, false))
+			.collect(Collectors.toSet()));
+		var specimenMap = new HashMap<String, String>();
+		for (var i = 0; i < BATCH_SIZE; i++) {
+			specimenMap.put(ids.get(i), i % 2 == 0 ? givenOriginalData().toString() : null);
+		}
+		statementCount.set(0);
+		var perRecordLatency = timed(() -> updatePerRecord(specimenMap));
+		var perRecordStatements = statementCount.getAndSet(0);
+		resetLastChecked();
+
+		// When
+		var setBasedLatency = timed(() -> repository.updateLastCheckedAndOriginalData(specimenMap, Instant.now()));
+
+		// Then
+		log.info("Updated {} specimens in {} with one statement, previously {} with {} statements", BATCH_SIZE,
+				setBasedLatency, perRecordLatency, perRecordStatements);
+		assertThat(perRecordStatements).isEqualTo(BATCH_SIZE);
+		assertThat(statementCount.get()).isEqualTo(1);
+		assertThat(context.fetchCount(DIGITAL_SPECIMEN, DIGITAL_SPECIMEN.LAST_CHECKED.gt(LAST_CHECKED)))
+			.isEqualTo(BATCH_SIZE);
+		assertThat(context.fetchCount(DIGITAL_SPECIMEN,
+				DIGITAL_SPECIMEN.ORIGINAL_DATA.eq(JSONB.valueOf(givenOriginalData().toString()))))
+			.isEqualTo(BATCH_SIZE / 2);
+	}
+
+	@Test
+	void testUpdateLastCheckedMedia() {
+		// Given
+		var repository = new DigitalMediaRepository(countingContext, MAPPER, new ApplicationProperties());
+		var ids = IntStream.range(0, BATCH_SIZE).mapToObj(i -> "20.5000.1025/MEDIA-" + i).toList();
+		repository.createDigitalMediaRecord(ids.stream()
+			.map(id -> givenDigitalMediaRecord(id, MEDIA_URL + "/" + id, VERSION))
+			.collect(Collectors.toSet()));
+		context.update(DIGITAL_MEDIA_OBJECT).set(DIGITAL_MEDIA_OBJECT.LAST_CHECKED, LAST_CHECKED).execute();
+		statementCount.set(0);
+
+		// When
+		var latency = timed(() -> repository.updateLastChecked(ids));
+
+		// Then
+		log.info("Updated {} media in {}", BATCH_SIZE, latency);
+		assertThat(statementCount.get()).isEqualTo(1);
+		assertThat(context.fetchCount(DIGITAL_MEDIA_OBJECT, DIGITAL_MEDIA_OBJECT.LAST_CHECKED.gt(LAST_CHECKED)))
+			.isEqualTo(BATCH_SIZE);
+	}
+
+	private static JsonNode givenOriginalData() {
+		return MAPPER.createObjectNode().put("new field", "new data");
+	}
+
+	// The previous implementation, which sent an update per specimen
+	private void updatePerRecord(Map<String, String> specimenMap) {
+		var queries = specimenMap.entrySet().stream().map(entry -> {
+			var query = countingContext.update(DIGITAL_SPECIMEN).set(DIGITAL_SPECIMEN.LAST_CHECKED, Instant.now());
+			if (entry.getValue() != null) {
+				query = query.set(DIGITAL_SPECIMEN.ORIGINAL_DATA, JSONB.valueOf(entry.getValue()));
+			}
+			return query.where(DIGITAL_SPECIMEN.ID.eq(entry.getKey()));
+		}).toList();
+		countingContext.batch(queries).execute();
+	}
+
+	private void resetLastChecked() {
+		context.update(DIGITAL_SPECIMEN)
+			.set(DIGITAL_SPECIMEN.LAST_CHECKED, LAST_CHECKED)
+			.set(DIGITAL_SPECIMEN.ORIGINAL_DATA, JSONB.valueOf("{}"))
+			.execute();
+	}
+
+	private static Duration timed(Runnable runnable) {
+		var start = System.nanoTime();
+		runnable.run();
+		return Duration.ofNanos(System.nanoTime() - start);
+	}
+
+}
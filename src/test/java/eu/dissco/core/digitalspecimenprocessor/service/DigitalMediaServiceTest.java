@@ -27,17 +27,24 @@ import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUnequ
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUnequalDigitalMediaRecord;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUnequalDigitalSpecimenRecord;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUpdatedDigitalMediaTuple;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUpsertResultCreated;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUpsertResultUpdated;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
 import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mockStatic;
 
 import co.elastic.clients.elasticsearch._types.ElasticsearchException;
 import co.elastic.clients.elasticsearch.core.BulkResponse;
+import eu.dissco.core.digitalspecimenprocessor.component.ElasticIndexingComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.LastCheckedWriterComponent;
+import eu.dissco.core.digitalspecimenprocessor.domain.UpsertResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaEvent;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.UpdatedDigitalMediaRecord;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.UpdatedDigitalMediaTuple;
@@ -58,6 +65,9 @@ import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import org.jooq.exception.DataAccessException;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -101,6 +111,15 @@ class DigitalMediaServiceTest {
 	@Mock
 	private BulkResponse bulkResponse;
 
+	@Mock
+	private LastCheckedWriterComponent lastCheckedWriter;
+
+	@Mock
+	private ElasticIndexingComponent elasticIndexing;
+
+	@Mock
+	private OutboxService outboxService;
+
 	@Captor
 	private ArgumentCaptor<DigitalMediaEvent> digitalMediaEventCaptor;
 
@@ -127,7 +146,8 @@ class DigitalMediaServiceTest {
 	@BeforeEach
 	void setup() {
 		mediaService = new DigitalMediaService(repository, fdoRecordService, handleComponent, MAPPER, rollbackService,
-				elasticRepository, annotationPublisherService, publisherService);
+				elasticRepository, annotationPublisherService, publisherService, lastCheckedWriter, elasticIndexing,
+				outboxService);
 	}
 
 	@Test
@@ -138,7 +158,7 @@ class DigitalMediaServiceTest {
 		mediaService.updateEqualDigitalMedia(List.of(givenDigitalMediaRecord()));
 
 		// Then
-		then(repository).should().updateLastChecked(List.of(MEDIA_PID));
+		then(lastCheckedWriter).should().addMedia(List.of(MEDIA_PID));
 	}
 
 	@Test
@@ -149,13 +169,13 @@ class DigitalMediaServiceTest {
 		var records = Set.of(givenDigitalMediaRecord());
 		given(bulkResponse.errors()).willReturn(false);
 		given(elasticRepository.indexDigitalMedia(records)).willReturn(bulkResponse);
+		given(repository.createDigitalMediaRecord(records)).willReturn(givenUpsertResultCreated(MEDIA_PID));
 
 		// When
 		var result = mediaService.createNewDigitalMedia(events, pidMap);
 
 		// Then
 		assertThat(result).isEqualTo(records);
-		then(repository).should().createDigitalMediaRecord(records);
 		then(annotationPublisherService).should().publishAnnotationNewMedia(records);
 	}
 
@@ -188,6 +208,28 @@ class DigitalMediaServiceTest {
 		then(rollbackService).should().rollbackNewMedias(records, false, false);
 	}
 
+	@Test
+	void testCreateNewMediaDatabaseRejectsMedia() throws Exception {
+		// Given
+		var pidMap = Map.of(MEDIA_URL, givenPidProcessResultMedia(), MEDIA_URL_ALT,
+				new PidProcessResult(MEDIA_PID_ALT, Set.of(HANDLE)));
+		var events = List.of(givenDigitalMediaEvent(), givenUnequalDigitalMediaEvent());
+		var successfulRecord = givenDigitalMediaRecord();
+		var rejectedRecord = givenUnequalDigitalMediaRecord(MEDIA_PID_ALT, MEDIA_URL_ALT, VERSION);
+		given(repository.createDigitalMediaRecord(Set.of(successfulRecord, rejectedRecord)))
+			.willReturn(givenUpsertResultCreated(MEDIA_PID).merge(UpsertResult.failed(MEDIA_PID_ALT)));
+		given(bulkResponse.errors()).willReturn(false);
+		given(elasticRepository.indexDigitalMedia(Set.of(successfulRecord))).willReturn(bulkResponse);
+
+		// When
+		var result = mediaService.createNewDigitalMedia(events, pidMap);
+
+		// Then
+		assertThat(result).isEqualTo(Set.of(successfulRecord));
+		then(rollbackService).should().rollbackNewMedias(Set.of(rejectedRecord), false, false);
+		then(annotationPublisherService).should().publishAnnotationNewMedia(Set.of(successfulRecord));
+	}
+
 	@Test
 	void testCreateNewMediaElasticFailure() throws Exception {
 		// Given
@@ -195,13 +237,13 @@ class DigitalMediaServiceTest {
 		var events = List.of(givenDigitalMediaEvent());
 		var records = Set.of(givenDigitalMediaRecord());
 		doThrow(ElasticsearchException.class).when(elasticRepository).indexDigitalMedia(records);
+		given(repository.createDigitalMediaRecord(records)).willReturn(givenUpsertResultCreated(MEDIA_PID));
 
 		// When
 		var result = mediaService.createNewDigitalMedia(events, pidMap);
 
 		// Then
 		assertThat(result).isEmpty();
-		then(repository).should().createDigitalMediaRecord(records);
 		then(rollbackService).should().rollbackNewMedias(records, false, true);
 	}
 
@@ -217,13 +259,14 @@ class DigitalMediaServiceTest {
 		given(elasticRepository.indexDigitalMedia(records)).willReturn(bulkResponse);
 		given(rollbackService.handlePartiallyFailedElasticInsertMedia(anySet(), any()))
 			.willReturn(Set.of(successfulRecord));
+		given(repository.createDigitalMediaRecord(records))
+			.willReturn(givenUpsertResultCreated(MEDIA_PID, MEDIA_PID_ALT));
 
 		// When
 		var result = mediaService.createNewDigitalMedia(events, pidMap);
 
 		// Then
 		assertThat(result).isEqualTo(Set.of(successfulRecord));
-		then(repository).should().createDigitalMediaRecord(records);
 		then(publisherService).shouldHaveNoMoreInteractions();
 	}
 
@@ -234,6 +277,8 @@ class DigitalMediaServiceTest {
 		var records = Set.of(givenDigitalMediaRecord(VERSION + 1));
 		given(bulkResponse.errors()).willReturn(false);
 		given(elasticRepository.indexDigitalMedia(records)).willReturn(bulkResponse);
+		given(repository.updateDigitalMediaRecords(List.copyOf(records)))
+			.willReturn(givenUpsertResultUpdated(MEDIA_PID));
 
 		// When
 		var result = mediaService.updateExistingDigitalMedia(tuples, true);
@@ -245,6 +290,52 @@ class DigitalMediaServiceTest {
 		then(publisherService).should().publishUpdateEventMedia(eq(givenDigitalMediaRecord(VERSION + 1)), any());
 	}
 
+	@Test
+	void testUpdateExistingMediaAsyncIndexing() {
+		// Given
+		var tuples = List.of(givenUpdatedDigitalMediaTuple(false));
+		var records = Set.of(givenDigitalMediaRecord(VERSION + 1));
+		given(bulkResponse.errors()).willReturn(false);
+		given(elasticIndexing.isEnabled()).willReturn(true);
+		given(elasticRepository.indexDigitalMediaAsync(records))
+			.willReturn(CompletableFuture.completedFuture(bulkResponse));
+		given(repository.updateDigitalMediaRecords(List.copyOf(records)))
+			.willReturn(givenUpsertResultUpdated(MEDIA_PID));
+		givenIndexingCompletes();
+
+		// When
+		var result = mediaService.updateExistingDigitalMedia(tuples, true);
+
+		// Then
+		assertThat(result).isEqualTo(records);
+		then(annotationPublisherService).should().publishAnnotationUpdatedMedia(any());
+		then(publisherService).should().publishUpdateEventMedia(eq(givenDigitalMediaRecord(VERSION + 1)), any());
+		then(rollbackService).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void testUpdateExistingMediaOutbox() {
+		// Given
+		var tuples = List.of(givenUpdatedDigitalMediaTuple(false));
+		var records = Set.of(givenDigitalMediaRecord(VERSION + 1));
+		given(outboxService.isEnabled()).willReturn(true);
+		given(repository.updateDigitalMediaRecords(List.copyOf(records)))
+			.willReturn(givenUpsertResultUpdated(MEDIA_PID));
+		willAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get()).given(outboxService)
+			.inTransaction(any());
+
+		// When
+		var result = mediaService.updateExistingDigitalMedia(tuples, true);
+
+		// Then
+		assertThat(result).isEqualTo(records);
+		then(outboxService).should().addUpdatedMedia(anyList());
+		then(annotationPublisherService).should().publishAnnotationUpdatedMedia(any());
+		then(elasticRepository).shouldHaveNoInteractions();
+		then(publisherService).shouldHaveNoInteractions();
+		then(rollbackService).shouldHaveNoInteractions();
+	}
+
 	@Test
 	void testUpdateExistingMediaUpdateHandle() throws Exception {
 		// Given
@@ -253,6 +344,8 @@ class DigitalMediaServiceTest {
 		given(fdoRecordService.pidNeedsUpdateMedia(any(), any())).willReturn(true);
 		given(bulkResponse.errors()).willReturn(false);
 		given(elasticRepository.indexDigitalMedia(records)).willReturn(bulkResponse);
+		given(repository.updateDigitalMediaRecords(List.copyOf(records)))
+			.willReturn(givenUpsertResultUpdated(MEDIA_PID));
 
 		// When
 		var result = mediaService.updateExistingDigitalMedia(tuples, true);
@@ -294,6 +387,8 @@ class DigitalMediaServiceTest {
 		var updatedRecord = Set.of(new UpdatedDigitalMediaRecord(givenDigitalMediaRecord(VERSION + 1),
 				Set.of(MEDIA_MAS), givenUnequalDigitalMediaRecord(), givenJsonPatchMedia()));
 		doThrow(ElasticsearchException.class).when(elasticRepository).indexDigitalMedia(records);
+		given(repository.updateDigitalMediaRecords(List.copyOf(records)))
+			.willReturn(givenUpsertResultUpdated(MEDIA_PID));
 
 		// When
 		var result = mediaService.updateExistingDigitalMedia(tuples, true);
@@ -318,6 +413,8 @@ class DigitalMediaServiceTest {
 		given(rollbackService.handlePartiallyFailedElasticUpdateMedia(any(), eq(bulkResponse)))
 			.willReturn(Set.of(new UpdatedDigitalMediaRecord(successfulRecord, Set.of(MEDIA_MAS),
 					givenUnequalDigitalMediaRecord(), givenJsonPatchMedia())));
+		given(repository.updateDigitalMediaRecords(anyList()))
+			.willReturn(givenUpsertResultUpdated(MEDIA_PID).merge(givenUpsertResultUpdated(MEDIA_PID_ALT)));
 
 		// When
 		var result = mediaService.updateExistingDigitalMedia(tuples, true);
@@ -334,13 +431,30 @@ class DigitalMediaServiceTest {
 		// Given
 		var tuples = List.of(givenUpdatedDigitalMediaTuple(false));
 		var records = Set.of(givenDigitalMediaRecord(VERSION + 1));
-		doThrow(DataAccessException.class).when(repository).updateDigitalMediaRecord(records);
+		doThrow(DataAccessException.class).when(repository).updateDigitalMediaRecords(List.copyOf(records));
+
+		// When
+		var result = mediaService.updateExistingDigitalMedia(tuples, true);
+
+		// Then
+		assertThat(result).isEmpty();
+	}
+
+	@Test
+	void testUpdateExistingMediaConflict() {
+		// Given
+		var tuples = List.of(givenUpdatedDigitalMediaTuple(false));
+		var records = Set.of(givenDigitalMediaRecord(VERSION + 1));
+		given(repository.updateDigitalMediaRecords(List.copyOf(records))).willReturn(new UpsertResult());
 
 		// When
 		var result = mediaService.updateExistingDigitalMedia(tuples, true);
 
 		// Then
 		assertThat(result).isEmpty();
+		then(publisherService).should().republishMediaEvent(givenDigitalMediaEvent());
+		then(elasticRepository).shouldHaveNoInteractions();
+		then(rollbackService).shouldHaveNoInteractions();
 	}
 
 	@Test
@@ -392,4 +506,22 @@ class DigitalMediaServiceTest {
 		then(publisherService).shouldHaveNoInteractions();
 	}
 
+	// Completes the submitted request and calls its handlers straight away
+	private void givenIndexingCompletes() {
+		willAnswer(invocation -> {
+			Supplier<CompletableFuture<BulkResponse>> request = invocation.getArgument(0);
+			Consumer<BulkResponse> onResponse = invocation.getArgument(1);
+			Consumer<Throwable> onFailure = invocation.getArgument(2);
+			request.get().whenComplete((response, exception) -> {
+				if (exception == null) {
+					onResponse.accept(response);
+				}
+				else {
+					onFailure.accept(exception);
+				}
+			});
+			return null;
+		}).given(elasticIndexing).submit(any(), any(), any());
+	}
+
 }
@@ -15,6 +15,7 @@ import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.DOI_PREFIX
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.HANDLE;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MAPPER;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.ORGANISATION_ID;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.ORIGINAL_DATA;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.PHYSICAL_SPECIMEN_ID;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.PHYSICAL_SPECIMEN_ID_ALT;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.SECOND_HANDLE;
@@ -27,16 +28,22 @@ import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenPidRe
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUnequalDigitalSpecimenRecord;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUpdatedDigitalSpecimenRecord;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUpdatedDigitalSpecimenTuple;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUpsertResultCreated;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenUpsertResultUpdated;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anySet;
 import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
+import static org.mockito.BDDMockito.willAnswer;
 import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mockStatic;
 
 import co.elastic.clients.elasticsearch.core.BulkResponse;
+import eu.dissco.core.digitalspecimenprocessor.component.ElasticIndexingComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.LastCheckedWriterComponent;
+import eu.dissco.core.digitalspecimenprocessor.domain.UpsertResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.relation.MediaRelationshipProcessResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.relation.PidProcessResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.UpdatedDigitalSpecimenTuple;
@@ -50,10 +57,15 @@ import java.net.URI;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneOffset;
+import java.util.Collections;
 import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
 import org.jooq.exception.DataAccessException;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
@@ -100,6 +112,18 @@ class DigitalSpecimenServiceTest {
 	@Mock
 	private AnnotationService annotationService;
 
+	@Mock
+	private EqualityService equalityService;
+
+	@Mock
+	private LastCheckedWriterComponent lastCheckedWriter;
+
+	@Mock
+	private ElasticIndexingComponent elasticIndexing;
+
+	@Mock
+	private OutboxService outboxService;
+
 	private static MockedStatic<Instant> mockedInstant;
 
 	private static MockedStatic<Clock> mockedClock;
@@ -110,7 +134,8 @@ class DigitalSpecimenServiceTest {
 	void setUp() {
 		digitalSpecimenService = new DigitalSpecimenService(repository, rollbackService, elasticRepository,
 				fdoRecordService, publisherService, handleComponent, annotationPublisherService, midsService, MAPPER,
-				digitalMediaService, annotationService);
+				digitalMediaService, annotationService, equalityService, lastCheckedWriter, elasticIndexing,
+				outboxService);
 	}
 
 	@BeforeAll
@@ -139,7 +164,32 @@ class DigitalSpecimenServiceTest {
 		digitalSpecimenService.updateEqualSpecimen(Map.of(givenDigitalSpecimenRecord(), givenDigitalSpecimenEvent()));
 
 		// Then
-		then(repository).should().updateLastCheckedAndOriginalData(Map.of(HANDLE, givenDigitalSpecimenEvent()));
+		then(lastCheckedWriter).should().addSpecimens(Map.of(HANDLE, ORIGINAL_DATA.toString()));
+	}
+
+	@Test
+	void testUpdateEqualSpecimenNotFromSourceSystem() {
+		// Given
+		var event = givenDigitalSpecimenEvent(false, false, false);
+
+		// When
+		digitalSpecimenService.updateEqualSpecimen(Map.of(givenDigitalSpecimenRecord(), event));
+
+		// Then
+		then(lastCheckedWriter).should().addSpecimens(Collections.singletonMap(HANDLE, null));
+	}
+
+	@Test
+	void testUpdateEqualSpecimenBackfillsContentHash() {
+		// Given
+		var contentHash = UUID.randomUUID();
+		given(equalityService.calculateSpecimenHash(any())).willReturn(contentHash);
+
+		// When
+		digitalSpecimenService.updateEqualSpecimen(Map.of(givenDigitalSpecimenRecord(), givenDigitalSpecimenEvent()));
+
+		// Then
+		then(repository).should().updateContentHash(Map.of(HANDLE, contentHash));
 	}
 
 	@Test
@@ -151,13 +201,13 @@ class DigitalSpecimenServiceTest {
 		given(midsService.calculateMids(any())).willReturn(1);
 		given(bulkResponse.errors()).willReturn(false);
 		given(elasticRepository.indexDigitalSpecimen(records)).willReturn(bulkResponse);
+		given(repository.createDigitalSpecimenRecord(records)).willReturn(givenUpsertResultCreated(HANDLE));
 
 		// When
 		var results = digitalSpecimenService.createNewDigitalSpecimen(events, pidMap);
 
 		// Then
 		assertThat(results).isEqualTo(records);
-		then(repository).should().createDigitalSpecimenRecord(records);
 		then(annotationPublisherService).should().publishAnnotationNewSpecimen(records);
 		then(rollbackService).shouldHaveNoInteractions();
 	}
@@ -198,6 +248,33 @@ class DigitalSpecimenServiceTest {
 		then(elasticRepository).shouldHaveNoInteractions();
 	}
 
+	@Test
+	void testNewSpecimenDatabaseRejectsSpecimen() throws Exception {
+		// Given
+		var events = List.of(givenDigitalSpecimenEvent(),
+				givenDigitalSpecimenEvent(PHYSICAL_SPECIMEN_ID_ALT, false, true));
+		var records = Set.of(givenDigitalSpecimenRecord(SECOND_HANDLE, PHYSICAL_SPECIMEN_ID_ALT, false),
+				givenDigitalSpecimenRecord());
+		var expected = Set.of(givenDigitalSpecimenRecord());
+		var pidMap = Map.of(PHYSICAL_SPECIMEN_ID, givenPidProcessResultSpecimen(false), PHYSICAL_SPECIMEN_ID_ALT,
+				new PidProcessResult(SECOND_HANDLE, Set.of()));
+		given(midsService.calculateMids(any())).willReturn(1);
+		given(repository.createDigitalSpecimenRecord(records))
+			.willReturn(givenUpsertResultCreated(HANDLE).merge(UpsertResult.failed(SECOND_HANDLE)));
+		given(bulkResponse.errors()).willReturn(false);
+		given(elasticRepository.indexDigitalSpecimen(expected)).willReturn(bulkResponse);
+
+		// When
+		var results = digitalSpecimenService.createNewDigitalSpecimen(events, pidMap);
+
+		// Then
+		assertThat(results).isEqualTo(expected);
+		then(rollbackService).should()
+			.rollbackNewSpecimens(Set.of(givenDigitalSpecimenRecord(SECOND_HANDLE, PHYSICAL_SPECIMEN_ID_ALT, false)),
+					false, false);
+		then(annotationPublisherService).should().publishAnnotationNewSpecimen(expected);
+	}
+
 	@Test
 	void testNewSpecimenElasticFails() throws Exception {
 		// Given
@@ -206,6 +283,7 @@ class DigitalSpecimenServiceTest {
 		var pidMap = Map.of(PHYSICAL_SPECIMEN_ID, givenPidProcessResultSpecimen(false));
 		given(midsService.calculateMids(any())).willReturn(1);
 		given(elasticRepository.indexDigitalSpecimen(records)).willThrow(IOException.class);
+		given(repository.createDigitalSpecimenRecord(records)).willReturn(givenUpsertResultCreated(HANDLE));
 
 		// When
 		var results = digitalSpecimenService.createNewDigitalSpecimen(events, pidMap);
@@ -213,7 +291,6 @@ class DigitalSpecimenServiceTest {
 		// Then
 		assertThat(results).isEmpty();
 		then(rollbackService).should().rollbackNewSpecimens(records, false, true);
-		then(repository).should().createDigitalSpecimenRecord(records);
 		then(annotationPublisherService).shouldHaveNoInteractions();
 	}
 
@@ -231,16 +308,85 @@ class DigitalSpecimenServiceTest {
 		given(bulkResponse.errors()).willReturn(true);
 		given(elasticRepository.indexDigitalSpecimen(records)).willReturn(bulkResponse);
 		given(rollbackService.handlePartiallyFailedElasticInsertSpecimen(records, bulkResponse)).willReturn(expected);
+		given(repository.createDigitalSpecimenRecord(records))
+			.willReturn(givenUpsertResultCreated(HANDLE, SECOND_HANDLE));
 
 		// When
 		var results = digitalSpecimenService.createNewDigitalSpecimen(events, pidMap);
 
 		// Then
 		assertThat(results).isEqualTo(expected);
-		then(repository).should().createDigitalSpecimenRecord(records);
 		then(annotationPublisherService).should().publishAnnotationNewSpecimen(expected);
 	}
 
+	@Test
+	void testNewSpecimenAsyncIndexing() {
+		// Given
+		var events = List.of(givenDigitalSpecimenEvent());
+		var records = Set.of(givenDigitalSpecimenRecord());
+		var pidMap = Map.of(PHYSICAL_SPECIMEN_ID, givenPidProcessResultSpecimen(false));
+		given(midsService.calculateMids(any())).willReturn(1);
+		given(bulkResponse.errors()).willReturn(false);
+		given(elasticIndexing.isEnabled()).willReturn(true);
+		given(elasticRepository.indexDigitalSpecimenAsync(records))
+			.willReturn(CompletableFuture.completedFuture(bulkResponse));
+		given(repository.createDigitalSpecimenRecord(records)).willReturn(givenUpsertResultCreated(HANDLE));
+		givenIndexingCompletes();
+
+		// When
+		var results = digitalSpecimenService.createNewDigitalSpecimen(events, pidMap);
+
+		// Then
+		assertThat(results).isEqualTo(records);
+		then(annotationPublisherService).should().publishAnnotationNewSpecimen(records);
+		then(rollbackService).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void testNewSpecimenAsyncIndexingFails() {
+		// Given
+		var events = List.of(givenDigitalSpecimenEvent());
+		var records = Set.of(givenDigitalSpecimenRecord());
+		var pidMap = Map.of(PHYSICAL_SPECIMEN_ID, givenPidProcessResultSpecimen(false));
+		given(midsService.calculateMids(any())).willReturn(1);
+		given(elasticIndexing.isEnabled()).willReturn(true);
+		given(elasticRepository.indexDigitalSpecimenAsync(records))
+			.willReturn(CompletableFuture.failedFuture(new IOException()));
+		given(repository.createDigitalSpecimenRecord(records)).willReturn(givenUpsertResultCreated(HANDLE));
+		givenIndexingCompletes();
+
+		// When
+		var results = digitalSpecimenService.createNewDigitalSpecimen(events, pidMap);
+
+		// Then
+		assertThat(results).isEqualTo(records);
+		then(rollbackService).should().rollbackNewSpecimens(records, false, true);
+		then(annotationPublisherService).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void testNewSpecimenOutbox() {
+		// Given
+		var events = List.of(givenDigitalSpecimenEvent());
+		var records = Set.of(givenDigitalSpecimenRecord());
+		var pidMap = Map.of(PHYSICAL_SPECIMEN_ID, givenPidProcessResultSpecimen(false));
+		given(midsService.calculateMids(any())).willReturn(1);
+		given(outboxService.isEnabled()).willReturn(true);
+		given(repository.createDigitalSpecimenRecord(records)).willReturn(givenUpsertResultCreated(HANDLE));
+		givenOutboxTransaction();
+
+		// When
+		var results = digitalSpecimenService.createNewDigitalSpecimen(events, pidMap);
+
+		// Then
+		assertThat(results).isEqualTo(records);
+		then(outboxService).should().addNewSpecimens(List.of(givenDigitalSpecimenRecord()));
+		then(annotationPublisherService).should().publishAnnotationNewSpecimen(records);
+		then(elasticRepository).shouldHaveNoInteractions();
+		then(publisherService).shouldHaveNoInteractions();
+		then(rollbackService).shouldHaveNoInteractions();
+	}
+
 	@Test
 	void testNewSpecimenWithMedia() throws Exception {
 		// Given
@@ -250,13 +396,13 @@ class DigitalSpecimenServiceTest {
 		given(midsService.calculateMids(any())).willReturn(1);
 		given(bulkResponse.errors()).willReturn(false);
 		given(elasticRepository.indexDigitalSpecimen(records)).willReturn(bulkResponse);
+		given(repository.createDigitalSpecimenRecord(records)).willReturn(givenUpsertResultCreated(HANDLE));
 
 		// When
 		var results = digitalSpecimenService.createNewDigitalSpecimen(events, pidMap);
 
 		// Then
 		assertThat(results).isEqualTo(records);
-		then(repository).should().createDigitalSpecimenRecord(records);
 		then(annotationPublisherService).should().publishAnnotationNewSpecimen(records);
 		then(rollbackService).shouldHaveNoInteractions();
 	}
@@ -271,13 +417,14 @@ class DigitalSpecimenServiceTest {
 		given(midsService.calculateMids(any())).willReturn(1);
 		given(bulkResponse.errors()).willReturn(false);
 		given(elasticRepository.indexDigitalSpecimen(Set.of(expectedRecord))).willReturn(bulkResponse);
+		given(repository.updateDigitalSpecimenRecords(List.of(expectedRecord)))
+			.willReturn(givenUpsertResultUpdated(HANDLE));
 
 		// When
 		var result = digitalSpecimenService.updateExistingDigitalSpecimen(List.of(tuple), pidMap);
 
 		// Then
 		assertThat(result).isEqualTo(Set.of(expectedRecord));
-		then(repository).should().updateDigitalSpecimenRecord(Set.of(expectedRecord));
 		then(publisherService).should().publishUpdateEventSpecimen(eq(expectedRecord), any());
 		then(rollbackService).shouldHaveNoInteractions();
 		then(handleComponent).should().updatePid(any());
@@ -303,19 +450,39 @@ class DigitalSpecimenServiceTest {
 		given(midsService.calculateMids(any())).willReturn(1);
 		given(bulkResponse.errors()).willReturn(false);
 		given(elasticRepository.indexDigitalSpecimen(Set.of(expectedRecord))).willReturn(bulkResponse);
+		given(repository.updateDigitalSpecimenRecords(List.of(expectedRecord)))
+			.willReturn(givenUpsertResultUpdated(HANDLE));
 
 		// When
 		var result = digitalSpecimenService.updateExistingDigitalSpecimen(List.of(tuple), pidMap);
 
 		// Then
 		assertThat(result).isEqualTo(Set.of(expectedRecord));
-		then(repository).should().updateDigitalSpecimenRecord(Set.of(expectedRecord));
 		then(digitalMediaService).should().tombstoneSpecimenRelations(anySet());
 		then(publisherService).should().publishUpdateEventSpecimen(eq(expectedRecord), any());
 		then(rollbackService).shouldHaveNoInteractions();
 		then(handleComponent).should().updatePid(any());
 	}
 
+	@Test
+	void testUpdatedSpecimenConflict() {
+		// Given
+		var tuple = givenUpdatedDigitalSpecimenTuple(false, givenEmptyMediaProcessResult());
+		var pidMap = Map.of(PHYSICAL_SPECIMEN_ID, givenPidProcessResultSpecimen(false));
+		var expectedRecord = givenDigitalSpecimenRecord(2, false);
+		given(midsService.calculateMids(any())).willReturn(1);
+		given(repository.updateDigitalSpecimenRecords(List.of(expectedRecord))).willReturn(new UpsertResult());
+
+		// When
+		var result = digitalSpecimenService.updateExistingDigitalSpecimen(List.of(tuple), pidMap);
+
+		// Then
+		assertThat(result).isEmpty();
+		then(elasticRepository).shouldHaveNoInteractions();
+		then(publisherService).shouldHaveNoInteractions();
+		then(rollbackService).shouldHaveNoInteractions();
+	}
+
 	@Test
 	void testUpdatedSpecimenDatabaseFails() {
 		// Given
@@ -324,7 +491,7 @@ class DigitalSpecimenServiceTest {
 		var expectedRecord = givenDigitalSpecimenRecord(2, false);
 		given(midsService.calculateMids(any())).willReturn(1);
 		var updatedRecord = givenUpdatedDigitalSpecimenRecord(false);
-		doThrow(DataAccessException.class).when(repository).updateDigitalSpecimenRecord(Set.of(expectedRecord));
+		doThrow(DataAccessException.class).when(repository).updateDigitalSpecimenRecords(List.of(expectedRecord));
 
 		// When
 		var result = digitalSpecimenService.updateExistingDigitalSpecimen(List.of(tuple), pidMap);
@@ -337,6 +504,27 @@ class DigitalSpecimenServiceTest {
 				true);
 	}
 
+	@Test
+	void testUpdatedSpecimenDatabaseRejectsSpecimen() {
+		// Given
+		var tuple = givenUpdatedDigitalSpecimenTuple(false, givenEmptyMediaProcessResult());
+		var pidMap = Map.of(PHYSICAL_SPECIMEN_ID, givenPidProcessResultSpecimen(false));
+		var expectedRecord = givenDigitalSpecimenRecord(2, false);
+		given(midsService.calculateMids(any())).willReturn(1);
+		var updatedRecord = givenUpdatedDigitalSpecimenRecord(false);
+		given(repository.updateDigitalSpecimenRecords(List.of(expectedRecord)))
+			.willReturn(UpsertResult.failed(HANDLE));
+
+		// When
+		var result = digitalSpecimenService.updateExistingDigitalSpecimen(List.of(tuple), pidMap);
+
+		// Then
+		assertThat(result).isEmpty();
+		then(elasticRepository).shouldHaveNoInteractions();
+		then(publisherService).shouldHaveNoInteractions();
+		then(rollbackService).should().rollbackUpdatedSpecimens(Set.of(updatedRecord), false, false, true);
+	}
+
 	@Test
 	void testUpdatedSpecimenElasticFails() throws Exception {
 		// Given
@@ -346,13 +534,14 @@ class DigitalSpecimenServiceTest {
 		var expectedRecord = givenDigitalSpecimenRecord(2, false);
 		given(midsService.calculateMids(any())).willReturn(1);
 		doThrow(IOException.class).when(elasticRepository).indexDigitalSpecimen(Set.of(expectedRecord));
+		given(repository.updateDigitalSpecimenRecords(List.of(expectedRecord)))
+			.willReturn(givenUpsertResultUpdated(HANDLE));
 
 		// When
 		var result = digitalSpecimenService.updateExistingDigitalSpecimen(List.of(tuple), pidMap);
 
 		// Then
 		assertThat(result).isEmpty();
-		then(repository).should().updateDigitalSpecimenRecord(Set.of(expectedRecord));
 		then(publisherService).shouldHaveNoInteractions();
 		then(rollbackService).should().rollbackUpdatedSpecimens(Set.of(updatedRecord), false, true,
 				true);
@@ -368,13 +557,14 @@ class DigitalSpecimenServiceTest {
 		given(midsService.calculateMids(any())).willReturn(1);
 		given(bulkResponse.errors()).willReturn(true);
 		given(elasticRepository.indexDigitalSpecimen(Set.of(expectedRecord))).willReturn(bulkResponse);
+		given(repository.updateDigitalSpecimenRecords(List.of(expectedRecord)))
+			.willReturn(givenUpsertResultUpdated(HANDLE));
 
 		// When
 		var result = digitalSpecimenService.updateExistingDigitalSpecimen(List.of(tuple), pidMap);
 
 		// Then
 		assertThat(result).isEmpty();
-		then(repository).should().updateDigitalSpecimenRecord(Set.of(expectedRecord));
 		then(publisherService).shouldHaveNoInteractions();
 		then(rollbackService).should().handlePartiallyFailedElasticUpdateSpecimen(Set.of(updatedRecord), bulkResponse,
 				true);
@@ -407,12 +597,13 @@ class DigitalSpecimenServiceTest {
 			.willReturn(bulkResponse);
 		given(fdoRecordService.pidNeedsUpdateSpecimen(any(), any())).willReturn(true);
 		given(fdoRecordService.buildSingleUpdatePidRequest(any(), any())).willReturn(givenPidRequest());
+		given(repository.updateDigitalSpecimenRecords(List.of(givenAnnotatedDigitalSpecimenRecord(2))))
+			.willReturn(givenUpsertResultUpdated(HANDLE));
 
 		// When
 		digitalSpecimenService.applyAnnotation(givenAnnotation());
 
 		// Then
-		then(repository).should().updateDigitalSpecimenRecord(Set.of(givenAnnotatedDigitalSpecimenRecord(2)));
 		then(elasticRepository).should().indexDigitalSpecimen(Set.of(givenAnnotatedDigitalSpecimenRecord(2)));
 		then(publisherService).should().publishUpdateEventSpecimen(eq(givenAnnotatedDigitalSpecimenRecord(2)), any());
 		then(rollbackService).shouldHaveNoInteractions();
@@ -429,16 +620,40 @@ class DigitalSpecimenServiceTest {
 		given(elasticRepository.indexDigitalSpecimen(Set.of(givenAnnotatedDigitalSpecimenRecord(2))))
 			.willReturn(bulkResponse);
 		given(fdoRecordService.pidNeedsUpdateSpecimen(any(), any())).willReturn(false);
+		given(repository.updateDigitalSpecimenRecords(List.of(givenAnnotatedDigitalSpecimenRecord(2))))
+			.willReturn(givenUpsertResultUpdated(HANDLE));
 
 		// When
 		digitalSpecimenService.applyAnnotation(givenAnnotation());
 
 		// Then
-		then(repository).should().updateDigitalSpecimenRecord(Set.of(givenAnnotatedDigitalSpecimenRecord(2)));
 		then(elasticRepository).should().indexDigitalSpecimen(Set.of(givenAnnotatedDigitalSpecimenRecord(2)));
 		then(publisherService).should().publishUpdateEventSpecimen(eq(givenAnnotatedDigitalSpecimenRecord(2)), any());
 		then(rollbackService).shouldHaveNoInteractions();
 		then(handleComponent).shouldHaveNoInteractions();
 	}
 
+	// Completes the submitted request and calls its handlers straight away
+	private void givenOutboxTransaction() {
+		willAnswer(invocation -> invocation.<Supplier<?>>getArgument(0).get()).given(outboxService)
+			.inTransaction(any());
+	}
+
+	private void givenIndexingCompletes() {
+		willAnswer(invocation -> {
+			Supplier<CompletableFuture<BulkResponse>> request = invocation.getArgument(0);
+			Consumer<BulkResponse> onResponse = invocation.getArgument(1);
+			Consumer<Throwable> onFailure = invocation.getArgument(2);
+			request.get().whenComplete((response, exception) -> {
+				if (exception == null) {
+					onResponse.accept(response);
+				}
+				else {
+					onFailure.accept(exception);
+				}
+			});
+			return null;
+		}).given(elasticIndexing).submit(any(), any(), any());
+	}
+
 }
@@ -43,6 +43,7 @@ import eu.dissco.core.digitalspecimenprocessor.schema.DigitalSpecimen.OdsTopicDi
 import eu.dissco.core.digitalspecimenprocessor.schema.EntityRelationship;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 import java.util.stream.Stream;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.BeforeEach;
@@ -99,6 +100,81 @@ class EqualityServiceTest {
 		assertThat(result).isTrue();
 	}
 
+	@Test
+	void testEqualSpecimensByContentHash() {
+		// Given
+		var digitalSpecimenWrapper = givenDigitalSpecimenWrapper();
+		var currentRecord = givenDigitalSpecimenRecord();
+		var currentDigitalSpecimen = new DigitalSpecimenRecord(currentRecord.id(), currentRecord.midsLevel(),
+				currentRecord.version(), currentRecord.created(),
+				new DigitalSpecimenWrapper(PHYSICAL_SPECIMEN_ID, TYPE_PID, null, ORIGINAL_DATA), null, null, null,
+				List.of(), equalityService.calculateSpecimenHash(digitalSpecimenWrapper.attributes()));
+
+		// When
+		var result = equalityService.specimensAreEqual(currentDigitalSpecimen, digitalSpecimenWrapper,
+				givenEmptyMediaProcessResult());
+
+		// Then
+		assertThat(result).isTrue();
+	}
+
+	@Test
+	void testUnequalContentHashFallsBackToComparison() {
+		// Given
+		var currentRecord = givenDigitalSpecimenRecord();
+		var currentDigitalSpecimen = new DigitalSpecimenRecord(currentRecord.id(), currentRecord.midsLevel(),
+				currentRecord.version(), currentRecord.created(), currentRecord.digitalSpecimenWrapper(), null, null,
+				null, List.of(), UUID.randomUUID());
+
+		// When
+		var result = equalityService.specimensAreEqual(currentDigitalSpecimen, givenDigitalSpecimenWrapper(),
+				givenEmptyMediaProcessResult());
+
+		// Then
+		assertThat(result).isTrue();
+	}
+
+	@Test
+	void testContentHashIgnoresGeneratedTimestamps() {
+		// Given
+		var digitalSpecimen = givenDigitalSpecimenWrapper().attributes();
+		var expected = equalityService.calculateSpecimenHash(digitalSpecimen);
+		digitalSpecimen.setDctermsModified(UPDATED_STR);
+
+		// When
+		var result = equalityService.calculateSpecimenHash(digitalSpecimen);
+
+		// Then
+		assertThat(result).isEqualTo(expected);
+	}
+
+	@Test
+	void testContentHashOfStoredSpecimenMatchesEvent() {
+		// Given
+		var storedSpecimen = givenDigitalSpecimenWrapperWithMediaEr(PHYSICAL_SPECIMEN_ID, true).attributes()
+			.withOdsIsKnownToContainMedia(true);
+		var eventSpecimen = givenDigitalSpecimenWrapper(true, false).attributes().withOdsIsKnownToContainMedia(null);
+		var expected = equalityService.calculateSpecimenHash(storedSpecimen);
+
+		// When
+		var result = equalityService.calculateSpecimenHash(eventSpecimen);
+
+		// Then
+		assertThat(result).isEqualTo(expected);
+	}
+
+	@Test
+	void testMediaHashIgnoresSpecimenRelationships() {
+		// Given
+		var expected = equalityService.calculateMediaHash(givenDigitalMedia(MEDIA_URL, false));
+
+		// When
+		var result = equalityService.calculateMediaHash(givenDigitalMedia(MEDIA_URL, true));
+
+		// Then
+		assertThat(result).isEqualTo(expected);
+	}
+
 	@Test
 	void testUnequalSpecimens() {
 		// Given
@@ -18,6 +18,7 @@ import eu.dissco.core.digitalspecimenprocessor.domain.relation.DigitalMediaRelat
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenEvent;
 import eu.dissco.core.digitalspecimenprocessor.property.RabbitMqProperties;
 import java.io.IOException;
+import java.util.List;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.BeforeEach;
@@ -108,6 +109,19 @@ class RabbitMqPublisherServiceTest {
 		assertThat(new String(message.getBody())).isNotNull();
 	}
 
+	@Test
+	void testPublishOutboxMessage() {
+		// Given
+		var outboxMessage = rabbitMqPublisherService.createEventSpecimenMessage(givenDigitalSpecimenRecord());
+
+		// When
+		rabbitMqPublisherService.publish(outboxMessage);
+
+		// Then
+		var message = rabbitTemplate.receive("provenance-queue");
+		assertThat(new String(message.getBody())).isEqualTo(outboxMessage.payload());
+	}
+
 	@Test
 	void testPublishUpdateEvent() {
 		// Given
@@ -172,6 +186,24 @@ class RabbitMqPublisherServiceTest {
 		assertThat(MAPPER.readValue(new String(result.getBody()), DigitalSpecimenEvent.class)).isEqualTo(message);
 	}
 
+	@Test
+	void testDeadLetterEvents() {
+		// Given
+		var firstMessage = givenDigitalSpecimenEvent();
+		var secondMessage = givenDigitalSpecimenEvent(true);
+
+		// When
+		rabbitMqPublisherService.deadLetterEventsSpecimen(List.of(firstMessage, secondMessage));
+
+		// Then
+		var firstResult = rabbitTemplate.receive("digital-specimen-queue-dlq");
+		var secondResult = rabbitTemplate.receive("digital-specimen-queue-dlq");
+		assertThat(MAPPER.readValue(new String(firstResult.getBody()), DigitalSpecimenEvent.class))
+			.isEqualTo(firstMessage);
+		assertThat(MAPPER.readValue(new String(secondResult.getBody()), DigitalSpecimenEvent.class))
+			.isEqualTo(secondMessage);
+	}
+
 	@Test
 	void testPublishDigitalMediaObjectEvent() {
 		// Given
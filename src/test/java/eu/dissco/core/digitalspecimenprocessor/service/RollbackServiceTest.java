@@ -94,7 +94,7 @@ class RollbackServiceTest {
 		// Then
 		then(elasticSearchRepository).shouldHaveNoInteractions();
 		then(specimenRepository).shouldHaveNoInteractions();
-		then(rabbitMqService).should(times(1)).deadLetterEventSpecimen(any());
+		then(rabbitMqService).should(times(1)).deadLetterEventsSpecimen(any());
 	}
 
 	@Test
@@ -106,34 +106,34 @@ class RollbackServiceTest {
 
 		// Then
 		then(elasticSearchRepository).shouldHaveNoInteractions();
-		then(specimenRepository).should().rollbackSpecimen(HANDLE);
-		then(rabbitMqService).should(times(1)).deadLetterEventSpecimen(any());
+		then(specimenRepository).should().rollbackSpecimens(Set.of(givenDigitalSpecimenRecord()));
+		then(rabbitMqService).should(times(1)).deadLetterEventsSpecimen(any());
 	}
 
 	@Test
 	void testRollbackNewSpecimensCase3() throws Exception {
 		// Given
+		given(elasticSearchRepository.rollbackObjects(List.of(HANDLE), true)).willReturn(bulkResponse);
 
 		// When
 		rollbackService.rollbackNewSpecimens(Set.of(givenDigitalSpecimenRecord()), true, true);
 
 		// Then
-		then(elasticSearchRepository).should().rollbackObject(HANDLE, true);
-		then(specimenRepository).should().rollbackSpecimen(HANDLE);
-		then(rabbitMqService).should(times(1)).deadLetterEventSpecimen(any());
+		then(specimenRepository).should().rollbackSpecimens(Set.of(givenDigitalSpecimenRecord()));
+		then(rabbitMqService).should(times(1)).deadLetterEventsSpecimen(any());
 	}
 
 	@Test
 	void testRollbackNewSpecimensCase3ElasticFails() throws Exception {
 		// Given
-		doThrow(ElasticsearchException.class).when(elasticSearchRepository).rollbackObject(HANDLE, true);
+		doThrow(ElasticsearchException.class).when(elasticSearchRepository).rollbackObjects(List.of(HANDLE), true);
 
 		// When
 		rollbackService.rollbackNewSpecimens(Set.of(givenDigitalSpecimenRecord()), true, true);
 
 		// Then
-		then(specimenRepository).should().rollbackSpecimen(HANDLE);
-		then(rabbitMqService).should(times(1)).deadLetterEventSpecimen(any());
+		then(specimenRepository).should().rollbackSpecimens(Set.of(givenDigitalSpecimenRecord()));
+		then(rabbitMqService).should(times(1)).deadLetterEventsSpecimen(any());
 	}
 
 	@Test
@@ -146,7 +146,7 @@ class RollbackServiceTest {
 		// Then
 		then(mediaRepository).shouldHaveNoInteractions();
 		then(elasticSearchRepository).shouldHaveNoInteractions();
-		then(rabbitMqService).should().deadLetterEventMedia(givenDigitalMediaEventWithSpecimenEr());
+		then(rabbitMqService).should().deadLetterEventsMedia(List.of(givenDigitalMediaEventWithSpecimenEr()));
 	}
 
 	@Test
@@ -157,35 +157,36 @@ class RollbackServiceTest {
 		rollbackService.rollbackNewMedias(Set.of(givenDigitalMediaRecord()), false, true);
 
 		// Then
-		then(mediaRepository).should().rollBackDigitalMedia(MEDIA_PID);
+		then(mediaRepository).should().rollBackDigitalMedia(Set.of(givenDigitalMediaRecord()));
 		then(elasticSearchRepository).shouldHaveNoInteractions();
-		then(rabbitMqService).should().deadLetterEventMedia(givenDigitalMediaEventWithSpecimenEr());
+		then(rabbitMqService).should().deadLetterEventsMedia(List.of(givenDigitalMediaEventWithSpecimenEr()));
 	}
 
 	@Test
 	void testRollbackNewMediaCase3() throws Exception {
 		// Given
+		given(elasticSearchRepository.rollbackObjects(List.of(MEDIA_PID), false)).willReturn(bulkResponse);
 
 		// When
 		rollbackService.rollbackNewMedias(Set.of(givenDigitalMediaRecord()), true, true);
 
 		// Then
-		then(mediaRepository).should().rollBackDigitalMedia(MEDIA_PID);
-		then(elasticSearchRepository).should().rollbackObject(MEDIA_PID, false);
-		then(rabbitMqService).should().deadLetterEventMedia(givenDigitalMediaEventWithSpecimenEr());
+		then(mediaRepository).should().rollBackDigitalMedia(Set.of(givenDigitalMediaRecord()));
+		then(rabbitMqService).should().deadLetterEventsMedia(List.of(givenDigitalMediaEventWithSpecimenEr()));
 	}
 
 	@Test
 	void testRollbackNewMediaCase3ElasticFails() throws Exception {
 		// Given
-		doThrow(ElasticsearchException.class).when(elasticSearchRepository).rollbackObject(MEDIA_PID, false);
+		doThrow(ElasticsearchException.class).when(elasticSearchRepository)
+			.rollbackObjects(List.of(MEDIA_PID), false);
 
 		// When
 		rollbackService.rollbackNewMedias(Set.of(givenDigitalMediaRecord()), true, true);
 
 		// Then
-		then(mediaRepository).should().rollBackDigitalMedia(MEDIA_PID);
-		then(rabbitMqService).should().deadLetterEventMedia(givenDigitalMediaEventWithSpecimenEr());
+		then(mediaRepository).should().rollBackDigitalMedia(Set.of(givenDigitalMediaRecord()));
+		then(rabbitMqService).should().deadLetterEventsMedia(List.of(givenDigitalMediaEventWithSpecimenEr()));
 	}
 
 	@Test
@@ -201,7 +202,7 @@ class RollbackServiceTest {
 		then(elasticSearchRepository).shouldHaveNoInteractions();
 		then(specimenRepository).shouldHaveNoInteractions();
 		then(handleComponent).shouldHaveNoInteractions();
-		then(rabbitMqService).should(times(1)).deadLetterEventSpecimen(any());
+		then(rabbitMqService).should(times(1)).deadLetterEventsSpecimen(any());
 	}
 
 	@Test
@@ -232,9 +233,10 @@ class RollbackServiceTest {
 
 		// Then
 		then(elasticSearchRepository).shouldHaveNoInteractions();
-		then(specimenRepository).should().updateDigitalSpecimenRecord(Set.of(givenUnequalDigitalSpecimenRecord()));
+		then(specimenRepository).should()
+			.rollbackDigitalSpecimenVersions(List.of(givenUnequalDigitalSpecimenRecord()));
 		then(handleComponent).shouldHaveNoInteractions();
-		then(rabbitMqService).should(times(1)).deadLetterEventSpecimen(any());
+		then(rabbitMqService).should(times(1)).deadLetterEventsSpecimen(any());
 	}
 
 	@Test
@@ -242,15 +244,17 @@ class RollbackServiceTest {
 		// Given
 		var specimenRecords = Set.of(givenUpdatedDigitalSpecimenRecord(false));
 		given(fdoRecordService.pidNeedsUpdateSpecimen(any(), any())).willReturn(false);
+		given(elasticSearchRepository.rollbackSpecimenVersions(List.of(givenUnequalDigitalSpecimenRecord())))
+			.willReturn(bulkResponse);
 
 		// When
 		rollbackService.rollbackUpdatedSpecimens(specimenRecords, true, true, true);
 
 		// Then
-		then(elasticSearchRepository).should().rollbackVersion(givenUnequalDigitalSpecimenRecord());
-		then(specimenRepository).should().updateDigitalSpecimenRecord(Set.of(givenUnequalDigitalSpecimenRecord()));
+		then(specimenRepository).should()
+			.rollbackDigitalSpecimenVersions(List.of(givenUnequalDigitalSpecimenRecord()));
 		then(handleComponent).shouldHaveNoInteractions();
-		then(rabbitMqService).should(times(1)).deadLetterEventSpecimen(any());
+		then(rabbitMqService).should(times(1)).deadLetterEventsSpecimen(any());
 	}
 
 	@Test
@@ -258,15 +262,17 @@ class RollbackServiceTest {
 		// Given
 		var specimenRecords = Set.of(givenUpdatedDigitalSpecimenRecord(false));
 		given(fdoRecordService.pidNeedsUpdateSpecimen(any(), any())).willReturn(true);
+		given(elasticSearchRepository.rollbackSpecimenVersions(List.of(givenUnequalDigitalSpecimenRecord())))
+			.willReturn(bulkResponse);
 
 		// When
 		rollbackService.rollbackUpdatedSpecimens(specimenRecords, true, true, true);
 
 		// Then
-		then(elasticSearchRepository).should().rollbackVersion(givenUnequalDigitalSpecimenRecord());
-		then(specimenRepository).should().updateDigitalSpecimenRecord(Set.of(givenUnequalDigitalSpecimenRecord()));
+		then(specimenRepository).should()
+			.rollbackDigitalSpecimenVersions(List.of(givenUnequalDigitalSpecimenRecord()));
 		then(handleComponent).should().rollbackPidUpdate(any());
-		then(rabbitMqService).should(times(1)).deadLetterEventSpecimen(any());
+		then(rabbitMqService).should(times(1)).deadLetterEventsSpecimen(any());
 	}
 
 	@Test
@@ -275,14 +281,16 @@ class RollbackServiceTest {
 		var specimenRecords = Set.of(givenUpdatedDigitalSpecimenRecord(false));
 		given(fdoRecordService.pidNeedsUpdateSpecimen(any(), any())).willReturn(true);
 		doThrow(PidException.class).when(handleComponent).rollbackPidUpdate(any());
+		given(elasticSearchRepository.rollbackSpecimenVersions(List.of(givenUnequalDigitalSpecimenRecord())))
+			.willReturn(bulkResponse);
 
 		// When
 		rollbackService.rollbackUpdatedSpecimens(specimenRecords, true, true, true);
 
 		// Then
-		then(elasticSearchRepository).should().rollbackVersion(givenUnequalDigitalSpecimenRecord());
-		then(specimenRepository).should().updateDigitalSpecimenRecord(Set.of(givenUnequalDigitalSpecimenRecord()));
-		then(rabbitMqService).should(times(1)).deadLetterEventSpecimen(any());
+		then(specimenRepository).should()
+			.rollbackDigitalSpecimenVersions(List.of(givenUnequalDigitalSpecimenRecord()));
+		then(rabbitMqService).should(times(1)).deadLetterEventsSpecimen(any());
 	}
 
 	@Test
@@ -291,15 +299,16 @@ class RollbackServiceTest {
 		var specimenRecords = Set.of(givenUpdatedDigitalSpecimenRecord(false));
 		given(fdoRecordService.pidNeedsUpdateSpecimen(any(), any())).willReturn(false);
 		doThrow(ElasticsearchException.class).when(elasticSearchRepository)
-			.rollbackVersion(givenUnequalDigitalSpecimenRecord());
+			.rollbackSpecimenVersions(List.of(givenUnequalDigitalSpecimenRecord()));
 
 		// When
 		rollbackService.rollbackUpdatedSpecimens(specimenRecords, true, true, true);
 
 		// Then
-		then(specimenRepository).should().updateDigitalSpecimenRecord(Set.of(givenUnequalDigitalSpecimenRecord()));
+		then(specimenRepository).should()
+			.rollbackDigitalSpecimenVersions(List.of(givenUnequalDigitalSpecimenRecord()));
 		then(handleComponent).shouldHaveNoInteractions();
-		then(rabbitMqService).should(times(1)).deadLetterEventSpecimen(any());
+		then(rabbitMqService).should(times(1)).deadLetterEventsSpecimen(any());
 	}
 
 	@Test
@@ -325,7 +334,7 @@ class RollbackServiceTest {
 		rollbackService.rollbackUpdatedMedias(Set.of(givenUpdatedDigitalMediaRecord()), false, true);
 
 		// Then
-		then(mediaRepository).should().updateDigitalMediaRecord(Set.of(givenDigitalMediaRecord()));
+		then(mediaRepository).should().rollbackDigitalMediaVersions(List.of(givenDigitalMediaRecord()));
 		then(elasticSearchRepository).shouldHaveNoInteractions();
 		then(handleComponent).shouldHaveNoInteractions();
 	}
@@ -334,13 +343,14 @@ class RollbackServiceTest {
 	void testRollbackUpdatedMediaCase3() throws Exception {
 		// Given
 		given(fdoRecordService.pidNeedsUpdateMedia(any(), any())).willReturn(false);
+		given(elasticSearchRepository.rollbackMediaVersions(List.of(givenDigitalMediaRecord())))
+			.willReturn(bulkResponse);
 
 		// When
 		rollbackService.rollbackUpdatedMedias(Set.of(givenUpdatedDigitalMediaRecord()), true, true);
 
 		// Then
-		then(mediaRepository).should().updateDigitalMediaRecord(Set.of(givenDigitalMediaRecord()));
-		then(elasticSearchRepository).should().rollbackVersion(givenDigitalMediaRecord());
+		then(mediaRepository).should().rollbackDigitalMediaVersions(List.of(givenDigitalMediaRecord()));
 		then(handleComponent).shouldHaveNoInteractions();
 	}
 
@@ -348,13 +358,14 @@ class RollbackServiceTest {
 	void testRollbackUpdatedMediaCase3ElasticFails() throws Exception {
 		// Given
 		given(fdoRecordService.pidNeedsUpdateMedia(any(), any())).willReturn(false);
-		doThrow(ElasticsearchException.class).when(elasticSearchRepository).rollbackVersion(givenDigitalMediaRecord());
+		doThrow(ElasticsearchException.class).when(elasticSearchRepository)
+			.rollbackMediaVersions(List.of(givenDigitalMediaRecord()));
 
 		// When
 		rollbackService.rollbackUpdatedMedias(Set.of(givenUpdatedDigitalMediaRecord()), true, true);
 
 		// Then
-		then(mediaRepository).should().updateDigitalMediaRecord(Set.of(givenDigitalMediaRecord()));
+		then(mediaRepository).should().rollbackDigitalMediaVersions(List.of(givenDigitalMediaRecord()));
 		then(handleComponent).shouldHaveNoInteractions();
 	}
 
@@ -362,13 +373,14 @@ class RollbackServiceTest {
 	void testRollbackUpdatedMediaCase3HandleNeedsUpdate() throws Exception {
 		// Given
 		given(fdoRecordService.pidNeedsUpdateMedia(any(), any())).willReturn(true);
+		given(elasticSearchRepository.rollbackMediaVersions(List.of(givenDigitalMediaRecord())))
+			.willReturn(bulkResponse);
 
 		// When
 		rollbackService.rollbackUpdatedMedias(Set.of(givenUpdatedDigitalMediaRecord()), true, true);
 
 		// Then
-		then(mediaRepository).should().updateDigitalMediaRecord(Set.of(givenDigitalMediaRecord()));
-		then(elasticSearchRepository).should().rollbackVersion(givenDigitalMediaRecord());
+		then(mediaRepository).should().rollbackDigitalMediaVersions(List.of(givenDigitalMediaRecord()));
 		then(handleComponent).should().rollbackPidUpdate(any());
 	}
 
@@ -386,8 +398,8 @@ class RollbackServiceTest {
 
 		// Then
 		then(rabbitMqService).should().publishCreateEventSpecimen(successfulRecord);
-		then(rabbitMqService).should().deadLetterEventSpecimen(failedEvent);
-		then(specimenRepository).should().rollbackSpecimen(SECOND_HANDLE);
+		then(rabbitMqService).should().deadLetterEventsSpecimen(List.of(failedEvent));
+		then(specimenRepository).should().rollbackSpecimens(Set.of(failedRecord));
 		then(elasticSearchRepository).shouldHaveNoMoreInteractions();
 		assertThat(result).isEqualTo(Set.of(successfulRecord));
 	}
@@ -406,9 +418,9 @@ class RollbackServiceTest {
 		var result = rollbackService.handlePartiallyFailedElasticInsertMedia(records, bulkResponse);
 
 		// Then
-		then(rabbitMqService).should().deadLetterEventMedia(failedEvent);
+		then(rabbitMqService).should().deadLetterEventsMedia(List.of(failedEvent));
 		then(rabbitMqService).should().publishCreateEventMedia(successfulRecord);
-		then(mediaRepository).should().rollBackDigitalMedia(MEDIA_PID_ALT);
+		then(mediaRepository).should().rollBackDigitalMedia(Set.of(failedRecord));
 		then(elasticSearchRepository).shouldHaveNoInteractions();
 		assertThat(result).isEqualTo(Set.of(successfulRecord));
 	}
@@ -442,10 +454,11 @@ class RollbackServiceTest {
 		// Then
 		assertThat(result).isEqualTo(Set.of(successfulRecord));
 		then(rabbitMqService).should(times(1)).publishUpdateEventSpecimen(any(), any());
-		then(rabbitMqService).should(times(1)).deadLetterEventSpecimen(any());
+		then(rabbitMqService).should(times(1)).deadLetterEventsSpecimen(any());
 		then(rabbitMqService).shouldHaveNoMoreInteractions();
 		then(elasticSearchRepository).shouldHaveNoInteractions();
-		then(specimenRepository).should().updateDigitalSpecimenRecord(Set.of(failedRecord.currentDigitalSpecimen()));
+		then(specimenRepository).should()
+			.rollbackDigitalSpecimenVersions(List.of(failedRecord.currentDigitalSpecimen()));
 		then(handleComponent).should().rollbackPidUpdate(any());
 	}
 
@@ -464,10 +477,11 @@ class RollbackServiceTest {
 		// Then
 		assertThat(result).isEqualTo(Set.of(successfulRecord));
 		then(rabbitMqService).should(times(1)).publishUpdateEventMedia(any(), any());
-		then(rabbitMqService).should(times(1)).deadLetterEventMedia(any());
+		then(rabbitMqService).should(times(1)).deadLetterEventsMedia(any());
 		then(rabbitMqService).shouldHaveNoMoreInteractions();
 		then(elasticSearchRepository).shouldHaveNoInteractions();
-		then(mediaRepository).should().updateDigitalMediaRecord(Set.of(failedRecord.currentDigitalMediaRecord()));
+		then(mediaRepository).should()
+			.rollbackDigitalMediaVersions(List.of(failedRecord.currentDigitalMediaRecord()));
 		then(handleComponent).should().rollbackPidUpdate(any());
 	}
 
@@ -13,12 +13,18 @@ import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigit
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaRecord;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaTombstoneEvent;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenEntityRelationship;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.CALLS_REAL_METHODS;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 
+import eu.dissco.core.digitalspecimenprocessor.component.KeyLockComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.MediaStateCacheComponent;
 import eu.dissco.core.digitalspecimenprocessor.domain.EntityRelationshipType;
 import eu.dissco.core.digitalspecimenprocessor.domain.FdoType;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaEvent;
@@ -34,12 +40,16 @@ import eu.dissco.core.digitalspecimenprocessor.service.EqualityService;
 import eu.dissco.core.digitalspecimenprocessor.service.FdoRecordService;
 import eu.dissco.core.digitalspecimenprocessor.service.RabbitMqPublisherService;
 import eu.dissco.core.digitalspecimenprocessor.web.PidComponent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneOffset;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -77,13 +87,17 @@ class ErPreprocessingServiceTest {
 
 	private MockedStatic<Instant> mockedInstant;
 
+	private KeyLockComponent keyLockComponent;
+
 	private ErPreprocessingService service;
 
 	@BeforeEach
 	void setup() {
+		var applicationProperties = new ApplicationProperties();
+		keyLockComponent = new KeyLockComponent();
 		service = new ErPreprocessingService(MAPPER, mediaRepository, digitalMediaService, publisherService,
-				entityRelationshipService, equalityService, new ApplicationProperties(), fdoRecordService,
-				pidComponent);
+				entityRelationshipService, equalityService, applicationProperties, fdoRecordService, pidComponent,
+				new MediaStateCacheComponent(applicationProperties, new SimpleMeterRegistry()), keyLockComponent);
 		Clock clock = Clock.fixed(CREATED, ZoneOffset.UTC);
 		Instant instant = Instant.now(clock);
 		mockedInstant = mockStatic(Instant.class, CALLS_REAL_METHODS);
@@ -95,6 +109,26 @@ class ErPreprocessingServiceTest {
 		mockedInstant.close();
 	}
 
+	@Test
+	void testHandleMessageMediaRelationshipTombstoneWaitsForMediaLock() throws Exception {
+		// Given
+		given(mediaRepository.getDigitalMediaUrlsByDoi(Set.of(MEDIA_PID))).willReturn(List.of(MEDIA_URL));
+		given(mediaRepository.getExistingDigitalMediaByDoi(Set.of(MEDIA_PID)))
+			.willReturn(List.of(givenDigitalMediaRecord()));
+		var events = List.of(givenDigitalMediaTombstoneEvent());
+		var mediaLock = keyLockComponent.lock(List.of(), List.of(MEDIA_URL));
+
+		// When
+		var result = CompletableFuture.runAsync(() -> service.handleMessagesMediaRelationshipTombstone(events));
+
+		// Then
+		assertThrows(TimeoutException.class, () -> result.get(200, TimeUnit.MILLISECONDS));
+		then(mediaRepository).should(never()).getExistingDigitalMediaByDoi(Set.of(MEDIA_PID));
+		mediaLock.close();
+		result.get(5, TimeUnit.SECONDS);
+		then(digitalMediaService).should().updateExistingDigitalMedia(anyList(), eq(false));
+	}
+
 	@Test
 	void testHandleMessageMediaRelationshipTombstoneDuplicate() {
 		// Given
@@ -5,6 +5,7 @@ import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MAPPER;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_MAS;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_PID;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_URL;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.VERSION;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMedia;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaEvent;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaRecord;
@@ -17,13 +18,18 @@ import static org.mockito.Mockito.CALLS_REAL_METHODS;
 import static org.mockito.Mockito.mockStatic;
 import static org.mockito.Mockito.times;
 
+import eu.dissco.core.digitalspecimenprocessor.component.KeyLockComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.KnownObjectFilterComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.MediaStateCacheComponent;
 import eu.dissco.core.digitalspecimenprocessor.domain.FdoType;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaEvent;
+import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaRecord;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaWrapper;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.MediaProcessResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.relation.PidProcessResult;
 import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
 import eu.dissco.core.digitalspecimenprocessor.repository.DigitalMediaRepository;
+import eu.dissco.core.digitalspecimenprocessor.repository.DigitalSpecimenRepository;
 import eu.dissco.core.digitalspecimenprocessor.service.DigitalMediaService;
 import eu.dissco.core.digitalspecimenprocessor.service.EntityRelationshipService;
 import eu.dissco.core.digitalspecimenprocessor.service.EqualityService;
@@ -31,6 +37,7 @@ import eu.dissco.core.digitalspecimenprocessor.service.FdoRecordService;
 import eu.dissco.core.digitalspecimenprocessor.service.MasSchedulerService;
 import eu.dissco.core.digitalspecimenprocessor.service.RabbitMqPublisherService;
 import eu.dissco.core.digitalspecimenprocessor.web.PidComponent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.time.Clock;
 import java.time.Instant;
 import java.time.ZoneOffset;
@@ -38,6 +45,7 @@ import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.UUID;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -73,15 +81,21 @@ class MediaPreprocessingServiceTest {
 	@Mock
 	private MasSchedulerService masSchedulerService;
 
+	@Mock
+	private DigitalSpecimenRepository specimenRepository;
+
 	private MockedStatic<Instant> mockedInstant;
 
 	private MediaPreprocessingService service;
 
 	@BeforeEach
 	void setup() {
+		var applicationProperties = new ApplicationProperties();
 		service = new MediaPreprocessingService(MAPPER, mediaRepository, digitalMediaService, publisherService,
-				entityRelationshipService, equalityService, new ApplicationProperties(), fdoRecordService, pidComponent,
-				masSchedulerService);
+				entityRelationshipService, equalityService, applicationProperties, fdoRecordService, pidComponent,
+				new MediaStateCacheComponent(applicationProperties, new SimpleMeterRegistry()), masSchedulerService,
+				new KeyLockComponent(), new KnownObjectFilterComponent(specimenRepository, mediaRepository,
+						applicationProperties, new SimpleMeterRegistry()));
 		Clock clock = Clock.fixed(CREATED, ZoneOffset.UTC);
 		Instant instant = Instant.now(clock);
 		mockedInstant = mockStatic(Instant.class, CALLS_REAL_METHODS);
@@ -133,6 +147,50 @@ class MediaPreprocessingServiceTest {
 		then(digitalMediaService).shouldHaveNoMoreInteractions();
 	}
 
+	@Test
+	void testHandleMessagesMediaEqualCached() {
+		// Given
+		var events = List.of(givenDigitalMediaEvent());
+		given(mediaRepository.getExistingDigitalMedia(Set.of(MEDIA_URL)))
+			.willReturn(List.of(givenDigitalMediaRecord()));
+		given(equalityService.mediaAreEqual(givenDigitalMediaRecord(), givenDigitalMediaEvent().digitalMediaWrapper(),
+				Set.of()))
+			.willReturn(true);
+		given(equalityService.calculateMediaHash(any())).willReturn(UUID.randomUUID());
+		given(mediaRepository.getDigitalMediaVersions(List.of(MEDIA_PID))).willReturn(Map.of(MEDIA_PID, VERSION));
+		service.handleMessagesMedia(events);
+
+		// When
+		var result = service.handleMessagesMedia(events);
+
+		// Then
+		assertThat(result.equalMedia()).extracting(DigitalMediaRecord::id).containsExactly(MEDIA_PID);
+		then(mediaRepository).should(times(1)).getExistingDigitalMedia(any());
+		then(digitalMediaService).should(times(2)).updateEqualDigitalMedia(any());
+		then(pidComponent).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void testHandleMessagesMediaEqualStaleCache() {
+		// Given
+		var events = List.of(givenDigitalMediaEvent());
+		given(mediaRepository.getExistingDigitalMedia(Set.of(MEDIA_URL)))
+			.willReturn(List.of(givenDigitalMediaRecord()));
+		given(equalityService.mediaAreEqual(givenDigitalMediaRecord(), givenDigitalMediaEvent().digitalMediaWrapper(),
+				Set.of()))
+			.willReturn(true);
+		given(equalityService.calculateMediaHash(any())).willReturn(UUID.randomUUID());
+		given(mediaRepository.getDigitalMediaVersions(List.of(MEDIA_PID))).willReturn(Map.of(MEDIA_PID, VERSION + 1));
+		service.handleMessagesMedia(events);
+
+		// When
+		var result = service.handleMessagesMedia(events);
+
+		// Then
+		assertThat(result).isEqualTo(new MediaProcessResult(List.of(givenDigitalMediaRecord()), List.of(), List.of()));
+		then(mediaRepository).should(times(2)).getExistingDigitalMedia(Set.of(MEDIA_URL));
+	}
+
 	@Test
 	void testHandleMessagesMediaUpdate() {
 		// Given
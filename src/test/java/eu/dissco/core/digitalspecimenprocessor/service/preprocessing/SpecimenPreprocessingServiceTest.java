@@ -9,12 +9,14 @@ import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_PID;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_PID_ALT;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_URL;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MEDIA_URL_ALT;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MIDS_LEVEL;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.ORGANISATION_ID;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.ORIGINAL_DATA;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.PHYSICAL_SPECIMEN_ID;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.PHYSICAL_SPECIMEN_ID_ALT;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.SECOND_HANDLE;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.SPECIMEN_NAME;
+import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.VERSION;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaEvent;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaRecord;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalSpecimenEvent;
@@ -43,10 +45,17 @@ import static org.mockito.BDDMockito.given;
 import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.CALLS_REAL_METHODS;
 import static org.mockito.Mockito.mockStatic;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 
+import eu.dissco.core.digitalspecimenprocessor.component.KeyLockComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.KnownObjectFilterComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.MediaStateCacheComponent;
+import eu.dissco.core.digitalspecimenprocessor.component.SpecimenStateCacheComponent;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaEvent;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenEvent;
+import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenRecord;
+import eu.dissco.core.digitalspecimenprocessor.domain.specimen.DigitalSpecimenWrapper;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.SpecimenProcessResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.specimen.UpdatedDigitalSpecimenTuple;
 import eu.dissco.core.digitalspecimenprocessor.exception.AnnotationProcessingException;
@@ -56,6 +65,7 @@ import eu.dissco.core.digitalspecimenprocessor.exception.TooManyObjectsException
 import eu.dissco.core.digitalspecimenprocessor.property.ApplicationProperties;
 import eu.dissco.core.digitalspecimenprocessor.repository.DigitalMediaRepository;
 import eu.dissco.core.digitalspecimenprocessor.repository.DigitalSpecimenRepository;
+import eu.dissco.core.digitalspecimenprocessor.schema.DigitalSpecimen;
 import eu.dissco.core.digitalspecimenprocessor.schema.EntityRelationship;
 import eu.dissco.core.digitalspecimenprocessor.service.AnnotationService;
 import eu.dissco.core.digitalspecimenprocessor.service.DigitalMediaService;
@@ -67,6 +77,7 @@ import eu.dissco.core.digitalspecimenprocessor.service.MasSchedulerService;
 import eu.dissco.core.digitalspecimenprocessor.service.RabbitMqPublisherService;
 import eu.dissco.core.digitalspecimenprocessor.utils.TestUtils;
 import eu.dissco.core.digitalspecimenprocessor.web.PidComponent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import java.net.URI;
 import java.time.Clock;
 import java.time.Instant;
@@ -76,6 +87,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.IntStream;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
@@ -123,13 +135,23 @@ class SpecimenPreprocessingServiceTest {
 
 	private MockedStatic<Instant> mockedInstant;
 
+	private ApplicationProperties applicationProperties;
+
+	private SpecimenStateCacheComponent specimenStateCache;
+
 	private SpecimenPreprocessingService service;
 
 	@BeforeEach
 	void setup() {
+		applicationProperties = new ApplicationProperties();
+		applicationProperties.setSpecimenFingerprintLookup(false);
+		specimenStateCache = new SpecimenStateCacheComponent(applicationProperties, new SimpleMeterRegistry());
 		service = new SpecimenPreprocessingService(MAPPER, mediaRepository, digitalMediaService, publisherService,
-				entityRelationshipService, equalityService, new ApplicationProperties(), fdoRecordService, pidComponent,
-				masSchedulerService, specimenRepository, annotationService, digitalSpecimenService);
+				entityRelationshipService, equalityService, applicationProperties, fdoRecordService, pidComponent,
+				new MediaStateCacheComponent(applicationProperties, new SimpleMeterRegistry()), masSchedulerService,
+				specimenRepository, annotationService, digitalSpecimenService, new KeyLockComponent(),
+				specimenStateCache, new KnownObjectFilterComponent(specimenRepository, mediaRepository,
+						applicationProperties, new SimpleMeterRegistry()));
 		Clock clock = Clock.fixed(CREATED, ZoneOffset.UTC);
 		Instant instant = Instant.now(clock);
 		mockedInstant = mockStatic(Instant.class, CALLS_REAL_METHODS);
@@ -164,6 +186,167 @@ class SpecimenPreprocessingServiceTest {
 		then(digitalMediaService).shouldHaveNoInteractions();
 	}
 
+	@Test
+	void testEqualSpecimenIsNotParsed() throws Exception {
+		// Given
+		var storedWrapper = givenDigitalSpecimenWrapper();
+		var loads = new AtomicInteger();
+		var lazyWrapper = DigitalSpecimenWrapper.lazy(PHYSICAL_SPECIMEN_ID, storedWrapper.type(), () -> {
+			loads.incrementAndGet();
+			return storedWrapper.attributes();
+		}, () -> {
+			loads.incrementAndGet();
+			return storedWrapper.originalAttributes();
+		});
+		var currentSpecimen = new DigitalSpecimenRecord(HANDLE, MIDS_LEVEL, VERSION, CREATED, lazyWrapper,
+				Set.of(MAS), false, true, List.of(), UUID.randomUUID());
+		given(specimenRepository.getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID)))
+			.willReturn(List.of(currentSpecimen));
+		given(entityRelationshipService.processMediaRelationshipsForSpecimen(anyMap(), any(), anyMap()))
+			.willReturn(givenEmptyMediaProcessResult());
+		given(equalityService.specimensAreEqual(any(), any(), any())).willReturn(true);
+		given(annotationService.applyAcceptedAnnotations(any(), any(), any())).willReturn(givenDigitalSpecimenEvent());
+
+		// When
+		var result = service.handleMessages(List.of(givenDigitalSpecimenEvent()));
+
+		// Then
+		assertThat(result.equalDigitalSpecimens()).containsOnlyKeys(currentSpecimen);
+		then(digitalSpecimenService).should().updateEqualSpecimen(anyMap());
+		assertThat(loads.get()).isZero();
+	}
+
+	@Test
+	void testEqualSpecimenFingerprintMatch() throws Exception {
+		// Given
+		applicationProperties.setSpecimenFingerprintLookup(true);
+		var contentHash = UUID.randomUUID();
+		given(specimenRepository.getDigitalSpecimenFingerprints(List.of(PHYSICAL_SPECIMEN_ID)))
+			.willReturn(List.of(givenDigitalSpecimenFingerprint(contentHash)));
+		given(equalityService.calculateSpecimenHash(any())).willReturn(contentHash);
+		given(entityRelationshipService.processMediaRelationshipsForSpecimen(anyMap(), any(), anyMap()))
+			.willReturn(givenEmptyMediaProcessResult());
+		given(equalityService.specimensAreEqual(any(), any(), any())).willReturn(true);
+		given(annotationService.applyAcceptedAnnotations(any(), any(), any())).willReturn(givenDigitalSpecimenEvent());
+
+		// When
+		var result = service.handleMessages(List.of(givenDigitalSpecimenEvent()));
+
+		// Then
+		assertThat(result).isEqualTo(new SpecimenProcessResult(
+				Map.of(givenDigitalSpecimenFingerprint(contentHash), givenDigitalSpecimenEvent()), List.of(),
+				List.of()));
+		then(specimenRepository).should(never()).getDigitalSpecimens(any());
+		then(digitalSpecimenService).should()
+			.updateEqualSpecimen(Map.of(givenDigitalSpecimenFingerprint(contentHash), givenDigitalSpecimenEvent()));
+		then(digitalSpecimenService).shouldHaveNoMoreInteractions();
+	}
+
+	@Test
+	void testEqualSpecimenCachedFingerprint() throws Exception {
+		// Given
+		applicationProperties.setSpecimenFingerprintLookup(true);
+		var contentHash = UUID.randomUUID();
+		var fingerprint = givenDigitalSpecimenFingerprint(contentHash);
+		specimenStateCache.put(fingerprint);
+		given(specimenRepository.getDigitalSpecimenVersions(List.of(fingerprint.id())))
+			.willReturn(Map.of(fingerprint.id(), fingerprint.version()));
+		given(equalityService.calculateSpecimenHash(any())).willReturn(contentHash);
+		given(entityRelationshipService.processMediaRelationshipsForSpecimen(anyMap(), any(), anyMap()))
+			.willReturn(givenEmptyMediaProcessResult());
+		given(equalityService.specimensAreEqual(any(), any(), any())).willReturn(true);
+		given(annotationService.applyAcceptedAnnotations(any(), any(), any())).willReturn(givenDigitalSpecimenEvent());
+
+		// When
+		var result = service.handleMessages(List.of(givenDigitalSpecimenEvent()));
+
+		// Then
+		assertThat(result).isEqualTo(
+				new SpecimenProcessResult(Map.of(fingerprint, givenDigitalSpecimenEvent()), List.of(), List.of()));
+		then(specimenRepository).should(never()).getDigitalSpecimenFingerprints(any());
+		then(specimenRepository).should(never()).getDigitalSpecimens(any());
+	}
+
+	@Test
+	void testEqualSpecimenStaleCachedFingerprint() throws Exception {
+		// Given
+		applicationProperties.setSpecimenFingerprintLookup(true);
+		var contentHash = UUID.randomUUID();
+		var fingerprint = givenDigitalSpecimenFingerprint(contentHash);
+		specimenStateCache.put(fingerprint);
+		given(specimenRepository.getDigitalSpecimenVersions(List.of(fingerprint.id())))
+			.willReturn(Map.of(fingerprint.id(), fingerprint.version() + 1));
+		given(specimenRepository.getDigitalSpecimenFingerprints(List.of(PHYSICAL_SPECIMEN_ID)))
+			.willReturn(List.of(fingerprint));
+		given(equalityService.calculateSpecimenHash(any())).willReturn(contentHash);
+		given(entityRelationshipService.processMediaRelationshipsForSpecimen(anyMap(), any(), anyMap()))
+			.willReturn(givenEmptyMediaProcessResult());
+		given(equalityService.specimensAreEqual(any(), any(), any())).willReturn(true);
+		given(annotationService.applyAcceptedAnnotations(any(), any(), any())).willReturn(givenDigitalSpecimenEvent());
+
+		// When
+		var result = service.handleMessages(List.of(givenDigitalSpecimenEvent()));
+
+		// Then
+		assertThat(result).isEqualTo(
+				new SpecimenProcessResult(Map.of(fingerprint, givenDigitalSpecimenEvent()), List.of(), List.of()));
+		then(specimenRepository).should().getDigitalSpecimenFingerprints(List.of(PHYSICAL_SPECIMEN_ID));
+	}
+
+	@Test
+	void testEqualSpecimenFingerprintMismatch() throws Exception {
+		// Given
+		applicationProperties.setSpecimenFingerprintLookup(true);
+		given(specimenRepository.getDigitalSpecimenFingerprints(List.of(PHYSICAL_SPECIMEN_ID)))
+			.willReturn(List.of(givenDigitalSpecimenFingerprint(UUID.randomUUID())));
+		given(equalityService.calculateSpecimenHash(any())).willReturn(UUID.randomUUID());
+		given(specimenRepository.getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID)))
+			.willReturn(List.of(givenDigitalSpecimenRecord()));
+		given(entityRelationshipService.processMediaRelationshipsForSpecimen(anyMap(), any(), anyMap()))
+			.willReturn(givenEmptyMediaProcessResult());
+		given(equalityService.specimensAreEqual(any(), any(), any())).willReturn(true);
+		given(annotationService.applyAcceptedAnnotations(any(), any(), any())).willReturn(givenDigitalSpecimenEvent());
+
+		// When
+		var result = service.handleMessages(List.of(givenDigitalSpecimenEvent()));
+
+		// Then
+		assertThat(result).isEqualTo(new SpecimenProcessResult(
+				Map.of(givenDigitalSpecimenRecord(), givenDigitalSpecimenEvent()), List.of(), List.of()));
+		then(digitalSpecimenService).should()
+			.updateEqualSpecimen(Map.of(givenDigitalSpecimenRecord(), givenDigitalSpecimenEvent()));
+	}
+
+	@Test
+	void testChangedSpecimenFingerprintMatch() throws Exception {
+		// Given
+		applicationProperties.setSpecimenFingerprintLookup(true);
+		var contentHash = UUID.randomUUID();
+		given(specimenRepository.getDigitalSpecimenFingerprints(List.of(PHYSICAL_SPECIMEN_ID)))
+			.willReturn(List.of(givenDigitalSpecimenFingerprint(contentHash)));
+		given(equalityService.calculateSpecimenHash(any())).willReturn(contentHash);
+		given(specimenRepository.getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID)))
+			.willReturn(List.of(givenUnequalDigitalSpecimenRecord()));
+		given(equalityService.specimensAreEqual(any(), any(), any())).willReturn(false);
+		given(equalityService.setExistingEventDatesSpecimen(any(), any(), any()))
+			.willReturn(givenDigitalSpecimenEvent());
+		given(entityRelationshipService.processMediaRelationshipsForSpecimen(any(), any(), any()))
+			.willReturn(givenEmptyMediaProcessResult());
+		given(annotationService.applyAcceptedAnnotations(any(), any(), any())).willReturn(givenDigitalSpecimenEvent());
+		var pidMap = Map.of(PHYSICAL_SPECIMEN_ID, givenPidProcessResultSpecimen(false));
+
+		// When
+		service.handleMessages(List.of(givenDigitalSpecimenEvent()));
+
+		// Then
+		then(equalityService).should()
+			.setExistingEventDatesSpecimen(givenUnequalDigitalSpecimenRecord().digitalSpecimenWrapper(),
+					givenDigitalSpecimenEvent(), givenEmptyMediaProcessResult());
+		then(digitalSpecimenService).should()
+			.updateExistingDigitalSpecimen(
+					List.of(givenUpdatedDigitalSpecimenTuple(false, givenEmptyMediaProcessResult())), pidMap);
+	}
+
 	@Test
 	void testAnnotationApplicationFailed() throws Exception {
 		// Given
@@ -188,6 +371,7 @@ class SpecimenPreprocessingServiceTest {
 	@Test
 	void testEqualSpecimenNoMediaDuplicate() throws Exception {
 		// Given
+		applicationProperties.setMaxBatchWaves(1);
 		given(specimenRepository.getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID)))
 			.willReturn(List.of(givenDigitalSpecimenRecord()));
 		given(entityRelationshipService.processMediaRelationshipsForSpecimen(anyMap(), any(), anyMap()))
@@ -277,6 +461,58 @@ class SpecimenPreprocessingServiceTest {
 		then(digitalMediaService).shouldHaveNoInteractions();
 	}
 
+	@Test
+	void testChangedSpecimenWithoutOriginalData() throws Exception {
+		// Given
+		var currentRecord = givenUnequalDigitalSpecimenRecord();
+		var currentSpecimen = new DigitalSpecimenRecord(currentRecord.id(), currentRecord.midsLevel(),
+				currentRecord.version(), currentRecord.created(),
+				new DigitalSpecimenWrapper(PHYSICAL_SPECIMEN_ID, currentRecord.digitalSpecimenWrapper().type(),
+						currentRecord.digitalSpecimenWrapper().attributes(), null),
+				currentRecord.masIds(), currentRecord.forceMasSchedule(), currentRecord.isDataFromSourceSystem(),
+				List.of());
+		given(specimenRepository.getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID)))
+			.willReturn(List.of(currentSpecimen));
+		given(equalityService.specimensAreEqual(any(), any(), any())).willReturn(false);
+		given(equalityService.setExistingEventDatesSpecimen(any(), any(), any()))
+			.willReturn(givenDigitalSpecimenEvent());
+		given(entityRelationshipService.processMediaRelationshipsForSpecimen(any(), any(), any()))
+			.willReturn(givenEmptyMediaProcessResult());
+		given(annotationService.applyAcceptedAnnotations(any(), any(), any())).willReturn(givenDigitalSpecimenEvent());
+
+		// When
+		service.handleMessages(List.of(givenDigitalSpecimenEvent()));
+
+		// Then
+		then(specimenRepository).should().getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID));
+		then(digitalSpecimenService).should().updateExistingDigitalSpecimen(anyList(), anyMap());
+	}
+
+	@Test
+	void testChangedSpecimenConcurrentUpdate() throws Exception {
+		// Given
+		given(specimenRepository.getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID)))
+			.willReturn(List.of(givenUnequalDigitalSpecimenRecord()));
+		given(equalityService.specimensAreEqual(any(), any(), any())).willReturn(false);
+		given(equalityService.setExistingEventDatesSpecimen(any(), any(), any()))
+			.willReturn(givenDigitalSpecimenEvent());
+		given(entityRelationshipService.processMediaRelationshipsForSpecimen(any(), any(), any()))
+			.willReturn(givenEmptyMediaProcessResult());
+		given(annotationService.applyAcceptedAnnotations(any(), any(), any())).willReturn(givenDigitalSpecimenEvent());
+		given(specimenRepository.getDigitalSpecimenVersions(List.of(HANDLE))).willReturn(Map.of(HANDLE, 2));
+		var pidMap = Map.of(PHYSICAL_SPECIMEN_ID, givenPidProcessResultSpecimen(false));
+
+		// When
+		var result = service.handleMessages(List.of(givenDigitalSpecimenEvent()));
+
+		// Then
+		assertThat(result).isEqualTo(new SpecimenProcessResult(Map.of(), List.of(), List.of()));
+		then(digitalSpecimenService).should(times(2))
+			.updateExistingDigitalSpecimen(
+					List.of(givenUpdatedDigitalSpecimenTuple(false, givenEmptyMediaProcessResult())), pidMap);
+		then(publisherService).should().republishSpecimenEvent(givenDigitalSpecimenEvent());
+	}
+
 	@Test
 	void testHandleMessagesDbException() throws Exception {
 		// Given
@@ -339,6 +575,7 @@ class SpecimenPreprocessingServiceTest {
 	@Test
 	void testMultipleSpecimenWithDuplicateMedia() throws Exception {
 		// Given
+		applicationProperties.setMaxBatchWaves(1);
 		var event = new DigitalSpecimenEvent(Set.of(MAS), givenDigitalSpecimenWrapper(false, true),
 				List.of(givenDigitalMediaEvent()), false, true);
 		var event2 = new DigitalSpecimenEvent(Set.of(MAS), givenDigitalSpecimenWrapper(PHYSICAL_SPECIMEN_ID_ALT,
@@ -375,6 +612,7 @@ class SpecimenPreprocessingServiceTest {
 	@Test
 	void testMultipleSpecimenWithDuplicateMediaAndSpecimen() throws Exception {
 		// Given
+		applicationProperties.setMaxBatchWaves(1);
 		var event = new DigitalSpecimenEvent(Set.of(MAS), givenDigitalSpecimenWrapper(false, true),
 				List.of(givenDigitalMediaEvent()), false, true);
 		var event2 = new DigitalSpecimenEvent(Set.of(MAS), givenDigitalSpecimenWrapper(PHYSICAL_SPECIMEN_ID_ALT,
@@ -383,36 +621,77 @@ class SpecimenPreprocessingServiceTest {
 		var event3 = new DigitalSpecimenEvent(Set.of(MAS), givenDigitalSpecimenWrapper(PHYSICAL_SPECIMEN_ID_ALT,
 				SPECIMEN_NAME, ORGANISATION_ID, false, true, ORIGINAL_DATA),
 				List.of(givenDigitalMediaEvent(MEDIA_URL_ALT)), false, true);
-		given(specimenRepository.getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID, PHYSICAL_SPECIMEN_ID_ALT)))
-			.willReturn(List.of());
-		given(mediaRepository.getExistingDigitalMedia(Set.of(MEDIA_URL, MEDIA_URL_ALT))).willReturn(List.of());
-		given(pidComponent.postPid(any(), eq(true))).willReturn(givenHandleResponse(
-				List.of(PHYSICAL_SPECIMEN_ID, PHYSICAL_SPECIMEN_ID_ALT), List.of(HANDLE, SECOND_HANDLE)));
-		given(pidComponent.postPid(any(), eq(false)))
-			.willReturn(givenHandleResponse(List.of(MEDIA_URL, MEDIA_URL_ALT), List.of(MEDIA_PID, MEDIA_PID_ALT)));
-		given(fdoRecordService.buildPostPidRequest(any()))
-			.willReturn(List.of(TestUtils.givenPidRequest(), TestUtils.givenPidRequest()));
-		given(fdoRecordService.buildPostRequestMedia(any()))
-			.willReturn(List.of(TestUtils.givenPidRequest(), TestUtils.givenPidRequest()));
+		given(specimenRepository.getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID))).willReturn(List.of());
+		given(mediaRepository.getExistingDigitalMedia(Set.of(MEDIA_URL))).willReturn(List.of());
+		given(pidComponent.postPid(any(), eq(true))).willReturn(givenHandleResponseSpecimen());
+		given(pidComponent.postPid(any(), eq(false))).willReturn(givenPidResponseMedia());
+		given(fdoRecordService.buildPostPidRequest(any())).willReturn(List.of(TestUtils.givenPidRequest()));
+		given(fdoRecordService.buildPostRequestMedia(any())).willReturn(List.of(TestUtils.givenPidRequest()));
 		given(digitalSpecimenService.createNewDigitalSpecimen(any(), any()))
-			.willReturn(Set.of(givenDigitalSpecimenRecord(), givenDigitalSpecimenRecord(SECOND_HANDLE)));
-		given(digitalMediaService.createNewDigitalMedia(any(), any()))
-			.willReturn(Set.of(givenDigitalMediaRecord(), givenDigitalMediaRecord(SECOND_HANDLE, MEDIA_URL_ALT, 1)));
+			.willReturn(Set.of(givenDigitalSpecimenRecord()));
+		given(digitalMediaService.createNewDigitalMedia(any(), any())).willReturn(Set.of(givenDigitalMediaRecord()));
 
 		// When
 		service.handleMessages(List.of(event, event2, event3));
 
 		// Then
+		// event3 is republished as well, so it is not processed before event2
 		then(publisherService).should().republishSpecimenEvent(event2);
-		then(digitalSpecimenService).should().createNewDigitalSpecimen(anyList(), anyMap());
-		then(digitalMediaService).should().createNewDigitalMedia(anyList(), anyMap());
+		then(publisherService).should().republishSpecimenEvent(event3);
+		then(digitalSpecimenService).should()
+			.createNewDigitalSpecimen(eq(List.of(givenDigitalSpecimenEvent(true))), anyMap());
 		then(equalityService).shouldHaveNoInteractions();
 		then(digitalSpecimenService).shouldHaveNoMoreInteractions();
-		then(digitalMediaService).shouldHaveNoMoreInteractions();
 		then(masSchedulerService).should().scheduleMasForSpecimen(any());
 		then(masSchedulerService).should().scheduleMasForMedia(any());
 	}
 
+	@Test
+	void testDuplicateSpecimenProcessedInWaves() throws Exception {
+		// Given
+		given(specimenRepository.getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID)))
+			.willReturn(List.of(givenDigitalSpecimenRecord()));
+		given(entityRelationshipService.processMediaRelationshipsForSpecimen(anyMap(), any(), anyMap()))
+			.willReturn(givenEmptyMediaProcessResult());
+		given(annotationService.applyAcceptedAnnotations(any(), any(), any())).willReturn(givenDigitalSpecimenEvent());
+		given(equalityService.specimensAreEqual(any(), any(), any())).willReturn(true);
+
+		// When
+		var result = service.handleMessages(List.of(givenDigitalSpecimenEvent(), givenDigitalSpecimenEvent()));
+
+		// Then
+		assertThat(result).isEqualTo(new SpecimenProcessResult(
+				Map.of(givenDigitalSpecimenRecord(), givenDigitalSpecimenEvent()), List.of(), List.of()));
+		then(specimenRepository).should(times(2)).getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID));
+		then(digitalSpecimenService).should(times(2))
+			.updateEqualSpecimen(Map.of(givenDigitalSpecimenRecord(), givenDigitalSpecimenEvent()));
+		then(masSchedulerService).should(times(2)).scheduleMasForSpecimen(any());
+		then(publisherService).shouldHaveNoInteractions();
+	}
+
+	@Test
+	void testSpecimenWithSharedMediaProcessedInWaves() throws Exception {
+		// Given
+		var event = new DigitalSpecimenEvent(Set.of(MAS), givenDigitalSpecimenWrapper(false, true),
+				List.of(givenDigitalMediaEvent()), false, true);
+		var event2 = new DigitalSpecimenEvent(Set.of(MAS), givenDigitalSpecimenWrapper(PHYSICAL_SPECIMEN_ID_ALT,
+				SPECIMEN_NAME, ORGANISATION_ID, false, true, ORIGINAL_DATA), List.of(givenDigitalMediaEvent()), false,
+				true);
+		given(specimenRepository.getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID)))
+			.willThrow(DisscoRepositoryException.class);
+		given(specimenRepository.getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID_ALT)))
+			.willThrow(DisscoRepositoryException.class);
+
+		// When
+		var result = service.handleMessages(List.of(event, event2));
+
+		// Then
+		assertThat(result).isEqualTo(new SpecimenProcessResult(Map.of(), List.of(), List.of()));
+		then(specimenRepository).should().getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID));
+		then(specimenRepository).should().getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID_ALT));
+		then(publisherService).shouldHaveNoInteractions();
+	}
+
 	@Test
 	void testChangedSpecimenUpdatedMedia() throws Exception {
 		given(specimenRepository.getDigitalSpecimens(List.of(PHYSICAL_SPECIMEN_ID))).willReturn(
@@ -566,4 +845,14 @@ class SpecimenPreprocessingServiceTest {
 		then(pidComponent).should(times(4)).postPid(any(), anyBoolean());
 	}
 
+	private static DigitalSpecimenRecord givenDigitalSpecimenFingerprint(UUID contentHash) {
+		var currentRecord = givenDigitalSpecimenRecord();
+		return new DigitalSpecimenRecord(currentRecord.id(), currentRecord.midsLevel(), currentRecord.version(),
+				currentRecord.created(),
+				DigitalSpecimenWrapper.fingerprint(PHYSICAL_SPECIMEN_ID, currentRecord.digitalSpecimenWrapper().type(),
+						List.of()),
+				currentRecord.masIds(), currentRecord.forceMasSchedule(), currentRecord.isDataFromSourceSystem(),
+				List.of(), contentHash);
+	}
+
 }
@@ -4,13 +4,18 @@ import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MAPPER;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaTombstoneEvent;
 import static org.mockito.BDDMockito.then;
 
+import eu.dissco.core.digitalspecimenprocessor.component.MessageCompressionComponent;
+import eu.dissco.core.digitalspecimenprocessor.property.RabbitMqProperties;
 import eu.dissco.core.digitalspecimenprocessor.service.preprocessing.ErPreprocessingService;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 
 @ExtendWith(MockitoExtension.class)
 class ErRabbitMqConsumerServiceTest {
@@ -22,7 +27,8 @@ class ErRabbitMqConsumerServiceTest {
 
 	@BeforeEach
 	void setup() {
-		consumerService = new ErRabbitMqConsumerService(MAPPER, processingService);
+		consumerService = new ErRabbitMqConsumerService(MAPPER, processingService,
+				new MessageCompressionComponent(new RabbitMqProperties()));
 	}
 
 	@Test
@@ -31,11 +37,15 @@ class ErRabbitMqConsumerServiceTest {
 		var message = MAPPER.writeValueAsString(givenDigitalMediaTombstoneEvent());
 
 		// When
-		consumerService.getMessagesDigitalMediaRelationshipTombstone(List.of(message));
+		consumerService.getMessagesDigitalMediaRelationshipTombstone(List.of(givenAmqpMessage(message)));
 
 		// Then
 		then(processingService).should()
 			.handleMessagesMediaRelationshipTombstone(List.of(givenDigitalMediaTombstoneEvent()));
 	}
 
+	private static Message givenAmqpMessage(String message) {
+		return new Message(message.getBytes(StandardCharsets.UTF_8), new MessageProperties());
+	}
+
 }
@@ -4,13 +4,18 @@ import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MAPPER;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalMediaEvent;
 import static org.mockito.BDDMockito.then;
 
+import eu.dissco.core.digitalspecimenprocessor.component.MessageCompressionComponent;
+import eu.dissco.core.digitalspecimenprocessor.property.RabbitMqProperties;
 import eu.dissco.core.digitalspecimenprocessor.service.preprocessing.MediaPreprocessingService;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 
 @ExtendWith(MockitoExtension.class)
 class MediaRabbitMqConsumerServiceTest {
@@ -22,7 +27,8 @@ class MediaRabbitMqConsumerServiceTest {
 
 	@BeforeEach
 	void setup() {
-		consumerService = new MediaRabbitMqConsumerService(MAPPER, processingService);
+		consumerService = new MediaRabbitMqConsumerService(MAPPER, processingService,
+				new MessageCompressionComponent(new RabbitMqProperties()));
 	}
 
 	@Test
@@ -31,10 +37,14 @@ class MediaRabbitMqConsumerServiceTest {
 		var message = MAPPER.writeValueAsString(givenDigitalMediaEvent());
 
 		// When
-		consumerService.getMessagesMedia(List.of(message));
+		consumerService.getMessagesMedia(List.of(givenAmqpMessage(message)));
 
 		// Then
 		then(processingService).should().handleMessagesMedia(List.of(givenDigitalMediaEvent()));
 	}
 
+	private static Message givenAmqpMessage(String message) {
+		return new Message(message.getBytes(StandardCharsets.UTF_8), new MessageProperties());
+	}
+
 }
@@ -4,13 +4,18 @@ import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.MAPPER;
 import static eu.dissco.core.digitalspecimenprocessor.utils.TestUtils.givenDigitalSpecimenEvent;
 import static org.mockito.BDDMockito.then;
 
+import eu.dissco.core.digitalspecimenprocessor.component.MessageCompressionComponent;
+import eu.dissco.core.digitalspecimenprocessor.property.RabbitMqProperties;
 import eu.dissco.core.digitalspecimenprocessor.service.preprocessing.SpecimenPreprocessingService;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.amqp.core.Message;
+import org.springframework.amqp.core.MessageProperties;
 
 @ExtendWith(MockitoExtension.class)
 class SpecimenRabbitMqConsumerServiceTest {
@@ -22,7 +27,8 @@ class SpecimenRabbitMqConsumerServiceTest {
 
 	@BeforeEach
 	void setup() {
-		consumerService = new SpecimenRabbitMqConsumerService(MAPPER, processingService);
+		consumerService = new SpecimenRabbitMqConsumerService(MAPPER, processingService,
+				new MessageCompressionComponent(new RabbitMqProperties()));
 	}
 
 	@Test
@@ -30,6 +36,20 @@ class SpecimenRabbitMqConsumerServiceTest {
 		// Given
 		var message = givenMessage();
 
+		// When
+		consumerService.getMessages(List.of(givenAmqpMessage(message)));
+
+		// Then
+		then(processingService).should().handleMessages(List.of(givenDigitalSpecimenEvent()));
+	}
+
+	@Test
+	void testGetMessagesCompressed() {
+		// Given
+		var compressionComponent = new MessageCompressionComponent(new RabbitMqProperties());
+		var message = compressionComponent
+			.postProcessMessage(compressionComponent.toMessage(givenMessage(), new MessageProperties()));
+
 		// When
 		consumerService.getMessages(List.of(message));
 
@@ -100,4 +120,8 @@ class SpecimenRabbitMqConsumerServiceTest {
 				}""";
 	}
 
+	private static Message givenAmqpMessage(String message) {
+		return new Message(message.getBytes(StandardCharsets.UTF_8), new MessageProperties());
+	}
+
 }
@@ -0,0 +1,94 @@
+package eu.dissco.core.digitalspecimenprocessor.tools;
+
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdDictCompress;
+import com.github.luben.zstd.ZstdDictTrainer;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/*
+ * Trains a zstd dictionary on sample messages, one message per file in the sample
+ * directory. Arguments: sample directory, output file and optionally the dictionary size
+ * in bytes. The resulting dictionary can be configured with
+ * rabbitmq.compression.zstd-dictionaries.
+ */
+public class ZstdDictionaryTrainer {
+
+	private static final Logger LOGGER = LoggerFactory.getLogger(ZstdDictionaryTrainer.class);
+
+	private static final int DEFAULT_DICTIONARY_SIZE = 112640; // 110KB, default of the zstd cli
+
+	private static final int COMPRESSION_LEVEL = 3;
+
+	public static void main(String[] args) throws IOException {
+		if (args.length < 2) {
+			LOGGER.error("Usage: ZstdDictionaryTrainer <sample directory> <output file> [dictionary size]");
+			return;
+		}
+		var dictionarySize = args.length > 2 ? Integer.parseInt(args[2]) : DEFAULT_DICTIONARY_SIZE;
+		LOGGER.info("Training zstd dictionary of {} bytes on samples in: {}", dictionarySize, args[0]);
+		var samples = readSamples(Path.of(args[0]));
+		if (samples.isEmpty()) {
+			LOGGER.error("No samples found in: {}", args[0]);
+			return;
+		}
+		var dictionary = trainDictionary(samples, dictionarySize);
+		var outputFile = Path.of(args[1]);
+		if (outputFile.getParent() != null) {
+			Files.createDirectories(outputFile.getParent());
+		}
+		Files.write(outputFile, dictionary);
+		LOGGER.info("Zstd dictionary {} trained on {} samples and saved to: {}", Zstd.getDictIdFromDict(dictionary),
+				samples.size(), outputFile);
+		logCompressionRatio(samples, dictionary);
+	}
+
+	private static List<byte[]> readSamples(Path sampleDirectory) throws IOException {
+		var samples = new ArrayList<byte[]>();
+		try (Stream<Path> files = Files.list(sampleDirectory)) {
+			for (var file : files.filter(Files::isRegularFile).sorted().toList()) {
+				samples.add(Files.readAllBytes(file));
+			}
+		}
+		return samples;
+	}
+
+	static byte[] trainDictionary(List<byte[]> samples, int dictionarySize) {
+		var sampleSize = samples.stream().mapToLong(sample -> sample.length).sum();
+		var trainer = new ZstdDictTrainer((int) Math.min(sampleSize, Integer.MAX_VALUE), dictionarySize);
+		for (var sample : samples) {
+			if (!trainer.addSample(sample)) {
+				LOGGER.warn("Sample buffer is full, remaining samples are ignored");
+				break;
+			}
+		}
+		return trainer.trainSamples();
+	}
+
+	/*
+	 * The ratio is measured on the training samples, so it is an upper bound for the
+	 * ratio on new messages
+	 */
+	private static void logCompressionRatio(List<byte[]> samples, byte[] dictionary) {
+		var originalSize = 0L;
+		var compressedSize = 0L;
+		var dictionaryCompressedSize = 0L;
+		try (var dictCompress = new ZstdDictCompress(dictionary, COMPRESSION_LEVEL)) {
+			for (var sample : samples) {
+				originalSize += sample.length;
+				compressedSize += Zstd.compress(sample, COMPRESSION_LEVEL).length;
+				dictionaryCompressedSize += Zstd.compress(sample, dictCompress).length;
+			}
+		}
+		LOGGER.info("Compression ratio without dictionary: {}, with dictionary: {}",
+				String.format("%.2f", (double) originalSize / compressedSize),
+				String.format("%.2f", (double) originalSize / dictionaryCompressedSize));
+	}
+
+}
@@ -21,6 +21,7 @@ import eu.dissco.core.digitalspecimenprocessor.database.jooq.enums.MjrTargetType
 import eu.dissco.core.digitalspecimenprocessor.domain.AutoAcceptedAnnotation;
 import eu.dissco.core.digitalspecimenprocessor.domain.EntityRelationshipType;
 import eu.dissco.core.digitalspecimenprocessor.domain.FdoType;
+import eu.dissco.core.digitalspecimenprocessor.domain.UpsertResult;
 import eu.dissco.core.digitalspecimenprocessor.domain.mas.MasJobRequest;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaEvent;
 import eu.dissco.core.digitalspecimenprocessor.domain.media.DigitalMediaRecord;
@@ -671,6 +672,18 @@ public class TestUtils {
 		return new PidProcessResult(MEDIA_PID, Set.of(HANDLE));
 	}
 
+	public static UpsertResult givenUpsertResultCreated(String... ids) {
+		var created = new HashMap<String, Integer>();
+		for (var id : ids) {
+			created.put(id, VERSION);
+		}
+		return new UpsertResult(created, Map.of(), Set.of());
+	}
+
+	public static UpsertResult givenUpsertResultUpdated(String id) {
+		return new UpsertResult(Map.of(), Map.of(id, VERSION + 1), Set.of());
+	}
+
 	public static UpdatedDigitalSpecimenTuple givenUpdatedDigitalSpecimenTuple(boolean hasMedia,
 			MediaRelationshipProcessResult mediaRelations) {
 		return givenUpdatedDigitalSpecimenTuple(hasMedia, mediaRelations, true);
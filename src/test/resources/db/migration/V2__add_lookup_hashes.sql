@@ -0,0 +1,13 @@
+alter table digital_specimen
+    add column physical_specimen_id_hash uuid
+        generated always as (md5(physical_specimen_id)::uuid) stored;
+
+create index digital_specimen_physical_specimen_id_hash_idx
+    on digital_specimen (physical_specimen_id_hash);
+
+alter table digital_media_object
+    add column media_url_hash uuid
+        generated always as (md5(media_url)::uuid) stored;
+
+create index digital_media_object_media_url_hash_idx
+    on digital_media_object (media_url_hash);
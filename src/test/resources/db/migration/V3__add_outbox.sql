@@ -0,0 +1,12 @@
+create table outbox
+(
+    id            bigint generated always as identity primary key,
+    destination   text        not null,
+    target        text        not null,
+    message_key   text        not null,
+    version       integer,
+    payload       text        not null,
+    created       timestamptz not null default now(),
+    attempts      integer     not null default 0,
+    claimed_until timestamptz
+);
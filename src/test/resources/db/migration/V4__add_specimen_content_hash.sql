@@ -0,0 +1,2 @@
+alter table digital_specimen
+    add column content_hash uuid;